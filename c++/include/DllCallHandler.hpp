@@ -3,6 +3,9 @@
 
 #include "igzorrobridge.hpp"
 #include "JNIHandler.hpp"
+#include <string>
+#include <unordered_map>
+#include <vector>
 
 class DllCallHandler
 {
@@ -74,9 +77,32 @@ public:
     int
     SetOrderText(const char *orderText);
 
+    int
+    SetSymbol(const char *symbol);
+
+    double
+    BrokerCommand(const int nCommand);
+
 private:
+    // Snapshot layout written by BrokerAsset.fillAssetSnapshot: return value followed by the 9 asset params
+    static const int ASSET_SNAPSHOT_STRIDE = 10;
+    static const int MAX_SNAPSHOT_ASSETS = 512;
+
+    int
+    BrokerAssetFromJava(char* Asset,
+                        double *assetParams);
+
+    bool
+    refreshAssetSnapshot();
+
     JNIHandler jniHandler;
     JNIEnv *env;
+
+    double assetSnapshot[MAX_SNAPSHOT_ASSETS * ASSET_SNAPSHOT_STRIDE];
+    jobject jAssetSnapshotBuffer = nullptr;
+    int snapshotAssets = 0;
+    std::vector<bool> assetServed = std::vector<bool>(MAX_SNAPSHOT_ASSETS, false);
+    std::unordered_map<std::string, int> assetHandles;
 };
 
 #endif /* DLLCALLHANDLER_HPP */
@@ -26,6 +26,9 @@ extern JMethodDesc doLogout;
 extern JMethodDesc doBrokerTime;
 extern JMethodDesc doSubscribeAsset;
 extern JMethodDesc doBrokerAsset;
+extern JMethodDesc doGetAssetHandle;
+extern JMethodDesc doSetAssetSnapshotBuffer;
+extern JMethodDesc doBrokerAssetSnapshot;
 extern JMethodDesc doBrokerAccount;
 extern JMethodDesc doBrokerBuy;
 extern JMethodDesc doBrokerTrade;
@@ -33,6 +36,8 @@ extern JMethodDesc doBrokerStop;
 extern JMethodDesc doBrokerSell;
 extern JMethodDesc doBrokerHistory2;
 extern JMethodDesc doSetOrderText;
+extern JMethodDesc doBrokerCommand;
+extern JMethodDesc doSetSymbol;
 
 extern JMethodDesc excGetMessage;
 extern JMethodDesc excGetName;
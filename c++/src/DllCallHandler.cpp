@@ -1,8 +1,12 @@
 #include "DllCallHandler.hpp"
 #include "JNIHandler.hpp"
 #include "JReferences.hpp"
+#include <algorithm>
 #include <cstring>
 
+// T6Ticks on the Java side writes this exact layout
+static_assert(sizeof(T6) == 32, "T6 layout does not match T6Ticks");
+
 int
 DllCallHandler::BrokerLogin(const char *User,
 	const char *Pwd,
@@ -97,11 +101,38 @@ DllCallHandler::SubscribeAsset(const char* Asset)
 	jint res = (jlong)env->CallObjectMethod(JData::JIgZorroBridgeObject,
 		JData::doSubscribeAsset.methodID,
 		jAsset);
+
+	if (res > 0)
+	{
+		if (!jAssetSnapshotBuffer)
+		{
+			jobject jBuffer = env->NewDirectByteBuffer(assetSnapshot, sizeof(assetSnapshot));
+			jAssetSnapshotBuffer = env->NewGlobalRef(jBuffer);
+			env->DeleteLocalRef(jBuffer);
+			env->CallIntMethod(JData::JIgZorroBridgeObject,
+				JData::doSetAssetSnapshotBuffer.methodID,
+				jAssetSnapshotBuffer);
+		}
+		assetHandles[Asset] = env->CallIntMethod(JData::JIgZorroBridgeObject,
+			JData::doGetAssetHandle.methodID,
+			jAsset);
+		// Force a refresh so the new asset is part of the next snapshot
+		snapshotAssets = 0;
+	}
 	env->DeleteLocalRef(jAsset);
 
 	return res;
 }
 
+bool
+DllCallHandler::refreshAssetSnapshot()
+{
+	snapshotAssets = env->CallIntMethod(JData::JIgZorroBridgeObject,
+		JData::doBrokerAssetSnapshot.methodID);
+	std::fill(assetServed.begin(), assetServed.end(), false);
+	return snapshotAssets > 0;
+}
+
 int
 DllCallHandler::BrokerAsset(char* Asset,
 	double *pPrice,
@@ -114,14 +145,29 @@ DllCallHandler::BrokerAsset(char* Asset,
 	double *pRollLong,
 	double *pRollShort)
 {
-	jstring jAsset = env->NewStringUTF(Asset);
-	jdoubleArray jAssetParamsArray = env->NewDoubleArray(9);
-
-	jint res = (jlong)env->CallObjectMethod(JData::JIgZorroBridgeObject,
-		JData::doBrokerAsset.methodID,
-		jAsset,
-		jAssetParamsArray);
-	jdouble *assetParams = env->GetDoubleArrayElements(jAssetParamsArray, 0);
+	// Every asset is served once from the shared snapshot, asking for an asset a second time means a new round
+	// of BrokerAsset calls has started and the whole snapshot is refreshed in a single call into Java
+	double javaAssetParams[ASSET_SNAPSHOT_STRIDE - 1];
+	const double *assetParams = javaAssetParams;
+	int res;
+	auto handle = assetHandles.find(Asset);
+	if (handle != assetHandles.end() && handle->second >= 0 && handle->second < MAX_SNAPSHOT_ASSETS)
+	{
+		int assetHandle = handle->second;
+		if (assetHandle >= snapshotAssets || assetServed[assetHandle])
+			refreshAssetSnapshot();
+		if (assetHandle < snapshotAssets)
+		{
+			assetServed[assetHandle] = true;
+			const double *snapshot = &assetSnapshot[assetHandle * ASSET_SNAPSHOT_STRIDE];
+			res = (int)snapshot[0];
+			assetParams = snapshot + 1;
+		}
+		else
+			res = BrokerAssetFromJava(Asset, javaAssetParams);
+	}
+	else
+		res = BrokerAssetFromJava(Asset, javaAssetParams);
 
 	if (pPrice)
 		*pPrice = assetParams[0];
@@ -142,8 +188,23 @@ DllCallHandler::BrokerAsset(char* Asset,
 	if (pRollShort)
 		*pRollShort = assetParams[8];
 
+	return res;
+}
+
+int
+DllCallHandler::BrokerAssetFromJava(char* Asset,
+	double *assetParams)
+{
+	jstring jAsset = env->NewStringUTF(Asset);
+	jdoubleArray jAssetParamsArray = env->NewDoubleArray(ASSET_SNAPSHOT_STRIDE - 1);
+
+	jint res = (jlong)env->CallObjectMethod(JData::JIgZorroBridgeObject,
+		JData::doBrokerAsset.methodID,
+		jAsset,
+		jAssetParamsArray);
+	env->GetDoubleArrayRegion(jAssetParamsArray, 0, ASSET_SNAPSHOT_STRIDE - 1, assetParams);
+
 	env->DeleteLocalRef(jAsset);
-	env->ReleaseDoubleArrayElements(jAssetParamsArray, assetParams, 0);
 	env->DeleteLocalRef((jobject)jAssetParamsArray);
 
 	return res;
@@ -157,10 +218,9 @@ DllCallHandler::BrokerHistory2(const char *Asset,
 	const int nTicks,
 	T6 *ticks)
 {
-	const int t6StructSize = 7;
+	// Java writes the ticks straight into Zorro's T6 array through a direct buffer, no copy needed
 	jstring jAsset = env->NewStringUTF(Asset);
-	int tickArrayLength = nTicks * t6StructSize;
-	jdoubleArray jTicksArray = env->NewDoubleArray(tickArrayLength);
+	jobject jTicksBuffer = env->NewDirectByteBuffer(ticks, (jlong)nTicks * sizeof(T6));
 
 	jint res = (jlong)env->CallObjectMethod(JData::JIgZorroBridgeObject,
 		JData::doBrokerHistory2.methodID,
@@ -169,26 +229,10 @@ DllCallHandler::BrokerHistory2(const char *Asset,
 		tEnd,
 		nTickMinutes,
 		nTicks,
-		jTicksArray);
-	jdouble *ticksParams = env->GetDoubleArrayElements(jTicksArray, 0u);
+		jTicksBuffer);
 
-	for (int i = 0; i < nTicks; ++i)
-	{
-		int paramsIndex = i * t6StructSize;
-		ticks[i].fOpen = ticksParams[paramsIndex];
-		ticks[i].fClose = ticksParams[paramsIndex + 1];
-		ticks[i].fHigh = ticksParams[paramsIndex + 2];
-		ticks[i].fLow = ticksParams[paramsIndex + 3];
-		ticks[i].time = ticksParams[paramsIndex + 4];
-		ticks[i].fVal = ticksParams[paramsIndex + 5];
-		ticks[i].fVol = ticksParams[paramsIndex + 6];
-
-		if (!BrokerProgress(100 * i / nTicks))
-			break;
-	}
 	env->DeleteLocalRef(jAsset);
-	env->ReleaseDoubleArrayElements(jTicksArray, ticksParams, 0u);
-	env->DeleteLocalRef((jobject)jTicksArray);
+	env->DeleteLocalRef(jTicksBuffer);
 
 	return res;
 }
@@ -325,3 +369,25 @@ DllCallHandler::SetOrderText(const char *orderText)
 
 	return res;
 }
+
+int
+DllCallHandler::SetSymbol(const char *symbol)
+{
+	jstring jSymbol = env->NewStringUTF(symbol);
+
+	jint res = env->CallIntMethod(JData::JIgZorroBridgeObject,
+		JData::doSetSymbol.methodID,
+		jSymbol);
+
+	env->DeleteLocalRef(jSymbol);
+
+	return res;
+}
+
+double
+DllCallHandler::BrokerCommand(const int nCommand)
+{
+	return env->CallDoubleMethod(JData::JIgZorroBridgeObject,
+		JData::doBrokerCommand.methodID,
+		nCommand);
+}
@@ -15,13 +15,18 @@ namespace JData
 	JMethodDesc doBrokerTime = { nullptr, "doBrokerTime",     "([D)I" };
 	JMethodDesc doSubscribeAsset = { nullptr, "doSubscribeAsset", "(Ljava/lang/String;)I" };
 	JMethodDesc doBrokerAsset = { nullptr, "doBrokerAsset",    "(Ljava/lang/String;[D)I" };
+	JMethodDesc doGetAssetHandle = { nullptr, "doGetAssetHandle", "(Ljava/lang/String;)I" };
+	JMethodDesc doSetAssetSnapshotBuffer = { nullptr, "doSetAssetSnapshotBuffer", "(Ljava/nio/ByteBuffer;)I" };
+	JMethodDesc doBrokerAssetSnapshot = { nullptr, "doBrokerAssetSnapshot", "()I" };
 	JMethodDesc doBrokerAccount = { nullptr, "doBrokerAccount",  "([D)I" };
 	JMethodDesc doBrokerBuy = { nullptr, "doBrokerBuy",      "(Ljava/lang/String;[D)I" };
 	JMethodDesc doBrokerTrade = { nullptr, "doBrokerTrade",    "(I[D)I" };
 	JMethodDesc doBrokerStop = { nullptr, "doBrokerStop",     "(ID)I" };
 	JMethodDesc doBrokerSell = { nullptr, "doBrokerSell",     "(II)I" };
-	JMethodDesc doBrokerHistory2 = { nullptr, "doBrokerHistory2", "(Ljava/lang/String;DDII[D)I" };
+	JMethodDesc doBrokerHistory2 = { nullptr, "doBrokerHistory2", "(Ljava/lang/String;DDIILjava/nio/ByteBuffer;)I" };
 	JMethodDesc doSetOrderText = { nullptr, "doSetOrderText",   "(Ljava/lang/String;)I" };
+	JMethodDesc doBrokerCommand = { nullptr, "doBrokerCommand",  "(I)D" };
+	JMethodDesc doSetSymbol = { nullptr, "doSetSymbol",      "(Ljava/lang/String;)I" };
 
 	JMethodDesc excGetMessage = { nullptr, "getMessage",       "()Ljava/lang/String;" };
 	JMethodDesc excGetName = { nullptr, "getName",          "()Ljava/lang/String;" };
@@ -40,13 +45,18 @@ namespace JData
 		&doBrokerTime,
 		&doSubscribeAsset,
 		&doBrokerAsset,
+		&doGetAssetHandle,
+		&doSetAssetSnapshotBuffer,
+		&doBrokerAssetSnapshot,
 		&doBrokerAccount,
 		&doBrokerBuy,
 		&doBrokerTrade,
 		&doBrokerStop,
 		&doBrokerSell,
 		&doBrokerHistory2,
-		&doSetOrderText };
+		&doSetOrderText,
+		&doBrokerCommand,
+		&doSetSymbol };
 
 	const int nativesTableSize = sizeof(nativesTable) / sizeof(nativesTable[0]);
 
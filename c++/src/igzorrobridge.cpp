@@ -4,8 +4,19 @@
 
 #define DLLFUNC extern "C" __declspec(dllexport)
 #define GET_MINLOT 23 // Minimum permitted amount of a lot.
+#define SET_SYMBOL 48 // Asset for subsequent commands
 #define GET_TYPE 50
 #define SET_ORDERTEXT 131 // Order comment for trades
+#define PLUGIN_COMMAND_BASE 2000 // Plugin specific commands, see BrokerCommand.java
+#define GET_PRICE_ALLOWANCE 2000 // Remaining historical price data points
+#define GET_PRICE_ALLOWANCE_TOTAL 2001 // Price data points per allowance period
+#define GET_PRICE_ALLOWANCE_EXPIRY 2002 // Seconds until the price allowance resets
+#define GET_VOLUME_MEAN 2003 // Rolling statistics of the SET_SYMBOL asset
+#define GET_VOLUME_STDDEV 2004
+#define GET_SPREAD_MEAN 2005
+#define GET_SPREAD_STDDEV 2006
+#define GET_TICK_RATE_MEAN 2007 // Ticks per minute
+#define GET_TICK_RATE_STDDEV 2008
 
 int
 (__cdecl *BrokerError)(const char *txt) = nullptr;
@@ -207,8 +218,15 @@ BrokerCommand(int nCommand,
 		std::string orderText{ reinterpret_cast<char*>(dwParameter) };
 		return dllCallHandler.SetOrderText(orderText.c_str());
 	}
+	case SET_SYMBOL:
+	{
+		std::string symbol{ reinterpret_cast<char*>(dwParameter) };
+		return dllCallHandler.SetSymbol(symbol.c_str());
+	}
 	default:
 	{
+		if (nCommand >= PLUGIN_COMMAND_BASE)
+			return dllCallHandler.BrokerCommand(nCommand);
 		return 0.0;
 	}
 	}
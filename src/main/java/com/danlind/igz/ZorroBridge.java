@@ -1,34 +1,39 @@
 package com.danlind.igz;
 
+import com.danlind.igz.config.PluginContext;
 import com.danlind.igz.config.ZorroReturnValues;
 import com.danlind.igz.domain.types.Epic;
 import com.danlind.igz.domain.types.OrderText;
 import com.danlind.igz.handler.*;
 import com.danlind.igz.misc.TimeConvert;
+import io.reactivex.Completable;
 import io.reactivex.exceptions.UndeliverableException;
+import io.reactivex.functions.Action;
 import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.Schedulers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.SpringApplication;
-import org.springframework.context.ConfigurableApplicationContext;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
 
 
 public class ZorroBridge {
 
     static {
         System.setProperty("logging.config", "./Plugin/ig/logback.xml");
-        System.setProperty("spring.config.location", "file:./Plugin/ig/application.properties");
+        System.setProperty("logback.configurationFile", "./Plugin/ig/logback.xml");
     }
-    final ConfigurableApplicationContext context;
+    final PluginContext context;
 
     private AccountHandler accountHandler;
     private HistoryHandler historyHandler;
     private TradeHandler tradeHandler;
     private TimeHandler timeHandler;
     private AssetHandler assetHandler;
+    private CommandHandler commandHandler;
     private final LoginHandler loginHandler;
 
     private boolean isFirstLogin = true;
@@ -36,28 +41,60 @@ public class ZorroBridge {
     private final static Logger logger = LoggerFactory.getLogger(ZorroBridge.class);
 
     public ZorroBridge() {
-        context = SpringApplication.run(IgzApplication.class);
-        loginHandler = context.getBean(LoginHandler.class);
+        this(new PluginContext(new File("./Plugin/ig")));
+    }
+
+    public ZorroBridge(PluginContext context) {
+        this.context = context;
+        loginHandler = context.getLoginHandler();
+        //Not closed on logout, Zorro logs in again with the same bridge after a lost connection
+        Runtime.getRuntime().addShutdownHook(new Thread(context::close, "plugin-context-shutdown"));
     }
 
     private void initComponents() {
         setRxErrorHandler();
-        timeHandler = context.getBean(TimeHandler.class);
-        timeHandler.subscribeToLighstreamerHeartbeat();
-        assetHandler = context.getBean(AssetHandler.class);
-        historyHandler = context.getBean(HistoryHandler.class);
-        accountHandler = context.getBean(AccountHandler.class);
-        accountHandler.startAccountSubscription();
-        tradeHandler = context.getBean(TradeHandler.class);
-        tradeHandler.checkTradesValid();
-        historyHandler.startTimeZoneOffsetSubscription();
-
-        if (!isFirstLogin) {
+        timeHandler = context.getTimeHandler();
+        assetHandler = context.getAssetHandler();
+        historyHandler = context.getHistoryHandler();
+        commandHandler = context.getCommandHandler();
+        accountHandler = context.getAccountHandler();
+        tradeHandler = context.getTradeHandler();
+    }
+
+    /*
+    Login runs as a dependency graph, steps without a dependency between them run concurrently:
+    createSession -+-> streaming connect -+-> heartbeat, account, deal confirmation and position subscriptions
+                   |                      |   (the position subscription also checks the stored orders)
+                   |                      +-> re-subscribing assets after a new login
+                   +-> account details, time zone offset
+    */
+    private Completable sessionSteps() {
+        return Completable.mergeArray(
+            loginStep("account details", accountHandler::loadAccountDetails),
+            loginStep("time zone offset", historyHandler::startTimeZoneOffsetSubscription));
+    }
+
+    private Completable streamingSteps() {
+        Completable streamingSteps = Completable.mergeArray(
+            loginStep("heartbeat subscription", timeHandler::subscribeToLighstreamerHeartbeat),
+            loginStep("account subscription", accountHandler::startAccountSubscription),
+            loginStep("deal confirmation subscription", tradeHandler::startDealConfirmationSubscription),
+            loginStep("position subscription", tradeHandler::startPositionSubscription));
+        if (isFirstLogin) {
+            return streamingSteps;
+        }
+        return streamingSteps.mergeWith(loginStep("asset resubscription", () -> {
             logger.debug("Zorro requested new login, resubscribing to all assets");
             assetHandler.reconnectAll();
-        }
+        }));
+    }
 
-        logger.debug("Initialization complete");
+    private static Completable loginStep(String name, Action step) {
+        return Completable.fromAction(() -> {
+            long start = System.currentTimeMillis();
+            step.run();
+            logger.debug("Login step {} completed in {} ms", name, System.currentTimeMillis() - start);
+        }).subscribeOn(Schedulers.io());
     }
 
     public int doLogin(final String User,
@@ -65,12 +102,15 @@ public class ZorroBridge {
                        final String Type,
                        final String Accounts[]) {
         logger.debug("Broker Login called with User {}, Type {}", User, Type);
+        initComponents();
         final int loginResult = loginHandler.connect(User,
                                                          Pwd,
-                                                         Type);
+                                                         Type,
+                                                         sessionSteps(),
+                                                         streamingSteps());
         if (loginResult == ZorroReturnValues.LOGIN_OK.getValue()) {
             logger.info("Login successful");
-            initComponents();
+            logger.debug("Initialization complete");
             isFirstLogin = false;
         }
 
@@ -99,6 +139,21 @@ public class ZorroBridge {
         return assetHandler.getLatestAssetData(new Epic(Asset), assetParams);
     }
 
+    public int doGetAssetHandle(final String Asset) {
+        return assetHandler.getAssetHandle(new Epic(Asset));
+    }
+
+    public int doSetAssetSnapshotBuffer(final ByteBuffer snapshotBuffer) {
+        logger.debug("Asset snapshot buffer registered with capacity {} bytes", snapshotBuffer.capacity());
+        assetHandler.setAssetSnapshotBuffer(snapshotBuffer);
+        return ZorroReturnValues.BROKER_COMMAND_OK.getValue();
+    }
+
+    public int doBrokerAssetSnapshot() {
+        // Called once per round of BrokerAsset calls, fills the snapshot of all subscribed assets
+        return assetHandler.fillAssetSnapshot();
+    }
+
     public int doBrokerAccount(final double accountInfoParams[]) {
 //        Logging BrokerAccount calls will produce A LOT of log output
 //        logger.debug("Broker Account called");
@@ -141,7 +196,7 @@ public class ZorroBridge {
                                 final double tEnd,
                                 final int nTickMinutes,
                                 final int nTicks,
-                                final double tickParams[]) {
+                                final ByteBuffer ticks) {
         logger.debug("Broker history called with params \nEpic {}, \ntStart {}, \ntEnd {}, \nnTickMinutes {}, \nnTicks {}",
                 Asset,
                 TimeConvert.dateTimeFromOLEDate(tStart),
@@ -154,13 +209,23 @@ public class ZorroBridge {
                 tEnd,
                 nTickMinutes,
                 nTicks,
-                tickParams);
+                ticks);
     }
 
     public int doSetOrderText(final String orderText) {
         return tradeHandler.setOrderText(new OrderText(orderText));
     }
 
+    public double doBrokerCommand(final int command) {
+        logger.debug("Broker Command called with command {}", command);
+        return commandHandler.brokerCommand(command);
+    }
+
+    public int doSetSymbol(final String Asset) {
+        logger.debug("Broker Command symbol set to {}", Asset);
+        return commandHandler.setSymbol(new Epic(Asset));
+    }
+
     private void setRxErrorHandler() {
         RxJavaPlugins.setErrorHandler(e -> {
             if (e instanceof UndeliverableException) {
@@ -3,6 +3,8 @@ package com.danlind.igz.adapter;
 import com.danlind.igz.config.PluginProperties;
 import com.danlind.igz.domain.AccountDetails;
 import com.danlind.igz.domain.ContractDetails;
+import com.danlind.igz.domain.PositionDetails;
+import com.danlind.igz.domain.PricePage;
 import com.danlind.igz.domain.types.DealId;
 import com.danlind.igz.domain.types.DealReference;
 import com.danlind.igz.domain.types.Epic;
@@ -15,6 +17,7 @@ import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.GetDealConfi
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.closeOTCPositionV1.CloseOTCPositionV1Request;
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.CreateOTCPositionV2Request;
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.updateOTCPositionV2.UpdateOTCPositionV2Request;
+import com.danlind.igz.ig.api.client.rest.dto.positions.getPositionsV2.PositionsItem;
 import com.danlind.igz.ig.api.client.rest.dto.prices.getPricesV3.GetPricesV3Response;
 import com.danlind.igz.ig.api.client.rest.dto.session.createSessionV3.AccessTokenResponse;
 import com.danlind.igz.ig.api.client.rest.dto.session.createSessionV3.CreateSessionV3Request;
@@ -28,10 +31,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.HttpClientErrorException;
 
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 
 /**
@@ -41,6 +46,7 @@ import java.util.concurrent.TimeUnit;
 public class RestApiAdapter {
 
     private final static Logger LOG = LoggerFactory.getLogger(RestApiAdapter.class);
+    private static final String MARKET_DETAILS_FILTER = "ALL";
 
     //Parameter injection here to avoid circular dependencies
     @Autowired
@@ -52,6 +58,15 @@ public class RestApiAdapter {
     @Autowired
     private PluginProperties pluginProperties;
 
+    /**
+     * Wiring used outside of Spring, see PluginContext
+     */
+    public void setDependencies(RestAPI restApi, LoginHandler loginHandler, PluginProperties pluginProperties) {
+        this.restApi = restApi;
+        this.loginHandler = loginHandler;
+        this.pluginProperties = pluginProperties;
+    }
+
     public Single<Long> getServerTime() {
         return Single.fromCallable(() -> restApi.getEncryptionKeySessionV1(loginHandler.getConversationContext()).getTimeStamp())
             .doOnError(err -> LOG.error("Exception getting time from server: {}", ExceptionHelper.getErrorMessage(err), err));
@@ -63,6 +78,12 @@ public class RestApiAdapter {
             .doOnError(err -> LOG.error("Exception when getting historic prices for epic {}, {}", epic, ExceptionHelper.getErrorMessage(err), err));
     }
 
+    public Single<PricePage> getHistoricPriceCandles(String pageNumber, String maxTicks, String pageSize, String epic, String startDate, String endDate, String resolution) {
+        return Single.fromCallable(() -> restApi.getPricesV3Candles(loginHandler.getConversationContext(),
+            pageNumber, maxTicks, pageSize, epic, startDate, endDate, resolution))
+            .doOnError(err -> LOG.error("Exception when getting historic prices for epic {}, {}", epic, ExceptionHelper.getErrorMessage(err), err));
+    }
+
     public Flowable<Integer> getTimeZoneOffset() {
         LOG.debug("Getting TimeZoneOffset");
         return Flowable.interval(0, 1, TimeUnit.HOURS, Schedulers.io())
@@ -71,33 +92,27 @@ public class RestApiAdapter {
             .doOnError(err -> LOG.error("Exception when getting time zone offset info: {}", ExceptionHelper.getErrorMessage(err), err));
     }
 
-    public Single<Boolean> getPositionStatus(DealId dealId) {
-        //Request will throw HttpClientErrorException if position is not found
-        return Single.fromCallable(() -> restApi.getPositionByDealIdV2(loginHandler.getConversationContext(), dealId.getValue()))
-            .map(__ -> true)
+    public Single<List<PositionDetails>> getOpenPositions() {
+        return Single.fromCallable(() -> restApi.getPositionsV2(loginHandler.getConversationContext()).getPositions())
             .retryWhen(new RetryWithDelay(pluginProperties.getRestApiMaxRetry(), pluginProperties.getRestApiRetryInterval()))
-            .onErrorReturn(err -> {
-                if (err instanceof HttpClientErrorException) {
-                    HttpClientErrorException e = (HttpClientErrorException) err;
-                    if (e.getRawStatusCode() == 404 && e.getResponseBodyAsString().equals("{\"errorCode\":\"error.position.notfound\"}")) {
-                        LOG.info("Position with dealId {} was not found, closed externally?", dealId.getValue());
-                        return false;
-                    }
-                }
-                //Some other exception happened and we can't be sure the order is really gone, so we keep it
-                LOG.error("Exception when getting position for dealId {}, {}", dealId.getValue(), ExceptionHelper.getErrorMessage(err), err);
-                return true;
-            });
-
-
+            .doOnError(err -> LOG.error("Exception when getting open positions, {}", ExceptionHelper.getErrorMessage(err), err))
+            .map(positionsItems -> positionsItems.stream()
+                .map(PositionsItem::getPosition)
+                .map(position -> new PositionDetails(new DealId(position.getDealId()),
+                    Objects.isNull(position.getDealReference()) ? null : new DealReference(position.getDealReference()),
+                    Objects.isNull(position.getLevel()) ? 0 : position.getLevel().doubleValue(),
+                    position.getSize().doubleValue()))
+                .collect(Collectors.toList()));
     }
 
-    public Flowable<ContractDetails> getContractDetailsFlowable(Epic epic) {
-        return Flowable.interval(pluginProperties.getRefreshMarketDataInterval(), TimeUnit.MILLISECONDS, Schedulers.io())
-            .map(x -> restApi.getMarketDetailsV3(loginHandler.getConversationContext(), epic.getName()))
-            .map(ContractDetails::createContractDetailsFromResponse)
+    public Single<List<ContractDetails>> getContractDetailsList(List<Epic> epics) {
+        String epicList = epics.stream().map(Epic::getName).collect(Collectors.joining(","));
+        return Single.fromCallable(() -> restApi.getMarketDetailsListV2(loginHandler.getConversationContext(), MARKET_DETAILS_FILTER, epicList).getMarketDetails())
+            .map(marketDetailsItems -> marketDetailsItems.stream()
+                .map(ContractDetails::createContractDetailsFromResponse)
+                .collect(Collectors.toList()))
             .retryWhen(new RetryWithDelay(pluginProperties.getRestApiMaxRetry(), pluginProperties.getRestApiRetryInterval()))
-            .doOnError(err -> LOG.error("Exception when getting contract details for {}, {}", epic.getName(), ExceptionHelper.getErrorMessage(err), err));
+            .doOnError(err -> LOG.error("Exception when getting contract details for {}, {}", epicList, ExceptionHelper.getErrorMessage(err), err));
     }
 
     public Single<ContractDetails> getContractDetailsBlocking(Epic epic) {
@@ -2,26 +2,43 @@ package com.danlind.igz.adapter;
 
 import com.danlind.igz.config.PluginProperties;
 import com.danlind.igz.domain.AccountDetails;
-import com.danlind.igz.domain.PriceDetails;
+import com.danlind.igz.domain.MarketUpdate;
+import com.danlind.igz.domain.PositionUpdate;
+import com.danlind.igz.domain.types.DealId;
 import com.danlind.igz.domain.types.Epic;
-import com.danlind.igz.domain.types.Volume;
 import com.danlind.igz.handler.AssetHandler;
 import com.danlind.igz.ig.api.client.StreamingAPI;
 import com.danlind.igz.ig.api.client.rest.AuthenticationResponseAndConversationContext;
+import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.GetDealConfirmationV1Response;
+import com.danlind.igz.ig.api.client.rest.dto.markets.getMarketDetailsV3.MarketStatus;
 import com.danlind.igz.ig.api.client.streaming.HandyTableListenerAdapter;
+import com.danlind.igz.misc.AssetSlot;
+import com.danlind.igz.misc.AssetStatistics;
+import com.danlind.igz.misc.DecimalParser;
 import com.danlind.igz.misc.ExceptionHelper;
+import com.danlind.igz.misc.MarketStatistics;
 import com.danlind.igz.misc.RetryWithDelay;
+import com.danlind.igz.misc.SubscriptionMultiplexer;
+import com.danlind.igz.misc.TickRecorder;
 import com.lightstreamer.ls_client.ConnectionListener;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lightstreamer.ls_client.UpdateInfo;
+import io.reactivex.Completable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.functions.Cancellable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -33,55 +50,126 @@ public class StreamingApiAdapter {
     private final static Logger LOG = LoggerFactory.getLogger(AssetHandler.class);
     private static final String OFFER = "OFR";
     private static final String BID = "BID";
-    private static final String MINUTE = "1MINUTE";
-    private static final String CONS_END = "CONS_END";
     private static final String LAST_TRADED_VOLUME = "LTV";
-    private static final String ONE = "1";
-    private final ArrayList<HandyTableListenerAdapter> listeners = new ArrayList<>();
+    private static final String UPDATE_TIME = "UTM";
+    private static final String CONFIRMS = "CONFIRMS";
+    private static final String OPU = "OPU";
+    private static final String DELETED = "DELETED";
+    private static final String MARKET_BID = "BID";
+    private static final String MARKET_OFFER = "OFFER";
+    private static final String MARKET_STATE = "MARKET_STATE";
+    //Added to by the login steps and the asset subscriptions, which subscribe concurrently
+    private final List<HandyTableListenerAdapter> listeners = new CopyOnWriteArrayList<>();
+    private SubscriptionMultiplexer tickMultiplexer;
 
     @Autowired
     private PluginProperties pluginProperties;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     //Parameter injection here to avoid circular dependencies
 
     @Autowired
     private StreamingAPI streamingAPI;
 
-    public Observable<PriceDetails> getTickObservable(Epic epic) {
-        LOG.info("Subscribing to Lightstreamer tick updates for market: {} ", epic.getName());
-        return Observable.create(event -> {
-            try {
-                listeners.add(streamingAPI.subscribeForChartTicks(epic.getName(), new HandyTableListenerAdapter() {
+    @Autowired
+    private TickRecorder tickRecorder;
+
+    @Autowired
+    private MarketStatistics marketStatistics;
+
+    /**
+     * Wiring used outside of Spring, see PluginContext
+     */
+    public void setDependencies(PluginProperties pluginProperties, ObjectMapper objectMapper, StreamingAPI streamingAPI, TickRecorder tickRecorder, MarketStatistics marketStatistics) {
+        this.pluginProperties = pluginProperties;
+        this.objectMapper = objectMapper;
+        this.streamingAPI = streamingAPI;
+        this.tickRecorder = tickRecorder;
+        this.marketStatistics = marketStatistics;
+    }
+
+    /**
+     * Ticks for several epics, each update is parsed without allocating, written into the asset slot of its epic,
+     * folded into the live minute bar and the statistics of the epic and handed to the tick recorder. The epics share
+     * CHART tables with the epics of earlier calls, see SubscriptionMultiplexer. The returned Completable completes
+     * when the tables of all epics are removed, disposing it unsubscribes the epics.
+     */
+    public Completable getTickCompletable(List<AssetSlot> assetSlots) {
+        LOG.info("Subscribing to Lightstreamer tick updates for {} markets", assetSlots.size());
+        return Completable.create(event -> {
+            AtomicInteger subscribedItems = new AtomicInteger(assetSlots.size());
+            Map<String, SubscriptionMultiplexer.ItemSink> sinksByItem = new LinkedHashMap<>();
+            for (AssetSlot assetSlot : assetSlots) {
+                AssetStatistics statistics = marketStatistics.register(assetSlot.getEpic());
+                sinksByItem.put(assetSlot.getEpic().getName(), new SubscriptionMultiplexer.ItemSink() {
                     @Override
-                    public void onUpdate(int i, String s, UpdateInfo updateInfo) {
-                        if (Objects.nonNull(updateInfo.getNewValue(BID))) {
-                            event.onNext(new PriceDetails(new Epic(updateInfo.getItemName().split(":")[1]),
-                                    Double.parseDouble(updateInfo.getNewValue(BID)),
-                                    Double.parseDouble(updateInfo.getNewValue(OFFER))));
+                    public void onUpdate(UpdateInfo updateInfo) {
+                        String bid = updateInfo.getNewValue(BID);
+                        if (Objects.nonNull(bid)) {
+                            double bidPrice = DecimalParser.parse(bid);
+                            double offerPrice = DecimalParser.parse(updateInfo.getNewValue(OFFER));
+                            double updateTime = DecimalParser.parse(updateInfo.getNewValue(UPDATE_TIME));
+                            long tickTime = Double.isNaN(updateTime) ? System.currentTimeMillis() : (long) updateTime;
+                            double tradedVolume = DecimalParser.parse(updateInfo.getNewValue(LAST_TRADED_VOLUME));
+                            assetSlot.updatePrice(bidPrice, offerPrice);
+                            assetSlot.getMinuteBars().onTick(tickTime, bidPrice, offerPrice, tradedVolume);
+                            statistics.onTick(tickTime, bidPrice, offerPrice);
+                            tickRecorder.record(assetSlot, tickTime, bidPrice, offerPrice, tradedVolume);
                         }
                     }
 
                     @Override
-                    public void onUnsubscrAll() {
-                        event.onComplete();
+                    public void onComplete() {
+                        if (subscribedItems.decrementAndGet() == 0) {
+                            event.onComplete();
+                        }
                     }
-                }));
+                });
+            }
+            try {
+                event.setCancellable(subscribeItems(getTickMultiplexer(), sinksByItem));
             } catch (Exception e) {
                 event.onError(e);
             }
         });
     }
 
-    public Observable<Volume> getVolumeObservable(Epic epic) {
-        LOG.info("Subscribing to Lightstreamer volume updates for market: {} ", epic.getName());
+    private static Cancellable subscribeItems(SubscriptionMultiplexer multiplexer, Map<String, SubscriptionMultiplexer.ItemSink> sinksByItem) throws Exception {
+        multiplexer.add(sinksByItem);
+        return () -> multiplexer.remove(sinksByItem);
+    }
+
+    /*
+    Created on first use, the fields are injected after construction
+    */
+    private synchronized SubscriptionMultiplexer getTickMultiplexer() {
+        if (Objects.isNull(tickMultiplexer)) {
+            tickMultiplexer = new SubscriptionMultiplexer("tick", pluginProperties.getStreamingItemsPerTable(),
+                (items, listener) -> streamingAPI.subscribeForChartTicks(items, listener),
+                subscribedTableKey -> streamingAPI.unsubscribe(subscribedTableKey));
+        }
+        return tickMultiplexer;
+    }
 
+    public Observable<MarketUpdate> getMarketObservable(Epic epic) {
+        LOG.info("Subscribing to Lightstreamer market updates for market: {} ", epic.getName());
         return Observable.create(event -> {
             try {
-                listeners.add(streamingAPI.subscribeForChartCandles(epic.getName(), MINUTE, new HandyTableListenerAdapter() {
+                listeners.add(streamingAPI.subscribeForMarket(epic.getName(), new HandyTableListenerAdapter() {
                     @Override
                     public void onUpdate(int i, String s, UpdateInfo updateInfo) {
-                        if (updateInfo.getNewValue(CONS_END).equals(ONE)) {
-                            event.onNext(new Volume(Integer.parseInt(updateInfo.getNewValue(LAST_TRADED_VOLUME))));
+                        String marketState = updateInfo.getNewValue(MARKET_STATE);
+                        if (Objects.nonNull(marketState)) {
+                            try {
+                                event.onNext(new MarketUpdate(epic,
+                                    DecimalParser.parse(updateInfo.getNewValue(MARKET_BID)),
+                                    DecimalParser.parse(updateInfo.getNewValue(MARKET_OFFER)),
+                                    parseMarketState(marketState)));
+                            } catch (Exception e) {
+                                LOG.warn("Unable to parse market update for {} with state {}", epic.getName(), marketState, e);
+                            }
                         }
                     }
 
@@ -120,6 +208,65 @@ public class StreamingApiAdapter {
         });
     }
 
+    public Observable<GetDealConfirmationV1Response> getConfirmsObservable(String accountId) {
+        LOG.info("Subscribing to Lightstreamer deal confirmations for account: {} ", accountId);
+        return Observable.create(event -> {
+            try {
+                listeners.add(streamingAPI.subscribeForConfirms(accountId, new HandyTableListenerAdapter() {
+                    @Override
+                    public void onUpdate(int i, String s, UpdateInfo updateInfo) {
+                        String confirmation = updateInfo.getNewValue(CONFIRMS);
+                        if (Objects.nonNull(confirmation)) {
+                            try {
+                                event.onNext(objectMapper.readValue(confirmation, GetDealConfirmationV1Response.class));
+                            } catch (Exception e) {
+                                LOG.warn("Unable to parse deal confirmation {}", confirmation, e);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void onUnsubscrAll() {
+                        event.onComplete();
+                    }
+                }));
+            } catch (Exception e) {
+                event.onError(e);
+            }
+        });
+    }
+
+    public Observable<PositionUpdate> getPositionUpdateObservable(String accountId) {
+        LOG.info("Subscribing to Lightstreamer position updates for account: {} ", accountId);
+        return Observable.create(event -> {
+            try {
+                listeners.add(streamingAPI.subscribeForOPUs(accountId, new HandyTableListenerAdapter() {
+                    @Override
+                    public void onUpdate(int i, String s, UpdateInfo updateInfo) {
+                        String positionUpdate = updateInfo.getNewValue(OPU);
+                        if (Objects.nonNull(positionUpdate)) {
+                            try {
+                                JsonNode node = objectMapper.readTree(positionUpdate);
+                                event.onNext(new PositionUpdate(new DealId(node.get("dealId").asText()),
+                                    node.path("size").asDouble(),
+                                    !DELETED.equals(node.path("status").asText())));
+                            } catch (Exception e) {
+                                LOG.warn("Unable to parse position update {}", positionUpdate, e);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void onUnsubscrAll() {
+                        event.onComplete();
+                    }
+                }));
+            } catch (Exception e) {
+                event.onError(e);
+            }
+        });
+    }
+
     public Observable<Long> getHeartbeatObservable() {
         return Observable.create(event -> {
             try {
@@ -140,26 +287,45 @@ public class StreamingApiAdapter {
         });
     }
 
+    /*
+    The MARKET_STATE field uses shorter names than the market status of the REST API
+    */
+    private static MarketStatus parseMarketState(String marketState) {
+        switch (marketState) {
+            case "EDIT":
+                return MarketStatus.EDITS_ONLY;
+            case "AUCTION":
+                return MarketStatus.ON_AUCTION;
+            case "AUCTION_NO_EDIT":
+                return MarketStatus.ON_AUCTION_NO_EDITS;
+            default:
+                return MarketStatus.valueOf(marketState);
+        }
+    }
+
     public Single<ConnectionListener> connect(AuthenticationResponseAndConversationContext authenticationContext) throws Exception {
+        getTickMultiplexer().reset();
         return Single.fromCallable(() -> streamingAPI.connect(authenticationContext.getAccountId(), authenticationContext.getConversationContext(), authenticationContext.getLightstreamerEndpoint()))
             .retryWhen(new RetryWithDelay(pluginProperties.getRefreshTokenMaxRetry(), pluginProperties.getRefreshTokenRetryInterval()))
             .doOnError(err -> LOG.error("Exception when connecting to streaming API, {}", ExceptionHelper.getErrorMessage(err), err));
     }
 
     public void disconnect() {
+        getTickMultiplexer().clear();
         unsubscribeAllLightstreamerListeners();
         streamingAPI.disconnect();
     }
 
     private void unsubscribeAllLightstreamerListeners() {
+        //Iterates a snapshot, a table subscribed meanwhile stays in the list instead of being cleared unsubscribed
         for (HandyTableListenerAdapter listener : listeners) {
             try {
                 streamingAPI.unsubscribe(listener.getSubscribedTableKey());
             } catch (Exception e) {
                 //NOP, exception thrown when disconnected and unsubscription is no longer possible
             }
+            listeners.remove(listener);
         }
-        listeners.clear();
     }
 
 
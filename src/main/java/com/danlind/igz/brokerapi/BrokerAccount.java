@@ -11,6 +11,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 @Component
 public class BrokerAccount {
 
@@ -18,7 +20,7 @@ public class BrokerAccount {
     private final RestApiAdapter restApiAdapter;
     private final StreamingApiAdapter streamingApiAdapter;
 
-    private AccountDetails accountDetails;
+    private final AtomicReference<AccountDetails> accountDetails = new AtomicReference<>();
 
     @Autowired
     public BrokerAccount(RestApiAdapter restApiAdapter, StreamingApiAdapter streamingApiAdapter) {
@@ -36,15 +38,26 @@ public class BrokerAccount {
                     Zorro.indicateError();
                 }
             );
+    }
 
-        accountDetails = restApiAdapter.getAccountDetails(restApiAdapter.getAccountId()).blockingGet();
+    /**
+     * Loads the account details over REST, runs alongside the streaming connect on login.
+     * An update received from the account stream in the meantime is newer and is kept.
+     */
+    public void loadAccountDetails() {
+        AccountDetails previousAccountDetails = accountDetails.get();
+        AccountDetails loadedAccountDetails = restApiAdapter.getAccountDetails(restApiAdapter.getAccountId()).blockingGet();
+        if (!accountDetails.compareAndSet(previousAccountDetails, loadedAccountDetails)) {
+            logger.debug("Account details already updated from stream, ignoring loaded account details");
+        }
     }
 
     private void setAccountDetails(AccountDetails accountDetails) {
-        this.accountDetails = accountDetails;
+        this.accountDetails.set(accountDetails);
     }
 
     public int fillAccountParams(final double accountInfoParams[]) {
+        AccountDetails accountDetails = this.accountDetails.get();
         accountInfoParams[0] = accountDetails.getBalance();
         accountInfoParams[1] = accountDetails.getProfitLoss();
         accountInfoParams[2] = accountDetails.getMarginValue();
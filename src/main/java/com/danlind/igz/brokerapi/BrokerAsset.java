@@ -2,119 +2,187 @@ package com.danlind.igz.brokerapi;
 
 import com.danlind.igz.Zorro;
 import com.danlind.igz.adapter.StreamingApiAdapter;
+import com.danlind.igz.config.PluginProperties;
 import com.danlind.igz.config.ZorroReturnValues;
+import com.danlind.igz.domain.CandleSeries;
 import com.danlind.igz.domain.ContractDetails;
 import com.danlind.igz.domain.PriceDetails;
 import com.danlind.igz.domain.types.Epic;
 import com.danlind.igz.domain.types.Volume;
 import com.danlind.igz.handler.HistoryHandler;
+import com.danlind.igz.misc.AssetSlot;
+import com.danlind.igz.misc.AssetStatistics;
 import com.danlind.igz.misc.MarketDataProvider;
-import com.danlind.igz.misc.VolumeProvider;
-import com.danlind.igz.ig.api.client.rest.dto.prices.getPricesV3.PricesItem;
+import com.danlind.igz.misc.MarketStatistics;
+import com.danlind.igz.misc.PriceSnapshotStore;
+import com.danlind.igz.misc.SubscriptionBatcher;
+import io.reactivex.Completable;
 import io.reactivex.schedulers.Schedulers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 @Component
 public class BrokerAsset {
 
     private static final double valueNotSupported = 0.0;
     private final static Logger LOG = LoggerFactory.getLogger(BrokerAsset.class);
-    private final Map<Epic, PriceDetails> priceDataMap = new ConcurrentHashMap<>();
+    private final PriceSnapshotStore priceSnapshotStore;
     private final MarketDataProvider marketDataProvider;
-    private final VolumeProvider volumeProvider;
+    private final MarketStatistics marketStatistics;
     private final StreamingApiAdapter streamingApiAdapter;
     private final HistoryHandler historyHandler;
-    private static final int VOLUME_WINDOW_LENGTH = 5;
+    private final SubscriptionBatcher subscriptionBatcher;
+    private static final int ASSET_PARAMS_LENGTH = 9;
+    public static final int ASSET_SNAPSHOT_STRIDE = ASSET_PARAMS_LENGTH + 1;
+    private final double[] snapshotParams = new double[ASSET_PARAMS_LENGTH];
+    private DoubleBuffer assetSnapshotBuffer;
 
 
     @Autowired
-    public BrokerAsset(MarketDataProvider marketDataProvider, VolumeProvider volumeProvider, StreamingApiAdapter streamingApiAdapter, HistoryHandler historyHandler) {
+    public BrokerAsset(MarketDataProvider marketDataProvider, MarketStatistics marketStatistics, StreamingApiAdapter streamingApiAdapter, HistoryHandler historyHandler, PriceSnapshotStore priceSnapshotStore, PluginProperties pluginProperties) {
+        this.priceSnapshotStore = priceSnapshotStore;
         this.marketDataProvider = marketDataProvider;
-        this.volumeProvider = volumeProvider;
+        this.marketStatistics = marketStatistics;
         this.streamingApiAdapter = streamingApiAdapter;
         this.historyHandler = historyHandler;
+        this.subscriptionBatcher = new SubscriptionBatcher(this::subscribeAll, pluginProperties.getSubscribeBatchDelay());
     }
 
     /**
      * Used to reconnect to the streaming API for all epics in case we lose the session and need to login again
      */
     public void reconnectAll() {
-        marketDataProvider.getAllSubscribedEpics().stream().forEach(epic -> {
-            LOG.debug("Re-subscribing for epic {}", epic.getName());
-            subscribeToLighstreamerTickUpdates(epic);
-        });
+        LOG.debug("Re-subscribing for all epics");
+        subscribeAll(new ArrayList<>(marketDataProvider.getAllSubscribedEpics()));
     }
 
+    /**
+     * Registers the asset and queues its subscription, see {@link SubscriptionBatcher}. The subscription is opened
+     * together with the other assets Zorro subscribes to, an asset that turns out to be unknown is reported as
+     * unavailable by getLatestAssetData.
+     */
     public int subscribeToLighstreamerTickUpdates(Epic epic) {
-        try {
-            streamingApiAdapter.getTickObservable(epic)
-                .subscribeOn(Schedulers.io())
-                .subscribe(
-                    priceDetails -> priceDataMap.put(priceDetails.getEpic(), priceDetails),
-                    e -> {
-                        LOG.error("Error subscribing to tick observable for {}",epic.getName(), e);
-                        Zorro.indicateError();
-                    },
-                    () -> {
-                        //TODO: How to handle close of stream on weekends? (Weekend = 7 is the obvious option for now)
-                        LOG.info("Received complete signal from TickObservable for epic {}", epic.getName());
-                        marketDataProvider.cancelSubscription(epic);
-                    }
-                );
-
-            streamingApiAdapter.getVolumeObservable(epic)
-                .subscribeOn(Schedulers.io())
-                .subscribe(
-                    volume -> volumeProvider.updateRollingVolume(epic, volume),
-                    e -> {
-                        LOG.error("Error subscribing to volume observable for {}", epic.getName(), e);
-                        Zorro.indicateError();
-                    },
-                    () -> LOG.info("Received complete signal from VolumeObservable for epic {}", epic.getName())
-                );
-
-            //Init volume from historic data
-            List<PricesItem> pricesItems = historyHandler.getPriceHistory(epic, VOLUME_WINDOW_LENGTH);
-            pricesItems.stream().forEach(pricesItem -> volumeProvider.updateRollingVolume(epic, new Volume(pricesItem.getLastTradedVolume().intValue())));
-            marketDataProvider.updateMarketDetails(epic);
-
-            //Initialize prices to prevent NPE in case Zorro calls for asset details before first stream update
-            ContractDetails contractDetails = marketDataProvider.getContractDetails(epic);
-            priceDataMap.put(epic, new PriceDetails(epic, contractDetails.getSnapshotBid(), contractDetails.getSnapshotAsk()));
+        priceSnapshotStore.register(epic);
+        subscriptionBatcher.add(epic);
+        return ZorroReturnValues.ASSET_AVAILABLE.getValue();
+    }
 
-            return ZorroReturnValues.ASSET_AVAILABLE.getValue();
+    /**
+     * Opens the subscriptions of several assets at once. Ticks stream on shared Lightstreamer tables and are folded
+     * into minute bars and the market statistics, the volumes of the bars feed the volume window. Contract details are
+     * loaded with list requests and the volume window is seeded from the candle cache, or from concurrent price
+     * requests for assets not cached.
+     */
+    public void subscribeAll(List<Epic> epics) {
+        if (epics.isEmpty()) {
+            return;
+        }
+        List<AssetSlot> assetSlots = epics.stream().map(priceSnapshotStore::register).collect(Collectors.toList());
+        assetSlots.forEach(assetSlot -> {
+            marketStatistics.register(assetSlot.getEpic()).start();
+            assetSlot.getMinuteBars().start(bar -> onMinuteBar(assetSlot, bar));
+        });
+
+        streamingApiAdapter.getTickCompletable(assetSlots)
+            .subscribeOn(Schedulers.io())
+            .subscribe(
+                () -> {
+                    //TODO: How to handle close of stream on weekends? (Weekend = 7 is the obvious option for now)
+                    LOG.info("Received complete signal from TickObservable for {} epics", epics.size());
+                    epics.forEach(marketDataProvider::cancelSubscription);
+                },
+                e -> {
+                    LOG.error("Error subscribing to tick observable for {} epics", epics.size(), e);
+                    Zorro.indicateError();
+                }
+            );
+
+        Completable.merge(assetSlots.stream()
+            .map(assetSlot -> Completable.fromAction(() -> seedVolume(assetSlot)).subscribeOn(Schedulers.io()))
+            .collect(Collectors.toList()))
+            .mergeWith(Completable.fromAction(() -> marketDataProvider.updateMarketDetails(epics)).subscribeOn(Schedulers.io()))
+            .onErrorComplete()
+            .blockingAwait();
+
+        //Initialize prices to prevent NPE in case Zorro calls for asset details before first stream update
+        assetSlots.forEach(assetSlot -> {
+            ContractDetails contractDetails = marketDataProvider.getContractDetails(assetSlot.getEpic());
+            if (Objects.isNull(contractDetails)) {
+                LOG.error("No contract details for {}, asset unavailable", assetSlot.getEpic().getName());
+                Zorro.indicateError();
+                return;
+            }
+            assetSlot.setContractDetails(contractDetails);
+            assetSlot.updatePrice(contractDetails.getSnapshotBid(), contractDetails.getSnapshotAsk());
+        });
+    }
+
+    private void seedVolume(AssetSlot assetSlot) {
+        try {
+            historyHandler.getRecentVolumes(assetSlot.getEpic(), marketStatistics.getVolumeWindow()).forEach(volume -> updateVolume(assetSlot, volume));
         } catch (Exception e) {
-            LOG.error("Error when subscribing to {}", epic.getName(), e);
-            Zorro.indicateError();
-            return ZorroReturnValues.ASSET_UNAVAILABLE.getValue();
+            LOG.warn("Failed to seed volume for {}", assetSlot.getEpic().getName(), e);
         }
     }
 
+    /*
+    Completed bars replace the volumes of the minute candle subscription and keep the candle cache up to date
+    */
+    private void onMinuteBar(AssetSlot assetSlot, CandleSeries bar) {
+        updateVolume(assetSlot, new Volume((int) bar.getVolume(0)));
+        historyHandler.appendMinuteBar(assetSlot.getEpic(), bar);
+    }
+
+    /*
+    The mean is copied into the slot, so getLatestAssetData reads it without locking
+    */
+    private void updateVolume(AssetSlot assetSlot, Volume volume) {
+        AssetStatistics statistics = marketStatistics.register(assetSlot.getEpic());
+        statistics.addVolume(volume.getValue());
+        assetSlot.setVolume(statistics.getVolumeMean());
+    }
+
     public int getLatestAssetData(Epic epic, double assetParams[]) {
-        ContractDetails contractDetails = marketDataProvider.getContractDetails(epic);
-        PriceDetails priceDetails = priceDataMap.get(epic);
+        return getLatestAssetData(priceSnapshotStore.getHandle(epic), assetParams);
+    }
+
+    /**
+     * Reads the asset slot without hashing or locking, bid and ask are read into the first two params before
+     * being converted to ask and spread
+     */
+    public int getLatestAssetData(int assetHandle, double assetParams[]) {
+        AssetSlot assetSlot = priceSnapshotStore.getSlot(assetHandle);
+        if (Objects.isNull(assetSlot)) {
+            return ZorroReturnValues.ASSET_UNAVAILABLE.getValue();
+        }
+        ContractDetails contractDetails = assetSlot.getContractDetails();
+        if (Objects.isNull(contractDetails) && subscriptionBatcher.isPending(assetSlot.getEpic())) {
+            subscriptionBatcher.await(assetSlot.getEpic());
+            contractDetails = assetSlot.getContractDetails();
+        }
 
-        if (Objects.nonNull(contractDetails) && Objects.nonNull(priceDetails)) {
-            assetParams[0] = priceDetails.getAsk();
-            assetParams[1] = priceDetails.getSpread();
-            assetParams[2] = volumeProvider.getAverageVolume(epic); //Volume
+        if (Objects.nonNull(contractDetails) && assetSlot.readPrice(assetParams)) {
+            double bid = assetParams[0];
+            double ask = assetParams[1];
+            assetParams[0] = ask;
+            assetParams[1] = ask - bid; //Spread
+            assetParams[2] = assetSlot.getVolume(); //Volume
             assetParams[3] = contractDetails.getPipSize(); //PipSize, , size of one Pip, e.g. 0.0001 for EUR/USD
             assetParams[4] = contractDetails.getPipCost(); //PipCost
             assetParams[5] = contractDetails.getLotAmount(); //LotAmount
             assetParams[6] = contractDetails.getMarginCost(); //MarginCost, here leverage is returned instead
             assetParams[7] = valueNotSupported; //Rollover cost Long
             assetParams[8] = valueNotSupported; //Rollover cost Short
-//            logger.debug("Returning asset data Ask: {}, Spread: {}, Volume: {}, PipSize: {}, PipCost: {}, LotAmount: {}, MarginCost: {}",
-//                    priceDetails.getAsk(), priceDetails.getSpread(), priceDetails.getVolume(), contractDetails.getPipSize(), contractDetails.getPipCostInAccountCurrency(),
-//                    contractDetails.getLotAmount(), contractDetails.getMarginCostInAccountCurrency());
 
             return ZorroReturnValues.ASSET_AVAILABLE.getValue();
         } else {
@@ -123,6 +191,46 @@ public class BrokerAsset {
     }
 
     public PriceDetails getPriceDetails(Epic epic) {
-        return priceDataMap.get(epic);
+        subscriptionBatcher.await(epic);
+        AssetSlot assetSlot = priceSnapshotStore.getSlot(epic);
+        double[] prices = new double[2];
+        if (Objects.isNull(assetSlot) || !assetSlot.readPrice(prices)) {
+            return null;
+        }
+        return new PriceDetails(epic, prices[0], prices[1]);
+    }
+
+    public int getAssetHandle(Epic epic) {
+        return priceSnapshotStore.getHandle(epic);
+    }
+
+    /**
+     * Registers the direct buffer shared with the native bridge. The buffer is written in native byte order so the
+     * bridge can read it as a plain double array.
+     */
+    public void setAssetSnapshotBuffer(ByteBuffer buffer) {
+        assetSnapshotBuffer = buffer.order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        LOG.debug("Registered asset snapshot buffer with room for {} assets", assetSnapshotBuffer.capacity() / ASSET_SNAPSHOT_STRIDE);
+    }
+
+    /**
+     * Writes the snapshot of every subscribed asset into the registered buffer, indexed by asset handle. Each asset
+     * takes ASSET_SNAPSHOT_STRIDE doubles, the return value of getLatestAssetData followed by the asset params.
+     *
+     * @return the number of assets written
+     */
+    public int fillAssetSnapshot() {
+        if (Objects.isNull(assetSnapshotBuffer)) {
+            return 0;
+        }
+        int assets = Math.min(priceSnapshotStore.size(), assetSnapshotBuffer.capacity() / ASSET_SNAPSHOT_STRIDE);
+        for (int handle = 0; handle < assets; handle++) {
+            int offset = handle * ASSET_SNAPSHOT_STRIDE;
+            assetSnapshotBuffer.put(offset, getLatestAssetData(handle, snapshotParams));
+            for (int i = 0; i < ASSET_PARAMS_LENGTH; i++) {
+                assetSnapshotBuffer.put(offset + 1 + i, snapshotParams[i]);
+            }
+        }
+        return assets;
     }
 }
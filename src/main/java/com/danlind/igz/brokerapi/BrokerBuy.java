@@ -4,17 +4,21 @@ import com.danlind.igz.adapter.RestApiAdapter;
 import com.danlind.igz.config.ZorroReturnValues;
 import com.danlind.igz.domain.ContractDetails;
 import com.danlind.igz.domain.OrderDetails;
+import com.danlind.igz.domain.PendingOrder;
 import com.danlind.igz.domain.types.DealId;
+import com.danlind.igz.domain.types.DealReference;
 import com.danlind.igz.domain.types.Epic;
 import com.danlind.igz.domain.types.OrderText;
 import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.GetDealConfirmationV1Response;
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.CreateOTCPositionV2Request;
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.Direction;
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.OrderType;
+import com.danlind.igz.misc.DealConfirmationProvider;
 import com.danlind.igz.misc.MarketDataProvider;
+import com.danlind.igz.misc.PendingOrders;
+import com.danlind.igz.misc.OrderStore;
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
-import net.openhft.chronicle.map.ChronicleMap;
 import org.apache.commons.lang.RandomStringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -24,7 +28,6 @@ import org.springframework.stereotype.Component;
 import java.math.BigDecimal;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 @Component
@@ -33,15 +36,15 @@ public class BrokerBuy extends BrokerOrder{
     private final static Logger LOG = LoggerFactory.getLogger(BrokerBuy.class);
     private final RestApiAdapter restApiAdapter;
     private final MarketDataProvider marketDataProvider;
-    private final ChronicleMap<Integer, OrderDetails> orderReferenceMap;
+    private final OrderStore orderStore;
 
     private OrderText orderText;
 
-    public BrokerBuy(RestApiAdapter restApiAdapter, MarketDataProvider marketDataProvider, ChronicleMap<Integer, OrderDetails> orderReferenceMap) {
-        super(restApiAdapter,orderReferenceMap);
+    public BrokerBuy(RestApiAdapter restApiAdapter, MarketDataProvider marketDataProvider, OrderStore orderStore, DealConfirmationProvider dealConfirmationProvider, PendingOrders pendingOrders) {
+        super(dealConfirmationProvider,orderStore, pendingOrders);
         this.restApiAdapter = restApiAdapter;
         this.marketDataProvider = marketDataProvider;
-        this.orderReferenceMap = orderReferenceMap;
+        this.orderStore = orderStore;
     }
 
     public int createPosition(final Epic epic,
@@ -50,22 +53,57 @@ public class BrokerBuy extends BrokerOrder{
         double stopDistance = tradeParams[1];
         CreateOTCPositionV2Request createPositionRequest = createPositionRequest(epic, numberOfContracts, stopDistance);
 
+        if (getPendingOrders().isAsyncOrderMode()) {
+            return createPositionAsync(epic, createPositionRequest, (int) Math.abs(numberOfContracts));
+        }
+        return openPosition(epic, createPositionRequest, tradeParams, getNextOrderId())
+            .onErrorReturn(e -> ZorroReturnValues.BROKER_BUY_FAIL.getValue())
+            .blockingGet();
+    }
+
+    /*
+    Zorro gets a provisional trade id straight away, the fill price is left at 0 so Zorro uses the current price.
+    The position is opened and confirmed in the background and stored under the provisional id once confirmed.
+    */
+    private int createPositionAsync(Epic epic, CreateOTCPositionV2Request createPositionRequest, int amount) {
+        int orderId = getNextOrderId();
+        getPendingOrders().add(orderId, new PendingOrder(epic, createPositionRequest.getDirection(), amount));
+        LOG.debug("Sending order {} for epic {} asynchronously", orderId, epic.getName());
+
+        openPosition(epic, createPositionRequest, new double[3], orderId)
+            .subscribe(
+                result -> {
+                    if (result == orderId) {
+                        getPendingOrders().settle(orderId);
+                    } else {
+                        getPendingOrders().fail(orderId);
+                    }
+                },
+                e -> {
+                    LOG.error("Failed when opening position for order {}", orderId, e);
+                    getPendingOrders().fail(orderId);
+                }
+            );
+        return orderId;
+    }
+
+    /*
+    The intent is journaled before the position is opened, so the order can be recovered if the plugin stops before it is stored
+    */
+    private Single<Integer> openPosition(Epic epic, CreateOTCPositionV2Request createPositionRequest, double[] tradeParams, int orderId) {
+        orderStore.recordOpenIntent(orderId, epic, createPositionRequest.getDirection(), createPositionRequest.getSize().doubleValue(), new DealReference(createPositionRequest.getDealReference()));
         return restApiAdapter.createPosition(createPositionRequest)
             .subscribeOn(Schedulers.io())
             .doOnSuccess(dealReference -> LOG.debug("Got dealReference {} when attempting to open position", dealReference.getValue()))
-            .delay(500, TimeUnit.MILLISECONDS)
             .flatMap(this::getDealConfirmation)
-                .flatMap(dealConfirmationResponse -> buyConfirmationHandler(dealConfirmationResponse, createPositionRequest.getDirection(), tradeParams))
-            .onErrorReturn(e -> ZorroReturnValues.BROKER_BUY_FAIL.getValue())
-            .blockingGet();
+                .flatMap(dealConfirmationResponse -> buyConfirmationHandler(dealConfirmationResponse, createPositionRequest.getDirection(), tradeParams, orderId));
     }
 
-    private Single<Integer> buyConfirmationHandler(Optional<GetDealConfirmationV1Response> maybeDealConfirmationResponse, Direction direction, double[] tradeParams) {
+    private Single<Integer> buyConfirmationHandler(Optional<GetDealConfirmationV1Response> maybeDealConfirmationResponse, Direction direction, double[] tradeParams, int orderId) {
         if (maybeDealConfirmationResponse.isPresent()) {
             GetDealConfirmationV1Response dealConfirmationResponse = maybeDealConfirmationResponse.get();
-            int orderId = getNextOrderId();
             LOG.debug("Storing open position with orderId {} and dealId {}", orderId, dealConfirmationResponse.getDealId());
-            orderReferenceMap.put(orderId, new OrderDetails(new Epic(dealConfirmationResponse.getEpic()), dealConfirmationResponse.getLevel(), direction, dealConfirmationResponse.getSize().intValue(), new DealId(dealConfirmationResponse.getDealId())));
+            orderStore.put(orderId, new OrderDetails(new Epic(dealConfirmationResponse.getEpic()), dealConfirmationResponse.getLevel(), direction, dealConfirmationResponse.getSize().intValue(), new DealId(dealConfirmationResponse.getDealId())));
             tradeParams[2] = dealConfirmationResponse.getLevel();
             return Single.just(orderId);
         } else {
@@ -0,0 +1,104 @@
+package com.danlind.igz.brokerapi;
+
+import com.danlind.igz.config.ZorroReturnValues;
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.misc.AssetStatistics;
+import com.danlind.igz.misc.MarketStatistics;
+import com.danlind.igz.misc.PriceAllowanceTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/**
+ * Plugin specific broker commands, numbered from 2000 to stay clear of the standard Zorro commands.
+ * Must be kept in sync with the defines in igzorrobridge.cpp
+ * The statistics commands apply to the asset last set with the standard SET_SYMBOL command, see {@link AssetStatistics}.
+ */
+@Component
+public class BrokerCommand {
+
+    private final static Logger logger = LoggerFactory.getLogger(BrokerCommand.class);
+
+    public static final int GET_PRICE_ALLOWANCE = 2000;
+    public static final int GET_PRICE_ALLOWANCE_TOTAL = 2001;
+    public static final int GET_PRICE_ALLOWANCE_EXPIRY = 2002;
+    public static final int GET_VOLUME_MEAN = 2003;
+    public static final int GET_VOLUME_STDDEV = 2004;
+    public static final int GET_SPREAD_MEAN = 2005;
+    public static final int GET_SPREAD_STDDEV = 2006;
+    public static final int GET_TICK_RATE_MEAN = 2007;
+    public static final int GET_TICK_RATE_STDDEV = 2008;
+
+    private final PriceAllowanceTracker priceAllowanceTracker;
+    private final MarketStatistics marketStatistics;
+    private volatile Epic symbol;
+
+    @Autowired
+    public BrokerCommand(PriceAllowanceTracker priceAllowanceTracker, MarketStatistics marketStatistics) {
+        this.priceAllowanceTracker = priceAllowanceTracker;
+        this.marketStatistics = marketStatistics;
+    }
+
+    public int setSymbol(Epic epic) {
+        symbol = epic;
+        return ZorroReturnValues.BROKER_COMMAND_OK.getValue();
+    }
+
+    public double brokerCommand(final int command) {
+        switch (command) {
+            case GET_PRICE_ALLOWANCE:
+                return priceAllowanceTracker.getRemainingAllowance();
+            case GET_PRICE_ALLOWANCE_TOTAL:
+                return priceAllowanceTracker.getTotalAllowance();
+            case GET_PRICE_ALLOWANCE_EXPIRY:
+                return priceAllowanceTracker.getAllowanceExpirySeconds();
+            case GET_VOLUME_MEAN:
+            case GET_VOLUME_STDDEV:
+            case GET_SPREAD_MEAN:
+            case GET_SPREAD_STDDEV:
+            case GET_TICK_RATE_MEAN:
+            case GET_TICK_RATE_STDDEV:
+                return statisticsCommand(command);
+            default:
+                logger.debug("Unsupported broker command {}", command);
+                return ZorroReturnValues.BROKER_COMMAND_FAIL.getValue();
+        }
+    }
+
+    /*
+    Fails for unknown assets and for statistics without values yet, Zorro reads a failed command as 0
+    */
+    private double statisticsCommand(final int command) {
+        Epic currentSymbol = symbol;
+        AssetStatistics statistics = Objects.isNull(currentSymbol) ? null : marketStatistics.get(currentSymbol);
+        if (Objects.isNull(statistics)) {
+            logger.debug("No statistics for broker command {}, symbol {}", command, currentSymbol);
+            return ZorroReturnValues.BROKER_COMMAND_FAIL.getValue();
+        }
+        double value;
+        switch (command) {
+            case GET_VOLUME_MEAN:
+                value = statistics.getVolumeMean();
+                break;
+            case GET_VOLUME_STDDEV:
+                value = statistics.getVolumeStandardDeviation();
+                break;
+            case GET_SPREAD_MEAN:
+                value = statistics.getSpreadMean();
+                break;
+            case GET_SPREAD_STDDEV:
+                value = statistics.getSpreadStandardDeviation();
+                break;
+            case GET_TICK_RATE_MEAN:
+                value = statistics.getTickRateMean();
+                break;
+            default:
+                value = statistics.getTickRateStandardDeviation();
+                break;
+        }
+        return Double.isNaN(value) ? ZorroReturnValues.BROKER_COMMAND_FAIL.getValue() : value;
+    }
+}
@@ -2,10 +2,21 @@ package com.danlind.igz.brokerapi;
 
 import com.danlind.igz.adapter.RestApiAdapter;
 import com.danlind.igz.config.ZorroReturnValues;
+import com.danlind.igz.domain.CandleSeries;
+import com.danlind.igz.domain.T6Ticks;
 import com.danlind.igz.domain.types.Epic;
 import com.danlind.igz.domain.types.Resolution;
+import com.danlind.igz.domain.types.Volume;
 import com.danlind.igz.ig.api.client.rest.dto.prices.getPricesV3.GetPricesV3Response;
 import com.danlind.igz.ig.api.client.rest.dto.prices.getPricesV3.PricesItem;
+import com.danlind.igz.misc.AssetSlot;
+import com.danlind.igz.misc.CandleCache;
+import com.danlind.igz.misc.CandleResampler;
+import com.danlind.igz.misc.CandleStore;
+import com.danlind.igz.misc.MinuteBarBuilder;
+import com.danlind.igz.misc.PriceAllowanceTracker;
+import com.danlind.igz.misc.PriceHistoryDownloader;
+import com.danlind.igz.misc.PriceSnapshotStore;
 import com.danlind.igz.misc.TimeConvert;
 import io.reactivex.disposables.Disposable;
 import org.slf4j.Logger;
@@ -13,12 +24,14 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
-import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static com.danlind.igz.domain.types.Resolution.*;
 
@@ -28,12 +41,20 @@ public class BrokerHistory {
     private final static Logger logger = LoggerFactory.getLogger(BrokerHistory.class);
     private static final String PAGE_NUMBER = "1";
     private final RestApiAdapter restApiAdapter;
+    private final CandleCache candleCache;
+    private final PriceHistoryDownloader priceHistoryDownloader;
+    private final PriceAllowanceTracker priceAllowanceTracker;
+    private final PriceSnapshotStore priceSnapshotStore;
     private int accountZoneOffset;
     private Disposable timeZoneOffsetSubscription;
 
     @Autowired
-    public BrokerHistory(RestApiAdapter restApiAdapter) {
+    public BrokerHistory(RestApiAdapter restApiAdapter, CandleCache candleCache, PriceHistoryDownloader priceHistoryDownloader, PriceAllowanceTracker priceAllowanceTracker, PriceSnapshotStore priceSnapshotStore) {
         this.restApiAdapter = restApiAdapter;
+        this.candleCache = candleCache;
+        this.priceHistoryDownloader = priceHistoryDownloader;
+        this.priceAllowanceTracker = priceAllowanceTracker;
+        this.priceSnapshotStore = priceSnapshotStore;
     }
 
 
@@ -42,13 +63,18 @@ public class BrokerHistory {
                                final double tEnd,
                                final int nTickMinutes,
                                final int nTicks,
-                               final double tickParams[]) {
-
+                               final ByteBuffer tickBuffer) {
+        T6Ticks ticks = T6Ticks.wrap(tickBuffer);
         Resolution resolution = checkValidResolution(nTickMinutes);
         if (resolution != Resolution.INVALID) {
-            return fillParamsForValidResolution(epic, tStart, tEnd, nTicks, tickParams, resolution);
+            return fillParamsForValidResolution(epic, tStart, tEnd, nTicks, ticks, resolution);
+        }
+        Resolution baseResolution = findBaseResolution(nTickMinutes);
+        if (baseResolution != Resolution.INVALID) {
+            logger.debug("No native resolution for {} minutes, resampling from {}", nTickMinutes, baseResolution.name());
+            return fillParams(epic, tEnd, nTicks, ticks, nTickMinutes, baseResolution);
         } else {
-            logger.info("Unable to find valid resolution for {}", resolution.name());
+            logger.info("Unable to find valid resolution for {} minutes", nTickMinutes);
             return ZorroReturnValues.HISTORY_UNAVAILABLE.getValue();
         }
     }
@@ -72,49 +98,213 @@ public class BrokerHistory {
         timeZoneOffsetSubscription.dispose();
     }
 
-    private int fillParamsForValidResolution(Epic epic, double tStart, double tEnd, int nTicks, double[] tickParams, Resolution resolution) {
-        LocalDateTime endDateTime = TimeConvert.localDateTimeFromOLEDate(tEnd, accountZoneOffset);
-        LocalDateTime startDateTime = endDateTime.minusMinutes(nTicks * resolution.getValue());
-        logger.debug("Getting prices for epic {}, date range {} - {}, max ticks {}, resolution {}", epic.getName(), startDateTime, endDateTime, nTicks, resolution.name());
-        GetPricesV3Response response = restApiAdapter.getHistoricPrices(PAGE_NUMBER,
-            String.valueOf(nTicks),
-            String.valueOf(nTicks),
-            epic.getName(),
-            startDateTime.toString(),
-            endDateTime.toString(),
-            resolution.name()).blockingGet();
+    private int fillParamsForValidResolution(Epic epic, double tStart, double tEnd, int nTicks, T6Ticks ticks, Resolution resolution) {
+        long barMillis = TimeUnit.MINUTES.toMillis(resolution.getValue());
+        long endMillis = TimeConvert.millisFromOLEDate(tEnd);
+        long startMillis = Math.floorDiv(endMillis - nTicks * barMillis, barMillis) * barMillis;
+        Resolution cachedResolution = findCachedFinerResolution(epic, resolution, startMillis, endMillis);
+        if (cachedResolution != Resolution.INVALID) {
+            logger.debug("Resampling {} prices for epic {} from cached {} prices", resolution.name(), epic.getName(), cachedResolution.name());
+            return fillParams(epic, tEnd, nTicks, ticks, resolution.getValue(), cachedResolution);
+        }
+        return fillParams(epic, tEnd, nTicks, ticks, resolution.getValue(), resolution);
+    }
+
+    private int fillParams(Epic epic, double tEnd, int nTicks, T6Ticks ticks, int nTickMinutes, Resolution sourceResolution) {
+        long barMillis = TimeUnit.MINUTES.toMillis(nTickMinutes);
+        long endMillis = TimeConvert.millisFromOLEDate(tEnd);
+        long startMillis = endMillis - nTicks * barMillis;
+        boolean resample = sourceResolution.getValue() != nTickMinutes;
+        if (resample) {
+            startMillis = Math.floorDiv(startMillis, barMillis) * barMillis;
+        }
 
-        if (response.getPrices().size() == 0) {
-            logger.warn("Zero ticks returned for requested date range {} - {}", startDateTime, endDateTime);
+        CandleSeries candles = readCandles(epic, sourceResolution, startMillis, endMillis);
+        if (resample) {
+            candles = CandleResampler.resample(candles, barMillis);
+        }
+        if (candles.isEmpty()) {
+            logger.warn("Zero ticks returned for requested date range {} - {}", TimeConvert.formatDateTime(startMillis), TimeConvert.formatDateTime(endMillis));
             return ZorroReturnValues.HISTORY_UNAVAILABLE.getValue();
         }
 
-        int tickParamsIndex = 0;
-        Collections.reverse(response.getPrices());
-        for (int i = 0; i < response.getPrices().size(); ++i) {
-            final PricesItem priceItem = response.getPrices().get(i);
-            tickParams[tickParamsIndex] = priceItem.getOpenPrice().getAsk().doubleValue();
-            tickParams[tickParamsIndex + 1] = priceItem.getClosePrice().getAsk().doubleValue();
-            tickParams[tickParamsIndex + 2] = priceItem.getHighPrice().getAsk().doubleValue();
-            tickParams[tickParamsIndex + 3] = priceItem.getLowPrice().getAsk().doubleValue();
-            tickParams[tickParamsIndex + 4] = TimeConvert.getOLEDateFromMillisRounded(LocalDateTime.parse(priceItem.getSnapshotTimeUTC()).toInstant(ZoneOffset.UTC).toEpochMilli());
-            tickParams[tickParamsIndex + 5] = priceItem.getClosePrice().getAsk().subtract(priceItem.getClosePrice().getBid()).doubleValue();
-            tickParams[tickParamsIndex + 6] = priceItem.getLastTradedVolume().doubleValue();
-            tickParamsIndex += 7;
+        int tickIndex = 0;
+        int ticksReturned = Math.min(Math.min(nTicks, ticks.capacity()), candles.size());
+        for (int i = candles.size() - 1; i >= candles.size() - ticksReturned; --i) {
+            ticks.set(tickIndex++,
+                TimeConvert.getOLEDateFromMillisRounded(candles.getTime(i)),
+                candles.getOpenAsk(i),
+                candles.getCloseAsk(i),
+                candles.getHighAsk(i),
+                candles.getLowAsk(i),
+                candles.getSpread(i),
+                candles.getVolume(i));
+        }
+
+        return ticksReturned;
+    }
+
+    private CandleSeries readCandles(Epic epic, Resolution resolution, long startMillis, long endMillis) {
+        CandleStore candleStore = candleCache.getStore(epic, resolution);
+        CandleSeries liveBar = readLiveBar(epic, resolution, startMillis, endMillis);
+        if (!liveBar.isEmpty()) {
+            logger.debug("Serving prices for epic {}, resolution {} from candle cache and live bar", epic.getName(), resolution.name());
+            CandleSeries candles = new CandleSeries();
+            candleStore.read(startMillis, liveBar.getTime(0) - 1, candles);
+            candles.addAll(liveBar);
+            return candles;
+        }
+        if (!candleStore.covers(startMillis, endMillis)) {
+            updateCandleStore(epic, resolution, candleStore, startMillis, endMillis, TimeUnit.MINUTES.toMillis(resolution.getValue()));
+        } else {
+            logger.debug("Serving prices for epic {}, resolution {} from candle cache", epic.getName(), resolution.name());
         }
 
-        return response.getPrices().size();
+        CandleSeries candles = new CandleSeries();
+        candleStore.read(startMillis, endMillis, candles);
+        return candles;
+    }
+
+    /*
+    A finer resolution already cached for the whole range can serve a coarser one without another download,
+    so several timeframes on the same epic share the data.
+    */
+    private Resolution findCachedFinerResolution(Epic epic, Resolution resolution, long startMillis, long endMillis) {
+        for (Resolution finerResolution : Resolution.values()) {
+            if (finerResolution != Resolution.INVALID
+                && finerResolution.getValue() < resolution.getValue()
+                && resolution.getValue() % finerResolution.getValue() == 0
+                && candleCache.hasStore(epic, finerResolution)
+                && (candleCache.getStore(epic, finerResolution).covers(startMillis, endMillis)
+                || !readLiveBar(epic, finerResolution, startMillis, endMillis).isEmpty())) {
+                return finerResolution;
+            }
+        }
+        return Resolution.INVALID;
+    }
+
+    /*
+    The minute bar built from the stream is the last bar of the range if it is the bar endMillis falls in and the
+    candle cache covers everything before it. Returns an empty series otherwise.
+    */
+    private CandleSeries readLiveBar(Epic epic, Resolution resolution, long startMillis, long endMillis) {
+        CandleSeries liveBar = new CandleSeries(1);
+        AssetSlot assetSlot = priceSnapshotStore.getSlot(epic);
+        if (resolution != MINUTE || Objects.isNull(assetSlot) || !assetSlot.getMinuteBars().readLiveBar(liveBar)) {
+            return liveBar;
+        }
+        long liveBarTime = liveBar.getTime(0);
+        if (endMillis < liveBarTime
+            || endMillis >= liveBarTime + MinuteBarBuilder.BAR_MILLIS
+            || !candleCache.hasStore(epic, MINUTE)
+            || !candleCache.getStore(epic, MINUTE).covers(startMillis, liveBarTime - MinuteBarBuilder.BAR_MILLIS)) {
+            liveBar.clear();
+        }
+        return liveBar;
+    }
+
+    /**
+     * Adds a completed minute bar built from the stream to the candle cache, so a cache that is up to date stays up
+     * to date without price requests
+     */
+    public void appendMinuteBar(Epic epic, CandleSeries bar) {
+        if (candleCache.hasStore(epic, MINUTE) && !candleCache.getStore(epic, MINUTE).append(bar, 0)) {
+            logger.debug("Minute bar for epic {} doesn't continue the candle cache, not appended", epic.getName());
+        }
+    }
+
+    /*
+    Timeframes IG doesn't provide, e.g. 4, 20, 45 or 90 minutes, are built from the coarsest resolution they are a multiple of.
+    */
+    private Resolution findBaseResolution(int nTickMinutes) {
+        if (nTickMinutes <= 0) {
+            return Resolution.INVALID;
+        }
+        for (Resolution resolution : Resolution.values()) {
+            if (resolution != Resolution.INVALID && nTickMinutes % resolution.getValue() == 0) {
+                return resolution;
+            }
+        }
+        return Resolution.INVALID;
+    }
+
+    /*
+    Only the parts of the requested range that are not already in the candle cache are downloaded.
+    A range after the cached one is downloaded from the end of the cache, so the gap, e.g. a weekend, is filled and the
+    store stays contiguous. The cache is only replaced if the range lies before it, or filling the gap would exceed the
+    price allowance. Recent data is prioritised over backfilling older data when the price allowance runs low.
+    */
+    private void updateCandleStore(Epic epic, Resolution resolution, CandleStore candleStore, long startMillis, long endMillis, long barMillis) {
+        long completeUntil = Math.min(endMillis, System.currentTimeMillis() - barMillis);
+        boolean replacesCache = candleStore.isEmpty()
+            || endMillis < candleStore.getCoveredFrom() - barMillis
+            || startMillis > candleStore.getCoveredTo() + barMillis && !canFillGap(candleStore, endMillis, barMillis);
+
+        if (replacesCache) {
+            downloadIntoStore(epic, resolution, candleStore, startMillis, endMillis, barMillis, completeUntil, endMillis > candleStore.getCoveredTo());
+            return;
+        }
+        if (endMillis > candleStore.getCoveredTo()) {
+            downloadIntoStore(epic, resolution, candleStore, candleStore.getCoveredTo(), endMillis, barMillis, completeUntil, true);
+        }
+        if (startMillis < candleStore.getCoveredFrom()) {
+            downloadIntoStore(epic, resolution, candleStore, startMillis, candleStore.getCoveredFrom(), barMillis, completeUntil, false);
+        }
+    }
+
+    private boolean canFillGap(CandleStore candleStore, long endMillis, long barMillis) {
+        long gapBars = (endMillis - candleStore.getCoveredTo()) / barMillis + 1;
+        return gapBars <= priceAllowanceTracker.getAvailableAllowance(true);
+    }
+
+    private void downloadIntoStore(Epic epic, Resolution resolution, CandleStore candleStore, long startMillis, long endMillis, long barMillis, long completeUntil, boolean priority) {
+        long availableBars = priceAllowanceTracker.getAvailableAllowance(priority);
+        if (availableBars <= 0) {
+            logger.warn("Price allowance exhausted, serving epic {}, resolution {} from candle cache only", epic.getName(), resolution.name());
+            return;
+        }
+        long rationedStartMillis = Math.max(startMillis, endMillis - (availableBars - 1) * barMillis);
+        if (rationedStartMillis > startMillis) {
+            logger.info("Price allowance low, limiting download for epic {} to {} bars", epic.getName(), availableBars);
+        }
+        candleStore.merge(priceHistoryDownloader.download(epic, resolution, rationedStartMillis, endMillis, accountZoneOffset), rationedStartMillis, endMillis, completeUntil);
+    }
+
+    /**
+     * Volumes of the last complete minute bars, oldest first. Served from the candle cache when it covers them, so
+     * only assets with a cold cache need a price request when subscribed.
+     */
+    public List<Volume> getRecentVolumes(final Epic epic, final int bars) {
+        long barMillis = TimeUnit.MINUTES.toMillis(MINUTE.getValue());
+        long endMillis = Math.floorDiv(System.currentTimeMillis(), barMillis) * barMillis - barMillis;
+        long startMillis = endMillis - (bars - 1) * barMillis;
+        if (candleCache.hasStore(epic, MINUTE) && candleCache.getStore(epic, MINUTE).covers(startMillis, endMillis)) {
+            CandleSeries candles = new CandleSeries(bars);
+            candleCache.getStore(epic, MINUTE).read(startMillis, endMillis, candles);
+            List<Volume> volumes = new ArrayList<>(candles.size());
+            for (int i = 0; i < candles.size(); i++) {
+                volumes.add(new Volume((int) candles.getVolume(i)));
+            }
+            return volumes;
+        }
+        return getPriceHistory(epic, bars).stream()
+            .map(pricesItem -> new Volume(pricesItem.getLastTradedVolume().intValue()))
+            .collect(Collectors.toList());
     }
 
     public List<PricesItem> getPriceHistory(final Epic epic,
                                             final int ticks) {
-        return restApiAdapter.getHistoricPrices(PAGE_NUMBER,
+        GetPricesV3Response response = restApiAdapter.getHistoricPrices(PAGE_NUMBER,
             Integer.toString(ticks),
             Integer.toString(ticks),
             epic.getName(),
             null,
             null,
-            MINUTE.name()).blockingGet().getPrices();
+            MINUTE.name()).blockingGet();
+        if (Objects.nonNull(response.getMetadata())) {
+            priceAllowanceTracker.updateAllowance(response.getMetadata().getAllowance());
+        }
+        return response.getPrices();
     }
 
     /*
@@ -11,6 +11,7 @@ import com.danlind.igz.ig.api.client.rest.ConversationContext;
 import com.danlind.igz.ig.api.client.rest.ConversationContextV3;
 import com.danlind.igz.ig.api.client.rest.dto.session.createSessionV3.CreateSessionV3Request;
 import com.danlind.igz.ig.api.client.rest.dto.session.refreshSessionV1.RefreshSessionV1Request;
+import io.reactivex.Completable;
 import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.disposables.Disposable;
@@ -42,6 +43,18 @@ public class BrokerLogin {
     }
 
     public int connect(String identifier, String password, String accountType) {
+        return connect(identifier, password, accountType, Completable.complete(), Completable.complete());
+    }
+
+    /**
+     * Logs in and runs the steps that depend on the login as soon as what they need is available.
+     * The streaming connect and the session steps start together once the session is created, the streaming steps
+     * start once the streaming API is connected. Steps should subscribe on their own scheduler to run concurrently.
+     * @param sessionSteps steps that only need the REST session
+     * @param streamingSteps steps that need the streaming connection
+     * @return LOGIN_OK once the streaming API is connected and all steps have completed, LOGIN_FAIL if any of them failed
+     */
+    public int connect(String identifier, String password, String accountType, Completable sessionSteps, Completable streamingSteps) {
         this.zorroAccountType = AccountType.valueOf(accountType);
         logger.info("Connecting to IG {}-account as {}", this.zorroAccountType.name(), identifier);
 
@@ -53,9 +66,15 @@ public class BrokerLogin {
 
         return restApiAdapter.createSessionV3(authRequest, apiKey)
             .doOnSuccess(this::setAuthenticationContext)
-            .flatMap(authenticationContext -> streamingApiAdapter.connect(authenticationContext))
-            .map(__ -> ZorroReturnValues.LOGIN_OK.getValue())
-            .doOnSuccess(__ -> startRefreshAccessTokenScheduler())
+            .flatMapCompletable(authenticationContext -> Completable.mergeArray(
+                streamingApiAdapter.connect(authenticationContext)
+                    .subscribeOn(Schedulers.io())
+                    .doOnSuccess(__ -> startRefreshAccessTokenScheduler())
+                    .toCompletable()
+                    .andThen(streamingSteps),
+                sessionSteps))
+            .toSingleDefault(ZorroReturnValues.LOGIN_OK.getValue())
+            .doOnError(err -> logger.error("Login failed", err))
             .onErrorReturn(err -> ZorroReturnValues.LOGIN_FAIL.getValue())
             .doFinally(() -> progress.dispose())
             .blockingGet();
@@ -12,10 +12,12 @@ import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.GetDealConfi
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.CreateOTCPositionV2Request;
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.Direction;
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.OrderType;
+import com.danlind.igz.misc.DealConfirmationProvider;
 import com.danlind.igz.misc.MarketDataProvider;
+import com.danlind.igz.misc.PendingOrders;
+import com.danlind.igz.misc.OrderStore;
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
-import net.openhft.chronicle.map.ChronicleMap;
 import org.apache.commons.lang.RandomStringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -30,21 +32,27 @@ import java.util.regex.Pattern;
 
 public abstract class BrokerOrder {
 
-    private final RestApiAdapter restApiAdapter;
-    private final ChronicleMap<Integer, OrderDetails> orderReferenceMap;
+    private final DealConfirmationProvider dealConfirmationProvider;
+    private final OrderStore orderStore;
+    private final PendingOrders pendingOrders;
 
     private OrderText orderText;
 
-    public BrokerOrder(RestApiAdapter restApiAdapter, ChronicleMap<Integer, OrderDetails> orderReferenceMap) {
-        this.restApiAdapter = restApiAdapter;
-        this.orderReferenceMap = orderReferenceMap;
+    public BrokerOrder(DealConfirmationProvider dealConfirmationProvider, OrderStore orderStore, PendingOrders pendingOrders) {
+        this.dealConfirmationProvider = dealConfirmationProvider;
+        this.orderStore = orderStore;
+        this.pendingOrders = pendingOrders;
     }
 
     protected Single<Optional<GetDealConfirmationV1Response>> getDealConfirmation(DealReference dealReference) {
-        return restApiAdapter.getDealConfirmation(dealReference.getValue());
+        return dealConfirmationProvider.getDealConfirmation(dealReference);
     }
 
     protected int getNextOrderId() {
-        return orderReferenceMap.keySet().stream().max(Integer::compareTo).orElse(1000) + 1;
+        return orderStore.nextOrderId();
+    }
+
+    protected PendingOrders getPendingOrders() {
+        return pendingOrders;
     }
 }
@@ -11,48 +11,55 @@ import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.PositionStat
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.closeOTCPositionV1.CloseOTCPositionV1Request;
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.closeOTCPositionV1.Direction;
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.closeOTCPositionV1.OrderType;
+import com.danlind.igz.misc.DealConfirmationProvider;
 import com.danlind.igz.misc.MarketDataProvider;
+import com.danlind.igz.misc.PendingOrders;
+import com.danlind.igz.misc.OrderStore;
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
-import net.openhft.chronicle.map.ChronicleMap;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
 
 @Component
 public class BrokerSell extends BrokerOrder{
 
     private final static Logger LOG = LoggerFactory.getLogger(BrokerSell.class);
     private final RestApiAdapter restApiAdapter;
-    private final ChronicleMap<Integer, OrderDetails> orderReferenceMap;
+    private final OrderStore orderStore;
     private final MarketDataProvider marketDataProvider;
 
-    public BrokerSell(RestApiAdapter restApiAdapter, ChronicleMap<Integer, OrderDetails> orderReferenceMap, MarketDataProvider marketDataProvider) {
-        super(restApiAdapter,orderReferenceMap);
+    public BrokerSell(RestApiAdapter restApiAdapter, OrderStore orderStore, MarketDataProvider marketDataProvider, DealConfirmationProvider dealConfirmationProvider, PendingOrders pendingOrders) {
+        super(dealConfirmationProvider,orderStore, pendingOrders);
         this.restApiAdapter = restApiAdapter;
-        this.orderReferenceMap = orderReferenceMap;
+        this.orderStore = orderStore;
         this.marketDataProvider = marketDataProvider;
     }
 
     public int closePosition(final int nOrderId,
                              final int nAmount) {
-        OrderDetails orderDetails = orderReferenceMap.get(nOrderId);
+        getPendingOrders().awaitSettlement(nOrderId);
+        OrderDetails orderDetails = orderStore.get(nOrderId);
+        if (Objects.isNull(orderDetails)) {
+            LOG.warn("No open position found for order {}", nOrderId);
+            return ZorroReturnValues.BROKER_SELL_FAIL.getValue();
+        }
         DealId dealId = orderDetails.getDealId();
         ContractDetails contractDetails = marketDataProvider.getContractDetails(orderDetails.getEpic());
         int lotSize = nAmount / (int) contractDetails.getLotAmount();
         CloseOTCPositionV1Request request = createClosePositionRequest(lotSize, dealId);
 
         LOG.info(">>> Closing size {} for position with dealId {}", lotSize, dealId.getValue());
+        orderStore.recordCloseIntent(nOrderId, dealId, lotSize);
 
         return restApiAdapter.closePosition(request)
             .subscribeOn(Schedulers.io())
             .doOnSuccess(dealReference -> LOG.debug("Got dealReference {} when attempting to close position with dealId {}", dealReference.getValue(), dealId.getValue()))
-            .delay(500, TimeUnit.MILLISECONDS)
             .flatMap(this::getDealConfirmation)
                 .flatMap(dealConfirmationResponse -> closeConfirmationHandler(dealConfirmationResponse, nOrderId, lotSize)
             )
@@ -63,17 +70,17 @@ public class BrokerSell extends BrokerOrder{
     private Single<Integer> closeConfirmationHandler(Optional<GetDealConfirmationV1Response> maybeDealConfirmationResponse, int nOrderId, int lotSize) {
         if (maybeDealConfirmationResponse.isPresent()) {
             GetDealConfirmationV1Response dealConfirmationResponse = maybeDealConfirmationResponse.get();
-            OrderDetails sellOrderDetails = orderReferenceMap.get(nOrderId);
+            OrderDetails sellOrderDetails = orderStore.get(nOrderId);
 
             LOG.debug("Position status is {}", dealConfirmationResponse.getStatus());
             if (dealConfirmationResponse.getStatus() == PositionStatus.CLOSED) {
                 LOG.debug("Position with deal id {} now fully closed", sellOrderDetails.getDealId().getValue());
-                orderReferenceMap.remove(nOrderId);
+                orderStore.remove(nOrderId);
                 return Single.just(nOrderId);
             } else {
                 LOG.debug("Position with deal id {} now partially closed", sellOrderDetails.getDealId().getValue());
                 int newOrderId = getNextOrderId();
-                orderReferenceMap.put(newOrderId,
+                orderStore.put(newOrderId,
                     new OrderDetails(sellOrderDetails.getEpic(),
                         sellOrderDetails.getEntryLevel(),
                         sellOrderDetails.getDirection(),
@@ -7,26 +7,32 @@ import com.danlind.igz.domain.types.DealId;
 import com.danlind.igz.domain.types.DealReference;
 import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.GetDealConfirmationV1Response;
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.updateOTCPositionV2.UpdateOTCPositionV2Request;
+import com.danlind.igz.misc.DealConfirmationProvider;
+import com.danlind.igz.misc.PendingOrders;
+import com.danlind.igz.misc.OrderStore;
 import io.reactivex.Single;
-import net.openhft.chronicle.map.ChronicleMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
 
 @Component
 public class BrokerStop {
 
     private final static Logger LOG = LoggerFactory.getLogger(BrokerStop.class);
     private final RestApiAdapter restApiAdapter;
-    private final ChronicleMap<Integer, OrderDetails> orderReferenceMap;
+    private final OrderStore orderStore;
+    private final DealConfirmationProvider dealConfirmationProvider;
+    private final PendingOrders pendingOrders;
 
-    public BrokerStop(RestApiAdapter restApiAdapter, ChronicleMap<Integer, OrderDetails> orderReferenceMap) {
+    public BrokerStop(RestApiAdapter restApiAdapter, OrderStore orderStore, DealConfirmationProvider dealConfirmationProvider, PendingOrders pendingOrders) {
         this.restApiAdapter = restApiAdapter;
-        this.orderReferenceMap = orderReferenceMap;
+        this.orderStore = orderStore;
+        this.dealConfirmationProvider = dealConfirmationProvider;
+        this.pendingOrders = pendingOrders;
     }
 
     public int updateStop(final int orderId,
@@ -34,13 +40,18 @@ public class BrokerStop {
         UpdateOTCPositionV2Request request = new UpdateOTCPositionV2Request();
         request.setStopLevel(BigDecimal.valueOf(newSLPrice));
         request.setTrailingStop(false);
-        DealId dealId = orderReferenceMap.get(orderId).getDealId();
+        pendingOrders.awaitSettlement(orderId);
+        OrderDetails orderDetails = orderStore.get(orderId);
+        if (Objects.isNull(orderDetails)) {
+            LOG.warn("No open position found for order {}", orderId);
+            return ZorroReturnValues.ADJUST_SL_FAIL.getValue();
+        }
+        DealId dealId = orderDetails.getDealId();
 
         LOG.debug("Attempting to update stop for dealId {} to {}", dealId.getValue(), newSLPrice);
 
         return restApiAdapter.updateStop(dealId.getValue(), request)
             .doOnSuccess(dealReference -> LOG.debug("Got dealReference {} when attempting to update stop for dealId", dealReference.getValue(), dealId.getValue()))
-            .delay(500, TimeUnit.MILLISECONDS)
             .flatMap(this::getDealConfirmation)
                 .flatMap(event ->  event.isPresent() ? Single.just(ZorroReturnValues.ADJUST_SL_OK.getValue()) : Single.just(ZorroReturnValues.ADJUST_SL_FAIL.getValue())
             )
@@ -49,7 +60,7 @@ public class BrokerStop {
     }
 
     private Single<Optional<GetDealConfirmationV1Response>> getDealConfirmation(DealReference dealReference) {
-        return restApiAdapter.getDealConfirmation(dealReference.getValue());
+        return dealConfirmationProvider.getDealConfirmation(dealReference);
     }
 
 }
@@ -1,55 +1,113 @@
 package com.danlind.igz.brokerapi;
 
-import com.danlind.igz.adapter.RestApiAdapter;
 import com.danlind.igz.config.ZorroReturnValues;
 import com.danlind.igz.domain.ContractDetails;
 import com.danlind.igz.domain.OrderDetails;
+import com.danlind.igz.domain.PendingOrder;
+import com.danlind.igz.domain.PositionDetails;
 import com.danlind.igz.domain.PriceDetails;
 import com.danlind.igz.handler.AssetHandler;
 import com.danlind.igz.misc.MarketDataProvider;
+import com.danlind.igz.misc.PendingOrders;
+import com.danlind.igz.misc.PositionBook;
+import com.danlind.igz.misc.OrderStore;
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.Direction;
-import net.openhft.chronicle.map.ChronicleMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalDouble;
 
 @Component
 public class BrokerTrade {
 
     private final static Logger LOG = LoggerFactory.getLogger(BrokerTrade.class);
     private final static double rollOverNotSupported = 0.0;
-    private final ChronicleMap<Integer, OrderDetails> orderReferenceMap;
+    private final OrderStore orderStore;
     private final AssetHandler assetHandler;
     private final MarketDataProvider marketDataProvider;
-    private final RestApiAdapter restApiAdapter;
+    private final PositionBook positionBook;
+    private final PendingOrders pendingOrders;
 
-    public BrokerTrade(ChronicleMap<Integer, OrderDetails> orderReferenceMap, AssetHandler assetHandler, MarketDataProvider marketDataProvider, RestApiAdapter restApiAdapter) {
-        this.orderReferenceMap = orderReferenceMap;
+    public BrokerTrade(OrderStore orderStore, AssetHandler assetHandler, MarketDataProvider marketDataProvider, PositionBook positionBook, PendingOrders pendingOrders) {
+        this.orderStore = orderStore;
         this.assetHandler = assetHandler;
         this.marketDataProvider = marketDataProvider;
-        this.restApiAdapter = restApiAdapter;
+        this.positionBook = positionBook;
+        this.pendingOrders = pendingOrders;
     }
 
     public int getTradeStatus(final int nTradeID,
                               final double[] orderParams) {
-        OrderDetails orderDetails = orderReferenceMap.get(nTradeID);
+        OrderDetails orderDetails = orderStore.get(nTradeID);
         if (Objects.isNull(orderDetails)) {
-            return ZorroReturnValues.UNKNOWN_ORDER_ID.getValue();
+            return getPendingTradeStatus(nTradeID, orderParams);
+        } else if (positionBook.isClosed(orderDetails.getDealId())) {
+            LOG.info("Position with dealId {} for order {} was closed on the broker side", orderDetails.getDealId().getValue(), nTradeID);
+            orderStore.remove(nTradeID);
+            return ZorroReturnValues.ORDER_RECENTLY_CLOSED.getValue();
         } else {
-            return fillTradeParams(orderParams, orderDetails);
+            return fillTradeParams(orderParams, updatePositionSize(nTradeID, orderDetails));
+        }
+    }
+
+    /*
+    Orders sent in async order mode are reported with their requested amount until they are settled,
+    failed orders are reported as closed once so Zorro drops the trade
+    */
+    private int getPendingTradeStatus(int nTradeID, double[] orderParams) {
+        if (pendingOrders.removeFailed(nTradeID)) {
+            return ZorroReturnValues.ORDER_RECENTLY_CLOSED.getValue();
+        }
+        Optional<PendingOrder> pendingOrder = pendingOrders.getPendingOrder(nTradeID);
+        if (!pendingOrder.isPresent()) {
+            return ZorroReturnValues.UNKNOWN_ORDER_ID.getValue();
+        }
+        PriceDetails priceDetails = assetHandler.getAssetDetails(pendingOrder.get().getEpic());
+        if (Objects.nonNull(priceDetails)) {
+            final double price = (pendingOrder.get().getDirection() == Direction.BUY)
+                ? priceDetails.getAsk()
+                : priceDetails.getBid();
+            orderParams[0] = price;
+            orderParams[1] = price;
+            orderParams[2] = rollOverNotSupported;
+            orderParams[3] = 0;
         }
+        return pendingOrder.get().getAmount();
     }
 
-    public void checkPositionsValid() {
-        if (orderReferenceMap.size() > 0) {
-            LOG.info("Checking if {} previously opened positions are still open", orderReferenceMap.size());
+    /**
+     * Starts the position book and reconciles the stored orders with the positions snapshot it was started from, so
+     * both take a single request, see {@link OrderStore#recover(List)}
+     */
+    public void startPositionSubscription() {
+        Optional<List<PositionDetails>> openPositions = positionBook.startPositionSubscription();
+        if (openPositions.isPresent()) {
+            orderStore.recover(openPositions.get());
+        } else {
+            LOG.error("Unable to load open positions, keeping {} stored orders unchecked", orderStore.size());
+        }
+    }
 
-            orderReferenceMap.entrySet().stream()
-                .filter((entry) -> !restApiAdapter.getPositionStatus(entry.getValue().getDealId()).blockingGet())
-                .forEach(missingEntry -> orderReferenceMap.remove(missingEntry.getKey()));
+    /*
+    Positions partially closed on the broker side are stored with their remaining size
+    */
+    private OrderDetails updatePositionSize(int nTradeID, OrderDetails orderDetails) {
+        OptionalDouble positionSize = positionBook.getPositionSize(orderDetails.getDealId());
+        if (positionSize.isPresent() && (int) positionSize.getAsDouble() != orderDetails.getPositionSize()) {
+            LOG.info("Position with dealId {} for order {} changed size from {} to {}", orderDetails.getDealId().getValue(), nTradeID, orderDetails.getPositionSize(), positionSize.getAsDouble());
+            OrderDetails updatedOrderDetails = new OrderDetails(orderDetails.getEpic(),
+                orderDetails.getEntryLevel(),
+                orderDetails.getDirection(),
+                (int) positionSize.getAsDouble(),
+                orderDetails.getDealId());
+            orderStore.put(nTradeID, updatedOrderDetails);
+            return updatedOrderDetails;
         }
+        return orderDetails;
     }
 
     private int fillTradeParams(double[] orderParams, OrderDetails orderDetails) {
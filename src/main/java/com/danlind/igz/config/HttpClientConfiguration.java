@@ -134,7 +134,7 @@ public class HttpClientConfiguration {
     }
 
     @Bean
-    public CloseableHttpClient getHttpClient() {
+    public CloseableHttpClient getHttpClient(PoolingHttpClientConnectionManager connectionManager) {
         RequestConfig requestConfig = RequestConfig.custom()
             .setConnectionRequestTimeout(httpClientProperties.getRequestTimeout())
             .setConnectTimeout(httpClientProperties.getConnectionTimeout())
@@ -142,7 +142,7 @@ public class HttpClientConfiguration {
 
         return HttpClients.custom()
             .setDefaultRequestConfig(requestConfig)
-            .setConnectionManager(getPoolingConnectionManager())
+            .setConnectionManager(connectionManager)
             .setKeepAliveStrategy(getConnectionKeepAliveStrategy())
             .build();
     }
@@ -7,9 +7,14 @@ import com.danlind.igz.domain.types.Epic;
 import com.danlind.igz.ig.api.client.rest.AuthenticationResponseAndConversationContext;
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.Direction;
 import com.danlind.igz.ig.api.client.streaming.HandyTableListenerAdapter;
+import com.danlind.igz.misc.CandleCache;
+import com.danlind.igz.misc.OrderStore;
+import com.danlind.igz.misc.TickRecorder;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.reactivex.subjects.PublishSubject;
 import net.openhft.chronicle.map.ChronicleMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
@@ -24,6 +29,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Configuration
 public class PluginConfiguration {
 
+    private final static Logger logger = LoggerFactory.getLogger(PluginConfiguration.class);
+
     private final OrderDetails sampleOrderDetails = new OrderDetails(new Epic("IX.D.OMX.IFD.IP"), 10000, Direction.BUY, 20, new DealId("DIAAAAA9QN6L4AU"));
 
     @Bean
@@ -32,18 +39,51 @@ public class PluginConfiguration {
     }
 
     @Bean
-    public ChronicleMap<Integer, OrderDetails> createOrderReferenceMap() {
-        File file = new File("./Plugin/ig/orderChronoMap.dat");
+    public OrderStore createOrderStore(PluginProperties pluginProperties) {
         try {
-            file.createNewFile();
-            return ChronicleMap
-                    .of(Integer.class, OrderDetails.class)
-                    .averageValue(sampleOrderDetails)
-                    .entries(50)
-                    .createOrRecoverPersistedTo(file, false);
+            File pluginDirectory = new File(pluginProperties.getPluginDirectory());
+            OrderStore orderStore = OrderStore.createPersisted(new File(pluginDirectory, "orderStore.dat"),
+                new File(pluginDirectory, "orderSequence.dat"),
+                new File(pluginDirectory, "tradeJournal.dat"),
+                pluginProperties.getOrderStoreCapacity());
+            importLegacyOrders(orderStore, new File(pluginDirectory, "orderChronoMap.dat"));
+            return orderStore;
         } catch (IOException e) {
-            throw new RuntimeException("Exception when creating order reference map", e);
+            throw new RuntimeException("Exception when creating order store", e);
+        }
+    }
+
+    /*
+    Orders tracked by earlier versions live in a map capped at 50 entries, they are copied once and the old file is kept aside
+    */
+    private void importLegacyOrders(OrderStore orderStore, File legacyFile) throws IOException {
+        if (!legacyFile.exists() || legacyFile.length() == 0) {
+            return;
+        }
+        try (ChronicleMap<Integer, OrderDetails> legacyOrders = ChronicleMap
+                .of(Integer.class, OrderDetails.class)
+                .averageValue(sampleOrderDetails)
+                .entries(50)
+                .createOrRecoverPersistedTo(legacyFile, false)) {
+            legacyOrders.forEach(orderStore::put);
+        }
+        logger.info("Imported orders from {}", legacyFile.getPath());
+        if (!legacyFile.renameTo(new File(legacyFile.getPath() + ".imported"))) {
+            logger.warn("Unable to rename imported order file {}, it will be imported again on next start", legacyFile.getPath());
         }
     }
 
+    @Bean
+    public CandleCache createCandleCache(PluginProperties pluginProperties) {
+        return new CandleCache(new File(pluginProperties.getPluginDirectory(), "cache"), pluginProperties.getCandleCacheMaxBars());
+    }
+
+    @Bean
+    public TickRecorder createTickRecorder(PluginProperties pluginProperties) {
+        return new TickRecorder(new File(pluginProperties.getPluginDirectory(), "ticks"),
+            pluginProperties.isTickRecording(),
+            pluginProperties.getTickRecorderBufferSize(),
+            pluginProperties.getTickJournalMaxRecords());
+    }
+
 }
@@ -0,0 +1,329 @@
+package com.danlind.igz.config;
+
+import com.danlind.igz.adapter.RestApiAdapter;
+import com.danlind.igz.adapter.StreamingApiAdapter;
+import com.danlind.igz.brokerapi.*;
+import com.danlind.igz.handler.*;
+import com.danlind.igz.ig.api.client.RestAPI;
+import com.danlind.igz.ig.api.client.StreamingAPI;
+import com.danlind.igz.ig.api.client.rest.AuthenticationService;
+import com.danlind.igz.misc.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.boot.bind.RelaxedDataBinder;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Explicit wiring of the plugin components, used by ZorroBridge instead of a Spring Boot application context.
+ * Nothing is scanned, proxied or auto-configured, and every component is created on first use, so constructing the
+ * context only reads application.properties. The graph is the same one IgzApplication builds with Spring.
+ * Components that depend on each other in a cycle get the rest of their dependencies through setters once created.
+ */
+public class PluginContext {
+
+    private final static Logger logger = LoggerFactory.getLogger(PluginContext.class);
+    private static final long IDLE_CONNECTION_MONITOR_DELAY = 10000;
+
+    private final Object lock = new Object();
+    private final PluginProperties pluginProperties;
+    private final HttpClientProperties httpClientProperties;
+    private final PluginConfiguration pluginConfiguration = new PluginConfiguration();
+    private final HttpClientConfiguration httpClientConfiguration;
+    private boolean closed;
+
+    private final Lazy<ObjectMapper> objectMapper = lazy(() -> pluginConfiguration.getObjectMapper());
+    private final Lazy<PoolingHttpClientConnectionManager> connectionManager = lazy(this::createConnectionManager);
+    private final Lazy<CloseableHttpClient> httpClient = lazy(() -> httpClientConfiguration.getHttpClient(getConnectionManager()));
+    private final Lazy<RestTemplate> restTemplate = lazy(() -> httpClientConfiguration.getRestTemplate(getHttpClient()));
+
+    private final Lazy<RestAPI> restApi = lazy(RestAPI::new, restApi -> {
+        restApi.setDependencies(getObjectMapper(), getRestTemplate(), getHttpClient(), getPluginProperties(), getLoginHandler());
+        restApi.setAuthenticationService(getAuthenticationService());
+    });
+    private final Lazy<AuthenticationService> authenticationService = lazy(AuthenticationService::new, authenticationService -> {
+        authenticationService.setDependencies(getObjectMapper(), getRestTemplate(), getHttpClient(), getPluginProperties(), getLoginHandler());
+        authenticationService.setRestApi(getRestApi());
+    });
+    private final Lazy<StreamingAPI> streamingApi = lazy(() -> new StreamingAPI(getRestApi()));
+    private final Lazy<RestApiAdapter> restApiAdapter = lazy(RestApiAdapter::new,
+        restApiAdapter -> restApiAdapter.setDependencies(getRestApi(), getLoginHandler(), getPluginProperties()));
+    private final Lazy<StreamingApiAdapter> streamingApiAdapter = lazy(StreamingApiAdapter::new,
+        streamingApiAdapter -> streamingApiAdapter.setDependencies(getPluginProperties(), getObjectMapper(), getStreamingApi(), getTickRecorder(), getMarketStatistics()));
+
+    private final Lazy<PriceSnapshotStore> priceSnapshotStore = lazy(PriceSnapshotStore::new);
+    private final Lazy<MarketStatistics> marketStatistics = lazy(() -> new MarketStatistics(getPluginProperties()));
+    private final Lazy<MarketDataProvider> marketDataProvider = lazy(() -> new MarketDataProvider(getRestApiAdapter(), getStreamingApiAdapter(), getPluginProperties(), getPriceSnapshotStore()));
+    private final Lazy<PriceAllowanceTracker> priceAllowanceTracker = lazy(() -> new PriceAllowanceTracker(getPluginProperties()));
+    private final Lazy<PriceHistoryDownloader> priceHistoryDownloader = lazy(() -> new PriceHistoryDownloader(getRestApiAdapter(), getPluginProperties(), getPriceAllowanceTracker()));
+    private final Lazy<CandleCache> candleCache = lazy(() -> pluginConfiguration.createCandleCache(getPluginProperties()));
+    private final Lazy<TickRecorder> tickRecorder = lazy(() -> pluginConfiguration.createTickRecorder(getPluginProperties()));
+    private final Lazy<OrderStore> orderStore = lazy(() -> pluginConfiguration.createOrderStore(getPluginProperties()));
+    private final Lazy<PendingOrders> pendingOrders = lazy(() -> new PendingOrders(getPluginProperties()));
+    private final Lazy<DealConfirmationProvider> dealConfirmationProvider = lazy(() -> new DealConfirmationProvider(getRestApiAdapter(), getStreamingApiAdapter(), getPluginProperties()));
+    private final Lazy<PositionBook> positionBook = lazy(() -> new PositionBook(getRestApiAdapter(), getStreamingApiAdapter()));
+
+    private final Lazy<LoginHandler> loginHandler = lazy(() -> new LoginHandler(new BrokerLogin(getStreamingApiAdapter(), getRestApiAdapter(), getPluginProperties())));
+    private final Lazy<TimeHandler> timeHandler = lazy(() -> new TimeHandler(new BrokerTime(getStreamingApiAdapter(), getMarketDataProvider(), getRestApiAdapter())));
+    private final Lazy<HistoryHandler> historyHandler = lazy(() -> new HistoryHandler(new BrokerHistory(getRestApiAdapter(), getCandleCache(), getPriceHistoryDownloader(), getPriceAllowanceTracker(), getPriceSnapshotStore())));
+    private final Lazy<AssetHandler> assetHandler = lazy(() -> new AssetHandler(new BrokerAsset(getMarketDataProvider(), getMarketStatistics(), getStreamingApiAdapter(), getHistoryHandler(), getPriceSnapshotStore(), getPluginProperties())));
+    private final Lazy<CommandHandler> commandHandler = lazy(() -> new CommandHandler(new BrokerCommand(getPriceAllowanceTracker(), getMarketStatistics())));
+    private final Lazy<AccountHandler> accountHandler = lazy(() -> new AccountHandler(new BrokerAccount(getRestApiAdapter(), getStreamingApiAdapter())));
+    private final Lazy<TradeHandler> tradeHandler = lazy(() -> new TradeHandler(
+        new BrokerBuy(getRestApiAdapter(), getMarketDataProvider(), getOrderStore(), getDealConfirmationProvider(), getPendingOrders()),
+        new BrokerSell(getRestApiAdapter(), getOrderStore(), getMarketDataProvider(), getDealConfirmationProvider(), getPendingOrders()),
+        new BrokerTrade(getOrderStore(), getAssetHandler(), getMarketDataProvider(), getPositionBook(), getPendingOrders()),
+        new BrokerStop(getRestApiAdapter(), getOrderStore(), getDealConfirmationProvider(), getPendingOrders()),
+        getDealConfirmationProvider()));
+
+    /**
+     * @param pluginDirectory directory holding application.properties, the order store and the candle cache
+     */
+    public PluginContext(File pluginDirectory) {
+        Properties properties = loadProperties(new File(pluginDirectory, "application.properties"));
+        this.pluginProperties = new PluginProperties();
+        this.pluginProperties.setPluginDirectory(pluginDirectory.getPath());
+        bind(pluginProperties, "plugin", properties);
+        this.httpClientProperties = bind(new HttpClientProperties(), "plugin.httpclient", properties);
+        this.httpClientConfiguration = new HttpClientConfiguration(httpClientProperties);
+    }
+
+    public PluginProperties getPluginProperties() {
+        return pluginProperties;
+    }
+
+    public HttpClientProperties getHttpClientProperties() {
+        return httpClientProperties;
+    }
+
+    public ObjectMapper getObjectMapper() {
+        return objectMapper.get();
+    }
+
+    public PoolingHttpClientConnectionManager getConnectionManager() {
+        return connectionManager.get();
+    }
+
+    public CloseableHttpClient getHttpClient() {
+        return httpClient.get();
+    }
+
+    public RestTemplate getRestTemplate() {
+        return restTemplate.get();
+    }
+
+    public RestAPI getRestApi() {
+        return restApi.get();
+    }
+
+    public AuthenticationService getAuthenticationService() {
+        return authenticationService.get();
+    }
+
+    public StreamingAPI getStreamingApi() {
+        return streamingApi.get();
+    }
+
+    public RestApiAdapter getRestApiAdapter() {
+        return restApiAdapter.get();
+    }
+
+    public StreamingApiAdapter getStreamingApiAdapter() {
+        return streamingApiAdapter.get();
+    }
+
+    public PriceSnapshotStore getPriceSnapshotStore() {
+        return priceSnapshotStore.get();
+    }
+
+    public MarketStatistics getMarketStatistics() {
+        return marketStatistics.get();
+    }
+
+    public MarketDataProvider getMarketDataProvider() {
+        return marketDataProvider.get();
+    }
+
+    public PriceAllowanceTracker getPriceAllowanceTracker() {
+        return priceAllowanceTracker.get();
+    }
+
+    public PriceHistoryDownloader getPriceHistoryDownloader() {
+        return priceHistoryDownloader.get();
+    }
+
+    public CandleCache getCandleCache() {
+        return candleCache.get();
+    }
+
+    public TickRecorder getTickRecorder() {
+        return tickRecorder.get();
+    }
+
+    public OrderStore getOrderStore() {
+        return orderStore.get();
+    }
+
+    public PendingOrders getPendingOrders() {
+        return pendingOrders.get();
+    }
+
+    public DealConfirmationProvider getDealConfirmationProvider() {
+        return dealConfirmationProvider.get();
+    }
+
+    public PositionBook getPositionBook() {
+        return positionBook.get();
+    }
+
+    public LoginHandler getLoginHandler() {
+        return loginHandler.get();
+    }
+
+    public TimeHandler getTimeHandler() {
+        return timeHandler.get();
+    }
+
+    public HistoryHandler getHistoryHandler() {
+        return historyHandler.get();
+    }
+
+    public AssetHandler getAssetHandler() {
+        return assetHandler.get();
+    }
+
+    public CommandHandler getCommandHandler() {
+        return commandHandler.get();
+    }
+
+    public AccountHandler getAccountHandler() {
+        return accountHandler.get();
+    }
+
+    public TradeHandler getTradeHandler() {
+        return tradeHandler.get();
+    }
+
+    /**
+     * Closes the components holding files, the ones Spring closes as destroy methods of their @Bean.
+     * Components that were never used are not created just to be closed, a second call does nothing.
+     */
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        tickRecorder.ifCreated(TickRecorder::close);
+        candleCache.ifCreated(CandleCache::close);
+        orderStore.ifCreated(OrderStore::close);
+        logger.debug("Plugin context closed");
+    }
+
+    /*
+    Replaces the @Scheduled idle connection monitor Spring runs for HttpClientConfiguration
+    */
+    private PoolingHttpClientConnectionManager createConnectionManager() {
+        PoolingHttpClientConnectionManager connectionManager = httpClientConfiguration.getPoolingConnectionManager();
+        Runnable idleConnectionMonitor = httpClientConfiguration.getIdleConnectionMonitor(connectionManager);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idle-connection-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(idleConnectionMonitor, IDLE_CONNECTION_MONITOR_DELAY, IDLE_CONNECTION_MONITOR_DELAY, TimeUnit.MILLISECONDS);
+        return connectionManager;
+    }
+
+    private static Properties loadProperties(File file) {
+        Properties properties = new Properties();
+        if (!file.exists()) {
+            logger.warn("No properties file found at {}, using defaults", file.getPath());
+            return properties;
+        }
+        try (InputStream inputStream = new FileInputStream(file)) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            throw new RuntimeException("Exception when reading properties file " + file.getPath(), e);
+        }
+        return properties;
+    }
+
+    /*
+    Same relaxed binding as @ConfigurationProperties, without an application context
+    */
+    private static <T> T bind(T target, String prefix, Properties properties) {
+        RelaxedDataBinder binder = new RelaxedDataBinder(target, prefix);
+        binder.setIgnoreUnknownFields(true);
+        binder.bind(new MutablePropertyValues(properties));
+        return target;
+    }
+
+    private <T> Lazy<T> lazy(Supplier<T> factory) {
+        return new Lazy<>(factory, component -> {
+        });
+    }
+
+    private <T> Lazy<T> lazy(Supplier<T> factory, Consumer<T> initializer) {
+        return new Lazy<>(factory, initializer);
+    }
+
+    /*
+    Created on first use. All components share one reentrant lock, so a component that is still being initialized is
+    only visible to the thread initializing it, which is what lets cyclic dependencies resolve.
+    */
+    private class Lazy<T> implements Supplier<T> {
+
+        private final Supplier<T> factory;
+        private final Consumer<T> initializer;
+        private volatile T component;
+        private T created;
+
+        private Lazy(Supplier<T> factory, Consumer<T> initializer) {
+            this.factory = factory;
+            this.initializer = initializer;
+        }
+
+        @Override
+        public T get() {
+            T initialized = component;
+            if (Objects.nonNull(initialized)) {
+                return initialized;
+            }
+            synchronized (lock) {
+                if (Objects.nonNull(component)) {
+                    return component;
+                }
+                if (Objects.isNull(created)) {
+                    created = factory.get();
+                    initializer.accept(created);
+                    component = created;
+                }
+                return created;
+            }
+        }
+
+        private void ifCreated(Consumer<T> action) {
+            T initialized = component;
+            if (Objects.nonNull(initialized)) {
+                action.accept(initialized);
+            }
+        }
+    }
+}
@@ -31,6 +31,44 @@ public class PluginProperties {
 
     private int refreshMarketDataInterval;
 
+    private int marketDetailsBatchSize = 50;
+
+    private int marketDataConsistencyCheckInterval = 600000;
+
+    private int candleCacheMaxBars = 100000;
+
+    private int historyPageSize = 1000;
+
+    private int historyMaxConcurrentRequests = 4;
+
+    private int historyAllowanceReservePercent = 10;
+
+    private int dealConfirmationTimeout = 2000;
+
+    private boolean asyncOrders = false;
+
+    private int orderStoreCapacity = 5000;
+
+    private int asyncOrderSettleTimeout = 10000;
+
+    private String pluginDirectory = "./Plugin/ig";
+
+    private int subscribeBatchDelay = 100;
+
+    private int streamingItemsPerTable = 20;
+
+    private boolean tickRecording = false;
+
+    private int tickRecorderBufferSize = 65536;
+
+    private int tickJournalMaxRecords = 1000000;
+
+    private int statisticsVolumeWindow = 5;
+
+    private int statisticsSpreadWindow = 200;
+
+    private int statisticsTickRateWindow = 5;
+
     public String getDemoApiKey() {
         return demoApiKey;
     }
@@ -110,5 +148,157 @@ public class PluginProperties {
         this.restApiMaxRetry = restApiMaxRetry;
     }
 
+    public int getCandleCacheMaxBars() {
+        return candleCacheMaxBars;
+    }
+
+    public void setCandleCacheMaxBars(int candleCacheMaxBars) {
+        this.candleCacheMaxBars = candleCacheMaxBars;
+    }
+
+    public int getHistoryPageSize() {
+        return historyPageSize;
+    }
+
+    public void setHistoryPageSize(int historyPageSize) {
+        this.historyPageSize = historyPageSize;
+    }
+
+    public int getHistoryMaxConcurrentRequests() {
+        return historyMaxConcurrentRequests;
+    }
+
+    public void setHistoryMaxConcurrentRequests(int historyMaxConcurrentRequests) {
+        this.historyMaxConcurrentRequests = historyMaxConcurrentRequests;
+    }
+
+    public int getHistoryAllowanceReservePercent() {
+        return historyAllowanceReservePercent;
+    }
+
+    public void setHistoryAllowanceReservePercent(int historyAllowanceReservePercent) {
+        this.historyAllowanceReservePercent = historyAllowanceReservePercent;
+    }
+
+    public int getMarketDetailsBatchSize() {
+        return marketDetailsBatchSize;
+    }
+
+    public void setMarketDetailsBatchSize(int marketDetailsBatchSize) {
+        this.marketDetailsBatchSize = marketDetailsBatchSize;
+    }
+
+    public int getMarketDataConsistencyCheckInterval() {
+        return marketDataConsistencyCheckInterval;
+    }
+
+    public void setMarketDataConsistencyCheckInterval(int marketDataConsistencyCheckInterval) {
+        this.marketDataConsistencyCheckInterval = marketDataConsistencyCheckInterval;
+    }
+
+    public int getDealConfirmationTimeout() {
+        return dealConfirmationTimeout;
+    }
+
+    public void setDealConfirmationTimeout(int dealConfirmationTimeout) {
+        this.dealConfirmationTimeout = dealConfirmationTimeout;
+    }
+
+    public boolean isAsyncOrders() {
+        return asyncOrders;
+    }
+
+    public void setAsyncOrders(boolean asyncOrders) {
+        this.asyncOrders = asyncOrders;
+    }
+
+    public int getOrderStoreCapacity() {
+        return orderStoreCapacity;
+    }
+
+    public void setOrderStoreCapacity(int orderStoreCapacity) {
+        this.orderStoreCapacity = orderStoreCapacity;
+    }
+
+    public int getAsyncOrderSettleTimeout() {
+        return asyncOrderSettleTimeout;
+    }
+
+    public void setAsyncOrderSettleTimeout(int asyncOrderSettleTimeout) {
+        this.asyncOrderSettleTimeout = asyncOrderSettleTimeout;
+    }
+
+    public String getPluginDirectory() {
+        return pluginDirectory;
+    }
+
+    public void setPluginDirectory(String pluginDirectory) {
+        this.pluginDirectory = pluginDirectory;
+    }
+
+    public int getSubscribeBatchDelay() {
+        return subscribeBatchDelay;
+    }
+
+    public void setSubscribeBatchDelay(int subscribeBatchDelay) {
+        this.subscribeBatchDelay = subscribeBatchDelay;
+    }
+
+    public int getStreamingItemsPerTable() {
+        return streamingItemsPerTable;
+    }
+
+    public void setStreamingItemsPerTable(int streamingItemsPerTable) {
+        this.streamingItemsPerTable = streamingItemsPerTable;
+    }
+
+    public boolean isTickRecording() {
+        return tickRecording;
+    }
+
+    public void setTickRecording(boolean tickRecording) {
+        this.tickRecording = tickRecording;
+    }
+
+    public int getTickRecorderBufferSize() {
+        return tickRecorderBufferSize;
+    }
+
+    public void setTickRecorderBufferSize(int tickRecorderBufferSize) {
+        this.tickRecorderBufferSize = tickRecorderBufferSize;
+    }
+
+    public int getTickJournalMaxRecords() {
+        return tickJournalMaxRecords;
+    }
+
+    public void setTickJournalMaxRecords(int tickJournalMaxRecords) {
+        this.tickJournalMaxRecords = tickJournalMaxRecords;
+    }
+
+    public int getStatisticsVolumeWindow() {
+        return statisticsVolumeWindow;
+    }
+
+    public void setStatisticsVolumeWindow(int statisticsVolumeWindow) {
+        this.statisticsVolumeWindow = statisticsVolumeWindow;
+    }
+
+    public int getStatisticsSpreadWindow() {
+        return statisticsSpreadWindow;
+    }
+
+    public void setStatisticsSpreadWindow(int statisticsSpreadWindow) {
+        this.statisticsSpreadWindow = statisticsSpreadWindow;
+    }
+
+    public int getStatisticsTickRateWindow() {
+        return statisticsTickRateWindow;
+    }
+
+    public void setStatisticsTickRateWindow(int statisticsTickRateWindow) {
+        this.statisticsTickRateWindow = statisticsTickRateWindow;
+    }
+
 
 }
\ No newline at end of file
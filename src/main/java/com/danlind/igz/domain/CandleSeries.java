@@ -0,0 +1,129 @@
+package com.danlind.igz.domain;
+
+import java.util.Arrays;
+
+/**
+ * Growable series of bid/ask candles, ordered oldest first.
+ * Candles are kept in primitive arrays so that history can be moved between the REST API,
+ * the on-disk candle cache and Zorro without allocating an object per bar.
+ */
+public class CandleSeries {
+
+    public static final int OPEN_BID = 0;
+    public static final int OPEN_ASK = 1;
+    public static final int HIGH_BID = 2;
+    public static final int HIGH_ASK = 3;
+    public static final int LOW_BID = 4;
+    public static final int LOW_ASK = 5;
+    public static final int CLOSE_BID = 6;
+    public static final int CLOSE_ASK = 7;
+    public static final int VOLUME = 8;
+    public static final int FIELDS = 9;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private long[] times;
+    private double[] values;
+    private int size;
+
+    public CandleSeries() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CandleSeries(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        this.times = new long[capacity];
+        this.values = new double[capacity * FIELDS];
+    }
+
+    public void add(long time,
+                    double openBid, double openAsk,
+                    double highBid, double highAsk,
+                    double lowBid, double lowAsk,
+                    double closeBid, double closeAsk,
+                    double volume) {
+        ensureCapacity(size + 1);
+        int offset = size * FIELDS;
+        times[size] = time;
+        values[offset + OPEN_BID] = openBid;
+        values[offset + OPEN_ASK] = openAsk;
+        values[offset + HIGH_BID] = highBid;
+        values[offset + HIGH_ASK] = highAsk;
+        values[offset + LOW_BID] = lowBid;
+        values[offset + LOW_ASK] = lowAsk;
+        values[offset + CLOSE_BID] = closeBid;
+        values[offset + CLOSE_ASK] = closeAsk;
+        values[offset + VOLUME] = volume;
+        size++;
+    }
+
+    public void add(CandleSeries other, int index) {
+        ensureCapacity(size + 1);
+        times[size] = other.times[index];
+        System.arraycopy(other.values, index * FIELDS, values, size * FIELDS, FIELDS);
+        size++;
+    }
+
+    public void addAll(CandleSeries other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.times, 0, times, size, other.size);
+        System.arraycopy(other.values, 0, values, size * FIELDS, other.size * FIELDS);
+        size += other.size;
+    }
+
+    public long getTime(int index) {
+        return times[index];
+    }
+
+    public double get(int index, int field) {
+        return values[index * FIELDS + field];
+    }
+
+    public double getOpenAsk(int index) {
+        return get(index, OPEN_ASK);
+    }
+
+    public double getHighAsk(int index) {
+        return get(index, HIGH_ASK);
+    }
+
+    public double getLowAsk(int index) {
+        return get(index, LOW_ASK);
+    }
+
+    public double getCloseAsk(int index) {
+        return get(index, CLOSE_ASK);
+    }
+
+    public double getCloseBid(int index) {
+        return get(index, CLOSE_BID);
+    }
+
+    public double getSpread(int index) {
+        return getCloseAsk(index) - getCloseBid(index);
+    }
+
+    public double getVolume(int index) {
+        return get(index, VOLUME);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > times.length) {
+            int capacity = Math.max(required, times.length + (times.length >> 1) + 1);
+            times = Arrays.copyOf(times, capacity);
+            values = Arrays.copyOf(values, capacity * FIELDS);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.danlind.igz.domain;
 
 import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.ig.api.client.rest.dto.markets.getMarketDetailsListV2.MarketDetailsItem;
 import com.danlind.igz.ig.api.client.rest.dto.markets.getMarketDetailsV3.GetMarketDetailsV3Response;
 import com.danlind.igz.ig.api.client.rest.dto.markets.getMarketDetailsV3.MarketStatus;
 
@@ -54,6 +55,37 @@ public class ContractDetails {
             marketDetails.getSnapshot().getMarketStatus());
     }
 
+    public static ContractDetails createContractDetailsFromResponse(MarketDetailsItem marketDetails) {
+        return new ContractDetails(new Epic(marketDetails.getInstrument().getEpic()),
+            (1d / marketDetails.getSnapshot().getScalingFactor()),
+            Double.parseDouble(marketDetails.getInstrument().getValueOfOnePip().replace(",", "")) / marketDetails.getInstrument().getCurrencies().get(0).getBaseExchangeRate(),
+            Double.parseDouble(marketDetails.getInstrument().getContractSize()),
+            100 / marketDetails.getInstrument().getMarginFactor().doubleValue() * -1,
+            marketDetails.getSnapshot().getBid().doubleValue(),
+            marketDetails.getSnapshot().getOffer().doubleValue(),
+            marketDetails.getInstrument().getExpiry(),
+            marketDetails.getInstrument().getCurrencies().get(0).getCode(),
+            marketDetails.getSnapshot().getScalingFactor(),
+            MarketStatus.valueOf(marketDetails.getSnapshot().getMarketStatus().name()));
+    }
+
+    /**
+     * @return a copy with the market status and snapshot prices of the update, prices missing from the update are kept
+     */
+    public ContractDetails withMarketUpdate(MarketUpdate marketUpdate) {
+        return new ContractDetails(epic,
+            pipSize,
+            pipCost,
+            lotAmount,
+            marginCost,
+            Double.isNaN(marketUpdate.getBid()) ? snapshotBid : marketUpdate.getBid(),
+            Double.isNaN(marketUpdate.getAsk()) ? snapshotAsk : marketUpdate.getAsk(),
+            expiry,
+            currencyCode,
+            scalingFactor,
+            marketUpdate.getMarketStatus());
+    }
+
     public Epic getEpic() {
         return epic;
     }
@@ -0,0 +1,42 @@
+package com.danlind.igz.domain;
+
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.ig.api.client.rest.dto.markets.getMarketDetailsV3.MarketStatus;
+
+import java.util.Objects;
+
+/**
+ * Market state and snapshot prices pushed on the MARKET stream. Prices are NaN while the market has no quote.
+ */
+public class MarketUpdate {
+
+    private final Epic epic;
+    private final double bid;
+    private final double ask;
+    private final MarketStatus marketStatus;
+
+    public MarketUpdate(Epic epic, double bid, double ask, MarketStatus marketStatus) {
+        Objects.requireNonNull(epic);
+        Objects.requireNonNull(marketStatus);
+        this.epic = epic;
+        this.bid = bid;
+        this.ask = ask;
+        this.marketStatus = marketStatus;
+    }
+
+    public Epic getEpic() {
+        return epic;
+    }
+
+    public double getBid() {
+        return bid;
+    }
+
+    public double getAsk() {
+        return ask;
+    }
+
+    public MarketStatus getMarketStatus() {
+        return marketStatus;
+    }
+}
@@ -0,0 +1,39 @@
+package com.danlind.igz.domain;
+
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.Direction;
+
+import java.util.Objects;
+
+/**
+ * Order handed to Zorro with a provisional trade id while it is still being opened and confirmed in the background.
+ */
+public class PendingOrder {
+
+    private final Epic epic;
+    private final Direction direction;
+    private final int amount;
+
+    public PendingOrder(Epic epic, Direction direction, int amount) {
+        Objects.requireNonNull(epic);
+        Objects.requireNonNull(direction);
+        this.epic = epic;
+        this.direction = direction;
+        this.amount = amount;
+    }
+
+    public Epic getEpic() {
+        return epic;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return the amount as requested by Zorro
+     */
+    public int getAmount() {
+        return amount;
+    }
+}
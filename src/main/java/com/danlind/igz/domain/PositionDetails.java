@@ -0,0 +1,42 @@
+package com.danlind.igz.domain;
+
+import com.danlind.igz.domain.types.DealId;
+import com.danlind.igz.domain.types.DealReference;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Open position as listed by getPositionsV2, used to reconcile the order store with the account on login.
+ */
+public class PositionDetails {
+
+    private final DealId dealId;
+    private final DealReference dealReference;
+    private final double level;
+    private final double size;
+
+    public PositionDetails(DealId dealId, DealReference dealReference, double level, double size) {
+        Objects.requireNonNull(dealId);
+        this.dealId = dealId;
+        this.dealReference = dealReference;
+        this.level = level;
+        this.size = size;
+    }
+
+    public DealId getDealId() {
+        return dealId;
+    }
+
+    public Optional<DealReference> getDealReference() {
+        return Optional.ofNullable(dealReference);
+    }
+
+    public double getLevel() {
+        return level;
+    }
+
+    public double getSize() {
+        return size;
+    }
+}
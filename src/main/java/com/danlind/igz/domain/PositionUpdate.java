@@ -0,0 +1,34 @@
+package com.danlind.igz.domain;
+
+import com.danlind.igz.domain.types.DealId;
+
+import java.util.Objects;
+
+/**
+ * State of an open position, either from the positions snapshot or pushed on the OPU stream.
+ */
+public class PositionUpdate {
+
+    private final DealId dealId;
+    private final double size;
+    private final boolean open;
+
+    public PositionUpdate(DealId dealId, double size, boolean open) {
+        Objects.requireNonNull(dealId);
+        this.dealId = dealId;
+        this.size = size;
+        this.open = open;
+    }
+
+    public DealId getDealId() {
+        return dealId;
+    }
+
+    public double getSize() {
+        return size;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+}
@@ -0,0 +1,31 @@
+package com.danlind.igz.domain;
+
+import com.danlind.igz.ig.api.client.rest.dto.prices.getPricesV3.Allowance;
+
+/**
+ * One page of a historic price response, decoded straight into candles
+ */
+public class PricePage {
+
+    private final CandleSeries candles;
+    private final int totalPages;
+    private final Allowance allowance;
+
+    public PricePage(CandleSeries candles, int totalPages, Allowance allowance) {
+        this.candles = candles;
+        this.totalPages = totalPages;
+        this.allowance = allowance;
+    }
+
+    public CandleSeries getCandles() {
+        return candles;
+    }
+
+    public int getTotalPages() {
+        return totalPages;
+    }
+
+    public Allowance getAllowance() {
+        return allowance;
+    }
+}
@@ -0,0 +1,74 @@
+package com.danlind.igz.domain;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * View of Zorro's T6 tick array, usually a direct buffer over the native memory Zorro passed to BrokerHistory2.
+ * The layout matches the T6 struct in trading.h: the OLE date as a double followed by high, low, open, close,
+ * value and volume as floats, 32 bytes per tick in native byte order.
+ */
+public class T6Ticks {
+
+    public static final int SIZE = 32;
+    private static final int TIME = 0;
+    private static final int HIGH = 8;
+    private static final int LOW = 12;
+    private static final int OPEN = 16;
+    private static final int CLOSE = 20;
+    private static final int VAL = 24;
+    private static final int VOL = 28;
+
+    private final ByteBuffer buffer;
+
+    private T6Ticks(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.nativeOrder());
+    }
+
+    public static T6Ticks wrap(ByteBuffer buffer) {
+        return new T6Ticks(buffer);
+    }
+
+    public int capacity() {
+        return buffer.capacity() / SIZE;
+    }
+
+    public void set(int index, double time, double open, double close, double high, double low, double val, double vol) {
+        int offset = index * SIZE;
+        buffer.putDouble(offset + TIME, time);
+        buffer.putFloat(offset + HIGH, (float) high);
+        buffer.putFloat(offset + LOW, (float) low);
+        buffer.putFloat(offset + OPEN, (float) open);
+        buffer.putFloat(offset + CLOSE, (float) close);
+        buffer.putFloat(offset + VAL, (float) val);
+        buffer.putFloat(offset + VOL, (float) vol);
+    }
+
+    public double getTime(int index) {
+        return buffer.getDouble(index * SIZE + TIME);
+    }
+
+    public float getHigh(int index) {
+        return buffer.getFloat(index * SIZE + HIGH);
+    }
+
+    public float getLow(int index) {
+        return buffer.getFloat(index * SIZE + LOW);
+    }
+
+    public float getOpen(int index) {
+        return buffer.getFloat(index * SIZE + OPEN);
+    }
+
+    public float getClose(int index) {
+        return buffer.getFloat(index * SIZE + CLOSE);
+    }
+
+    public float getVal(int index) {
+        return buffer.getFloat(index * SIZE + VAL);
+    }
+
+    public float getVol(int index) {
+        return buffer.getFloat(index * SIZE + VOL);
+    }
+}
@@ -19,4 +19,20 @@ public class DealId implements Serializable {
     public String getValue() {
         return dealId;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        DealId that = (DealId) o;
+
+        return dealId.equals(that.dealId);
+
+    }
+
+    @Override
+    public int hashCode() {
+        return dealId.hashCode();
+    }
 }
@@ -20,6 +20,10 @@ public class AccountHandler {
         brokerAccount.startAccountSubscription();
     }
 
+    public void loadAccountDetails() {
+        brokerAccount.loadAccountDetails();
+    }
+
     public int brokerAccount(final double accountInfoParams[]) {
         return brokerAccount.fillAccountParams(accountInfoParams);
     }
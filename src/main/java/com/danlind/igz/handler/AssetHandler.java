@@ -8,6 +8,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
+
 @Component
 public class AssetHandler {
 
@@ -26,6 +28,18 @@ public class AssetHandler {
         return brokerAsset.getLatestAssetData(epic, assetParams);
     }
 
+    public int getAssetHandle(Epic epic) {
+        return brokerAsset.getAssetHandle(epic);
+    }
+
+    public void setAssetSnapshotBuffer(ByteBuffer buffer) {
+        brokerAsset.setAssetSnapshotBuffer(buffer);
+    }
+
+    public int fillAssetSnapshot() {
+        return brokerAsset.fillAssetSnapshot();
+    }
+
     public PriceDetails getAssetDetails(Epic epic) {
         return brokerAsset.getPriceDetails(epic);
     }
@@ -0,0 +1,25 @@
+package com.danlind.igz.handler;
+
+import com.danlind.igz.brokerapi.BrokerCommand;
+import com.danlind.igz.domain.types.Epic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class CommandHandler {
+
+    private final BrokerCommand brokerCommand;
+
+    @Autowired
+    public CommandHandler(BrokerCommand brokerCommand) {
+        this.brokerCommand = brokerCommand;
+    }
+
+    public double brokerCommand(final int command) {
+        return brokerCommand.brokerCommand(command);
+    }
+
+    public int setSymbol(final Epic epic) {
+        return brokerCommand.setSymbol(epic);
+    }
+}
@@ -2,11 +2,14 @@ package com.danlind.igz.handler;
 
 
 import com.danlind.igz.brokerapi.BrokerHistory;
+import com.danlind.igz.domain.CandleSeries;
 import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.domain.types.Volume;
 import com.danlind.igz.ig.api.client.rest.dto.prices.getPricesV3.PricesItem;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 
@@ -25,8 +28,8 @@ public class HistoryHandler {
                                final double tEnd,
                                final int nTickMinutes,
                                final int nTicks,
-                               final double tickParams[]) {
-        return brokerHistory.getPriceHistory(epic, tStart, tEnd,nTickMinutes, nTicks, tickParams);
+                               final ByteBuffer tickBuffer) {
+        return brokerHistory.getPriceHistory(epic, tStart, tEnd,nTickMinutes, nTicks, tickBuffer);
     }
 
     public List<PricesItem> getPriceHistory(final Epic epic,
@@ -34,6 +37,14 @@ public class HistoryHandler {
         return brokerHistory.getPriceHistory(epic, ticks);
     }
 
+    public List<Volume> getRecentVolumes(final Epic epic, final int bars) {
+        return brokerHistory.getRecentVolumes(epic, bars);
+    }
+
+    public void appendMinuteBar(final Epic epic, final CandleSeries bar) {
+        brokerHistory.appendMinuteBar(epic, bar);
+    }
+
     public void startTimeZoneOffsetSubscription() {
         brokerHistory.startTimeZoneOffsetSubscription();
     }
@@ -3,6 +3,7 @@ package com.danlind.igz.handler;
 import com.danlind.igz.brokerapi.BrokerLogin;
 import com.danlind.igz.domain.types.AccountType;
 import com.danlind.igz.ig.api.client.rest.ConversationContext;
+import io.reactivex.Completable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -20,6 +21,10 @@ public class LoginHandler {
         return brokerLogin.connect(identifier, password, accountType);
     }
 
+    public int connect(String identifier, String password, String accountType, Completable sessionSteps, Completable streamingSteps) {
+        return brokerLogin.connect(identifier, password, accountType, sessionSteps, streamingSteps);
+    }
+
     public int disconnect() {
         return brokerLogin.disconnect();
     }
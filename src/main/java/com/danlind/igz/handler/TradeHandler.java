@@ -6,6 +6,7 @@ import com.danlind.igz.brokerapi.BrokerStop;
 import com.danlind.igz.brokerapi.BrokerTrade;
 import com.danlind.igz.domain.types.Epic;
 import com.danlind.igz.domain.types.OrderText;
+import com.danlind.igz.misc.DealConfirmationProvider;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,9 +21,11 @@ public class TradeHandler {
     private final BrokerSell brokerSell;
     private final BrokerTrade brokerTrade;
     private final BrokerStop brokerStop;
+    private final DealConfirmationProvider dealConfirmationProvider;
 
     @Autowired
-    public TradeHandler(BrokerBuy brokerBuy, BrokerSell brokerSell, BrokerTrade brokerTrade, BrokerStop brokerStop) {
+    public TradeHandler(BrokerBuy brokerBuy, BrokerSell brokerSell, BrokerTrade brokerTrade, BrokerStop brokerStop, DealConfirmationProvider dealConfirmationProvider) {
+        this.dealConfirmationProvider = dealConfirmationProvider;
         this.brokerStop = brokerStop;
         this.brokerBuy = brokerBuy;
         this.brokerSell = brokerSell;
@@ -49,7 +52,11 @@ public class TradeHandler {
         return brokerStop.updateStop(orderId, newSLPrice);
     }
 
-    public void checkTradesValid() {
-        brokerTrade.checkPositionsValid();
+    public void startPositionSubscription() {
+        brokerTrade.startPositionSubscription();
+    }
+
+    public void startDealConfirmationSubscription() {
+        dealConfirmationProvider.startConfirmSubscription();
     }
 }
@@ -67,6 +67,9 @@ import com.danlind.igz.ig.api.client.rest.dto.positions.sprintmarkets.getSprintM
 import com.danlind.igz.ig.api.client.rest.dto.positions.sprintmarkets.getSprintMarketPositionsV2.GetSprintMarketPositionsV2Response;
 import com.danlind.igz.ig.api.client.rest.dto.prices.getPricesByNumberOfPointsV2.GetPricesByNumberOfPointsV2Response;
 import com.danlind.igz.ig.api.client.rest.dto.prices.getPricesV3.GetPricesV3Response;
+import com.danlind.igz.domain.PricePage;
+import com.danlind.igz.misc.PriceResponseDecoder;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.danlind.igz.ig.api.client.rest.dto.session.createSessionV2.CreateSessionV2Request;
 import com.danlind.igz.ig.api.client.rest.dto.session.getSessionV1.GetSessionV1Response;
 import com.danlind.igz.ig.api.client.rest.dto.session.updateActiveAccountV1.UpdateActiveAccountV1Request;
@@ -100,6 +103,12 @@ public class RestAPI extends AbstractService {
     @Autowired
     AuthenticationService authenticationService;
 
+    private final PriceResponseDecoder priceResponseDecoder = new PriceResponseDecoder(new JsonFactory());
+
+    public void setAuthenticationService(AuthenticationService authenticationService) {
+        this.authenticationService = authenticationService;
+    }
+
     public AuthenticationResponseAndConversationContext createSession(CreateSessionV2Request authenticationRequest, String apiKey, boolean encrypted) {
         return authenticationService.createSession(authenticationRequest, apiKey, encrypted);
     }
@@ -179,6 +188,24 @@ public class RestAPI extends AbstractService {
      By default returns the minute prices within the last 10 minutes.
     */
     public GetPricesV3Response getPricesV3(ConversationContext conversationContext, String pageNumber, String max, String pageSize, String epic, String from, String to, String resolution) throws Exception {
+        String uri = buildPricesV3Uri(pageNumber, max, pageSize, epic, from, to, resolution);
+        HttpEntity<?> requestEntity = buildHttpEntity(conversationContext, null, "3");
+        ResponseEntity<GetPricesV3Response> response = restTemplate.exchange(getIGApiDomainURL() + addIGApiLightDarkCluster(uri), HttpMethod.GET, requestEntity, GetPricesV3Response.class);
+        return response.getBody();
+    }
+
+    /*
+    Returns historical prices for a particular instrument, decoded straight from the response stream into candles.
+    */
+    public PricePage getPricesV3Candles(ConversationContext conversationContext, String pageNumber, String max, String pageSize, String epic, String from, String to, String resolution) throws Exception {
+        String uri = buildPricesV3Uri(pageNumber, max, pageSize, epic, from, to, resolution);
+        HttpEntity<?> requestEntity = buildHttpEntity(conversationContext, null, "3");
+        return restTemplate.execute(getIGApiDomainURL() + addIGApiLightDarkCluster(uri), HttpMethod.GET,
+            request -> request.getHeaders().putAll(requestEntity.getHeaders()),
+            response -> priceResponseDecoder.decode(response.getBody()));
+    }
+
+    private String buildPricesV3Uri(String pageNumber, String max, String pageSize, String epic, String from, String to, String resolution) {
         String uri = "/prices/{epic}";
         uri = uri + (pageNumber != null ? (uri.contains("?") ? "&" : "?") + "pageNumber=" + pageNumber : "");
         uri = uri + (max != null ? (uri.contains("?") ? "&" : "?") + "max=" + max : "");
@@ -187,9 +214,7 @@ public class RestAPI extends AbstractService {
         uri = uri + (from != null ? (uri.contains("?") ? "&" : "?") + "from=" + from : "");
         uri = uri + (to != null ? (uri.contains("?") ? "&" : "?") + "to=" + to : "");
         uri = uri + (resolution != null ? (uri.contains("?") ? "&" : "?") + "resolution=" + resolution : "");
-        HttpEntity<?> requestEntity = buildHttpEntity(conversationContext, null, "3");
-        ResponseEntity<GetPricesV3Response> response = restTemplate.exchange(getIGApiDomainURL() + addIGApiLightDarkCluster(uri), HttpMethod.GET, requestEntity, GetPricesV3Response.class);
-        return response.getBody();
+        return uri;
     }
 
     /*
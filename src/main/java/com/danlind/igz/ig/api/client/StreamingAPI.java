@@ -226,10 +226,22 @@ public class StreamingAPI {
 
 	public HandyTableListenerAdapter subscribeForChartTicks(String epic,
 			HandyTableListenerAdapter adapter) throws Exception {
-		String subscriptionKey = CHART_TICK_PATTERN.replace("{epic}", epic);
+		return subscribeForChartTicks(new String[]{epic}, adapter);
+	}
+
+	/**
+	 * Subscribes to the ticks of several epics in one table, the item position passed to the adapter is the
+	 * position of the epic in the array, starting at 1
+	 */
+	public HandyTableListenerAdapter subscribeForChartTicks(String[] epics,
+			HandyTableListenerAdapter adapter) throws Exception {
+		String[] subscriptionKeys = new String[epics.length];
+		for (int i = 0; i < epics.length; i++) {
+			subscriptionKeys[i] = CHART_TICK_PATTERN.replace("{epic}", epics[i]);
+		}
 
 		ExtendedTableInfo extendedTableInfo = new ExtendedTableInfo(
-				new String[]{subscriptionKey}, "DISTINCT", new String[]{"BID",
+				subscriptionKeys, "DISTINCT", new String[]{"BID",
 						"OFR", "LTP", "LTV", "UTM", "DAY_OPEN_MID",
 						"DAY_PERC_CHG_MID", "DAY_HIGH", "DAY_LOW"}, true);
 
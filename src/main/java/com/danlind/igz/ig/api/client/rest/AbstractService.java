@@ -47,6 +47,17 @@ public abstract class AbstractService {
 	@Value("${ig.api.dark.cluster.query.parameter:deal_cluster}")
 	private String igApiDarkClusterQueryParameter;
 
+	/**
+	 * Wiring used outside of Spring, see PluginContext
+	 */
+	public void setDependencies(ObjectMapper objectMapper, RestTemplate restTemplate, HttpClient httpClient, PluginProperties pluginProperties, LoginHandler loginHandler) {
+		this.objectMapper = objectMapper;
+		this.restTemplate = restTemplate;
+		this.httpClient = httpClient;
+		this.pluginProperties = pluginProperties;
+		this.loginHandler = loginHandler;
+	}
+
 	public String getIGApiDomainURL() {
 		return loginHandler.getZorroAccountType() == AccountType.Real ? pluginProperties.getRealApiUrl() : pluginProperties.getDemoApiUrl();
 	}
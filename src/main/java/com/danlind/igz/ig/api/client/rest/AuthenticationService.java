@@ -31,6 +31,10 @@ public class AuthenticationService extends AbstractService {
    @Autowired
    private RestAPI restApi;
 
+   public void setRestApi(RestAPI restApi) {
+      this.restApi = restApi;
+   }
+
 
    public AuthenticationResponseAndConversationContext createSession(CreateSessionV1Request authenticationRequest, String apiKey) {
       final ResponseEntity<CreateSessionV2Response> responseEntity = authenticate(authenticationRequest, apiKey);
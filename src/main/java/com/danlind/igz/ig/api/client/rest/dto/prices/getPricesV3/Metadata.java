@@ -13,6 +13,20 @@ Historical price data allowance
 */
 private Allowance allowance;
 
+/*
+Size of the price list
+*/
+private Integer size;
+
+/*
+Paging metadata
+*/
+private PageData pageData;
+
 public Allowance getAllowance() { return allowance; }
 public void setAllowance(Allowance allowance) { this.allowance=allowance; }
+public Integer getSize() { return size; }
+public void setSize(Integer size) { this.size=size; }
+public PageData getPageData() { return pageData; }
+public void setPageData(PageData pageData) { this.pageData=pageData; }
 }
@@ -0,0 +1,32 @@
+package com.danlind.igz.ig.api.client.rest.dto.prices.getPricesV3;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/*
+Paging metadata
+*/
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class PageData {
+
+/*
+Page size
+*/
+private Integer pageSize;
+
+/*
+Page number
+*/
+private Integer pageNumber;
+
+/*
+Total number of pages
+*/
+private Integer totalPages;
+
+public Integer getPageSize() { return pageSize; }
+public void setPageSize(Integer pageSize) { this.pageSize=pageSize; }
+public Integer getPageNumber() { return pageNumber; }
+public void setPageNumber(Integer pageNumber) { this.pageNumber=pageNumber; }
+public Integer getTotalPages() { return totalPages; }
+public void setTotalPages(Integer totalPages) { this.totalPages=totalPages; }
+}
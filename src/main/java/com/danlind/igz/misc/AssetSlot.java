@@ -0,0 +1,87 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.ContractDetails;
+import com.danlind.igz.domain.types.Epic;
+
+/**
+ * Latest snapshot of one subscribed asset, preassigned when the asset is subscribed and updated in place.
+ * Bid and ask are written under a sequence lock so readers always see a matching pair without locking: the sequence
+ * is odd while a write is in progress and readers retry until they read the same even sequence before and after the
+ * prices. All fields are volatile so the price reads can not be reordered past the sequence checks.
+ */
+public class AssetSlot {
+
+    private final Epic epic;
+    private final int handle;
+    private volatile long sequence;
+    private volatile double bid;
+    private volatile double ask;
+    private volatile double volume;
+    private volatile ContractDetails contractDetails;
+    private final MinuteBarBuilder minuteBars = new MinuteBarBuilder();
+
+    AssetSlot(Epic epic, int handle) {
+        this.epic = epic;
+        this.handle = handle;
+    }
+
+    public Epic getEpic() {
+        return epic;
+    }
+
+    public int getHandle() {
+        return handle;
+    }
+
+    /*
+    Only writers synchronize, so the initial snapshot price and stream ticks never interleave
+    */
+    public synchronized void updatePrice(double bid, double ask) {
+        long current = sequence;
+        sequence = current + 1;
+        this.bid = bid;
+        this.ask = ask;
+        sequence = current + 2;
+    }
+
+    /**
+     * @param target receives the bid at index 0 and the ask at index 1
+     * @return false if no price has been written yet
+     */
+    public boolean readPrice(double[] target) {
+        long before;
+        double currentBid;
+        double currentAsk;
+        do {
+            before = sequence;
+            currentBid = bid;
+            currentAsk = ask;
+        } while ((before & 1) != 0 || before != sequence);
+        target[0] = currentBid;
+        target[1] = currentAsk;
+        return before != 0;
+    }
+
+    public double getVolume() {
+        return volume;
+    }
+
+    public void setVolume(double volume) {
+        this.volume = volume;
+    }
+
+    public ContractDetails getContractDetails() {
+        return contractDetails;
+    }
+
+    public void setContractDetails(ContractDetails contractDetails) {
+        this.contractDetails = contractDetails;
+    }
+
+    /**
+     * @return the minute bars built from the streamed ticks of this asset
+     */
+    public MinuteBarBuilder getMinuteBars() {
+        return minuteBars;
+    }
+}
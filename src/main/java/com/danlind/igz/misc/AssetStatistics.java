@@ -0,0 +1,100 @@
+package com.danlind.igz.misc;
+
+/**
+ * Rolling statistics of one asset: the volume of its minute bars, the spread of its ticks and its ticks per minute.
+ * The minute a subscription starts in misses the ticks before it, so its tick count is not used. Minutes without
+ * ticks count as zero, up to a full window. Written from the streaming and IO threads and read from Zorro's thread,
+ * access is synchronized on the instance, which is next to never contended.
+ */
+public class AssetStatistics {
+
+    private static final long NO_MINUTE = Long.MIN_VALUE;
+
+    private final RollingStatistics volumes;
+    private final RollingStatistics spreads;
+    private final RollingStatistics tickRates;
+    private long tickMinute = NO_MINUTE;
+    private boolean completeMinute;
+    private int ticksInMinute;
+
+    AssetStatistics(int volumeWindow, int spreadWindow, int tickRateWindow) {
+        this.volumes = new RollingStatistics(volumeWindow);
+        this.spreads = new RollingStatistics(spreadWindow);
+        this.tickRates = new RollingStatistics(tickRateWindow);
+    }
+
+    /**
+     * Starts a new subscription, the windows are kept but the minute it starts in is treated as partial
+     */
+    public synchronized void start() {
+        tickMinute = NO_MINUTE;
+    }
+
+    public synchronized void addVolume(double volume) {
+        volumes.add(volume);
+    }
+
+    /**
+     * @param time tick time in epoch millis
+     */
+    public synchronized void onTick(long time, double bid, double ask) {
+        if (Double.isNaN(bid) || Double.isNaN(ask)) {
+            return;
+        }
+        spreads.add(ask - bid);
+
+        long minute = Math.floorDiv(time, MinuteBarBuilder.BAR_MILLIS);
+        if (tickMinute == NO_MINUTE) {
+            tickMinute = minute;
+            completeMinute = false;
+            ticksInMinute = 0;
+        } else if (minute > tickMinute) {
+            if (completeMinute) {
+                tickRates.add(ticksInMinute);
+            }
+            long quietMinutes = Math.min(minute - tickMinute - 1, tickRates.getWindow());
+            for (long i = 0; i < quietMinutes; i++) {
+                tickRates.add(0);
+            }
+            tickMinute = minute;
+            completeMinute = true;
+            ticksInMinute = 0;
+        } else if (minute < tickMinute) {
+            return;
+        }
+        ticksInMinute++;
+    }
+
+    /**
+     * @return mean volume of the last minute bars, NaN before the first one
+     */
+    public synchronized double getVolumeMean() {
+        return volumes.getMean();
+    }
+
+    public synchronized double getVolumeStandardDeviation() {
+        return volumes.getStandardDeviation();
+    }
+
+    /**
+     * @return mean spread of the last ticks, NaN before the first one
+     */
+    public synchronized double getSpreadMean() {
+        return spreads.getMean();
+    }
+
+    public synchronized double getSpreadStandardDeviation() {
+        return spreads.getStandardDeviation();
+    }
+
+    /**
+     * @return mean ticks per minute of the last complete minutes, NaN before the first one
+     */
+    public synchronized double getTickRateMean() {
+        return tickRates.getMean();
+    }
+
+    public synchronized double getTickRateStandardDeviation() {
+        return tickRates.getStandardDeviation();
+    }
+}
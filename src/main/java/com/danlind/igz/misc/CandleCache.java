@@ -0,0 +1,89 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.domain.types.Resolution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Local candle store, one memory mapped file per epic and resolution.
+ * Lets the history requests answer the already downloaded part of a window from disk,
+ * so only the missing edges have to be fetched from IG.
+ */
+public class CandleCache {
+
+    private final static Logger logger = LoggerFactory.getLogger(CandleCache.class);
+    private static final String FILE_SUFFIX = ".bars";
+
+    private final File directory;
+    private final int maxBarsPerStore;
+    private final Map<String, CandleStore> stores = new ConcurrentHashMap<>();
+
+    public CandleCache(File directory, int maxBarsPerStore) {
+        this.directory = directory;
+        this.maxBarsPerStore = maxBarsPerStore;
+        if (!directory.exists() && !directory.mkdirs()) {
+            logger.warn("Unable to create candle cache directory {}", directory.getAbsolutePath());
+        }
+    }
+
+    public CandleStore getStore(Epic epic, Resolution resolution) {
+        return stores.computeIfAbsent(storeName(epic, resolution), name -> openStore(name, resolution));
+    }
+
+    /**
+     * Opens the store file of the epic and resolution for reading, without sharing it with the plugin.
+     * The caller closes the returned store.
+     */
+    public CandleStore openReadOnly(Epic epic, Resolution resolution) throws IOException {
+        return CandleStore.openReadOnly(new File(directory, storeName(epic, resolution) + FILE_SUFFIX), TimeUnit.MINUTES.toMillis(resolution.getValue()));
+    }
+
+    public boolean hasStore(Epic epic, Resolution resolution) {
+        return stores.containsKey(storeName(epic, resolution)) || new File(directory, storeName(epic, resolution) + FILE_SUFFIX).exists();
+    }
+
+    /**
+     * @return the epics with a store file of the resolution, sorted by name
+     */
+    public List<Epic> getCachedEpics(Resolution resolution) {
+        String suffix = "_" + resolution.name() + FILE_SUFFIX;
+        String[] names = directory.list((dir, name) -> name.endsWith(suffix) && name.length() > suffix.length());
+        if (Objects.isNull(names)) {
+            return Collections.emptyList();
+        }
+        return Arrays.stream(names)
+            .sorted()
+            .map(name -> new Epic(name.substring(0, name.length() - suffix.length())))
+            .collect(Collectors.toList());
+    }
+
+    public void close() {
+        stores.values().forEach(CandleStore::close);
+        stores.clear();
+    }
+
+    private CandleStore openStore(String name, Resolution resolution) {
+        try {
+            logger.debug("Opening candle cache {}", name);
+            return new CandleStore(new File(directory, name + FILE_SUFFIX), TimeUnit.MINUTES.toMillis(resolution.getValue()), maxBarsPerStore);
+        } catch (IOException e) {
+            throw new RuntimeException("Exception when opening candle cache " + name, e);
+        }
+    }
+
+    private static String storeName(Epic epic, Resolution resolution) {
+        return epic.getName() + "_" + resolution.name();
+    }
+}
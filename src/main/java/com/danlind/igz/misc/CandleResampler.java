@@ -0,0 +1,49 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.CandleSeries;
+
+/**
+ * Builds candles of a longer bar period out of finer candles.
+ * Bars are aligned to multiples of the bar period since epoch, which for periods dividing a day means aligned to UTC midnight.
+ */
+public class CandleResampler {
+
+    private CandleResampler() {
+    }
+
+    /**
+     * @param source finer candles, ordered oldest first
+     * @param barMillis period of the resulting candles, must be a multiple of the source period
+     * @return resampled candles, ordered oldest first
+     */
+    public static CandleSeries resample(CandleSeries source, long barMillis) {
+        CandleSeries target = new CandleSeries(source.size());
+        int i = 0;
+        while (i < source.size()) {
+            long barTime = Math.floorDiv(source.getTime(i), barMillis) * barMillis;
+            double openBid = source.get(i, CandleSeries.OPEN_BID);
+            double openAsk = source.get(i, CandleSeries.OPEN_ASK);
+            double highBid = source.get(i, CandleSeries.HIGH_BID);
+            double highAsk = source.get(i, CandleSeries.HIGH_ASK);
+            double lowBid = source.get(i, CandleSeries.LOW_BID);
+            double lowAsk = source.get(i, CandleSeries.LOW_ASK);
+            double volume = 0;
+            int last = i;
+            for (; i < source.size() && source.getTime(i) < barTime + barMillis; i++) {
+                highBid = Math.max(highBid, source.get(i, CandleSeries.HIGH_BID));
+                highAsk = Math.max(highAsk, source.get(i, CandleSeries.HIGH_ASK));
+                lowBid = Math.min(lowBid, source.get(i, CandleSeries.LOW_BID));
+                lowAsk = Math.min(lowAsk, source.get(i, CandleSeries.LOW_ASK));
+                volume += source.getVolume(i);
+                last = i;
+            }
+            target.add(barTime,
+                openBid, openAsk,
+                highBid, highAsk,
+                lowBid, lowAsk,
+                source.getCloseBid(last), source.getCloseAsk(last),
+                volume);
+        }
+        return target;
+    }
+}
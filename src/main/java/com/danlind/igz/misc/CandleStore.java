@@ -0,0 +1,324 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.CandleSeries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory mapped file holding the candles of one epic and resolution, ordered oldest first.
+ * Besides the candles, the header keeps the time range that is known to be complete, i.e. every candle
+ * IG has inside [coveredFrom, coveredTo] is present in the file. Gaps like weekends are part of that range.
+ */
+public class CandleStore {
+
+    private final static Logger logger = LoggerFactory.getLogger(CandleStore.class);
+
+    private static final int MAGIC = 0x49475A43; // IGZC
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = Long.BYTES + CandleSeries.FIELDS * Double.BYTES;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int RECORD_SIZE_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+    private static final int COVERED_FROM_OFFSET = 16;
+    private static final int COVERED_TO_OFFSET = 24;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int COMPACTION_PERCENT = 10;
+
+    private final File file;
+    private final long barMillis;
+    private final int maxBars;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int count;
+    private long coveredFrom;
+    private long coveredTo;
+
+    public CandleStore(File file, long barMillis, int maxBars) throws IOException {
+        this.file = file;
+        this.barMillis = barMillis;
+        this.maxBars = maxBars;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() >= HEADER_SIZE) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (!readHeader()) {
+                logger.warn("Candle cache file {} has an unknown format, discarding it", file.getName());
+                reset();
+            }
+        } else {
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) INITIAL_CAPACITY * RECORD_SIZE);
+            reset();
+        }
+    }
+
+    private CandleStore(File file, long barMillis, FileChannel channel, MappedByteBuffer buffer) {
+        this.file = file;
+        this.barMillis = barMillis;
+        this.maxBars = Integer.MAX_VALUE;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Opens an existing store for reading, e.g. while the plugin may still be writing to it. The file is never
+     * created, resized or rewritten, a file of unknown format is left untouched. Only the candles counted when
+     * opening are read, and a merge running meanwhile may shift them.
+     */
+    public static CandleStore openReadOnly(File file, long barMillis) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Candle cache file " + file.getName() + " is truncated");
+            }
+            CandleStore candleStore = new CandleStore(file, barMillis, channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            if (!candleStore.readHeader()) {
+                throw new IOException("Candle cache file " + file.getName() + " has an unknown format");
+            }
+            return candleStore;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return coveredTo < coveredFrom;
+    }
+
+    public synchronized long getCoveredFrom() {
+        return coveredFrom;
+    }
+
+    public synchronized long getCoveredTo() {
+        return coveredTo;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized boolean covers(long from, long to) {
+        return !isEmpty() && from >= coveredFrom && to <= coveredTo;
+    }
+
+    /**
+     * Appends all stored candles with a time inside [from, to] to the target series, oldest first
+     * @return number of candles appended
+     */
+    public synchronized int read(long from, long to, CandleSeries target) {
+        int added = 0;
+        for (int i = firstIndexAtOrAfter(from); i < count && timeAt(i) <= to; i++) {
+            readRecord(i, target);
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * Replaces the stored candles inside [from, to] with the given candles.
+     * The covered range is extended up to completeUntil, candles after that are kept but will be refreshed on the next merge.
+     * If the new range does not touch the existing one, the old candles are dropped to keep the store contiguous.
+     */
+    public synchronized void merge(CandleSeries candles, long from, long to, long completeUntil) {
+        long lastCandleTime = candles.isEmpty() ? to : Math.max(to, candles.getTime(candles.size() - 1));
+        boolean contiguous = !isEmpty() && from <= coveredTo + barMillis && to >= coveredFrom - barMillis;
+
+        CandleSeries merged = new CandleSeries(count + candles.size());
+        if (contiguous) {
+            for (int i = 0; i < count && timeAt(i) < from; i++) {
+                readRecord(i, merged);
+            }
+        }
+        for (int i = 0; i < candles.size(); i++) {
+            if (candles.getTime(i) >= from) {
+                merged.add(candles, i);
+            }
+        }
+        if (contiguous) {
+            for (int i = firstIndexAtOrAfter(lastCandleTime + 1); i < count; i++) {
+                readRecord(i, merged);
+            }
+        }
+
+        long newCoveredTo = Math.min(to, completeUntil);
+        if (contiguous) {
+            coveredFrom = Math.min(coveredFrom, from);
+            coveredTo = Math.max(coveredTo, newCoveredTo);
+        } else if (newCoveredTo >= from) {
+            coveredFrom = from;
+            coveredTo = newCoveredTo;
+        } else {
+            coveredFrom = Long.MAX_VALUE;
+            coveredTo = Long.MIN_VALUE;
+        }
+
+        write(merged);
+    }
+
+    /**
+     * Appends a candle that continues the covered range and extends the range up to it. A stored candle with the same
+     * time, e.g. one that was still forming when downloaded, is replaced. Unlike merge only the new record and the
+     * header are written and the file is not forced, which keeps appending a live bar every minute cheap. A full store
+     * drops its oldest tenth in one move, so the records are only shifted once every tenth of maxBars appends.
+     * @return false if the candle is already covered or leaves a gap after the covered range
+     */
+    public synchronized boolean append(CandleSeries candles, int index) {
+        long time = candles.getTime(index);
+        if (isEmpty() || time <= coveredTo || time > coveredTo + barMillis) {
+            return false;
+        }
+        int recordIndex = count > 0 && timeAt(count - 1) == time ? count - 1 : count;
+        if (count > 0 && timeAt(count - 1) > time) {
+            CandleSeries candle = new CandleSeries(1);
+            candle.add(candles, index);
+            merge(candle, time, time, time);
+            return true;
+        }
+        if (recordIndex >= maxBars) {
+            dropOldest(Math.max(1, maxBars * COMPACTION_PERCENT / 100));
+            recordIndex = count;
+            coveredFrom = count > 0 ? timeAt(0) : time;
+        }
+        ensureCapacity(recordIndex + 1);
+        writeRecord(recordIndex, candles, index);
+        count = recordIndex + 1;
+        coveredTo = time;
+        writeHeader();
+        return true;
+    }
+
+    public synchronized void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close candle cache file {}", file.getName(), e);
+        }
+    }
+
+    private void write(CandleSeries candles) {
+        int start = Math.max(0, candles.size() - maxBars);
+        int newCount = candles.size() - start;
+        if (start > 0) {
+            logger.debug("Candle cache {} exceeded {} bars, dropping the {} oldest", file.getName(), maxBars, start);
+            coveredFrom = candles.getTime(start);
+        }
+        ensureCapacity(newCount);
+        for (int i = 0; i < newCount; i++) {
+            writeRecord(i, candles, start + i);
+        }
+        count = newCount;
+        writeHeader();
+        buffer.force();
+    }
+
+    /*
+    Moves the remaining records to the start of the file in one bulk copy, the caller updates the covered range
+    */
+    private void dropOldest(int bars) {
+        int dropped = Math.min(bars, count);
+        ByteBuffer source = buffer.duplicate();
+        source.limit(recordOffset(count)).position(recordOffset(dropped));
+        ByteBuffer target = buffer.duplicate();
+        target.position(recordOffset(0));
+        target.put(source);
+        count -= dropped;
+        logger.debug("Candle cache {} reached {} bars, dropped the {} oldest", file.getName(), maxBars, dropped);
+    }
+
+    private void ensureCapacity(int bars) {
+        long required = HEADER_SIZE + (long) bars * RECORD_SIZE;
+        if (buffer.capacity() < required) {
+            long newSize = Math.max(required, HEADER_SIZE + (buffer.capacity() - HEADER_SIZE) * 3L / 2);
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+            } catch (IOException e) {
+                throw new RuntimeException("Exception when growing candle cache file " + file.getName(), e);
+            }
+        }
+    }
+
+    private int firstIndexAtOrAfter(long time) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timeAt(mid) < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long timeAt(int index) {
+        return buffer.getLong(recordOffset(index));
+    }
+
+    private void readRecord(int index, CandleSeries target) {
+        int offset = recordOffset(index);
+        int valueOffset = offset + Long.BYTES;
+        target.add(buffer.getLong(offset),
+            buffer.getDouble(valueOffset + CandleSeries.OPEN_BID * Double.BYTES),
+            buffer.getDouble(valueOffset + CandleSeries.OPEN_ASK * Double.BYTES),
+            buffer.getDouble(valueOffset + CandleSeries.HIGH_BID * Double.BYTES),
+            buffer.getDouble(valueOffset + CandleSeries.HIGH_ASK * Double.BYTES),
+            buffer.getDouble(valueOffset + CandleSeries.LOW_BID * Double.BYTES),
+            buffer.getDouble(valueOffset + CandleSeries.LOW_ASK * Double.BYTES),
+            buffer.getDouble(valueOffset + CandleSeries.CLOSE_BID * Double.BYTES),
+            buffer.getDouble(valueOffset + CandleSeries.CLOSE_ASK * Double.BYTES),
+            buffer.getDouble(valueOffset + CandleSeries.VOLUME * Double.BYTES));
+    }
+
+    private void writeRecord(int index, CandleSeries candles, int candleIndex) {
+        int offset = recordOffset(index);
+        buffer.putLong(offset, candles.getTime(candleIndex));
+        int valueOffset = offset + Long.BYTES;
+        for (int field = 0; field < CandleSeries.FIELDS; field++) {
+            buffer.putDouble(valueOffset + field * Double.BYTES, candles.get(candleIndex, field));
+        }
+    }
+
+    private int recordOffset(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    private boolean readHeader() {
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC
+            || buffer.getInt(VERSION_OFFSET) != VERSION
+            || buffer.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE) {
+            return false;
+        }
+        count = buffer.getInt(COUNT_OFFSET);
+        coveredFrom = buffer.getLong(COVERED_FROM_OFFSET);
+        coveredTo = buffer.getLong(COVERED_TO_OFFSET);
+        return (long) HEADER_SIZE + (long) count * RECORD_SIZE <= buffer.capacity();
+    }
+
+    private void reset() {
+        count = 0;
+        coveredFrom = Long.MAX_VALUE;
+        coveredTo = Long.MIN_VALUE;
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+        buffer.putInt(COUNT_OFFSET, count);
+        buffer.putLong(COVERED_FROM_OFFSET, coveredFrom);
+        buffer.putLong(COVERED_TO_OFFSET, coveredTo);
+    }
+}
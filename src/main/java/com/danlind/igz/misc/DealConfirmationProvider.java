@@ -0,0 +1,102 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.adapter.RestApiAdapter;
+import com.danlind.igz.adapter.StreamingApiAdapter;
+import com.danlind.igz.config.PluginProperties;
+import com.danlind.igz.domain.types.DealReference;
+import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.DealStatus;
+import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.GetDealConfirmationV1Response;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.SingleSubject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completes deal confirmations from the Lightstreamer CONFIRMS stream of the account.
+ * A confirmation may be pushed before the REST call placing the order has returned its deal reference, so streamed
+ * confirmations are kept for a while even when nobody is waiting for them yet. If the stream is down or no
+ * confirmation arrives within the configured timeout the confirmation is polled over REST instead.
+ */
+@Component
+public class DealConfirmationProvider {
+
+    private final static Logger logger = LoggerFactory.getLogger(DealConfirmationProvider.class);
+    private static final int MAX_UNCLAIMED_CONFIRMATIONS = 100;
+    private final RestApiAdapter restApiAdapter;
+    private final StreamingApiAdapter streamingApiAdapter;
+    private final PluginProperties pluginProperties;
+    private final ConcurrentHashMap<String, SingleSubject<GetDealConfirmationV1Response>> confirmations = new ConcurrentHashMap<>();
+    private final Queue<String> streamedDealReferences = new ConcurrentLinkedQueue<>();
+    private Disposable confirmsSubscription;
+
+    @Autowired
+    public DealConfirmationProvider(RestApiAdapter restApiAdapter, StreamingApiAdapter streamingApiAdapter, PluginProperties pluginProperties) {
+        this.restApiAdapter = restApiAdapter;
+        this.streamingApiAdapter = streamingApiAdapter;
+        this.pluginProperties = pluginProperties;
+    }
+
+    public void startConfirmSubscription() {
+        if (Objects.nonNull(confirmsSubscription)) {
+            confirmsSubscription.dispose();
+        }
+        confirmsSubscription = streamingApiAdapter.getConfirmsObservable(restApiAdapter.getAccountId())
+            .subscribeOn(Schedulers.io())
+            .subscribe(
+                this::onConfirmation,
+                error -> logger.error("Failed when subscribing to deal confirmations, falling back to polling", error)
+            );
+    }
+
+    public Single<Optional<GetDealConfirmationV1Response>> getDealConfirmation(DealReference dealReference) {
+        if (Objects.isNull(confirmsSubscription) || confirmsSubscription.isDisposed()) {
+            return restApiAdapter.getDealConfirmation(dealReference.getValue());
+        }
+        return confirmations.computeIfAbsent(dealReference.getValue(), key -> SingleSubject.create())
+            .timeout(pluginProperties.getDealConfirmationTimeout(), TimeUnit.MILLISECONDS)
+            .doFinally(() -> confirmations.remove(dealReference.getValue()))
+            .map(this::checkAccepted)
+            .onErrorResumeNext(error -> {
+                logger.warn("No streamed confirmation for dealReference {} within {} ms, polling instead", dealReference.getValue(), pluginProperties.getDealConfirmationTimeout());
+                return restApiAdapter.getDealConfirmation(dealReference.getValue());
+            });
+    }
+
+    private void onConfirmation(GetDealConfirmationV1Response dealConfirmation) {
+        if (Objects.isNull(dealConfirmation.getDealReference())) {
+            return;
+        }
+        logger.debug("Received streamed confirmation for dealReference {}", dealConfirmation.getDealReference());
+        confirmations.computeIfAbsent(dealConfirmation.getDealReference(), key -> SingleSubject.create())
+            .onSuccess(dealConfirmation);
+
+        streamedDealReferences.add(dealConfirmation.getDealReference());
+        while (streamedDealReferences.size() > MAX_UNCLAIMED_CONFIRMATIONS) {
+            String evicted = streamedDealReferences.poll();
+            if (Objects.nonNull(evicted)) {
+                confirmations.remove(evicted);
+            }
+        }
+    }
+
+    private Optional<GetDealConfirmationV1Response> checkAccepted(GetDealConfirmationV1Response dealConfirmation) {
+        if (dealConfirmation.getDealStatus() == DealStatus.ACCEPTED) {
+            logger.debug("Deal accepted for dealReference {}", dealConfirmation.getDealReference());
+            return Optional.of(dealConfirmation);
+        } else {
+            logger.warn("Order with deal id {} was rejected with reason code {}", dealConfirmation.getDealId(), dealConfirmation.getReason());
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.danlind.igz.misc;
+
+/**
+ * Parses the plain decimal prices sent by Lightstreamer, e.g. "1.09345" or "-12.5", without allocating.
+ * The digits are collected into a long and divided by a power of ten, which is exact as long as both fit in the
+ * mantissa of a double, so the result is the same as from Double.parseDouble. Anything else, exponents or too many
+ * digits, is handed to Double.parseDouble.
+ */
+public final class DecimalParser {
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private DecimalParser() {
+    }
+
+    /**
+     * @return the parsed value, NaN for a null or empty value
+     */
+    public static double parse(CharSequence value) {
+        if (value == null || value.length() == 0) {
+            return Double.NaN;
+        }
+        int length = value.length();
+        int index = 0;
+        boolean negative = false;
+        char first = value.charAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            index++;
+        }
+        long mantissa = 0;
+        int scale = -1;
+        int digits = 0;
+        for (; index < length; index++) {
+            char c = value.charAt(index);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+                if (mantissa > MAX_EXACT_MANTISSA) {
+                    return Double.parseDouble(value.toString());
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return Double.parseDouble(value.toString());
+            }
+        }
+        if (digits == 0 || scale >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(value.toString());
+        }
+        double result = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -result : result;
+    }
+}
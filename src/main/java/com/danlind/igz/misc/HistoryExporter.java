@@ -0,0 +1,263 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.CandleSeries;
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.domain.types.Resolution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Exports the local history of the plugin into Zorro history files, so backtests can use it without downloading it
+ * again. The minute candles of the candle cache are written to ASSET_YYYY.t6 files and the recorded ticks to
+ * ASSET_YYYY.t1 files, one per UTC year and newest first as Zorro expects. Bars use the ask prices with the spread
+ * as value, like the bars returned by BrokerHistory2, ticks use the ask price. Only the part of the candle cache that
+ * is known to be complete is exported.
+ * <p>
+ * Runs next to the plugin jar, while Zorro is closed or running, the cache files are only opened for reading:
+ * java -cp igzplugin.jar com.danlind.igz.misc.HistoryExporter pluginDirectory outputDirectory [epic[=asset] ...]
+ * <br>
+ * Without epics, every epic found in the candle cache or the tick journals is exported under its own name.
+ */
+public class HistoryExporter {
+
+    private final static Logger logger = LoggerFactory.getLogger(HistoryExporter.class);
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern JOURNAL_NAME = Pattern.compile("(\\d{8})_(\\d+)" + Pattern.quote(TickRecorder.FILE_SUFFIX));
+    private static final Comparator<Matcher> JOURNAL_ORDER = Comparator.<Matcher, String>comparing(matcher -> matcher.group(1))
+        .thenComparingInt(matcher -> Integer.parseInt(matcher.group(2)));
+
+    private final CandleCache candleCache;
+    private final File tickDirectory;
+    private final File outputDirectory;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CandleSeries candles = new CandleSeries((int) TimeUnit.DAYS.toMinutes(1));
+
+    public HistoryExporter(File pluginDirectory, File outputDirectory) {
+        this.candleCache = new CandleCache(new File(pluginDirectory, "cache"), Integer.MAX_VALUE);
+        this.tickDirectory = new File(pluginDirectory, "ticks");
+        this.outputDirectory = outputDirectory;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            logger.error("Usage: HistoryExporter pluginDirectory outputDirectory [epic[=asset] ...]");
+            System.exit(1);
+        }
+        File outputDirectory = new File(args[1]);
+        if (!outputDirectory.exists() && !outputDirectory.mkdirs()) {
+            logger.error("Unable to create output directory {}", outputDirectory.getAbsolutePath());
+            System.exit(1);
+        }
+
+        HistoryExporter exporter = new HistoryExporter(new File(args[0]), outputDirectory);
+        boolean failed = false;
+        try {
+            Map<Epic, String> assets = args.length > 2
+                ? parseAssets(Arrays.copyOfRange(args, 2, args.length))
+                : exporter.findEpics().stream().collect(Collectors.toMap(epic -> epic, Epic::getName, (a, b) -> a, LinkedHashMap::new));
+            if (assets.isEmpty()) {
+                logger.warn("No cached candles or recorded ticks found in {}", args[0]);
+            }
+            for (Map.Entry<Epic, String> asset : assets.entrySet()) {
+                try {
+                    int bars = exporter.exportBars(asset.getKey(), asset.getValue());
+                    long ticks = exporter.exportTicks(asset.getKey(), asset.getValue());
+                    logger.info("Exported {} bars and {} ticks of {} as {}", bars, ticks, asset.getKey().getName(), asset.getValue());
+                } catch (IOException e) {
+                    logger.error("Failed to export {}", asset.getKey().getName(), e);
+                    failed = true;
+                }
+            }
+        } finally {
+            exporter.close();
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * @return the epics with cached minute candles or recorded ticks, sorted by name
+     */
+    public List<Epic> findEpics() {
+        Set<String> names = new TreeSet<>();
+        candleCache.getCachedEpics(Resolution.MINUTE).forEach(epic -> names.add(epic.getName()));
+        File[] epicDirectories = tickDirectory.listFiles(File::isDirectory);
+        if (Objects.nonNull(epicDirectories)) {
+            Arrays.stream(epicDirectories).forEach(directory -> names.add(directory.getName()));
+        }
+        return names.stream().map(Epic::new).collect(Collectors.toList());
+    }
+
+    /**
+     * Writes the complete part of the cached minute candles of the epic to .t6 files
+     *
+     * @return number of bars written
+     */
+    public int exportBars(Epic epic, String asset) throws IOException {
+        if (!candleCache.hasStore(epic, Resolution.MINUTE)) {
+            return 0;
+        }
+        CandleStore candleStore = candleCache.openReadOnly(epic, Resolution.MINUTE);
+        try {
+            return exportBars(candleStore, asset);
+        } finally {
+            candleStore.close();
+        }
+    }
+
+    private int exportBars(CandleStore candleStore, String asset) throws IOException {
+        if (candleStore.isEmpty()) {
+            return 0;
+        }
+        long coveredFrom = candleStore.getCoveredFrom();
+        long coveredTo = candleStore.getCoveredTo();
+        try (YearFiles yearFiles = new YearFiles(asset, ZorroHistoryWriter.T6_SUFFIX)) {
+            //One day at a time from the end, so the candles can be written newest first without reading the whole store
+            for (long dayStart = Math.floorDiv(coveredTo, DAY_MILLIS) * DAY_MILLIS; dayStart + DAY_MILLIS > coveredFrom; dayStart -= DAY_MILLIS) {
+                candles.clear();
+                candleStore.read(Math.max(dayStart, coveredFrom), Math.min(dayStart + DAY_MILLIS - 1, coveredTo), candles);
+                for (int i = candles.size() - 1; i >= 0; i--) {
+                    yearFiles.getWriter(candles.getTime(i)).writeT6(
+                        TimeConvert.getOLEDateFromMillisRounded(candles.getTime(i)),
+                        candles.getOpenAsk(i),
+                        candles.getCloseAsk(i),
+                        candles.getHighAsk(i),
+                        candles.getLowAsk(i),
+                        candles.getSpread(i),
+                        candles.getVolume(i));
+                }
+            }
+            return (int) yearFiles.getRecords();
+        }
+    }
+
+    /**
+     * Writes the recorded ticks of the epic to .t1 files, journals that cannot be read are skipped
+     *
+     * @return number of ticks written
+     */
+    public long exportTicks(Epic epic, String asset) throws IOException {
+        File[] journalFiles = new File(tickDirectory, epic.getName()).listFiles((directory, name) -> JOURNAL_NAME.matcher(name).matches());
+        if (Objects.isNull(journalFiles) || journalFiles.length == 0) {
+            return 0;
+        }
+        List<File> newestFirst = Arrays.stream(journalFiles)
+            .sorted(Comparator.comparing(HistoryExporter::matchJournalName, JOURNAL_ORDER).reversed())
+            .collect(Collectors.toList());
+
+        try (YearFiles yearFiles = new YearFiles(asset, ZorroHistoryWriter.T1_SUFFIX)) {
+            for (File journalFile : newestFirst) {
+                TickJournal journal;
+                try {
+                    journal = TickJournal.openReadOnly(journalFile);
+                } catch (IOException e) {
+                    logger.warn("Skipping tick journal {}: {}", journalFile.getPath(), e.getMessage());
+                    continue;
+                }
+                try {
+                    for (int i = journal.size() - 1; i >= 0; i--) {
+                        double ask = journal.getAsk(i);
+                        if (!Double.isNaN(ask)) {
+                            long time = journal.getTime(i);
+                            yearFiles.getWriter(time).writeT1(TimeConvert.getOLEDateFromMillis(time), ask);
+                        }
+                    }
+                } finally {
+                    journal.close();
+                }
+            }
+            return yearFiles.getRecords();
+        }
+    }
+
+    public void close() {
+        candleCache.close();
+    }
+
+    /**
+     * @param arguments epics, each optionally followed by =asset to name the files after the Zorro asset
+     */
+    static Map<Epic, String> parseAssets(String[] arguments) {
+        Map<Epic, String> assets = new LinkedHashMap<>();
+        for (String argument : arguments) {
+            int separator = argument.indexOf('=');
+            if (separator < 0) {
+                assets.put(new Epic(argument), argument);
+            } else {
+                assets.put(new Epic(argument.substring(0, separator)), argument.substring(separator + 1));
+            }
+        }
+        return assets;
+    }
+
+    private static Matcher matchJournalName(File file) {
+        Matcher matcher = JOURNAL_NAME.matcher(file.getName());
+        matcher.matches();
+        return matcher;
+    }
+
+    /*
+    The history files of one asset, written newest first, so a new file is started whenever a record falls into an
+    earlier year. Zorro drops the slash of asset names like EUR/USD from its file names.
+    */
+    private class YearFiles implements Closeable {
+
+        private final String fileNamePrefix;
+        private final String suffix;
+        private ZorroHistoryWriter writer;
+        private long yearStart = Long.MAX_VALUE;
+        private long records;
+
+        private YearFiles(String asset, String suffix) {
+            this.fileNamePrefix = asset.replace("/", "") + "_";
+            this.suffix = suffix;
+        }
+
+        private ZorroHistoryWriter getWriter(long millis) throws IOException {
+            if (millis < yearStart) {
+                closeWriter();
+                LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(millis, DAY_MILLIS));
+                yearStart = date.withDayOfYear(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+                writer = new ZorroHistoryWriter(new File(outputDirectory, fileNamePrefix + date.getYear() + suffix), buffer);
+            }
+            return writer;
+        }
+
+        private long getRecords() {
+            return records + (Objects.isNull(writer) ? 0 : writer.getRecords());
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeWriter();
+        }
+
+        private void closeWriter() throws IOException {
+            if (Objects.nonNull(writer)) {
+                writer.close();
+                logger.debug("Wrote {} records to {}", writer.getRecords(), writer.getFile().getName());
+                records += writer.getRecords();
+                writer = null;
+            }
+        }
+    }
+}
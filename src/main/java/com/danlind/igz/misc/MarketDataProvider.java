@@ -1,10 +1,14 @@
 package com.danlind.igz.misc;
 
 import com.danlind.igz.adapter.RestApiAdapter;
+import com.danlind.igz.adapter.StreamingApiAdapter;
+import com.danlind.igz.config.PluginProperties;
 import com.danlind.igz.config.ZorroReturnValues;
 import com.danlind.igz.domain.ContractDetails;
+import com.danlind.igz.domain.MarketUpdate;
 import com.danlind.igz.domain.types.Epic;
 import com.danlind.igz.ig.api.client.rest.dto.markets.getMarketDetailsV3.MarketStatus;
+import io.reactivex.Flowable;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
 import org.slf4j.Logger;
@@ -12,21 +16,41 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the contract details of all subscribed epics.
+ * Market status and snapshot prices are pushed on a MARKET subscription per epic. A single timer refreshes epics
+ * without a live market stream, batched into getMarketDetailsListV2 requests of at most marketDetailsBatchSize epics,
+ * and every marketDataConsistencyCheckInterval all subscribed epics are refreshed as a consistency check.
+ */
 @Component
 public class MarketDataProvider {
 
     private final static Logger logger = LoggerFactory.getLogger(MarketDataProvider.class);
     private final RestApiAdapter restApiAdapter;
-    private final HashMap<Epic, ContractDetails> contractDetailsMap = new HashMap<>();
-    private HashMap<Epic, Disposable> marketDetailsSubscriptions = new HashMap<>();
+    private final StreamingApiAdapter streamingApiAdapter;
+    private final PluginProperties pluginProperties;
+    private final PriceSnapshotStore priceSnapshotStore;
+    private final ConcurrentHashMap<Epic, ContractDetails> contractDetailsMap = new ConcurrentHashMap<>();
+    private final Set<Epic> refreshedEpics = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Epic, Disposable> marketSubscriptions = new ConcurrentHashMap<>();
+    private Disposable marketDetailsRefresh;
+    private long lastConsistencyCheck;
 
     @Autowired
-    public MarketDataProvider(RestApiAdapter restApiAdapter) {
+    public MarketDataProvider(RestApiAdapter restApiAdapter, StreamingApiAdapter streamingApiAdapter, PluginProperties pluginProperties, PriceSnapshotStore priceSnapshotStore) {
         this.restApiAdapter = restApiAdapter;
+        this.streamingApiAdapter = streamingApiAdapter;
+        this.pluginProperties = pluginProperties;
+        this.priceSnapshotStore = priceSnapshotStore;
     }
 
     private int isEpicTradable(Epic epic) {
@@ -45,8 +69,11 @@ public class MarketDataProvider {
     }
 
     public void cancelSubscription(Epic epic) {
-        marketDetailsSubscriptions.get(epic).dispose();
-        marketDetailsSubscriptions.remove(epic);
+        refreshedEpics.remove(epic);
+        Disposable marketSubscription = marketSubscriptions.remove(epic);
+        if (Objects.nonNull(marketSubscription)) {
+            marketSubscription.dispose();
+        }
     }
 
     public Set<Epic> getAllSubscribedEpics() {
@@ -60,23 +87,117 @@ public class MarketDataProvider {
 
     public void updateMarketDetails(Epic epic) {
         ContractDetails contractDetails = restApiAdapter.getContractDetailsBlocking(epic).blockingGet();
-        contractDetailsMap.put(epic, contractDetails);
+        storeContractDetails(epic, contractDetails);
+        refreshedEpics.add(epic);
+        subscribeToMarketUpdates(epic);
+        startMarketDetailsRefresh();
+    }
+
+    /**
+     * Loads the contract details of several epics with one list request per marketDetailsBatchSize epics.
+     * If a list request fails, the epics of that batch are loaded one by one so a single unknown epic doesn't fail
+     * the others.
+     * @return the epics contract details were loaded for
+     */
+    public Set<Epic> updateMarketDetails(List<Epic> epics) {
+        int batchSize = Math.max(1, pluginProperties.getMarketDetailsBatchSize());
+        Set<Epic> updatedEpics = new HashSet<>();
+        for (int from = 0; from < epics.size(); from += batchSize) {
+            List<Epic> batch = epics.subList(from, Math.min(epics.size(), from + batchSize));
+            try {
+                restApiAdapter.getContractDetailsList(batch).blockingGet().stream()
+                    .filter(contractDetails -> batch.contains(contractDetails.getEpic()))
+                    .forEach(contractDetails -> {
+                        storeContractDetails(contractDetails.getEpic(), contractDetails);
+                        updatedEpics.add(contractDetails.getEpic());
+                    });
+            } catch (Exception e) {
+                logger.warn("Failed to load contract details for {} epics in one request, loading them one by one", batch.size());
+                batch.forEach(epic -> {
+                    try {
+                        storeContractDetails(epic, restApiAdapter.getContractDetailsBlocking(epic).blockingGet());
+                        updatedEpics.add(epic);
+                    } catch (Exception epicException) {
+                        logger.error("Failed to load contract details for {}", epic.getName(), epicException);
+                    }
+                });
+            }
+        }
+        updatedEpics.forEach(epic -> {
+            refreshedEpics.add(epic);
+            subscribeToMarketUpdates(epic);
+        });
+        startMarketDetailsRefresh();
+        return updatedEpics;
+    }
 
-        if (Objects.nonNull(marketDetailsSubscriptions.get(epic))) {
-            logger.debug("Disposing of existing market data subscription for epic {}", epic.getName());
-            marketDetailsSubscriptions.get(epic).dispose();
-            marketDetailsSubscriptions.remove(epic);
+    private void subscribeToMarketUpdates(Epic epic) {
+        Disposable existingSubscription = marketSubscriptions.remove(epic);
+        if (Objects.nonNull(existingSubscription)) {
+            logger.debug("Disposing of existing market subscription for epic {}", epic.getName());
+            existingSubscription.dispose();
         }
 
-        marketDetailsSubscriptions.put(epic,restApiAdapter.getContractDetailsFlowable(epic)
+        marketSubscriptions.put(epic, streamingApiAdapter.getMarketObservable(epic)
             .subscribeOn(Schedulers.io())
             .subscribe(
-                updatedContractDetails -> {
-                    logger.debug("Updating contract details for {}",updatedContractDetails.getEpic().getName());
-                    contractDetailsMap.put(epic, updatedContractDetails);
-                }
+                this::applyMarketUpdate,
+                error -> logger.error("Error subscribing to market updates for {}, falling back to polling", epic.getName(), error),
+                () -> logger.info("Received complete signal from market stream for epic {}", epic.getName())
             ));
+    }
+
+    private void applyMarketUpdate(MarketUpdate marketUpdate) {
+        ContractDetails updatedContractDetails = contractDetailsMap.computeIfPresent(marketUpdate.getEpic(), (epic, contractDetails) -> {
+            if (contractDetails.getMarketStatus() != marketUpdate.getMarketStatus()) {
+                logger.info("Market status for {} changed from {} to {}", epic.getName(), contractDetails.getMarketStatus(), marketUpdate.getMarketStatus());
+            }
+            return contractDetails.withMarketUpdate(marketUpdate);
+        });
+        if (Objects.nonNull(updatedContractDetails)) {
+            priceSnapshotStore.updateContractDetails(marketUpdate.getEpic(), updatedContractDetails);
+        }
+    }
+
+    private void storeContractDetails(Epic epic, ContractDetails contractDetails) {
+        contractDetailsMap.put(epic, contractDetails);
+        priceSnapshotStore.updateContractDetails(epic, contractDetails);
+    }
+
+    private boolean isStreaming(Epic epic) {
+        Disposable marketSubscription = marketSubscriptions.get(epic);
+        return Objects.nonNull(marketSubscription) && !marketSubscription.isDisposed();
+    }
 
+    private List<Epic> getEpicsToRefresh() {
+        long now = System.currentTimeMillis();
+        if (now - lastConsistencyCheck >= pluginProperties.getMarketDataConsistencyCheckInterval()) {
+            lastConsistencyCheck = now;
+            return new ArrayList<>(refreshedEpics);
+        }
+        return refreshedEpics.stream().filter(epic -> !isStreaming(epic)).collect(Collectors.toList());
+    }
 
+    private synchronized void startMarketDetailsRefresh() {
+        if (Objects.nonNull(marketDetailsRefresh) && !marketDetailsRefresh.isDisposed()) {
+            return;
+        }
+        logger.debug("Starting market data refresh every {} ms", pluginProperties.getRefreshMarketDataInterval());
+        marketDetailsRefresh = Flowable.interval(pluginProperties.getRefreshMarketDataInterval(), TimeUnit.MILLISECONDS, Schedulers.io())
+            .onBackpressureDrop()
+            .concatMap(x -> Flowable.fromIterable(getEpicsToRefresh())
+                .buffer(Math.max(1, pluginProperties.getMarketDetailsBatchSize()))
+                .concatMap(epics -> restApiAdapter.getContractDetailsList(epics)
+                    .toFlowable()
+                    .onErrorResumeNext(Flowable.<List<ContractDetails>>empty())))
+            .subscribe(
+                updatedContractDetailsList -> updatedContractDetailsList.stream()
+                    .filter(updatedContractDetails -> refreshedEpics.contains(updatedContractDetails.getEpic()))
+                    .forEach(updatedContractDetails -> {
+                        logger.debug("Updating contract details for {}", updatedContractDetails.getEpic().getName());
+                        storeContractDetails(updatedContractDetails.getEpic(), updatedContractDetails);
+                    }),
+                error -> logger.error("Market data refresh stopped", error)
+            );
     }
 }
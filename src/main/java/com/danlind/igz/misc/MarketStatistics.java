@@ -0,0 +1,57 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.config.PluginProperties;
+import com.danlind.igz.domain.types.Epic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rolling volume, spread and tick rate statistics of the subscribed assets, see {@link AssetStatistics}.
+ * The statistics of an asset are created when it is registered and kept for the lifetime of the plugin, so callers
+ * on the tick path can hold on to them instead of looking them up per tick.
+ */
+@Component
+public class MarketStatistics {
+
+    private final Map<Epic, AssetStatistics> statistics = new ConcurrentHashMap<>();
+    private final int volumeWindow;
+    private final int spreadWindow;
+    private final int tickRateWindow;
+
+    @Autowired
+    public MarketStatistics(PluginProperties pluginProperties) {
+        this(pluginProperties.getStatisticsVolumeWindow(), pluginProperties.getStatisticsSpreadWindow(), pluginProperties.getStatisticsTickRateWindow());
+    }
+
+    /**
+     * @param volumeWindow   minute bars the volume statistics cover
+     * @param spreadWindow   ticks the spread statistics cover
+     * @param tickRateWindow minutes the tick rate statistics cover
+     */
+    public MarketStatistics(int volumeWindow, int spreadWindow, int tickRateWindow) {
+        this.volumeWindow = volumeWindow;
+        this.spreadWindow = spreadWindow;
+        this.tickRateWindow = tickRateWindow;
+    }
+
+    public int getVolumeWindow() {
+        return volumeWindow;
+    }
+
+    /**
+     * @return the statistics of the epic, created on first registration
+     */
+    public AssetStatistics register(Epic epic) {
+        return statistics.computeIfAbsent(epic, key -> new AssetStatistics(volumeWindow, spreadWindow, tickRateWindow));
+    }
+
+    /**
+     * @return the statistics of the epic, null if it was never registered
+     */
+    public AssetStatistics get(Epic epic) {
+        return statistics.get(epic);
+    }
+}
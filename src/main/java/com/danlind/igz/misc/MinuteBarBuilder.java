@@ -0,0 +1,111 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.CandleSeries;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Folds the ticks of one asset into one minute bid/ask bars, the live bar can be read before it is completed.
+ * A bar is completed by the first tick of a later minute and handed to the listener. The bar a subscription starts
+ * in misses the ticks before it, so it is neither completed nor read as live bar.
+ * The volume of a bar is the sum of the last traded volumes of its ticks, or the tick count for markets without
+ * traded volume, which is how IG fills the volume of its own candles for those markets.
+ */
+public class MinuteBarBuilder {
+
+    public static final long BAR_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long NO_BAR = Long.MIN_VALUE;
+
+    private Consumer<CandleSeries> listener = bar -> {
+    };
+    private long barTime = NO_BAR;
+    private boolean complete;
+    private double openBid;
+    private double openAsk;
+    private double highBid;
+    private double highAsk;
+    private double lowBid;
+    private double lowAsk;
+    private double closeBid;
+    private double closeAsk;
+    private double tradedVolume;
+    private int ticks;
+
+    /**
+     * Starts a new subscription, the bar it starts in is treated as partial
+     */
+    public synchronized void start(Consumer<CandleSeries> listener) {
+        this.listener = listener;
+        this.barTime = NO_BAR;
+    }
+
+    /**
+     * @param time         tick time in epoch millis
+     * @param tradedVolume last traded volume of the tick, NaN if the market has none
+     */
+    public void onTick(long time, double bid, double ask, double tradedVolume) {
+        if (Double.isNaN(bid) || Double.isNaN(ask)) {
+            return;
+        }
+        CandleSeries completedBar;
+        Consumer<CandleSeries> currentListener;
+        synchronized (this) {
+            completedBar = fold(time, bid, ask, tradedVolume);
+            currentListener = listener;
+        }
+        if (Objects.nonNull(completedBar)) {
+            currentListener.accept(completedBar);
+        }
+    }
+
+    /**
+     * Appends the bar being built to the target series
+     *
+     * @return false if there is no live bar or it misses ticks from before the subscription
+     */
+    public synchronized boolean readLiveBar(CandleSeries target) {
+        if (barTime == NO_BAR || !complete) {
+            return false;
+        }
+        addBar(target);
+        return true;
+    }
+
+    private CandleSeries fold(long time, double bid, double ask, double volume) {
+        long tickBarTime = Math.floorDiv(time, BAR_MILLIS) * BAR_MILLIS;
+        if (barTime != NO_BAR && tickBarTime < barTime) {
+            return null;
+        }
+        CandleSeries completedBar = null;
+        if (barTime == NO_BAR || tickBarTime > barTime) {
+            if (barTime != NO_BAR && complete) {
+                completedBar = new CandleSeries(1);
+                addBar(completedBar);
+            }
+            complete = barTime != NO_BAR;
+            barTime = tickBarTime;
+            openBid = highBid = lowBid = bid;
+            openAsk = highAsk = lowAsk = ask;
+            tradedVolume = 0;
+            ticks = 0;
+        }
+        highBid = Math.max(highBid, bid);
+        highAsk = Math.max(highAsk, ask);
+        lowBid = Math.min(lowBid, bid);
+        lowAsk = Math.min(lowAsk, ask);
+        closeBid = bid;
+        closeAsk = ask;
+        if (!Double.isNaN(volume)) {
+            tradedVolume += volume;
+        }
+        ticks++;
+        return completedBar;
+    }
+
+    private void addBar(CandleSeries target) {
+        target.add(barTime, openBid, openAsk, highBid, highAsk, lowBid, lowAsk, closeBid, closeAsk,
+            tradedVolume > 0 ? tradedVolume : ticks);
+    }
+}
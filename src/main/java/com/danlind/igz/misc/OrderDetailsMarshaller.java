@@ -0,0 +1,123 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.OrderDetails;
+import com.danlind.igz.domain.types.DealId;
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.Direction;
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.hash.serialization.SizedReader;
+import net.openhft.chronicle.hash.serialization.SizedWriter;
+import net.openhft.chronicle.hash.serialization.impl.EnumMarshallable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Binary encoding of OrderDetails for the order store, replacing Java serialization.
+ * Layout: epic as stop bit length and ASCII bytes, entry level as double, direction as one byte, position size as int
+ * and deal id as stop bit length and ASCII bytes.
+ * Epics are interned on read, so reading an order for a known epic only allocates the order and its deal id.
+ */
+public final class OrderDetailsMarshaller implements SizedReader<OrderDetails>, SizedWriter<OrderDetails>,
+    EnumMarshallable<OrderDetailsMarshaller> {
+
+    public static final OrderDetailsMarshaller INSTANCE = new OrderDetailsMarshaller();
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int MAX_NAME_LENGTH = 127;
+    private static final ThreadLocal<byte[]> NAME_BUFFER = ThreadLocal.withInitial(() -> new byte[MAX_NAME_LENGTH]);
+
+    private volatile Epic[] epics = new Epic[0];
+    private volatile byte[][] epicNames = new byte[0][];
+
+    private OrderDetailsMarshaller() {
+    }
+
+    @Override
+    public long size(OrderDetails toWrite) {
+        return 1 + toWrite.getEpic().getName().length()
+            + Double.BYTES
+            + 1
+            + Integer.BYTES
+            + 1 + toWrite.getDealId().getValue().length();
+    }
+
+    @Override
+    public void write(Bytes out, long size, OrderDetails toWrite) {
+        writeName(out, toWrite.getEpic().getName());
+        out.writeDouble(toWrite.getEntryLevel());
+        out.writeByte((byte) toWrite.getDirection().ordinal());
+        out.writeInt(toWrite.getPositionSize());
+        writeName(out, toWrite.getDealId().getValue());
+    }
+
+    @Override
+    public OrderDetails read(Bytes in, long size, OrderDetails using) {
+        Epic epic = readEpic(in);
+        double entryLevel = in.readDouble();
+        Direction direction = DIRECTIONS[in.readByte()];
+        int positionSize = in.readInt();
+        byte[] name = NAME_BUFFER.get();
+        int length = readName(in, name);
+        return new OrderDetails(epic, entryLevel, direction, positionSize, new DealId(new String(name, 0, length, StandardCharsets.US_ASCII)));
+    }
+
+    @Override
+    public OrderDetailsMarshaller readResolve() {
+        return INSTANCE;
+    }
+
+    private static void writeName(Bytes out, String name) {
+        if (name.length() > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Name too long to store: " + name);
+        }
+        out.writeStopBit(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            out.writeByte((byte) name.charAt(i));
+        }
+    }
+
+    private static int readName(Bytes in, byte[] name) {
+        int length = (int) in.readStopBit();
+        for (int i = 0; i < length; i++) {
+            name[i] = in.readByte();
+        }
+        return length;
+    }
+
+    private Epic readEpic(Bytes in) {
+        byte[] name = NAME_BUFFER.get();
+        int length = readName(in, name);
+        byte[][] names = epicNames;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].length == length && equals(names[i], name, length)) {
+                return epics[i];
+            }
+        }
+        return intern(Arrays.copyOf(name, length));
+    }
+
+    private synchronized Epic intern(byte[] name) {
+        for (int i = 0; i < epicNames.length; i++) {
+            if (Arrays.equals(epicNames[i], name)) {
+                return epics[i];
+            }
+        }
+        Epic epic = new Epic(new String(name, StandardCharsets.US_ASCII));
+        Epic[] newEpics = Arrays.copyOf(epics, epics.length + 1);
+        byte[][] newEpicNames = Arrays.copyOf(epicNames, epicNames.length + 1);
+        newEpics[epics.length] = epic;
+        newEpicNames[epicNames.length] = name;
+        epics = newEpics;
+        epicNames = newEpicNames;
+        return epic;
+    }
+
+    private static boolean equals(byte[] a, byte[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,210 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.OrderDetails;
+import com.danlind.igz.domain.PositionDetails;
+import com.danlind.igz.domain.types.DealId;
+import com.danlind.igz.domain.types.DealReference;
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.Direction;
+import net.openhft.chronicle.map.ChronicleMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persisted store of the orders handed to Zorro, keyed by trade id.
+ * Orders are kept off-heap in a ChronicleMap, encoded by OrderDetailsMarshaller, and the last allocated trade id in a small memory mapped file next to it,
+ * so new trade ids are allocated in constant time and are never reused, not even after a restart. An index by DealId
+ * lets streamed position updates find their order without scanning the map.
+ * Every change is appended to a TradeJournal before it is applied, see {@link #recover(List)}.
+ */
+public class OrderStore {
+
+    private final static Logger logger = LoggerFactory.getLogger(OrderStore.class);
+    private static final OrderDetails SAMPLE_ORDER_DETAILS = new OrderDetails(new Epic("IX.D.OMX.IFD.IP"), 10000, Direction.BUY, 20, new DealId("DIAAAAA9QN6L4AU"));
+
+    private static final int MAGIC = 0x49475A4F; // IGZO
+    private static final int SEQUENCE_SIZE = 16;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int LAST_ORDER_ID_OFFSET = 8;
+    static final int INITIAL_ORDER_ID = 1000;
+
+    private final ChronicleMap<Integer, OrderDetails> orders;
+    private final ByteBuffer sequence;
+    private final TradeJournal tradeJournal;
+    private final Map<String, Integer> orderIdsByDealId = new ConcurrentHashMap<>();
+
+    public OrderStore(ChronicleMap<Integer, OrderDetails> orders, ByteBuffer sequence, TradeJournal tradeJournal) {
+        this.orders = orders;
+        this.sequence = sequence;
+        this.tradeJournal = tradeJournal;
+        if (sequence.getInt(MAGIC_OFFSET) != MAGIC) {
+            sequence.putInt(LAST_ORDER_ID_OFFSET, INITIAL_ORDER_ID);
+            sequence.putInt(MAGIC_OFFSET, MAGIC);
+        }
+        orders.forEach((orderId, orderDetails) -> {
+            orderIdsByDealId.put(orderDetails.getDealId().getValue(), orderId);
+            advanceSequence(orderId);
+        });
+    }
+
+    public static OrderStore createPersisted(File ordersFile, File sequenceFile, File journalFile, int capacity) throws IOException {
+        ChronicleMap<Integer, OrderDetails> orders = ChronicleMap
+            .of(Integer.class, OrderDetails.class)
+            .valueMarshallers(OrderDetailsMarshaller.INSTANCE, OrderDetailsMarshaller.INSTANCE)
+            .averageValue(SAMPLE_ORDER_DETAILS)
+            .entries(capacity)
+            .createOrRecoverPersistedTo(ordersFile, false);
+        try (FileChannel channel = FileChannel.open(sequenceFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            OrderStore orderStore = new OrderStore(orders, channel.map(FileChannel.MapMode.READ_WRITE, 0, SEQUENCE_SIZE), TradeJournal.createPersisted(journalFile));
+            logger.info("Opened order store with {} orders, last order id {}", orderStore.size(), orderStore.getLastOrderId());
+            return orderStore;
+        }
+    }
+
+    public static OrderStore createInMemory(int capacity) {
+        return new OrderStore(ChronicleMap
+            .of(Integer.class, OrderDetails.class)
+            .valueMarshallers(OrderDetailsMarshaller.INSTANCE, OrderDetailsMarshaller.INSTANCE)
+            .averageValue(SAMPLE_ORDER_DETAILS)
+            .entries(capacity)
+            .create(),
+            ByteBuffer.allocate(SEQUENCE_SIZE),
+            TradeJournal.createInMemory());
+    }
+
+    public synchronized int nextOrderId() {
+        int orderId = getLastOrderId() + 1;
+        sequence.putInt(LAST_ORDER_ID_OFFSET, orderId);
+        return orderId;
+    }
+
+    public OrderDetails get(int orderId) {
+        return orders.get(orderId);
+    }
+
+    public synchronized void put(int orderId, OrderDetails orderDetails) {
+        tradeJournal.recordOrderStored(orderId, orderDetails);
+        OrderDetails previous = orders.put(orderId, orderDetails);
+        if (Objects.nonNull(previous)) {
+            orderIdsByDealId.remove(previous.getDealId().getValue(), orderId);
+        }
+        orderIdsByDealId.put(orderDetails.getDealId().getValue(), orderId);
+        advanceSequence(orderId);
+    }
+
+    public synchronized void remove(int orderId) {
+        tradeJournal.recordOrderRemoved(orderId);
+        OrderDetails removed = orders.remove(orderId);
+        if (Objects.nonNull(removed)) {
+            orderIdsByDealId.remove(removed.getDealId().getValue(), orderId);
+        }
+    }
+
+    /**
+     * Must be called before the REST call that opens the position
+     */
+    public void recordOpenIntent(int orderId, Epic epic, Direction direction, double size, DealReference dealReference) {
+        tradeJournal.recordOpenIntent(orderId, epic, direction, size, dealReference);
+    }
+
+    /**
+     * Must be called before the REST call that closes the position
+     */
+    public void recordCloseIntent(int orderId, DealId dealId, double size) {
+        tradeJournal.recordCloseIntent(orderId, dealId, size);
+    }
+
+    /**
+     * Rebuilds the orders from the trade journal and the open positions on the account.
+     * Orders whose position is gone are dropped, sizes are taken from the positions, and positions opened just before
+     * the plugin stopped are found by the deal reference of their open intent and stored under the intended order id.
+     * The journal is compacted afterwards.
+     */
+    public synchronized void recover(List<PositionDetails> openPositions) {
+        TradeJournal.Replay replay = tradeJournal.replay();
+        Map<String, PositionDetails> positionsByDealId = new HashMap<>();
+        Map<String, PositionDetails> positionsByDealReference = new HashMap<>();
+        openPositions.forEach(position -> {
+            positionsByDealId.put(position.getDealId().getValue(), position);
+            position.getDealReference().ifPresent(dealReference -> positionsByDealReference.put(dealReference.getValue(), position));
+        });
+
+        Map<Integer, OrderDetails> journaledOrders = new HashMap<>(replay.getOrders());
+        orders.forEach((orderId, orderDetails) -> {
+            if (!replay.isKnown(orderId)) {
+                journaledOrders.put(orderId, orderDetails);
+            }
+        });
+        replay.getOpenIntents().values().forEach(openIntent -> {
+            advanceSequence(openIntent.getOrderId());
+            PositionDetails position = positionsByDealReference.get(openIntent.getDealReference().getValue());
+            if (Objects.nonNull(position)) {
+                logger.info("Recovered order {} for position with dealId {}, it was opened but not stored before the plugin stopped", openIntent.getOrderId(), position.getDealId().getValue());
+                journaledOrders.put(openIntent.getOrderId(), new OrderDetails(openIntent.getEpic(), position.getLevel(), openIntent.getDirection(), (int) position.getSize(), position.getDealId()));
+            }
+        });
+        replay.getCloseIntents().forEach(orderId -> logger.info("Order {} was being closed when the plugin stopped", orderId));
+
+        orders.clear();
+        orderIdsByDealId.clear();
+        journaledOrders.forEach((orderId, orderDetails) -> {
+            PositionDetails position = positionsByDealId.get(orderDetails.getDealId().getValue());
+            if (Objects.isNull(position)) {
+                logger.info("Position with dealId {} was not found, closed externally?", orderDetails.getDealId().getValue());
+            } else {
+                OrderDetails recoveredOrderDetails = new OrderDetails(orderDetails.getEpic(), orderDetails.getEntryLevel(), orderDetails.getDirection(), (int) position.getSize(), orderDetails.getDealId());
+                orders.put(orderId, recoveredOrderDetails);
+                orderIdsByDealId.put(orderDetails.getDealId().getValue(), orderId);
+            }
+            advanceSequence(orderId);
+        });
+        tradeJournal.compact(getOrders());
+        logger.info("Recovered {} open orders from {} journaled orders", orders.size(), journaledOrders.size());
+    }
+
+    public OptionalInt findOrderId(DealId dealId) {
+        Integer orderId = orderIdsByDealId.get(dealId.getValue());
+        return Objects.isNull(orderId) ? OptionalInt.empty() : OptionalInt.of(orderId);
+    }
+
+    public int size() {
+        return orders.size();
+    }
+
+    /**
+     * @return a copy of all orders, safe to iterate while orders are removed
+     */
+    public Map<Integer, OrderDetails> getOrders() {
+        return new HashMap<>(orders);
+    }
+
+    public void close() {
+        orders.close();
+        tradeJournal.close();
+    }
+
+    private int getLastOrderId() {
+        return sequence.getInt(LAST_ORDER_ID_OFFSET);
+    }
+
+    /*
+    Orders put with an id that was not allocated here, e.g. imported ones, must never be handed out again
+    */
+    private synchronized void advanceSequence(int orderId) {
+        if (orderId > getLastOrderId()) {
+            sequence.putInt(LAST_ORDER_ID_OFFSET, orderId);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.config.PluginProperties;
+import com.danlind.igz.domain.PendingOrder;
+import io.reactivex.subjects.CompletableSubject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orders sent in async order mode that are not settled yet.
+ * BrokerBuy hands Zorro a provisional trade id straight away and settles the order in the background, the trade id
+ * then either shows up in the order store or is marked as failed so BrokerTrade can report it as closed.
+ */
+@Component
+public class PendingOrders {
+
+    private final static Logger logger = LoggerFactory.getLogger(PendingOrders.class);
+    private final PluginProperties pluginProperties;
+    private final ConcurrentHashMap<Integer, PendingOrder> pendingOrders = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, CompletableSubject> settlements = new ConcurrentHashMap<>();
+    private final Set<Integer> failedOrderIds = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public PendingOrders(PluginProperties pluginProperties) {
+        this.pluginProperties = pluginProperties;
+    }
+
+    public boolean isAsyncOrderMode() {
+        return pluginProperties.isAsyncOrders();
+    }
+
+    public void add(int orderId, PendingOrder pendingOrder) {
+        settlements.put(orderId, CompletableSubject.create());
+        pendingOrders.put(orderId, pendingOrder);
+    }
+
+    /**
+     * Called once the order is stored in the order store
+     */
+    public void settle(int orderId) {
+        logger.debug("Pending order {} settled", orderId);
+        complete(orderId);
+    }
+
+    public void fail(int orderId) {
+        logger.warn("Pending order {} failed, it will be reported to Zorro as closed", orderId);
+        failedOrderIds.add(orderId);
+        complete(orderId);
+    }
+
+    public Optional<PendingOrder> getPendingOrder(int orderId) {
+        return Optional.ofNullable(pendingOrders.get(orderId));
+    }
+
+    /**
+     * @return true once for every failed order
+     */
+    public boolean removeFailed(int orderId) {
+        return failedOrderIds.remove(orderId);
+    }
+
+    /**
+     * Blocks until the order is settled or failed, returns straight away for orders that are not pending
+     */
+    public void awaitSettlement(int orderId) {
+        CompletableSubject settlement = settlements.get(orderId);
+        if (Objects.isNull(settlement)) {
+            return;
+        }
+        logger.debug("Waiting for pending order {} to settle", orderId);
+        if (!settlement.blockingAwait(pluginProperties.getAsyncOrderSettleTimeout(), TimeUnit.MILLISECONDS)) {
+            logger.warn("Pending order {} not settled within {} ms", orderId, pluginProperties.getAsyncOrderSettleTimeout());
+        }
+    }
+
+    private void complete(int orderId) {
+        pendingOrders.remove(orderId);
+        CompletableSubject settlement = settlements.remove(orderId);
+        if (Objects.nonNull(settlement)) {
+            settlement.onComplete();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.adapter.RestApiAdapter;
+import com.danlind.igz.adapter.StreamingApiAdapter;
+import com.danlind.igz.domain.PositionDetails;
+import com.danlind.igz.domain.PositionUpdate;
+import com.danlind.igz.domain.types.DealId;
+import io.reactivex.disposables.Disposable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live view of the open positions on the account.
+ * Starts from a single positions snapshot and is then kept up to date by the Lightstreamer OPU stream, so positions
+ * that are stopped out or closed on IG's side are known without polling. The stream is subscribed before the snapshot
+ * is taken and streamed updates always win over the snapshot.
+ */
+@Component
+public class PositionBook {
+
+    private final static Logger logger = LoggerFactory.getLogger(PositionBook.class);
+    private final RestApiAdapter restApiAdapter;
+    private final StreamingApiAdapter streamingApiAdapter;
+    private final ConcurrentHashMap<String, Double> openPositions = new ConcurrentHashMap<>();
+    private final Set<String> closedDealIds = ConcurrentHashMap.newKeySet();
+    private Disposable positionSubscription;
+    private volatile boolean snapshotLoaded;
+
+    @Autowired
+    public PositionBook(RestApiAdapter restApiAdapter, StreamingApiAdapter streamingApiAdapter) {
+        this.restApiAdapter = restApiAdapter;
+        this.streamingApiAdapter = streamingApiAdapter;
+    }
+
+    /**
+     * @return the positions snapshot the book was started from, for the order store recovery to reuse, empty if it
+     * could not be loaded
+     */
+    public Optional<List<PositionDetails>> startPositionSubscription() {
+        if (Objects.nonNull(positionSubscription)) {
+            positionSubscription.dispose();
+        }
+        snapshotLoaded = false;
+        openPositions.clear();
+        closedDealIds.clear();
+
+        //Subscribed on this thread, so the table is active before the snapshot is requested
+        positionSubscription = streamingApiAdapter.getPositionUpdateObservable(restApiAdapter.getAccountId())
+            .subscribe(
+                this::applyUpdate,
+                error -> logger.error("Failed when subscribing to position updates", error)
+            );
+
+        try {
+            List<PositionDetails> snapshot = restApiAdapter.getOpenPositions().blockingGet();
+            snapshot.forEach(position ->
+                openPositions.computeIfAbsent(position.getDealId().getValue(), dealId -> closedDealIds.contains(dealId) ? null : position.getSize()));
+            snapshotLoaded = true;
+            logger.info("Loaded {} open positions", openPositions.size());
+            return Optional.of(snapshot);
+        } catch (Exception e) {
+            logger.error("Unable to load open positions, position book not available", e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @return true when the snapshot is loaded and the position stream is still running
+     */
+    public boolean isAvailable() {
+        return snapshotLoaded && Objects.nonNull(positionSubscription) && !positionSubscription.isDisposed();
+    }
+
+    public boolean isOpen(DealId dealId) {
+        return openPositions.containsKey(dealId.getValue());
+    }
+
+    public boolean isClosed(DealId dealId) {
+        return closedDealIds.contains(dealId.getValue());
+    }
+
+    public OptionalDouble getPositionSize(DealId dealId) {
+        Double size = openPositions.get(dealId.getValue());
+        return Objects.isNull(size) ? OptionalDouble.empty() : OptionalDouble.of(size);
+    }
+
+    private void applyUpdate(PositionUpdate positionUpdate) {
+        String dealId = positionUpdate.getDealId().getValue();
+        if (positionUpdate.isOpen()) {
+            logger.debug("Position with dealId {} updated, size {}", dealId, positionUpdate.getSize());
+            closedDealIds.remove(dealId);
+            openPositions.put(dealId, positionUpdate.getSize());
+        } else {
+            logger.debug("Position with dealId {} closed", dealId);
+            closedDealIds.add(dealId);
+            openPositions.remove(dealId);
+        }
+    }
+}
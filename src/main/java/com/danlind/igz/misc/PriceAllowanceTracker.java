@@ -0,0 +1,86 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.config.PluginProperties;
+import com.danlind.igz.ig.api.client.rest.dto.prices.getPricesV3.Allowance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the historical price data allowance reported in the metadata of every price response.
+ * The allowance is shared by all scripts using the same API key and account, so when it runs low only
+ * requests for recent data are let through and backfills are rationed to leave a reserve.
+ */
+@Component
+public class PriceAllowanceTracker {
+
+    private final static Logger logger = LoggerFactory.getLogger(PriceAllowanceTracker.class);
+    public static final int UNKNOWN = -1;
+
+    private final PluginProperties pluginProperties;
+    private volatile int remainingAllowance = UNKNOWN;
+    private volatile int totalAllowance = UNKNOWN;
+    private volatile long allowanceExpiryMillis;
+
+    @Autowired
+    public PriceAllowanceTracker(PluginProperties pluginProperties) {
+        this.pluginProperties = pluginProperties;
+    }
+
+    public void updateAllowance(Allowance allowance) {
+        if (Objects.isNull(allowance) || Objects.isNull(allowance.getRemainingAllowance())) {
+            return;
+        }
+        boolean wasLow = isAllowanceLow();
+        remainingAllowance = allowance.getRemainingAllowance();
+        totalAllowance = Objects.isNull(allowance.getTotalAllowance()) ? totalAllowance : allowance.getTotalAllowance();
+        allowanceExpiryMillis = Objects.isNull(allowance.getAllowanceExpiry())
+            ? allowanceExpiryMillis
+            : System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(allowance.getAllowanceExpiry());
+
+        logger.debug("Price allowance remaining {} of {}, resets in {} seconds", remainingAllowance, totalAllowance, getAllowanceExpirySeconds());
+        if (!wasLow && isAllowanceLow()) {
+            logger.warn("Price allowance is running low, {} of {} data points left, only recent history will be requested until it resets in {} seconds",
+                remainingAllowance, totalAllowance, getAllowanceExpirySeconds());
+        }
+    }
+
+    public int getRemainingAllowance() {
+        return isAllowanceExpired() ? totalAllowance : remainingAllowance;
+    }
+
+    public int getTotalAllowance() {
+        return totalAllowance;
+    }
+
+    public int getAllowanceExpirySeconds() {
+        return isAllowanceExpired() ? 0 : (int) TimeUnit.MILLISECONDS.toSeconds(allowanceExpiryMillis - System.currentTimeMillis());
+    }
+
+    public boolean isAllowanceLow() {
+        return getRemainingAllowance() != UNKNOWN && getRemainingAllowance() <= getReserve();
+    }
+
+    /**
+     * @param priority true for requests of recent data, these may use the reserve
+     * @return number of data points a request may fetch without eating into the reserve
+     */
+    public int getAvailableAllowance(boolean priority) {
+        if (remainingAllowance == UNKNOWN || isAllowanceExpired()) {
+            return Integer.MAX_VALUE;
+        }
+        return priority ? remainingAllowance : Math.max(0, remainingAllowance - getReserve());
+    }
+
+    private int getReserve() {
+        return totalAllowance == UNKNOWN ? 0 : totalAllowance * pluginProperties.getHistoryAllowanceReservePercent() / 100;
+    }
+
+    private boolean isAllowanceExpired() {
+        return allowanceExpiryMillis > 0 && System.currentTimeMillis() >= allowanceExpiryMillis;
+    }
+}
@@ -0,0 +1,86 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.adapter.RestApiAdapter;
+import com.danlind.igz.config.PluginProperties;
+import com.danlind.igz.domain.CandleSeries;
+import com.danlind.igz.domain.PricePage;
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.domain.types.Resolution;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads historic prices for long date ranges.
+ * The range is split into chunks of one page each, the chunks are requested concurrently and every chunk follows
+ * the page data of its responses in case IG splits it further. Responses are decoded straight into candles
+ * and appended in chronological order.
+ */
+@Component
+public class PriceHistoryDownloader {
+
+    private final static Logger logger = LoggerFactory.getLogger(PriceHistoryDownloader.class);
+    private static final long API_TIME_PRECISION_MILLIS = 1000;
+    private final RestApiAdapter restApiAdapter;
+    private final PluginProperties pluginProperties;
+    private final PriceAllowanceTracker priceAllowanceTracker;
+
+    @Autowired
+    public PriceHistoryDownloader(RestApiAdapter restApiAdapter, PluginProperties pluginProperties, PriceAllowanceTracker priceAllowanceTracker) {
+        this.restApiAdapter = restApiAdapter;
+        this.pluginProperties = pluginProperties;
+        this.priceAllowanceTracker = priceAllowanceTracker;
+    }
+
+    public CandleSeries download(Epic epic, Resolution resolution, long startMillis, long endMillis, int accountZoneOffset) {
+        long barMillis = TimeUnit.MINUTES.toMillis(resolution.getValue());
+        int pageSize = Math.max(1, pluginProperties.getHistoryPageSize());
+        long chunkMillis = pageSize * barMillis;
+        //Both ends of the range are included, so the range holds one bar more than it spans
+        long bars = (endMillis - startMillis) / barMillis + 1;
+        int chunks = (int) Math.max(1, (bars + pageSize - 1) / pageSize);
+        logger.debug("Downloading prices for epic {}, resolution {} in {} chunks", epic.getName(), resolution.name(), chunks);
+
+        CandleSeries candles = new CandleSeries((int) Math.min(Integer.MAX_VALUE, (endMillis - startMillis) / barMillis + 1));
+        Flowable.range(0, chunks)
+            .concatMapEager(chunk -> {
+                    long chunkStart = startMillis + chunk * chunkMillis;
+                    long chunkEnd = Math.min(endMillis, chunkStart + chunkMillis - API_TIME_PRECISION_MILLIS);
+                    return downloadPages(epic, resolution, toAccountDateTime(chunkStart, accountZoneOffset), toAccountDateTime(chunkEnd, accountZoneOffset), pageSize, 1)
+                        .subscribeOn(Schedulers.io());
+                },
+                Math.max(1, pluginProperties.getHistoryMaxConcurrentRequests()),
+                1)
+            .blockingForEach(pricePage -> candles.addAll(pricePage.getCandles()));
+        return candles;
+    }
+
+    private Flowable<PricePage> downloadPages(Epic epic, Resolution resolution, String startDateTime, String endDateTime, int pageSize, int pageNumber) {
+        logger.debug("Getting prices for epic {}, date range {} - {}, page {}, resolution {}", epic.getName(), startDateTime, endDateTime, pageNumber, resolution.name());
+        return restApiAdapter.getHistoricPriceCandles(String.valueOf(pageNumber),
+            String.valueOf(pageSize),
+            String.valueOf(pageSize),
+            epic.getName(),
+            startDateTime,
+            endDateTime,
+            resolution.name())
+            .toFlowable()
+            .doOnNext(pricePage -> priceAllowanceTracker.updateAllowance(pricePage.getAllowance()))
+            .concatMap(pricePage -> pageNumber < pricePage.getTotalPages()
+                ? Flowable.just(pricePage).concatWith(downloadPages(epic, resolution, startDateTime, endDateTime, pageSize, pageNumber + 1))
+                : Flowable.just(pricePage));
+    }
+
+    private String toAccountDateTime(long millis, int accountZoneOffset) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis).truncatedTo(ChronoUnit.SECONDS), ZoneOffset.ofHours(accountZoneOffset)).toString();
+    }
+}
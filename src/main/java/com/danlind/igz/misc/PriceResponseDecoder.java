@@ -0,0 +1,157 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.CandleSeries;
+import com.danlind.igz.domain.PricePage;
+import com.danlind.igz.ig.api.client.rest.dto.prices.getPricesV3.Allowance;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming decoder for the getPricesV3 response.
+ * Bars are written straight into a CandleSeries without building the PricesItem object tree,
+ * BigDecimals or Strings for the timestamps. Only the few metadata objects per page are allocated.
+ */
+public class PriceResponseDecoder {
+
+    private final JsonFactory jsonFactory;
+
+    public PriceResponseDecoder(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    public PricePage decode(InputStream inputStream) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(inputStream)) {
+            return decode(parser);
+        }
+    }
+
+    public PricePage decode(byte[] content) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(content)) {
+            return decode(parser);
+        }
+    }
+
+    private PricePage decode(JsonParser parser) throws IOException {
+        CandleSeries candles = new CandleSeries();
+        int totalPages = 1;
+        Allowance allowance = null;
+
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected price response object but got " + parser.getCurrentToken());
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("prices".equals(field) && token == JsonToken.START_ARRAY) {
+                readPrices(parser, candles);
+            } else if ("metadata".equals(field) && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String metadataField = parser.getCurrentName();
+                    JsonToken metadataToken = parser.nextToken();
+                    if ("allowance".equals(metadataField) && metadataToken == JsonToken.START_OBJECT) {
+                        allowance = readAllowance(parser);
+                    } else if ("pageData".equals(metadataField) && metadataToken == JsonToken.START_OBJECT) {
+                        totalPages = readTotalPages(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new PricePage(candles, totalPages, allowance);
+    }
+
+    private void readPrices(JsonParser parser, CandleSeries candles) throws IOException {
+        double[] values = new double[CandleSeries.FIELDS];
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            long time = 0;
+            values[CandleSeries.VOLUME] = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("snapshotTimeUTC".equals(field) && token == JsonToken.VALUE_STRING) {
+                    time = TimeConvert.millisFromIsoDateTime(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                } else if ("openPrice".equals(field)) {
+                    readBidAsk(parser, token, values, CandleSeries.OPEN_BID, CandleSeries.OPEN_ASK);
+                } else if ("highPrice".equals(field)) {
+                    readBidAsk(parser, token, values, CandleSeries.HIGH_BID, CandleSeries.HIGH_ASK);
+                } else if ("lowPrice".equals(field)) {
+                    readBidAsk(parser, token, values, CandleSeries.LOW_BID, CandleSeries.LOW_ASK);
+                } else if ("closePrice".equals(field)) {
+                    readBidAsk(parser, token, values, CandleSeries.CLOSE_BID, CandleSeries.CLOSE_ASK);
+                } else if ("lastTradedVolume".equals(field) && token.isNumeric()) {
+                    values[CandleSeries.VOLUME] = parser.getDoubleValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            candles.add(time,
+                values[CandleSeries.OPEN_BID], values[CandleSeries.OPEN_ASK],
+                values[CandleSeries.HIGH_BID], values[CandleSeries.HIGH_ASK],
+                values[CandleSeries.LOW_BID], values[CandleSeries.LOW_ASK],
+                values[CandleSeries.CLOSE_BID], values[CandleSeries.CLOSE_ASK],
+                values[CandleSeries.VOLUME]);
+        }
+    }
+
+    /*
+    Some markets only have one side of the price, a missing bid is replaced with the ask and vice versa
+    */
+    private void readBidAsk(JsonParser parser, JsonToken token, double[] values, int bidField, int askField) throws IOException {
+        double bid = Double.NaN;
+        double ask = Double.NaN;
+        if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+                if ("bid".equals(field) && valueToken.isNumeric()) {
+                    bid = parser.getDoubleValue();
+                } else if ("ask".equals(field) && valueToken.isNumeric()) {
+                    ask = parser.getDoubleValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        values[bidField] = Double.isNaN(bid) ? ask : bid;
+        values[askField] = Double.isNaN(ask) ? bid : ask;
+    }
+
+    private Allowance readAllowance(JsonParser parser) throws IOException {
+        Allowance allowance = new Allowance();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (!token.isNumeric()) {
+                parser.skipChildren();
+            } else if ("remainingAllowance".equals(field)) {
+                allowance.setRemainingAllowance(parser.getIntValue());
+            } else if ("totalAllowance".equals(field)) {
+                allowance.setTotalAllowance(parser.getIntValue());
+            } else if ("allowanceExpiry".equals(field)) {
+                allowance.setAllowanceExpiry(parser.getIntValue());
+            }
+        }
+        return allowance;
+    }
+
+    private int readTotalPages(JsonParser parser) throws IOException {
+        int totalPages = 1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("totalPages".equals(field) && token.isNumeric()) {
+                totalPages = parser.getIntValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return totalPages;
+    }
+}
@@ -0,0 +1,63 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.ContractDetails;
+import com.danlind.igz.domain.types.Epic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Preassigned snapshot slots for all subscribed assets, indexed by an integer asset handle.
+ * Handles are assigned in subscription order and stay valid for the lifetime of the plugin, so callers resolve the
+ * handle once and then read the slot without hashing. The slot array is copied on registration only.
+ */
+@Component
+public class PriceSnapshotStore {
+
+    private final static Logger logger = LoggerFactory.getLogger(PriceSnapshotStore.class);
+    public static final int UNKNOWN_HANDLE = -1;
+    private final ConcurrentHashMap<Epic, AssetSlot> slotsByEpic = new ConcurrentHashMap<>();
+    private volatile AssetSlot[] slots = new AssetSlot[0];
+
+    public synchronized AssetSlot register(Epic epic) {
+        AssetSlot slot = slotsByEpic.get(epic);
+        if (Objects.isNull(slot)) {
+            AssetSlot[] newSlots = Arrays.copyOf(slots, slots.length + 1);
+            slot = new AssetSlot(epic, slots.length);
+            newSlots[slot.getHandle()] = slot;
+            slots = newSlots;
+            slotsByEpic.put(epic, slot);
+            logger.debug("Assigned asset handle {} to epic {}", slot.getHandle(), epic.getName());
+        }
+        return slot;
+    }
+
+    public int getHandle(Epic epic) {
+        AssetSlot slot = slotsByEpic.get(epic);
+        return Objects.isNull(slot) ? UNKNOWN_HANDLE : slot.getHandle();
+    }
+
+    public AssetSlot getSlot(int handle) {
+        AssetSlot[] currentSlots = slots;
+        return handle >= 0 && handle < currentSlots.length ? currentSlots[handle] : null;
+    }
+
+    public AssetSlot getSlot(Epic epic) {
+        return slotsByEpic.get(epic);
+    }
+
+    public int size() {
+        return slots.length;
+    }
+
+    public void updateContractDetails(Epic epic, ContractDetails contractDetails) {
+        AssetSlot slot = slotsByEpic.get(epic);
+        if (Objects.nonNull(slot)) {
+            slot.setContractDetails(contractDetails);
+        }
+    }
+}
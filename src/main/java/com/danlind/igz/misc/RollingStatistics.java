@@ -0,0 +1,94 @@
+package com.danlind.igz.misc;
+
+/**
+ * Mean and variance of the last values added, kept in a primitive ring buffer.
+ * Adding a value updates a running sum and sum of squares, so every operation is O(1). To keep the rounding errors of
+ * the running sums from accumulating, they are recomputed from the buffer each time it has been overwritten once,
+ * which stays O(1) amortized. Not thread safe, the owner synchronizes.
+ */
+public class RollingStatistics {
+
+    private final double[] values;
+    private int next;
+    private int count;
+    private int addedSinceRecompute;
+    private double sum;
+    private double sumOfSquares;
+
+    public RollingStatistics(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must hold at least one value, was " + window);
+        }
+        this.values = new double[window];
+    }
+
+    public int getWindow() {
+        return values.length;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void add(double value) {
+        if (count == values.length) {
+            double removed = values[next];
+            sum -= removed;
+            sumOfSquares -= removed * removed;
+        } else {
+            count++;
+        }
+        values[next] = value;
+        sum += value;
+        sumOfSquares += value * value;
+        next = next + 1 == values.length ? 0 : next + 1;
+        if (++addedSinceRecompute == values.length) {
+            recompute();
+        }
+    }
+
+    /**
+     * @return the mean of the window, NaN while empty
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * @return the population variance of the window, NaN while empty
+     */
+    public double getVariance() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double mean = sum / count;
+        return Math.max(0, sumOfSquares / count - mean * mean);
+    }
+
+    /**
+     * @return the population standard deviation of the window, NaN while empty
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    public void clear() {
+        next = 0;
+        count = 0;
+        addedSinceRecompute = 0;
+        sum = 0;
+        sumOfSquares = 0;
+    }
+
+    private void recompute() {
+        double newSum = 0;
+        double newSumOfSquares = 0;
+        for (int i = 0; i < count; i++) {
+            newSum += values[i];
+            newSumOfSquares += values[i] * values[i];
+        }
+        sum = newSum;
+        sumOfSquares = newSumOfSquares;
+        addedSinceRecompute = 0;
+    }
+}
@@ -0,0 +1,117 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.types.Epic;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.CompletableSubject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects asset subscriptions so they can be opened together.
+ * Zorro subscribes its assets one call at a time, usually all of them before it asks for the first price. Every epic
+ * is queued, and the queue is handed to the batch subscriber once no epic was added for the batch delay, or straight
+ * away when one of the queued assets is needed before that.
+ */
+public class SubscriptionBatcher {
+
+    private final static Logger logger = LoggerFactory.getLogger(SubscriptionBatcher.class);
+    private final Consumer<List<Epic>> batchSubscriber;
+    private final long batchDelay;
+    private final ConcurrentHashMap<Epic, CompletableSubject> pendingEpics = new ConcurrentHashMap<>();
+    private final Set<Epic> queuedEpics = new LinkedHashSet<>();
+    private CompletableSubject queuedBatch;
+    private long generation;
+
+    public SubscriptionBatcher(Consumer<List<Epic>> batchSubscriber, long batchDelay) {
+        this.batchSubscriber = batchSubscriber;
+        this.batchDelay = batchDelay;
+    }
+
+    /**
+     * Queues the epic, does nothing if it is already queued or being subscribed
+     */
+    public synchronized void add(Epic epic) {
+        if (pendingEpics.containsKey(epic)) {
+            return;
+        }
+        if (queuedEpics.isEmpty()) {
+            queuedBatch = CompletableSubject.create();
+        }
+        queuedEpics.add(epic);
+        pendingEpics.put(epic, queuedBatch);
+        long scheduledGeneration = ++generation;
+        Schedulers.io().scheduleDirect(() -> flushIfIdle(scheduledGeneration), batchDelay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return true while the epic is queued or being subscribed
+     */
+    public boolean isPending(Epic epic) {
+        return pendingEpics.containsKey(epic);
+    }
+
+    /**
+     * Hands all queued epics to the batch subscriber, returns once it is done
+     */
+    public void flush() {
+        List<Epic> epics;
+        CompletableSubject batch;
+        synchronized (this) {
+            if (queuedEpics.isEmpty()) {
+                return;
+            }
+            epics = new ArrayList<>(queuedEpics);
+            batch = queuedBatch;
+            queuedEpics.clear();
+        }
+        logger.debug("Subscribing to a batch of {} assets", epics.size());
+        try {
+            batchSubscriber.accept(epics);
+        } catch (Exception e) {
+            logger.error("Failed to subscribe to a batch of {} assets", epics.size(), e);
+        } finally {
+            epics.forEach(pendingEpics::remove);
+            batch.onComplete();
+        }
+    }
+
+    /**
+     * Blocks until the subscription of the epic is opened, subscribing its batch on the calling thread if it is still
+     * queued. Returns straight away for epics that are not pending.
+     */
+    public void await(Epic epic) {
+        CompletableSubject batch = pendingEpics.get(epic);
+        if (Objects.isNull(batch)) {
+            return;
+        }
+        if (isQueued(epic)) {
+            flush();
+        }
+        batch.blockingAwait();
+    }
+
+    private synchronized boolean isQueued(Epic epic) {
+        return queuedEpics.contains(epic);
+    }
+
+    /*
+    Only the flush scheduled by the last added epic runs, the earlier ones see a newer generation and do nothing
+    */
+    private void flushIfIdle(long scheduledGeneration) {
+        synchronized (this) {
+            if (scheduledGeneration != generation) {
+                return;
+            }
+        }
+        flush();
+    }
+}
@@ -0,0 +1,245 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.ig.api.client.streaming.HandyTableListenerAdapter;
+import com.lightstreamer.ls_client.SubscribedTableKey;
+import com.lightstreamer.ls_client.UpdateInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Shares Lightstreamer tables between items, e.g. the epics of a CHART subscription, and routes every update by item
+ * position to the sink of its item. A table holds at most maxItemsPerTable items.
+ * Lightstreamer tables can't be changed once subscribed, so adding items fills up the smallest table with room and
+ * removing an item rebuilds its table without it. A rebuilt table is subscribed before the old one is unsubscribed,
+ * so the other items in it keep receiving updates.
+ */
+public class SubscriptionMultiplexer {
+
+    private final static Logger logger = LoggerFactory.getLogger(SubscriptionMultiplexer.class);
+    private final String name;
+    private final int maxItemsPerTable;
+    private final TableSubscriber tableSubscriber;
+    private final TableUnsubscriber tableUnsubscriber;
+    private final List<Table> tables = new ArrayList<>();
+    private final Map<String, Table> tablesByItem = new HashMap<>();
+
+    public SubscriptionMultiplexer(String name, int maxItemsPerTable, TableSubscriber tableSubscriber, TableUnsubscriber tableUnsubscriber) {
+        this.name = name;
+        this.maxItemsPerTable = Math.max(1, maxItemsPerTable);
+        this.tableSubscriber = tableSubscriber;
+        this.tableUnsubscriber = tableUnsubscriber;
+    }
+
+    /**
+     * Subscribes the items, an item that is already subscribed gets the new sink
+     */
+    public synchronized void add(Map<String, ItemSink> sinksByItem) throws Exception {
+        LinkedHashMap<String, ItemSink> newItems = new LinkedHashMap<>(sinksByItem);
+        for (String item : sinksByItem.keySet()) {
+            Table table = tablesByItem.get(item);
+            if (Objects.nonNull(table) && newItems.containsKey(item)) {
+                rebuild(table, table.withSinks(newItems));
+            }
+        }
+        Optional<Table> smallestTable = tables.stream()
+            .filter(table -> table.size() < maxItemsPerTable)
+            .min(Comparator.comparingInt(Table::size));
+        if (smallestTable.isPresent() && !newItems.isEmpty()) {
+            LinkedHashMap<String, ItemSink> sinks = smallestTable.get().getSinks();
+            takeItems(newItems, sinks, maxItemsPerTable - sinks.size());
+            rebuild(smallestTable.get(), sinks);
+        }
+        while (!newItems.isEmpty()) {
+            LinkedHashMap<String, ItemSink> sinks = new LinkedHashMap<>();
+            takeItems(newItems, sinks, maxItemsPerTable);
+            subscribe(sinks);
+        }
+    }
+
+    /**
+     * Unsubscribes the items still routed to the given sinks, the other items sharing their tables stay subscribed.
+     * An item added again with a new sink in the meantime is left alone.
+     */
+    public synchronized void remove(Map<String, ItemSink> sinksByItem) throws Exception {
+        Map<Table, LinkedHashMap<String, ItemSink>> remainingSinksByTable = new LinkedHashMap<>();
+        for (Map.Entry<String, ItemSink> itemSink : sinksByItem.entrySet()) {
+            Table table = tablesByItem.get(itemSink.getKey());
+            if (Objects.nonNull(table) && table.getSinks().get(itemSink.getKey()) == itemSink.getValue()) {
+                remainingSinksByTable.computeIfAbsent(table, Table::getSinks).remove(itemSink.getKey());
+            }
+        }
+        for (Map.Entry<Table, LinkedHashMap<String, ItemSink>> remainingSinks : remainingSinksByTable.entrySet()) {
+            rebuild(remainingSinks.getKey(), remainingSinks.getValue());
+        }
+    }
+
+    /**
+     * Unsubscribes all tables
+     */
+    public synchronized void clear() {
+        new ArrayList<>(tables).forEach(this::unsubscribe);
+    }
+
+    /**
+     * Forgets all tables without unsubscribing them, used when the connection they belonged to is gone
+     */
+    public synchronized void reset() {
+        tables.forEach(table -> table.retired = true);
+        tables.clear();
+        tablesByItem.clear();
+    }
+
+    public synchronized int getTableCount() {
+        return tables.size();
+    }
+
+    public synchronized int getItemCount() {
+        return tablesByItem.size();
+    }
+
+    private static void takeItems(LinkedHashMap<String, ItemSink> from, LinkedHashMap<String, ItemSink> to, int count) {
+        List<String> items = new ArrayList<>(from.keySet());
+        for (int i = 0; i < Math.min(count, items.size()); i++) {
+            to.put(items.get(i), from.remove(items.get(i)));
+        }
+    }
+
+    private void rebuild(Table table, LinkedHashMap<String, ItemSink> sinks) throws Exception {
+        if (sinks.isEmpty()) {
+            unsubscribe(table);
+            return;
+        }
+        subscribe(sinks);
+        unsubscribe(table);
+    }
+
+    private void subscribe(LinkedHashMap<String, ItemSink> sinks) throws Exception {
+        Table table = new Table(sinks);
+        table.listener = tableSubscriber.subscribe(table.items, table.createListener());
+        tables.add(table);
+        for (String item : table.items) {
+            tablesByItem.put(item, table);
+        }
+        logger.debug("Subscribed {} table with {} items, {} tables in use", name, table.items.length, tables.size());
+    }
+
+    private void unsubscribe(Table table) {
+        table.retired = true;
+        tables.remove(table);
+        for (String item : table.items) {
+            tablesByItem.remove(item, table);
+        }
+        try {
+            tableUnsubscriber.unsubscribe(table.listener.getSubscribedTableKey());
+        } catch (Exception e) {
+            logger.debug("Failed to unsubscribe {} table, it is already gone", name);
+        }
+    }
+
+    /*
+    The table ended without being unsubscribed here, e.g. the server removed it
+    */
+    private synchronized void onTableEnded(Table table) {
+        if (table.retired) {
+            return;
+        }
+        logger.info("Received complete signal from {} table with {} items", name, table.items.length);
+        table.retired = true;
+        tables.remove(table);
+        List<ItemSink> endedSinks = new ArrayList<>();
+        for (int i = 0; i < table.items.length; i++) {
+            if (tablesByItem.remove(table.items[i], table)) {
+                endedSinks.add(table.sinks[i]);
+            }
+        }
+        endedSinks.forEach(ItemSink::onComplete);
+    }
+
+    /**
+     * Receives the updates of one item
+     */
+    public interface ItemSink {
+
+        void onUpdate(UpdateInfo updateInfo);
+
+        void onComplete();
+    }
+
+    @FunctionalInterface
+    public interface TableSubscriber {
+
+        HandyTableListenerAdapter subscribe(String[] items, HandyTableListenerAdapter listener) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface TableUnsubscriber {
+
+        void unsubscribe(SubscribedTableKey subscribedTableKey) throws Exception;
+    }
+
+    private class Table {
+
+        private final String[] items;
+        private final ItemSink[] sinks;
+        private HandyTableListenerAdapter listener;
+        private volatile boolean retired;
+
+        private Table(LinkedHashMap<String, ItemSink> sinksByItem) {
+            this.items = sinksByItem.keySet().toArray(new String[0]);
+            this.sinks = sinksByItem.values().toArray(new ItemSink[0]);
+        }
+
+        private int size() {
+            return items.length;
+        }
+
+        private LinkedHashMap<String, ItemSink> getSinks() {
+            LinkedHashMap<String, ItemSink> sinksByItem = new LinkedHashMap<>();
+            for (int i = 0; i < items.length; i++) {
+                sinksByItem.put(items[i], sinks[i]);
+            }
+            return sinksByItem;
+        }
+
+        /*
+        Replaces the sinks of the items of this table found in the given map, taking them out of the map
+        */
+        private LinkedHashMap<String, ItemSink> withSinks(LinkedHashMap<String, ItemSink> newSinks) {
+            LinkedHashMap<String, ItemSink> sinksByItem = getSinks();
+            for (String item : items) {
+                if (newSinks.containsKey(item)) {
+                    sinksByItem.put(item, newSinks.remove(item));
+                }
+            }
+            return sinksByItem;
+        }
+
+        /*
+        Updates for a table that is being replaced keep being routed until the new table is subscribed
+        */
+        private HandyTableListenerAdapter createListener() {
+            return new HandyTableListenerAdapter() {
+                @Override
+                public void onUpdate(int i, String s, UpdateInfo updateInfo) {
+                    if (!retired) {
+                        sinks[i - 1].onUpdate(updateInfo);
+                    }
+                }
+
+                @Override
+                public void onUnsubscrAll() {
+                    onTableEnded(Table.this);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.danlind.igz.misc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append only, memory mapped file of the ticks of one epic, ordered as received.
+ * Every tick takes a fixed width record, so the file is mapped at its full size up front and never remapped. The
+ * header indexes the file with the number of records and the time of the first and the last one, so readers can
+ * pick the files of a time range without scanning them. A record only counts once the header count includes it.
+ */
+public class TickJournal {
+
+    private final static Logger logger = LoggerFactory.getLogger(TickJournal.class);
+
+    private static final int MAGIC = 0x49475A54; // IGZT
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = Long.BYTES + 3 * Double.BYTES;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int RECORD_SIZE_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+    private static final int FIRST_TIME_OFFSET = 16;
+    private static final int LAST_TIME_OFFSET = 24;
+
+    private static final int TIME = 0;
+    private static final int BID = 8;
+    private static final int ASK = 16;
+    private static final int VOLUME = 24;
+
+    private final File file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private int count;
+    private long firstTime;
+    private long lastTime;
+
+    /**
+     * Opens an existing journal to continue appending, or creates one with room for maxRecords ticks
+     */
+    public TickJournal(File file, int maxRecords) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long existingSize = channel.size();
+        long size = Math.max(existingSize, HEADER_SIZE + (long) maxRecords * RECORD_SIZE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        this.capacity = (int) ((size - HEADER_SIZE) / RECORD_SIZE);
+        if (existingSize < HEADER_SIZE || !readHeader()) {
+            if (existingSize >= HEADER_SIZE) {
+                logger.warn("Tick journal {} has an unknown format, discarding it", file.getName());
+            }
+            count = 0;
+            firstTime = Long.MIN_VALUE;
+            lastTime = Long.MIN_VALUE;
+            writeHeader();
+        }
+    }
+
+    private TickJournal(File file, FileChannel channel, MappedByteBuffer buffer) {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = (int) ((buffer.capacity() - HEADER_SIZE) / RECORD_SIZE);
+    }
+
+    /**
+     * Opens an existing journal for reading, e.g. while the recorder may still be appending to it.
+     * Unlike the constructor, a file of unknown format is left untouched.
+     */
+    public static TickJournal openReadOnly(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Tick journal " + file.getName() + " is truncated");
+            }
+            TickJournal journal = new TickJournal(file, channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            if (!journal.readHeader()) {
+                throw new IOException("Tick journal " + file.getName() + " has an unknown format");
+            }
+            return journal;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean isFull() {
+        return count >= capacity;
+    }
+
+    /**
+     * @return time of the first tick, Long.MIN_VALUE while empty
+     */
+    public long getFirstTime() {
+        return firstTime;
+    }
+
+    /**
+     * @return time of the last tick, Long.MIN_VALUE while empty
+     */
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    /**
+     * @param volume last traded volume of the tick, NaN if the market has none
+     * @return false if the journal is full
+     */
+    public boolean append(long time, double bid, double ask, double volume) {
+        if (isFull()) {
+            return false;
+        }
+        int offset = recordOffset(count);
+        buffer.putLong(offset + TIME, time);
+        buffer.putDouble(offset + BID, bid);
+        buffer.putDouble(offset + ASK, ask);
+        buffer.putDouble(offset + VOLUME, volume);
+        if (count == 0) {
+            firstTime = time;
+            buffer.putLong(FIRST_TIME_OFFSET, firstTime);
+        }
+        lastTime = time;
+        buffer.putLong(LAST_TIME_OFFSET, lastTime);
+        count++;
+        buffer.putInt(COUNT_OFFSET, count);
+        return true;
+    }
+
+    /**
+     * Hands every tick to the consumer, oldest first
+     */
+    public void forEach(TickConsumer consumer) {
+        for (int i = 0; i < count; i++) {
+            consumer.accept(getTime(i), getBid(i), getAsk(i), getVolume(i));
+        }
+    }
+
+    public long getTime(int index) {
+        return buffer.getLong(recordOffset(index) + TIME);
+    }
+
+    public double getBid(int index) {
+        return buffer.getDouble(recordOffset(index) + BID);
+    }
+
+    public double getAsk(int index) {
+        return buffer.getDouble(recordOffset(index) + ASK);
+    }
+
+    public double getVolume(int index) {
+        return buffer.getDouble(recordOffset(index) + VOLUME);
+    }
+
+    public void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close tick journal {}", file.getName(), e);
+        }
+    }
+
+    private int recordOffset(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    private boolean readHeader() {
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC
+            || buffer.getInt(VERSION_OFFSET) != VERSION
+            || buffer.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE) {
+            return false;
+        }
+        count = buffer.getInt(COUNT_OFFSET);
+        firstTime = buffer.getLong(FIRST_TIME_OFFSET);
+        lastTime = buffer.getLong(LAST_TIME_OFFSET);
+        return count >= 0 && count <= capacity;
+    }
+
+    private void writeHeader() {
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+        buffer.putInt(COUNT_OFFSET, count);
+        buffer.putLong(FIRST_TIME_OFFSET, firstTime);
+        buffer.putLong(LAST_TIME_OFFSET, lastTime);
+    }
+
+    @FunctionalInterface
+    public interface TickConsumer {
+
+        void accept(long time, double bid, double ask, double volume);
+    }
+}
@@ -0,0 +1,195 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.types.Epic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records the streamed ticks of the subscribed assets into tick journals, one rolling series of files per epic.
+ * Ticks are put into a bounded ring buffer on the Lightstreamer thread and written by a single daemon thread, so
+ * recording never delays the live prices. The writer sleeps while no ticks arrive and is woken by the next one.
+ * When the writer falls behind and the buffer is full, ticks are dropped and reported. A new journal is started for
+ * every UTC day and whenever the current one is full, the files are named epic/yyyyMMdd_n.ticks with n counting from 1.
+ */
+public class TickRecorder {
+
+    private final static Logger logger = LoggerFactory.getLogger(TickRecorder.class);
+    public static final String FILE_SUFFIX = ".ticks";
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final File directory;
+    private final boolean enabled;
+    private final int maxRecordsPerFile;
+    private final int mask;
+    private final AssetSlot[] slots;
+    private final long[] times;
+    private final double[] bids;
+    private final double[] asks;
+    private final double[] volumes;
+    private final Object producerLock = new Object();
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong droppedTicks = new AtomicLong();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Map<Epic, TickJournal> journals = new HashMap<>();
+    private final Set<Epic> failedEpics = new HashSet<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean writerIdle;
+
+    /**
+     * @param bufferSize ticks the ring buffer holds, rounded up to a power of two
+     */
+    public TickRecorder(File directory, boolean enabled, int bufferSize, int maxRecordsPerFile) {
+        this.directory = directory;
+        this.enabled = enabled;
+        this.maxRecordsPerFile = maxRecordsPerFile;
+        int capacity = Integer.highestOneBit(Math.max(1, bufferSize - 1)) << 1;
+        this.mask = capacity - 1;
+        this.slots = new AssetSlot[capacity];
+        this.times = new long[capacity];
+        this.bids = new double[capacity];
+        this.asks = new double[capacity];
+        this.volumes = new double[capacity];
+        this.writer = new Thread(this::writeTicks, "tick-recorder");
+        this.writer.setDaemon(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues the tick for writing, the writer thread is started with the first tick
+     *
+     * @param volume last traded volume of the tick, NaN if the market has none
+     */
+    public void record(AssetSlot assetSlot, long time, double bid, double ask, double volume) {
+        if (!enabled || !running) {
+            return;
+        }
+        if (!started.get() && started.compareAndSet(false, true)) {
+            logger.info("Recording ticks to {}", directory.getAbsolutePath());
+            writer.start();
+        }
+        synchronized (producerLock) {
+            long index = head.get();
+            if (index - tail.get() > mask) {
+                droppedTicks.incrementAndGet();
+                return;
+            }
+            int slot = (int) index & mask;
+            slots[slot] = assetSlot;
+            times[slot] = time;
+            bids[slot] = bid;
+            asks[slot] = ask;
+            volumes[slot] = volume;
+            head.lazySet(index + 1);
+        }
+        if (writerIdle) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Stops recording, the ticks already queued are written before the journals are closed
+     */
+    public void close() {
+        running = false;
+        if (started.get()) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void writeTicks() {
+        while (running || tail.get() < head.get()) {
+            long index = tail.get();
+            long end = head.get();
+            if (index == end) {
+                //Woken by the next tick, the timeout only catches a wake-up missed because head is published lazily
+                writerIdle = true;
+                if (running && head.get() == index) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                writerIdle = false;
+                continue;
+            }
+            for (; index < end; index++) {
+                int slot = (int) index & mask;
+                write(slots[slot], times[slot], bids[slot], asks[slot], volumes[slot]);
+            }
+            tail.lazySet(end);
+            long dropped = droppedTicks.getAndSet(0);
+            if (dropped > 0) {
+                logger.warn("Tick recorder buffer full, dropped {} ticks", dropped);
+            }
+        }
+        journals.values().forEach(TickJournal::close);
+        journals.clear();
+    }
+
+    private void write(AssetSlot assetSlot, long time, double bid, double ask, double volume) {
+        Epic epic = assetSlot.getEpic();
+        if (failedEpics.contains(epic)) {
+            return;
+        }
+        long day = Math.floorDiv(time, DAY_MILLIS);
+        TickJournal journal = journals.get(epic);
+        try {
+            if (Objects.isNull(journal) || journal.isFull() || (journal.size() > 0 && Math.floorDiv(journal.getLastTime(), DAY_MILLIS) != day)) {
+                if (Objects.nonNull(journal)) {
+                    journal.close();
+                }
+                journal = openJournal(epic, day);
+                journals.put(epic, journal);
+            }
+            journal.append(time, bid, ask, volume);
+        } catch (IOException e) {
+            logger.error("Failed to open tick journal for {}, not recording its ticks", epic.getName(), e);
+            journals.remove(epic);
+            failedEpics.add(epic);
+        }
+    }
+
+    /*
+    Continues the last journal of the day if it has room, e.g. after a restart
+    */
+    private TickJournal openJournal(Epic epic, long day) throws IOException {
+        File epicDirectory = new File(directory, epic.getName());
+        if (!epicDirectory.exists() && !epicDirectory.mkdirs()) {
+            throw new IOException("Unable to create tick journal directory " + epicDirectory.getAbsolutePath());
+        }
+        String prefix = LocalDate.ofEpochDay(day).format(DateTimeFormatter.BASIC_ISO_DATE) + "_";
+        int sequence = 1;
+        while (new File(epicDirectory, prefix + (sequence + 1) + FILE_SUFFIX).exists()) {
+            sequence++;
+        }
+        TickJournal journal = new TickJournal(new File(epicDirectory, prefix + sequence + FILE_SUFFIX), maxRecordsPerFile);
+        if (journal.isFull()) {
+            journal.close();
+            journal = new TickJournal(new File(epicDirectory, prefix + (sequence + 1) + FILE_SUFFIX), maxRecordsPerFile);
+        }
+        logger.debug("Recording ticks of {} to {}", epic.getName(), journal.getFile().getName());
+        return journal;
+    }
+}
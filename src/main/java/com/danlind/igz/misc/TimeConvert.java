@@ -81,6 +81,44 @@ public class TimeConvert {
         return getOLEDateFromMillis(millis) + 1e-8;
     }
 
+    /**
+     * Parses an ISO local date time of the form yyyy-MM-ddTHH:mm[:ss] in UTC straight from a character buffer,
+     * avoiding the intermediate String and LocalDateTime of LocalDateTime.parse
+     */
+    public static long millisFromIsoDateTime(final char[] buffer, final int offset, final int length) {
+        final int year = parseDigits(buffer, offset, 4);
+        final int month = parseDigits(buffer, offset + 5, 2);
+        final int day = parseDigits(buffer, offset + 8, 2);
+        final int hour = parseDigits(buffer, offset + 11, 2);
+        final int minute = parseDigits(buffer, offset + 14, 2);
+        final int second = length >= 19 ? parseDigits(buffer, offset + 17, 2) : 0;
+        return ((daysFromCivil(year, month, day) * 24 + hour) * 60 + minute) * 60000L + second * 1000L;
+    }
+
+    public static double getOLEDateFromIsoDateTime(final char[] buffer, final int offset, final int length) {
+        return getOLEDateFromMillis(millisFromIsoDateTime(buffer, offset, length));
+    }
+
+    private static int parseDigits(final char[] buffer, final int offset, final int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            value = value * 10 + (buffer[i] - '0');
+        }
+        return value;
+    }
+
+    /*
+    Days since 1970-01-01 in the proleptic Gregorian calendar, see http://howardhinnant.github.io/date_algorithms.html
+    */
+    private static long daysFromCivil(int year, final int month, final int day) {
+        year -= month <= 2 ? 1 : 0;
+        final int era = (year >= 0 ? year : year - 399) / 400;
+        final int yearOfEra = year - era * 400;
+        final int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
     public static long millisToNano(final long millis) {
         return TimeUnit.MILLISECONDS.toNanos(millis);
     }
@@ -0,0 +1,344 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.OrderDetails;
+import com.danlind.igz.domain.types.DealId;
+import com.danlind.igz.domain.types.DealReference;
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.Direction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Append only, memory mapped journal of the orders sent to IG.
+ * An intent is appended before every REST call that opens or closes a position, and every change to the order store
+ * is appended before it is applied, so the orders can be rebuilt after a crash even when the crash happened between
+ * opening a position at IG and storing its order. Appends go to the mapped file and survive a crash of the Zorro
+ * process without an explicit force.
+ */
+public class TradeJournal {
+
+    private final static Logger logger = LoggerFactory.getLogger(TradeJournal.class);
+
+    private static final int MAGIC = 0x49475A4A; // IGZJ
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 256;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int RECORD_SIZE_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+
+    private static final int TYPE = 0;
+    private static final int DIRECTION = 1;
+    private static final int ORDER_ID = 4;
+    private static final int TIME = 8;
+    private static final int LEVEL = 16;
+    private static final int SIZE = 24;
+    private static final int EPIC = 32;
+    private static final int DEAL_REFERENCE = 96;
+    private static final int DEAL_ID = 160;
+    private static final int MAX_TEXT_LENGTH = 63;
+
+    static final byte OPEN_INTENT = 1;
+    static final byte CLOSE_INTENT = 2;
+    static final byte ORDER_STORED = 3;
+    static final byte ORDER_REMOVED = 4;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final String name;
+    private final FileChannel channel;
+    private ByteBuffer buffer;
+    private int count;
+
+    private TradeJournal(String name, FileChannel channel, ByteBuffer buffer) {
+        this.name = name;
+        this.channel = channel;
+        this.buffer = buffer;
+        if (!readHeader()) {
+            if (buffer.getInt(MAGIC_OFFSET) != 0) {
+                logger.warn("Trade journal {} has an unknown format, discarding it", name);
+            }
+            count = 0;
+            writeHeader();
+        }
+    }
+
+    public static TradeJournal createPersisted(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), HEADER_SIZE + (long) INITIAL_CAPACITY * RECORD_SIZE);
+        TradeJournal tradeJournal = new TradeJournal(file.getName(), channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        logger.info("Opened trade journal {} with {} records", file.getName(), tradeJournal.size());
+        return tradeJournal;
+    }
+
+    public static TradeJournal createInMemory() {
+        return new TradeJournal("in-memory", null, ByteBuffer.allocate(HEADER_SIZE + INITIAL_CAPACITY * RECORD_SIZE));
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Appended before a position is opened, the deal reference is how the position is found again if the plugin
+     * crashes before the deal is confirmed
+     */
+    public synchronized void recordOpenIntent(int orderId, Epic epic, Direction direction, double size, DealReference dealReference) {
+        int offset = startRecord(orderId);
+        buffer.put(offset + DIRECTION, (byte) direction.ordinal());
+        buffer.putDouble(offset + SIZE, size);
+        putText(offset + EPIC, epic.getName());
+        putText(offset + DEAL_REFERENCE, dealReference.getValue());
+        commitRecord(offset, OPEN_INTENT);
+    }
+
+    public synchronized void recordCloseIntent(int orderId, DealId dealId, double size) {
+        int offset = startRecord(orderId);
+        buffer.putDouble(offset + SIZE, size);
+        putText(offset + DEAL_ID, dealId.getValue());
+        commitRecord(offset, CLOSE_INTENT);
+    }
+
+    public synchronized void recordOrderStored(int orderId, OrderDetails orderDetails) {
+        int offset = startRecord(orderId);
+        buffer.put(offset + DIRECTION, (byte) orderDetails.getDirection().ordinal());
+        buffer.putDouble(offset + LEVEL, orderDetails.getEntryLevel());
+        buffer.putDouble(offset + SIZE, orderDetails.getPositionSize());
+        putText(offset + EPIC, orderDetails.getEpic().getName());
+        putText(offset + DEAL_ID, orderDetails.getDealId().getValue());
+        commitRecord(offset, ORDER_STORED);
+    }
+
+    public synchronized void recordOrderRemoved(int orderId) {
+        commitRecord(startRecord(orderId), ORDER_REMOVED);
+    }
+
+    /**
+     * Replays all records in the order they were appended
+     */
+    public synchronized Replay replay() {
+        Replay replay = new Replay();
+        for (int i = 0; i < count; i++) {
+            int offset = recordOffset(i);
+            int orderId = buffer.getInt(offset + ORDER_ID);
+            switch (buffer.get(offset + TYPE)) {
+                case OPEN_INTENT:
+                    replay.openIntents.put(orderId, new OpenIntent(orderId,
+                        new Epic(getText(offset + EPIC)),
+                        DIRECTIONS[buffer.get(offset + DIRECTION)],
+                        new DealReference(getText(offset + DEAL_REFERENCE))));
+                    break;
+                case CLOSE_INTENT:
+                    replay.closeIntents.add(orderId);
+                    break;
+                case ORDER_STORED:
+                    replay.openIntents.remove(orderId);
+                    replay.closeIntents.remove(orderId);
+                    replay.orderIds.add(orderId);
+                    replay.orders.put(orderId, new OrderDetails(new Epic(getText(offset + EPIC)),
+                        buffer.getDouble(offset + LEVEL),
+                        DIRECTIONS[buffer.get(offset + DIRECTION)],
+                        (int) buffer.getDouble(offset + SIZE),
+                        new DealId(getText(offset + DEAL_ID))));
+                    break;
+                case ORDER_REMOVED:
+                    replay.openIntents.remove(orderId);
+                    replay.closeIntents.remove(orderId);
+                    replay.orderIds.add(orderId);
+                    replay.orders.remove(orderId);
+                    break;
+                default:
+                    logger.warn("Unknown record in trade journal {} at index {}, stopping replay", name, i);
+                    return replay;
+            }
+        }
+        return replay;
+    }
+
+    /**
+     * Replaces the journal with one stored record per order, dropping resolved intents and removed orders
+     */
+    public synchronized void compact(Map<Integer, OrderDetails> orders) {
+        count = 0;
+        writeHeader();
+        orders.forEach(this::recordOrderStored);
+        logger.debug("Compacted trade journal {} to {} records", name, count);
+    }
+
+    public synchronized void close() {
+        if (Objects.isNull(channel)) {
+            return;
+        }
+        try {
+            ((MappedByteBuffer) buffer).force();
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close trade journal {}", name, e);
+        }
+    }
+
+    private int startRecord(int orderId) {
+        ensureCapacity(count + 1);
+        int offset = recordOffset(count);
+        for (int i = 0; i < RECORD_SIZE; i += Long.BYTES) {
+            buffer.putLong(offset + i, 0);
+        }
+        buffer.putInt(offset + ORDER_ID, orderId);
+        buffer.putLong(offset + TIME, System.currentTimeMillis());
+        return offset;
+    }
+
+    /*
+    The record only becomes part of the journal once the count is written, a half written record is never replayed
+    */
+    private void commitRecord(int offset, byte type) {
+        buffer.put(offset + TYPE, type);
+        count++;
+        buffer.putInt(COUNT_OFFSET, count);
+    }
+
+    private void putText(int offset, String text) {
+        if (text.length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("Text too long for trade journal: " + text);
+        }
+        buffer.put(offset, (byte) text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put(offset + 1 + i, (byte) text.charAt(i));
+        }
+    }
+
+    private String getText(int offset) {
+        byte[] text = new byte[buffer.get(offset)];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = buffer.get(offset + 1 + i);
+        }
+        return new String(text, StandardCharsets.US_ASCII);
+    }
+
+    private void ensureCapacity(int records) {
+        long required = HEADER_SIZE + (long) records * RECORD_SIZE;
+        if (buffer.capacity() < required) {
+            long newSize = Math.max(required, HEADER_SIZE + (buffer.capacity() - HEADER_SIZE) * 2L);
+            if (Objects.isNull(channel)) {
+                ByteBuffer newBuffer = ByteBuffer.allocate((int) newSize);
+                buffer.rewind();
+                newBuffer.put(buffer);
+                buffer = newBuffer;
+                return;
+            }
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+            } catch (IOException e) {
+                throw new RuntimeException("Exception when growing trade journal " + name, e);
+            }
+        }
+    }
+
+    private int recordOffset(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    private boolean readHeader() {
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC
+            || buffer.getInt(VERSION_OFFSET) != VERSION
+            || buffer.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE) {
+            return false;
+        }
+        count = buffer.getInt(COUNT_OFFSET);
+        return (long) HEADER_SIZE + (long) count * RECORD_SIZE <= buffer.capacity();
+    }
+
+    private void writeHeader() {
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+        buffer.putInt(COUNT_OFFSET, count);
+    }
+
+    /**
+     * State of the orders as recorded in the journal
+     */
+    public static class Replay {
+
+        private final Map<Integer, OrderDetails> orders = new HashMap<>();
+        private final Set<Integer> orderIds = new HashSet<>();
+        private final Map<Integer, OpenIntent> openIntents = new HashMap<>();
+        private final Set<Integer> closeIntents = new HashSet<>();
+
+        /**
+         * @return the orders stored and not removed since
+         */
+        public Map<Integer, OrderDetails> getOrders() {
+            return Collections.unmodifiableMap(orders);
+        }
+
+        /**
+         * @return true if the journal has recorded the order being stored or removed
+         */
+        public boolean isKnown(int orderId) {
+            return orderIds.contains(orderId);
+        }
+
+        /**
+         * @return positions that were requested but never stored or removed, the plugin stopped before their confirmation
+         */
+        public Map<Integer, OpenIntent> getOpenIntents() {
+            return Collections.unmodifiableMap(openIntents);
+        }
+
+        /**
+         * @return orders that were being closed when the plugin stopped
+         */
+        public Set<Integer> getCloseIntents() {
+            return Collections.unmodifiableSet(closeIntents);
+        }
+    }
+
+    public static class OpenIntent {
+
+        private final int orderId;
+        private final Epic epic;
+        private final Direction direction;
+        private final DealReference dealReference;
+
+        OpenIntent(int orderId, Epic epic, Direction direction, DealReference dealReference) {
+            this.orderId = orderId;
+            this.epic = epic;
+            this.direction = direction;
+            this.dealReference = dealReference;
+        }
+
+        public int getOrderId() {
+            return orderId;
+        }
+
+        public Epic getEpic() {
+            return epic;
+        }
+
+        public Direction getDirection() {
+            return direction;
+        }
+
+        public DealReference getDealReference() {
+            return dealReference;
+        }
+    }
+}
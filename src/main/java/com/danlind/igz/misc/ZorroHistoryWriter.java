@@ -0,0 +1,94 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.T6Ticks;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a Zorro history file, .t6 bars or .t1 ticks, through a file channel.
+ * Records are collected in the given buffer and written whenever it is full, so one direct buffer can be reused
+ * for any number of files. Both formats are written in little endian order like the structs in trading.h: a T6 is
+ * the OLE date as a double followed by high, low, open, close, value and volume as floats, a T1 is the OLE date
+ * followed by the price as a float. Zorro expects the records of a file newest first, they are written as given.
+ */
+public class ZorroHistoryWriter implements Closeable {
+
+    public static final String T6_SUFFIX = ".t6";
+    public static final String T1_SUFFIX = ".t1";
+    public static final int T6_SIZE = T6Ticks.SIZE;
+    public static final int T1_SIZE = Double.BYTES + Float.BYTES;
+
+    private final File file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private int records;
+
+    /**
+     * Creates or truncates the file
+     *
+     * @param buffer write buffer with room for at least one T6, cleared before use
+     */
+    public ZorroHistoryWriter(File file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.buffer = buffer;
+        this.buffer.clear();
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getRecords() {
+        return records;
+    }
+
+    public void writeT6(double time, double open, double close, double high, double low, double val, double vol) throws IOException {
+        ensureRemaining(T6_SIZE);
+        buffer.putDouble(time);
+        buffer.putFloat((float) high);
+        buffer.putFloat((float) low);
+        buffer.putFloat((float) open);
+        buffer.putFloat((float) close);
+        buffer.putFloat((float) val);
+        buffer.putFloat((float) vol);
+        records++;
+    }
+
+    public void writeT1(double time, double price) throws IOException {
+        ensureRemaining(T1_SIZE);
+        buffer.putDouble(time);
+        buffer.putFloat((float) price);
+        records++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,91 @@
+package com.danlind.igz.adapter;
+
+import com.danlind.igz.config.PluginProperties;
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.ig.api.client.StreamingAPI;
+import com.danlind.igz.ig.api.client.streaming.HandyTableListenerAdapter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lightstreamer.ls_client.SubscribedTableKey;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StreamingApiAdapterTest {
+
+    @Mock
+    StreamingAPI streamingAPI;
+
+    StreamingApiAdapter streamingApiAdapter;
+
+    Set<SubscribedTableKey> subscribedKeys = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    Set<SubscribedTableKey> unsubscribedKeys = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    @Before
+    public void setUp() throws Exception {
+        streamingApiAdapter = new StreamingApiAdapter();
+        streamingApiAdapter.setDependencies(new PluginProperties(), new ObjectMapper(), streamingAPI, null, null);
+
+        when(streamingAPI.subscribe(any(HandyTableListenerAdapter.class), any(), anyString(), any())).thenAnswer(subscribeTable(0));
+        when(streamingAPI.subscribeForAccountBalanceInfo(anyString(), any(HandyTableListenerAdapter.class))).thenAnswer(subscribeTable(1));
+        when(streamingAPI.subscribeForConfirms(anyString(), any(HandyTableListenerAdapter.class))).thenAnswer(subscribeTable(1));
+        when(streamingAPI.subscribeForOPUs(anyString(), any(HandyTableListenerAdapter.class))).thenAnswer(subscribeTable(1));
+        when(streamingAPI.subscribeForMarket(anyString(), any(HandyTableListenerAdapter.class))).thenAnswer(subscribeTable(1));
+        doAnswer(invocation -> unsubscribedKeys.add((SubscribedTableKey) invocation.getArguments()[0])).when(streamingAPI).unsubscribe(any());
+    }
+
+    @Test
+    public void testDisconnectUnsubscribesTablesOfConcurrentLoginSteps() {
+        for (int login = 0; login < 20; login++) {
+            //The login steps subscribe while the assets of the previous login are resubscribed
+            List<Completable> steps = new ArrayList<>();
+            steps.add(subscribeStep(streamingApiAdapter.getHeartbeatObservable()));
+            steps.add(subscribeStep(streamingApiAdapter.getAccountObservable("TestAccountId")));
+            steps.add(subscribeStep(streamingApiAdapter.getConfirmsObservable("TestAccountId")));
+            steps.add(subscribeStep(streamingApiAdapter.getPositionUpdateObservable("TestAccountId")));
+            for (int i = 0; i < 10; i++) {
+                steps.add(subscribeStep(streamingApiAdapter.getMarketObservable(new Epic("TestEpic" + i))));
+            }
+            Completable.merge(steps).blockingAwait();
+
+            streamingApiAdapter.disconnect();
+
+            assertEquals(14, subscribedKeys.size());
+            assertEquals(subscribedKeys, unsubscribedKeys);
+            subscribedKeys.clear();
+            unsubscribedKeys.clear();
+        }
+    }
+
+    private static Completable subscribeStep(Observable<?> observable) {
+        return Completable.fromAction(observable::subscribe).subscribeOn(Schedulers.io());
+    }
+
+    private Answer<HandyTableListenerAdapter> subscribeTable(int adapterArgument) {
+        return invocation -> {
+            HandyTableListenerAdapter adapter = (HandyTableListenerAdapter) invocation.getArguments()[adapterArgument];
+            SubscribedTableKey subscribedTableKey = new SubscribedTableKey();
+            adapter.setSubscribedTableKey(subscribedTableKey);
+            subscribedKeys.add(subscribedTableKey);
+            return adapter;
+        };
+    }
+}
@@ -0,0 +1,92 @@
+package com.danlind.igz.benchmark;
+
+import com.danlind.igz.domain.OrderDetails;
+import com.danlind.igz.domain.types.DealId;
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.Direction;
+import com.danlind.igz.misc.OrderDetailsMarshaller;
+import net.openhft.chronicle.map.ChronicleMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading and writing orders in the order store with Java serialization and with OrderDetailsMarshaller.
+ * Get is what every BrokerTrade poll does for every open trade.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.danlind.igz.benchmark.OrderDetailsMarshallingBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OrderDetailsMarshallingBenchmark {
+
+    private static final int ORDERS = 100;
+    private static final OrderDetails SAMPLE_ORDER_DETAILS = new OrderDetails(new Epic("IX.D.OMX.IFD.IP"), 10000, Direction.BUY, 20, new DealId("DIAAAAA9QN6L4AU"));
+
+    private ChronicleMap<Integer, OrderDetails> serializableOrders;
+    private ChronicleMap<Integer, OrderDetails> marshalledOrders;
+    private int orderId;
+
+    @Setup
+    public void setUp() {
+        serializableOrders = ChronicleMap
+            .of(Integer.class, OrderDetails.class)
+            .averageValue(SAMPLE_ORDER_DETAILS)
+            .entries(ORDERS)
+            .create();
+        marshalledOrders = ChronicleMap
+            .of(Integer.class, OrderDetails.class)
+            .valueMarshallers(OrderDetailsMarshaller.INSTANCE, OrderDetailsMarshaller.INSTANCE)
+            .averageValue(SAMPLE_ORDER_DETAILS)
+            .entries(ORDERS)
+            .create();
+        for (int i = 0; i < ORDERS; i++) {
+            OrderDetails orderDetails = new OrderDetails(new Epic("IX.D.OMX.IFD.IP"), 10000 + i, i % 2 == 0 ? Direction.BUY : Direction.SELL, i + 1, new DealId(String.format("DIAAAAA9QN6L%03d", i)));
+            serializableOrders.put(i, orderDetails);
+            marshalledOrders.put(i, orderDetails);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        serializableOrders.close();
+        marshalledOrders.close();
+    }
+
+    @Benchmark
+    public OrderDetails getSerializable() {
+        orderId = (orderId + 1) % ORDERS;
+        return serializableOrders.get(orderId);
+    }
+
+    @Benchmark
+    public OrderDetails getMarshalled() {
+        orderId = (orderId + 1) % ORDERS;
+        return marshalledOrders.get(orderId);
+    }
+
+    @Benchmark
+    public OrderDetails putSerializable() {
+        return serializableOrders.put(0, SAMPLE_ORDER_DETAILS);
+    }
+
+    @Benchmark
+    public OrderDetails putMarshalled() {
+        return marshalledOrders.put(0, SAMPLE_ORDER_DETAILS);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(OrderDetailsMarshallingBenchmark.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+        new Runner(options).run();
+    }
+}
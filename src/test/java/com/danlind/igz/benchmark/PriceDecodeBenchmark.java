@@ -0,0 +1,106 @@
+package com.danlind.igz.benchmark;
+
+import com.danlind.igz.domain.CandleSeries;
+import com.danlind.igz.ig.api.client.rest.dto.prices.getPricesV3.GetPricesV3Response;
+import com.danlind.igz.ig.api.client.rest.dto.prices.getPricesV3.PricesItem;
+import com.danlind.igz.misc.PriceResponseDecoder;
+import com.danlind.igz.misc.TimeConvert;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding a getPricesV3 page into Zorro's tick layout through the Jackson object tree
+ * with the streaming PriceResponseDecoder.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.danlind.igz.benchmark.PriceDecodeBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PriceDecodeBenchmark {
+
+    @Param({"1000"})
+    int bars;
+
+    private byte[] response;
+    private double[] tickParams;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PriceResponseDecoder priceResponseDecoder = new PriceResponseDecoder(new JsonFactory());
+
+    @Setup
+    public void setUp() {
+        StringBuilder json = new StringBuilder("{\"prices\":[");
+        LocalDateTime time = LocalDateTime.parse("2017-04-25T10:00:00");
+        for (int i = 0; i < bars; i++) {
+            double price = 1.09 + (i % 100) * 0.0001;
+            json.append(i == 0 ? "" : ",")
+                .append("{\"snapshotTime\":\"").append(time.toString().replace('-', '/').replace('T', ' ')).append("\",")
+                .append("\"snapshotTimeUTC\":\"").append(time).append(":00\",")
+                .append("\"openPrice\":{\"bid\":").append(price).append(",\"ask\":").append(price + 0.0002).append(",\"lastTraded\":null},")
+                .append("\"closePrice\":{\"bid\":").append(price).append(",\"ask\":").append(price + 0.0002).append(",\"lastTraded\":null},")
+                .append("\"highPrice\":{\"bid\":").append(price + 0.0005).append(",\"ask\":").append(price + 0.0007).append(",\"lastTraded\":null},")
+                .append("\"lowPrice\":{\"bid\":").append(price - 0.0005).append(",\"ask\":").append(price - 0.0003).append(",\"lastTraded\":null},")
+                .append("\"lastTradedVolume\":").append(100 + i).append("}");
+            time = time.plusMinutes(1);
+        }
+        json.append("],\"instrumentType\":\"CURRENCIES\",\"metadata\":{\"allowance\":{\"remainingAllowance\":9000,\"totalAllowance\":10000,\"allowanceExpiry\":3600},")
+            .append("\"size\":").append(bars).append(",\"pageData\":{\"pageSize\":").append(bars).append(",\"pageNumber\":1,\"totalPages\":1}}}");
+        response = json.toString().getBytes(StandardCharsets.UTF_8);
+        tickParams = new double[bars * 7];
+    }
+
+    @Benchmark
+    public double[] objectTree() throws Exception {
+        GetPricesV3Response pricesResponse = objectMapper.readValue(response, GetPricesV3Response.class);
+        Collections.reverse(pricesResponse.getPrices());
+        int tickParamsIndex = 0;
+        for (PricesItem priceItem : pricesResponse.getPrices()) {
+            tickParams[tickParamsIndex] = priceItem.getOpenPrice().getAsk().doubleValue();
+            tickParams[tickParamsIndex + 1] = priceItem.getClosePrice().getAsk().doubleValue();
+            tickParams[tickParamsIndex + 2] = priceItem.getHighPrice().getAsk().doubleValue();
+            tickParams[tickParamsIndex + 3] = priceItem.getLowPrice().getAsk().doubleValue();
+            tickParams[tickParamsIndex + 4] = TimeConvert.getOLEDateFromMillisRounded(LocalDateTime.parse(priceItem.getSnapshotTimeUTC()).toInstant(ZoneOffset.UTC).toEpochMilli());
+            tickParams[tickParamsIndex + 5] = priceItem.getClosePrice().getAsk().subtract(priceItem.getClosePrice().getBid()).doubleValue();
+            tickParams[tickParamsIndex + 6] = priceItem.getLastTradedVolume().doubleValue();
+            tickParamsIndex += 7;
+        }
+        return tickParams;
+    }
+
+    @Benchmark
+    public double[] streaming() throws Exception {
+        CandleSeries candles = priceResponseDecoder.decode(response).getCandles();
+        int tickParamsIndex = 0;
+        for (int i = candles.size() - 1; i >= 0; --i) {
+            tickParams[tickParamsIndex] = candles.getOpenAsk(i);
+            tickParams[tickParamsIndex + 1] = candles.getCloseAsk(i);
+            tickParams[tickParamsIndex + 2] = candles.getHighAsk(i);
+            tickParams[tickParamsIndex + 3] = candles.getLowAsk(i);
+            tickParams[tickParamsIndex + 4] = TimeConvert.getOLEDateFromMillisRounded(candles.getTime(i));
+            tickParams[tickParamsIndex + 5] = candles.getSpread(i);
+            tickParams[tickParamsIndex + 6] = candles.getVolume(i);
+            tickParamsIndex += 7;
+        }
+        return tickParams;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(PriceDecodeBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,76 @@
+package com.danlind.igz.benchmark;
+
+import com.danlind.igz.IgzApplication;
+import com.danlind.igz.ZorroBridge;
+import com.danlind.igz.config.PluginContext;
+import com.danlind.igz.handler.TimeHandler;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time from creating the plugin until the components behind BrokerTime are ready, with the explicit
+ * PluginContext and with the Spring Boot context the plugin used before. Every fork is a cold JVM, the way Zorro loads
+ * the plugin. The broker time call itself needs a logged in session and is not part of the measurement.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.danlind.igz.benchmark.StartupBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+
+    private File pluginDirectory;
+    private ConfigurableApplicationContext springContext;
+
+    @Setup
+    public void setUp() throws IOException {
+        pluginDirectory = Files.createTempDirectory("igz-startup").toFile();
+        File properties = new File(pluginDirectory, "application.properties");
+        try (PrintWriter writer = new PrintWriter(properties)) {
+            writer.println("plugin.demoApiUrl=https://demo-api.ig.com/gateway/deal");
+            writer.println("plugin.realApiUrl=https://api.ig.com/gateway/deal");
+            writer.println("plugin.pluginDirectory=" + pluginDirectory.getPath().replace('\\', '/'));
+        }
+        System.setProperty("spring.config.location", properties.toURI().toString());
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (springContext != null) {
+            springContext.close();
+        }
+    }
+
+    @Benchmark
+    public TimeHandler pluginContext() {
+        PluginContext context = new PluginContext(pluginDirectory);
+        new ZorroBridge(context);
+        return context.getTimeHandler();
+    }
+
+    @Benchmark
+    public TimeHandler springBoot() {
+        springContext = SpringApplication.run(IgzApplication.class);
+        return springContext.getBean(TimeHandler.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(StartupBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,78 @@
+package com.danlind.igz.benchmark;
+
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.misc.AssetSlot;
+import com.danlind.igz.misc.DecimalParser;
+import com.danlind.igz.misc.PriceSnapshotStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing streamed BID/OFR ticks into asset slots through Double.parseDouble with the allocation free
+ * DecimalParser. Scores are ticks per second, the GC profiler reports the bytes allocated per tick as gc.alloc.rate.norm.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.danlind.igz.benchmark.TickParseBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TickParseBenchmark {
+
+    private static final int TICKS = 1024;
+
+    @Param({"50"})
+    int assets;
+
+    private String[] bids;
+    private String[] offers;
+    private AssetSlot[] slotsByItem;
+
+    @Setup
+    public void setUp() {
+        bids = new String[TICKS];
+        offers = new String[TICKS];
+        for (int i = 0; i < TICKS; i++) {
+            double price = 1.09 + (i % 100) * 0.00001;
+            bids[i] = String.format(Locale.ROOT, "%.5f", price);
+            offers[i] = String.format(Locale.ROOT, "%.5f", price + 0.00008);
+        }
+        PriceSnapshotStore priceSnapshotStore = new PriceSnapshotStore();
+        slotsByItem = new AssetSlot[assets];
+        for (int i = 0; i < assets; i++) {
+            slotsByItem[i] = priceSnapshotStore.register(new Epic("CS.D.EPIC" + i + ".CFD.IP"));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public void doubleParseDouble() {
+        for (int i = 0; i < TICKS; i++) {
+            slotsByItem[i % assets].updatePrice(Double.parseDouble(bids[i]), Double.parseDouble(offers[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public void decimalParser() {
+        for (int i = 0; i < TICKS; i++) {
+            slotsByItem[i % assets].updatePrice(DecimalParser.parse(bids[i]), DecimalParser.parse(offers[i]));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(TickParseBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -94,6 +94,7 @@ public class BrokerAccountTest {
 
         double[] accountParams = new double[3];
         brokerAccount.startAccountSubscription();
+        brokerAccount.loadAccountDetails();
         brokerAccount.fillAccountParams(accountParams);
 
         assertArrayEquals(new double[]{5000, 10, 15}, accountParams,0);
@@ -109,6 +110,7 @@ public class BrokerAccountTest {
 
         double[] accountParams = new double[3];
         brokerAccount.startAccountSubscription();
+        brokerAccount.loadAccountDetails();
         brokerAccount.fillAccountParams(accountParams);
 
         subject.onError(new Exception("TestException"));
@@ -116,4 +118,33 @@ public class BrokerAccountTest {
         assertEquals(true,subject.hasThrowable());
         assertEquals("TestException", subject.getThrowable().getMessage());
     }
+
+    @Test
+    public void testStreamedAccountDetailsNotOverwrittenByLoad() throws Exception {
+        PublishSubject<AccountDetails> subject = PublishSubject.create();
+        when(streamingApiAdapter.getAccountObservable("TestAccountId")).thenReturn(subject);
+        when(restApi.getAccountsV1(any())).thenAnswer(invocation -> {
+            subject.onNext(new AccountDetails(20000, 20, 30));
+            GetAccountsV1Response accountsV1Response = new GetAccountsV1Response();
+            AccountsItem accountsItem = new AccountsItem();
+            Balance balance = new Balance();
+            balance.setBalance(5000F);
+            balance.setProfitLoss(10F);
+            balance.setDeposit(15F);
+            accountsItem.setBalance(balance);
+            accountsItem.setAccountId("TestAccountId");
+            accountsV1Response.setAccounts(Collections.singletonList(accountsItem));
+            return accountsV1Response;
+        });
+
+        double[] accountParams = new double[3];
+        brokerAccount.startAccountSubscription();
+        while (!subject.hasObservers()) {
+            Thread.sleep(1);
+        }
+        brokerAccount.loadAccountDetails();
+        brokerAccount.fillAccountParams(accountParams);
+
+        assertArrayEquals(new double[]{20000, 20, 30}, accountParams,0);
+    }
 }
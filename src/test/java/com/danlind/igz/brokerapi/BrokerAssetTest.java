@@ -2,26 +2,35 @@ package com.danlind.igz.brokerapi;
 
 import com.danlind.igz.Zorro;
 import com.danlind.igz.adapter.StreamingApiAdapter;
+import com.danlind.igz.config.PluginProperties;
 import com.danlind.igz.domain.ContractDetails;
 import com.danlind.igz.domain.PriceDetails;
 import com.danlind.igz.domain.types.Epic;
-import com.danlind.igz.domain.types.Volume;
 import com.danlind.igz.handler.HistoryHandler;
 import com.danlind.igz.misc.MarketDataProvider;
+import com.danlind.igz.misc.MarketStatistics;
+import com.danlind.igz.misc.MinuteBarBuilder;
 import com.danlind.igz.ig.api.client.rest.dto.markets.getMarketDetailsV3.MarketStatus;
-import com.danlind.igz.misc.VolumeProvider;
-import io.reactivex.subjects.PublishSubject;
+import com.danlind.igz.misc.PriceSnapshotStore;
+import io.reactivex.Completable;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -43,26 +52,29 @@ public class BrokerAssetTest {
     @Mock
     HistoryHandler historyHandler;
 
+    @Mock
+    PluginProperties pluginProperties;
+
+    @Spy
+    PriceSnapshotStore priceSnapshotStore = new PriceSnapshotStore();
+
+    @Spy
+    MarketStatistics marketStatistics = new MarketStatistics(5, 100, 5);
+
     @InjectMocks
     BrokerAsset brokerAsset;
 
     private Epic testEpic;
-    private PublishSubject<Volume> volumeSubject;
-    private PublishSubject<PriceDetails> priceDetailsSubject;
     private ContractDetails contractDetails;
-    private VolumeProvider volumeProvider;
 
     @Before
     public void setUp() {
         testEpic = new Epic("TestEpic");
-        volumeSubject = PublishSubject.create();
-        priceDetailsSubject = PublishSubject.create();
         contractDetails = new ContractDetails(testEpic, 2, 3, 4, -200, 10, 12, "-", "EUR", 1, MarketStatus.TRADEABLE);
-        volumeProvider = new VolumeProvider();
 
-        when(adapter.getTickObservable(testEpic)).thenReturn(priceDetailsSubject);
-        when(adapter.getVolumeObservable(testEpic)).thenReturn(volumeSubject);
+        when(adapter.getTickCompletable(anyList())).thenReturn(Completable.never());
         when(marketDataProvider.getContractDetails(testEpic)).thenReturn(contractDetails);
+        when(historyHandler.getRecentVolumes(any(), anyInt())).thenReturn(Collections.emptyList());
     }
 
     @Test
@@ -75,25 +87,31 @@ public class BrokerAssetTest {
         assertEquals(12, details.getAsk(), 0);
 
         //Confirm initial setup overridden when tick arrives
-        priceDetailsSubject.onNext(new PriceDetails(testEpic, 100,120));
+        priceSnapshotStore.getSlot(testEpic).updatePrice(100, 120);
         details = brokerAsset.getPriceDetails(testEpic);
         assertEquals(100, details.getBid(), 0);
         assertEquals(120, details.getAsk(), 0);
 
         //Confirm new tick overrides previous tick
-        priceDetailsSubject.onNext(new PriceDetails(testEpic, 1000,1200));
+        priceSnapshotStore.getSlot(testEpic).updatePrice(1000, 1200);
         details = brokerAsset.getPriceDetails(testEpic);
         assertEquals(1000, details.getBid(), 0);
         assertEquals(1200, details.getAsk(), 0);
     }
 
     @Test
-    public void testGetAsset() {
-        brokerAsset = new BrokerAsset(marketDataProvider, volumeProvider, adapter, historyHandler);
+    public void testGetAsset() throws Exception {
+        brokerAsset = new BrokerAsset(marketDataProvider, marketStatistics, adapter, historyHandler, priceSnapshotStore, pluginProperties);
         brokerAsset.subscribeToLighstreamerTickUpdates(testEpic);
+        brokerAsset.getPriceDetails(testEpic);
 
-        priceDetailsSubject.onNext(new PriceDetails(testEpic, 100,120));
-        volumeSubject.onNext(new Volume(10));
+        //The first bar after subscribing is partial, the second one is completed by the tick in the third minute
+        MinuteBarBuilder minuteBars = priceSnapshotStore.getSlot(testEpic).getMinuteBars();
+        minuteBars.onTick(30000, 99, 119, 100);
+        minuteBars.onTick(60000, 99, 119, 4);
+        minuteBars.onTick(90000, 99, 119, 6);
+        minuteBars.onTick(120000, 99, 119, 1);
+        priceSnapshotStore.getSlot(testEpic).updatePrice(100, 120);
 
         double[] assetParams = new double[9];
         brokerAsset.getLatestAssetData(testEpic, assetParams);
@@ -108,15 +126,59 @@ public class BrokerAssetTest {
         assertEquals(-200, assetParams[6], 0);  //Margin Cost, returns leverage
         assertEquals(0, assetParams[7], 0);  //Roll over
         assertEquals(0, assetParams[8], 0);  //Roll over
+
+        //Confirms the handle lookup gives the same result as the epic lookup
+        double[] handleParams = new double[9];
+        brokerAsset.getLatestAssetData(priceSnapshotStore.getHandle(testEpic), handleParams);
+        assertArrayEquals(assetParams, handleParams, 0);
+
+        verify(historyHandler, times(1)).appendMinuteBar(eq(testEpic), any());
+        assertEquals(10, marketStatistics.get(testEpic).getVolumeMean(), 0);
+    }
+
+    @Test
+    public void testFillAssetSnapshot() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(2 * BrokerAsset.ASSET_SNAPSHOT_STRIDE * Double.BYTES);
+        brokerAsset.setAssetSnapshotBuffer(buffer);
+        brokerAsset.subscribeToLighstreamerTickUpdates(testEpic);
+        brokerAsset.getPriceDetails(testEpic);
+        priceSnapshotStore.getSlot(testEpic).updatePrice(100, 120);
+
+        assertEquals(1, brokerAsset.fillAssetSnapshot());
+
+        //Confirms the snapshot holds the return value followed by the asset params, in native order
+        DoubleBuffer snapshot = buffer.order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        int handle = brokerAsset.getAssetHandle(testEpic);
+        assertEquals(1, snapshot.get(handle * BrokerAsset.ASSET_SNAPSHOT_STRIDE), 0); //Asset available
+        assertEquals(120, snapshot.get(handle * BrokerAsset.ASSET_SNAPSHOT_STRIDE + 1), 0); //Ask
+        assertEquals(20, snapshot.get(handle * BrokerAsset.ASSET_SNAPSHOT_STRIDE + 2), 0); //Spread
+        assertEquals(2, snapshot.get(handle * BrokerAsset.ASSET_SNAPSHOT_STRIDE + 4), 0); //Pip Size
     }
 
     @Test
     public void testSubscribeToInvalidAsset() throws Exception {
-        when(adapter.getTickObservable(testEpic)).thenThrow(new RuntimeException());
+        when(marketDataProvider.getContractDetails(testEpic)).thenReturn(null);
 
         PowerMockito.mockStatic(Zorro.class);
         PowerMockito.doNothing().when(Zorro.class,"indicateError");
 
-        assertEquals(0, brokerAsset.subscribeToLighstreamerTickUpdates(testEpic));
+        assertEquals(1, brokerAsset.subscribeToLighstreamerTickUpdates(testEpic));
+        assertEquals(0, brokerAsset.getLatestAssetData(testEpic, new double[9]));
+    }
+
+    @Test
+    public void testSubscriptionsAreBatched() {
+        Epic otherEpic = new Epic("OtherEpic");
+        when(marketDataProvider.getContractDetails(otherEpic)).thenReturn(new ContractDetails(otherEpic, 2, 3, 4, -200, 20, 22, "-", "EUR", 1, MarketStatus.TRADEABLE));
+        when(pluginProperties.getSubscribeBatchDelay()).thenReturn(60000);
+        brokerAsset = new BrokerAsset(marketDataProvider, marketStatistics, adapter, historyHandler, priceSnapshotStore, pluginProperties);
+
+        assertEquals(1, brokerAsset.subscribeToLighstreamerTickUpdates(testEpic));
+        assertEquals(1, brokerAsset.subscribeToLighstreamerTickUpdates(otherEpic));
+        assertEquals(1, brokerAsset.getLatestAssetData(otherEpic, new double[9]));
+        assertEquals(1, brokerAsset.getLatestAssetData(testEpic, new double[9]));
+
+        verify(adapter, times(1)).getTickCompletable(Arrays.asList(priceSnapshotStore.getSlot(testEpic), priceSnapshotStore.getSlot(otherEpic)));
+        verify(marketDataProvider, times(1)).updateMarketDetails(Arrays.asList(testEpic, otherEpic));
     }
 }
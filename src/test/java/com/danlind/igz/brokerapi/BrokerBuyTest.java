@@ -2,6 +2,7 @@ package com.danlind.igz.brokerapi;
 
 import com.danlind.igz.Zorro;
 import com.danlind.igz.adapter.RestApiAdapter;
+import com.danlind.igz.adapter.StreamingApiAdapter;
 import com.danlind.igz.config.PluginProperties;
 import com.danlind.igz.domain.ContractDetails;
 import com.danlind.igz.domain.OrderDetails;
@@ -14,6 +15,9 @@ import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.Direction;
 import com.danlind.igz.misc.MarketDataProvider;
 import com.danlind.igz.ig.api.client.RestAPI;
+import com.danlind.igz.misc.DealConfirmationProvider;
+import com.danlind.igz.misc.PendingOrders;
+import com.danlind.igz.misc.OrderStore;
 import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.DealStatus;
 import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.GetDealConfirmationV1Response;
 import com.danlind.igz.ig.api.client.rest.dto.markets.getMarketDetailsV3.MarketStatus;
@@ -24,8 +28,6 @@ import io.reactivex.plugins.RxJavaPlugins;
 import io.reactivex.schedulers.Schedulers;
 import io.reactivex.subscribers.TestSubscriber;
 import net.openhft.chronicle.core.values.IntValue;
-import net.openhft.chronicle.map.ChronicleMap;
-import net.openhft.chronicle.map.ChronicleMapBuilder;
 import org.apache.commons.lang.RandomStringUtils;
 import org.junit.Before;
 import org.junit.Test;
@@ -45,7 +47,10 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -66,7 +71,7 @@ public class BrokerBuyTest {
     @Mock
     LoginHandler loginHandler;
 
-    ChronicleMap<Integer, OrderDetails> orderReferenceMap;
+    OrderStore orderStore;
 
     @Mock
     PluginProperties pluginProperties;
@@ -74,10 +79,14 @@ public class BrokerBuyTest {
     @Mock
     OrderDetails orderDetails;
 
+    @Mock
+    StreamingApiAdapter streamingApiAdapter;
+
     @InjectMocks
     RestApiAdapter restApiAdapter;
 
     BrokerBuy brokerBuy;
+    PendingOrders pendingOrders;
 
     ContractDetails contractDetails;
     Epic testEpic = new Epic("TestEpic");
@@ -86,8 +95,9 @@ public class BrokerBuyTest {
 
     @Before
     public void setUp() throws Exception {
-        orderReferenceMap = initMap();
-        brokerBuy = new BrokerBuy(restApiAdapter, marketDataProvider, orderReferenceMap);
+        orderStore = OrderStore.createInMemory(50);
+        pendingOrders = new PendingOrders(pluginProperties);
+        brokerBuy = new BrokerBuy(restApiAdapter, marketDataProvider, orderStore, new DealConfirmationProvider(restApiAdapter, streamingApiAdapter, pluginProperties), pendingOrders);
 
         PowerMockito.mockStatic(Zorro.class);
         PowerMockito.doNothing().when(Zorro.class,"indicateError");
@@ -119,11 +129,37 @@ public class BrokerBuyTest {
     @Test
     public void testCreatePositionAccepted() throws Exception {
         assertEquals(1001, brokerBuy.createPosition(testEpic,tradeParams));
-        assertNotNull(orderReferenceMap.get(1001));
-        assertEquals("TestDealId",orderReferenceMap.get(1001).getDealId().getValue());
+        assertNotNull(orderStore.get(1001));
+        assertEquals("TestDealId",orderStore.get(1001).getDealId().getValue());
         assertEquals(105, tradeParams[2], 0);
     }
 
+    @Test
+    public void testCreatePositionAsync() throws Exception {
+        when(pluginProperties.isAsyncOrders()).thenReturn(true);
+        when(pluginProperties.getAsyncOrderSettleTimeout()).thenReturn(5000);
+
+        assertEquals(1001, brokerBuy.createPosition(testEpic,tradeParams));
+        pendingOrders.awaitSettlement(1001);
+
+        assertEquals("TestDealId",orderStore.get(1001).getDealId().getValue());
+        assertFalse(pendingOrders.getPendingOrder(1001).isPresent());
+        assertFalse(pendingOrders.removeFailed(1001));
+    }
+
+    @Test
+    public void testCreatePositionAsyncRejected() throws Exception {
+        when(pluginProperties.isAsyncOrders()).thenReturn(true);
+        when(pluginProperties.getAsyncOrderSettleTimeout()).thenReturn(5000);
+        getDealConfirmationV1Response.setDealStatus(DealStatus.REJECTED);
+
+        assertEquals(1001, brokerBuy.createPosition(testEpic,tradeParams));
+        pendingOrders.awaitSettlement(1001);
+
+        assertNull(orderStore.get(1001));
+        assertTrue(pendingOrders.removeFailed(1001));
+    }
+
     @Test
     public void testBrokerBuyRejected() {
         getDealConfirmationV1Response.setDealStatus(DealStatus.REJECTED);
@@ -188,13 +224,4 @@ public class BrokerBuyTest {
         assertEquals(0, brokerBuy.setOrderText(new OrderText("VeryLong0£")));
     }
 
-    private ChronicleMap<Integer, OrderDetails>  initMap() {
-        final OrderDetails sampleOrderDetails = new OrderDetails(new Epic("IX.D.OMX.IFD.IP"), 10000, Direction.BUY, 20, new DealId("DIAAAAA9QN6L4AU"));
-
-        return  ChronicleMapBuilder
-            .of(Integer.class, OrderDetails.class)
-            .averageValue(sampleOrderDetails)
-            .entries(50)
-            .create();
-    }
 }
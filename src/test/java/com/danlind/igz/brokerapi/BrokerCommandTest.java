@@ -0,0 +1,58 @@
+package com.danlind.igz.brokerapi;
+
+import com.danlind.igz.config.PluginProperties;
+import com.danlind.igz.config.ZorroReturnValues;
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.misc.AssetStatistics;
+import com.danlind.igz.misc.MarketStatistics;
+import com.danlind.igz.misc.PriceAllowanceTracker;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BrokerCommandTest {
+
+    private MarketStatistics marketStatistics;
+    private BrokerCommand brokerCommand;
+    private Epic epic;
+
+    @Before
+    public void setUp() {
+        marketStatistics = new MarketStatistics(3, 3, 3);
+        brokerCommand = new BrokerCommand(new PriceAllowanceTracker(new PluginProperties()), marketStatistics);
+        epic = new Epic("TestEpic");
+    }
+
+    @Test
+    public void testStatisticsOfSymbol() {
+        AssetStatistics statistics = marketStatistics.register(epic);
+        statistics.addVolume(10);
+        statistics.addVolume(20);
+        statistics.onTick(0, 100, 101);
+        statistics.onTick(1, 100, 103);
+
+        assertEquals(ZorroReturnValues.BROKER_COMMAND_OK.getValue(), brokerCommand.setSymbol(epic));
+        assertEquals(15, brokerCommand.brokerCommand(BrokerCommand.GET_VOLUME_MEAN), 0);
+        assertEquals(5, brokerCommand.brokerCommand(BrokerCommand.GET_VOLUME_STDDEV), 1e-9);
+        assertEquals(2, brokerCommand.brokerCommand(BrokerCommand.GET_SPREAD_MEAN), 1e-9);
+        assertEquals(1, brokerCommand.brokerCommand(BrokerCommand.GET_SPREAD_STDDEV), 1e-9);
+    }
+
+    @Test
+    public void testStatisticsFailWithoutValues() {
+        assertEquals(ZorroReturnValues.BROKER_COMMAND_FAIL.getValue(), brokerCommand.brokerCommand(BrokerCommand.GET_VOLUME_MEAN), 0);
+
+        brokerCommand.setSymbol(new Epic("UnknownEpic"));
+        assertEquals(ZorroReturnValues.BROKER_COMMAND_FAIL.getValue(), brokerCommand.brokerCommand(BrokerCommand.GET_SPREAD_MEAN), 0);
+
+        marketStatistics.register(epic);
+        brokerCommand.setSymbol(epic);
+        assertEquals(ZorroReturnValues.BROKER_COMMAND_FAIL.getValue(), brokerCommand.brokerCommand(BrokerCommand.GET_TICK_RATE_MEAN), 0);
+    }
+
+    @Test
+    public void testPriceAllowance() {
+        assertEquals(PriceAllowanceTracker.UNKNOWN, brokerCommand.brokerCommand(BrokerCommand.GET_PRICE_ALLOWANCE), 0);
+    }
+}
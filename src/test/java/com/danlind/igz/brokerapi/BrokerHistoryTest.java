@@ -3,8 +3,13 @@ package com.danlind.igz.brokerapi;
 import com.danlind.igz.Zorro;
 import com.danlind.igz.adapter.RestApiAdapter;
 import com.danlind.igz.adapter.StreamingApiAdapter;
+import com.danlind.igz.config.PluginProperties;
 import com.danlind.igz.domain.AccountDetails;
+import com.danlind.igz.domain.T6Ticks;
+import com.danlind.igz.domain.CandleSeries;
 import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.domain.types.Resolution;
+import com.danlind.igz.domain.types.Volume;
 import com.danlind.igz.handler.LoginHandler;
 import com.danlind.igz.ig.api.client.RestAPI;
 import com.danlind.igz.ig.api.client.rest.dto.getAccountsV1.AccountsItem;
@@ -12,9 +17,20 @@ import com.danlind.igz.ig.api.client.rest.dto.getAccountsV1.Balance;
 import com.danlind.igz.ig.api.client.rest.dto.getAccountsV1.GetAccountsV1Response;
 import com.danlind.igz.ig.api.client.rest.dto.prices.getPricesV3.*;
 import com.danlind.igz.ig.api.client.rest.dto.session.getSessionV1.GetSessionV1Response;
+import com.danlind.igz.misc.CandleCache;
+import com.danlind.igz.misc.MinuteBarBuilder;
+import com.danlind.igz.misc.PriceAllowanceTracker;
+import com.danlind.igz.misc.PriceHistoryDownloader;
+import com.danlind.igz.misc.PriceResponseDecoder;
+import com.danlind.igz.misc.PriceSnapshotStore;
+import com.danlind.igz.misc.TimeConvert;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.reactivex.subjects.PublishSubject;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -25,15 +41,22 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -52,11 +75,28 @@ public class BrokerHistoryTest {
     RestApiAdapter restApiAdapter;
 
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     BrokerHistory brokerHistory;
 
+    CandleCache candleCache;
+
+    PriceAllowanceTracker priceAllowanceTracker;
+
+    PriceSnapshotStore priceSnapshotStore;
+
     @Before
     public void setUp() throws Exception {
-        brokerHistory = new BrokerHistory(restApiAdapter);
+        PluginProperties pluginProperties = new PluginProperties();
+        priceAllowanceTracker = new PriceAllowanceTracker(pluginProperties);
+        candleCache = new CandleCache(folder.getRoot(), 1000);
+        priceSnapshotStore = new PriceSnapshotStore();
+        brokerHistory = new BrokerHistory(restApiAdapter,
+            candleCache,
+            new PriceHistoryDownloader(restApiAdapter, pluginProperties, priceAllowanceTracker),
+            priceAllowanceTracker,
+            priceSnapshotStore);
 
         GetSessionV1Response response = new GetSessionV1Response();
         response.setTimezoneOffset(2);
@@ -66,6 +106,9 @@ public class BrokerHistoryTest {
         pricesV3Response.setPrices(createPrices());
 
         when(restApi.getPricesV3(any(),anyString(),anyString(),anyString(),anyString(),anyString(),anyString(),anyString())).thenReturn(pricesV3Response);
+        byte[] pricesV3Json = new ObjectMapper().writeValueAsBytes(pricesV3Response);
+        when(restApi.getPricesV3Candles(any(),anyString(),anyString(),anyString(),anyString(),anyString(),anyString(),anyString()))
+            .thenAnswer(invocation -> new PriceResponseDecoder(new JsonFactory()).decode(pricesV3Json));
 
         when(restApi.getSessionV1(any(),anyBoolean())).thenReturn(sessionV1ResponseResponseEntity);
 
@@ -73,15 +116,72 @@ public class BrokerHistoryTest {
 
     @Test
     public void testGetHistory() throws Exception {
-        double[] params = new double[21];
-        assertEquals(3, brokerHistory.getPriceHistory(new Epic("MyTestClass"),30000,30020,1,60,params));
-        assertEquals(290, params[0], 0);
-        assertEquals(190, params[7], 0);
-        assertEquals(200, params[8], 0);
-        assertEquals(220, params[9], 0);
-        assertEquals(180, params[10], 0);
-        assertEquals(5, params[12], 0);
-        assertEquals(15000, params[13], 0);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(3 * T6Ticks.SIZE);
+        assertEquals(3, brokerHistory.getPriceHistory(new Epic("MyTestClass"),42850.4,42850.4375,1,60,buffer));
+        T6Ticks ticks = T6Ticks.wrap(buffer);
+        assertEquals(290, ticks.getOpen(0), 0);
+        assertEquals(190, ticks.getOpen(1), 0);
+        assertEquals(200, ticks.getClose(1), 0);
+        assertEquals(220, ticks.getHigh(1), 0);
+        assertEquals(180, ticks.getLow(1), 0);
+        assertEquals(5, ticks.getVal(1), 0);
+        assertEquals(15000, ticks.getVol(1), 0);
+    }
+
+    @Test
+    public void testGetHistoryServedFromCache() throws Exception {
+        assertEquals(3, brokerHistory.getPriceHistory(new Epic("MyTestClass"),42850.4,42850.4375,1,60,ByteBuffer.allocateDirect(3 * T6Ticks.SIZE)));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(3 * T6Ticks.SIZE);
+        assertEquals(3, brokerHistory.getPriceHistory(new Epic("MyTestClass"),42850.4,42850.4375,1,60,buffer));
+        T6Ticks ticks = T6Ticks.wrap(buffer);
+        assertEquals(290, ticks.getOpen(0), 0);
+        assertEquals(15000, ticks.getVol(1), 0);
+        verify(restApi, times(1)).getPricesV3Candles(any(),anyString(),anyString(),anyString(),anyString(),anyString(),anyString(),anyString());
+    }
+
+    @Test
+    public void testGetHistoryFillsGapAfterCache() throws Exception {
+        Epic epic = new Epic("MyTestClass");
+        long barMillis = TimeUnit.MINUTES.toMillis(1);
+        long startMillis = TimeConvert.millisFromIsoDateTime("2017-04-25T08:00:00".toCharArray(), 0, 19);
+        long endMillis = startMillis + 9 * barMillis;
+        CandleSeries candles = new CandleSeries();
+        for (long time = startMillis; time <= endMillis; time += barMillis) {
+            candles.add(time, 1, 2, 1, 2, 1, 2, 1, 2, 10);
+        }
+        candleCache.getStore(epic, Resolution.MINUTE).merge(candles, startMillis, endMillis, endMillis);
+
+        assertEquals(3, brokerHistory.getPriceHistory(epic,42850.4,42850.4375,1,60,ByteBuffer.allocateDirect(3 * T6Ticks.SIZE)));
+
+        //The cached bars are kept, the download starts at the end of the cache
+        assertEquals(startMillis, candleCache.getStore(epic, Resolution.MINUTE).getCoveredFrom());
+        verify(restApi, times(1)).getPricesV3Candles(any(),anyString(),anyString(),anyString(),anyString(),anyString(),anyString(),anyString());
+    }
+
+    @Test
+    public void testGetHistoryAllowanceExhausted() throws Exception {
+        Allowance allowance = new Allowance();
+        allowance.setRemainingAllowance(0);
+        allowance.setTotalAllowance(10000);
+        allowance.setAllowanceExpiry(3600);
+        priceAllowanceTracker.updateAllowance(allowance);
+
+        assertEquals(0, brokerHistory.getPriceHistory(new Epic("MyTestClass"),42850.4,42850.4375,1,60,ByteBuffer.allocateDirect(3 * T6Ticks.SIZE)));
+        verify(restApi, times(0)).getPricesV3Candles(any(),anyString(),anyString(),anyString(),anyString(),anyString(),anyString(),anyString());
+    }
+
+    @Test
+    public void testGetHistoryResampledResolution() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(3 * T6Ticks.SIZE);
+        assertEquals(2, brokerHistory.getPriceHistory(new Epic("MyTestClass"),42850.4,42850.4375,4,15,buffer));
+        T6Ticks ticks = T6Ticks.wrap(buffer);
+        assertEquals(190, ticks.getOpen(0), 0);
+        assertEquals(300, ticks.getClose(0), 0);
+        assertEquals(320, ticks.getHigh(0), 0);
+        assertEquals(180, ticks.getLow(0), 0);
+        assertEquals(40000, ticks.getVol(0), 0);
+        assertEquals(90, ticks.getOpen(1), 0);
+        verify(restApi, times(1)).getPricesV3Candles(any(),anyString(),anyString(),anyString(),anyString(),anyString(),anyString(),eq("MINUTE_2"));
     }
 
     @Test
@@ -90,6 +190,66 @@ public class BrokerHistoryTest {
         assertEquals(3, pricesItems.size());
     }
 
+    @Test
+    public void testGetRecentVolumes() throws Exception {
+        List<Volume> volumes = brokerHistory.getRecentVolumes(new Epic("MyTestClass"), 3);
+        assertEquals(Arrays.asList(10000, 15000, 25000), volumes.stream().map(Volume::getValue).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testGetRecentVolumesServedFromCache() throws Exception {
+        long barMillis = TimeUnit.MINUTES.toMillis(1);
+        long endMillis = System.currentTimeMillis() / barMillis * barMillis;
+        long startMillis = endMillis - 10 * barMillis;
+        CandleSeries candles = new CandleSeries();
+        for (long time = startMillis; time <= endMillis; time += barMillis) {
+            candles.add(time, 1, 2, 1, 2, 1, 2, 1, 2, (time - startMillis) / barMillis);
+        }
+        candleCache.getStore(new Epic("MyTestClass"), Resolution.MINUTE).merge(candles, startMillis, endMillis, endMillis);
+
+        List<Volume> volumes = brokerHistory.getRecentVolumes(new Epic("MyTestClass"), 3);
+
+        assertEquals(Arrays.asList(7, 8, 9), volumes.stream().map(Volume::getValue).collect(Collectors.toList()));
+        verify(restApi, times(0)).getPricesV3(any(),anyString(),anyString(),anyString(),anyString(),anyString(),anyString(),anyString());
+    }
+
+    @Test
+    public void testGetHistoryWithLiveBar() throws Exception {
+        Epic epic = new Epic("MyTestClass");
+        long barMillis = TimeUnit.MINUTES.toMillis(1);
+        long startMillis = TimeConvert.millisFromIsoDateTime("2017-04-25T10:00:00".toCharArray(), 0, 19);
+        long endMillis = startMillis + 9 * barMillis;
+        CandleSeries candles = new CandleSeries();
+        for (long time = startMillis; time <= endMillis; time += barMillis) {
+            candles.add(time, 1, 2, 1, 2, 1, 2, 1, 2, 10);
+        }
+        candleCache.getStore(epic, Resolution.MINUTE).merge(candles, startMillis, endMillis, endMillis);
+        MinuteBarBuilder minuteBars = priceSnapshotStore.register(epic).getMinuteBars();
+        minuteBars.start(bar -> brokerHistory.appendMinuteBar(epic, bar));
+        minuteBars.onTick(endMillis + 30000, 98, 100, Double.NaN);
+        minuteBars.onTick(endMillis + barMillis + 5000, 99, 101, Double.NaN);
+        minuteBars.onTick(endMillis + barMillis + 20000, 104, 106, Double.NaN);
+
+        //The live bar follows the cached bars
+        ByteBuffer buffer = ByteBuffer.allocateDirect(5 * T6Ticks.SIZE);
+        assertEquals(5, brokerHistory.getPriceHistory(epic, 0, TimeConvert.getOLEDateFromMillis(endMillis + barMillis + 30000), 1, 5, buffer));
+        T6Ticks ticks = T6Ticks.wrap(buffer);
+        assertEquals(101, ticks.getOpen(0), 0);
+        assertEquals(106, ticks.getClose(0), 0);
+        assertEquals(2, ticks.getVol(0), 0);
+        assertEquals(2, ticks.getOpen(1), 0);
+
+        //Once completed the live bar is appended to the cache and the next one follows it
+        minuteBars.onTick(endMillis + 2 * barMillis + 1000, 109, 111, Double.NaN);
+        buffer = ByteBuffer.allocateDirect(5 * T6Ticks.SIZE);
+        assertEquals(5, brokerHistory.getPriceHistory(epic, 0, TimeConvert.getOLEDateFromMillis(endMillis + 2 * barMillis + 30000), 1, 5, buffer));
+        ticks = T6Ticks.wrap(buffer);
+        assertEquals(111, ticks.getOpen(0), 0);
+        assertEquals(101, ticks.getOpen(1), 0);
+        assertEquals(106, ticks.getClose(1), 0);
+        assertEquals(2, ticks.getOpen(2), 0);
+        verify(restApi, times(0)).getPricesV3Candles(any(),anyString(),anyString(),anyString(),anyString(),anyString(),anyString(),anyString());
+    }
 
     private List<PricesItem> createPrices() {
         PricesItem item1 = new PricesItem();
@@ -12,6 +12,7 @@ import com.danlind.igz.ig.api.client.rest.AuthenticationResponseAndConversationC
 import com.danlind.igz.ig.api.client.rest.ConversationContextV3;
 import com.danlind.igz.ig.api.client.rest.dto.session.createSessionV3.AccessTokenResponse;
 import com.lightstreamer.ls_client.ConnectionListener;
+import io.reactivex.Completable;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -25,8 +26,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.client.HttpClientErrorException;
 
 import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
@@ -104,6 +107,40 @@ public class BrokerLoginTest {
         assertEquals(0,brokerLogin.connect("TestId", "TestPassword", "Real"));
     }
 
+    @Test
+    public void testConnectRunsLoginSteps() throws Exception {
+        AtomicBoolean sessionStepDone = new AtomicBoolean();
+        AtomicBoolean streamingStepDone = new AtomicBoolean();
+        Completable sessionSteps = Completable.fromAction(() -> {
+            assertEquals("TestAccountId", brokerLogin.getAccountId());
+            sessionStepDone.set(true);
+        });
+        Completable streamingSteps = Completable.fromAction(() -> {
+            verify(streamingAPI).connect(anyString(), any(), anyString());
+            streamingStepDone.set(true);
+        });
+
+        assertEquals(1, brokerLogin.connect("TestId", "TestPassword", "Real", sessionSteps, streamingSteps));
+        assertTrue(sessionStepDone.get());
+        assertTrue(streamingStepDone.get());
+    }
+
+    @Test
+    public void testConnectFailedWhenLoginStepFails() throws Exception {
+        assertEquals(0, brokerLogin.connect("TestId", "TestPassword", "Real",
+            Completable.error(new RuntimeException("TestException")), Completable.complete()));
+    }
+
+    @Test
+    public void testLoginStepsNotRunWhenSessionFails() throws Exception {
+        when(restApi.createSessionV3(any(), any())).thenThrow(new RuntimeException());
+        AtomicBoolean stepDone = new AtomicBoolean();
+        Completable step = Completable.fromAction(() -> stepDone.set(true));
+
+        assertEquals(0, brokerLogin.connect("TestId", "TestPassword", "Real", step, step));
+        assertEquals(false, stepDone.get());
+    }
+
     @Test
     public void testRefreshToken() throws Exception {
         when(pluginProperties.getRefreshTokenInterval()).thenReturn(300);
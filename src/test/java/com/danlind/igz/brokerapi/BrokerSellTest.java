@@ -2,6 +2,7 @@ package com.danlind.igz.brokerapi;
 
 import com.danlind.igz.Zorro;
 import com.danlind.igz.adapter.RestApiAdapter;
+import com.danlind.igz.adapter.StreamingApiAdapter;
 import com.danlind.igz.config.PluginProperties;
 import com.danlind.igz.domain.ContractDetails;
 import com.danlind.igz.domain.OrderDetails;
@@ -9,6 +10,8 @@ import com.danlind.igz.domain.types.DealId;
 import com.danlind.igz.domain.types.Epic;
 import com.danlind.igz.handler.LoginHandler;
 import com.danlind.igz.ig.api.client.RestAPI;
+import com.danlind.igz.misc.DealConfirmationProvider;
+import com.danlind.igz.misc.PendingOrders;
 import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.DealStatus;
 import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.GetDealConfirmationV1Response;
 import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.PositionStatus;
@@ -16,8 +19,7 @@ import com.danlind.igz.ig.api.client.rest.dto.markets.getMarketDetailsV3.MarketS
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.closeOTCPositionV1.CloseOTCPositionV1Response;
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.Direction;
 import com.danlind.igz.misc.MarketDataProvider;
-import net.openhft.chronicle.map.ChronicleMap;
-import net.openhft.chronicle.map.ChronicleMapBuilder;
+import com.danlind.igz.misc.OrderStore;
 import org.apache.http.annotation.Contract;
 import org.junit.Before;
 import org.junit.Test;
@@ -51,7 +53,7 @@ public class BrokerSellTest {
     @Mock
     LoginHandler loginHandler;
 
-    ChronicleMap<Integer, OrderDetails> orderReferenceMap;
+    OrderStore orderStore;
 
     @Mock
     MarketDataProvider marketDataProvider;
@@ -61,6 +63,9 @@ public class BrokerSellTest {
 
     OrderDetails orderDetails;
 
+    @Mock
+    StreamingApiAdapter streamingApiAdapter;
+
     @InjectMocks
     RestApiAdapter restApiAdapter;
 
@@ -74,11 +79,11 @@ public class BrokerSellTest {
     public void setUp() throws Exception {
         DealId dealId = new DealId("TestDealId");
         orderDetails = new OrderDetails(testEpic, 105, Direction.BUY, 100, dealId);
-        orderReferenceMap = initMap();
-        orderReferenceMap.put(1000,orderDetails);
+        orderStore = OrderStore.createInMemory(50);
+        orderStore.put(1000,orderDetails);
 
 
-        brokerSell = new BrokerSell(restApiAdapter, orderReferenceMap, marketDataProvider);
+        brokerSell = new BrokerSell(restApiAdapter, orderStore, marketDataProvider, new DealConfirmationProvider(restApiAdapter, streamingApiAdapter, pluginProperties), new PendingOrders(pluginProperties));
 
         PowerMockito.mockStatic(Zorro.class);
         PowerMockito.doNothing().when(Zorro.class,"indicateError");
@@ -120,7 +125,7 @@ public class BrokerSellTest {
     public void testClosePartialPositionAccepted() {
         getDealConfirmationV1Response.setStatus(PositionStatus.PARTIALLY_CLOSED);
         assertEquals(1001, brokerSell.closePosition(1000, 50));
-        assertNotNull(orderReferenceMap.get(1001));
+        assertNotNull(orderStore.get(1001));
     }
 
     @Test
@@ -147,14 +152,5 @@ public class BrokerSellTest {
         assertEquals(0, brokerSell.closePosition(1000, 100));
     }
 
-    private ChronicleMap<Integer, OrderDetails>  initMap() {
-        final OrderDetails sampleOrderDetails = new OrderDetails(new Epic("IX.D.OMX.IFD.IP"), 10000, Direction.BUY, 20, new DealId("DIAAAAA9QN6L4AU"));
-
-        return  ChronicleMapBuilder
-            .of(Integer.class, OrderDetails.class)
-            .averageValue(sampleOrderDetails)
-            .entries(50)
-            .create();
-    }
 
 }
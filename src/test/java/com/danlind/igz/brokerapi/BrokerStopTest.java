@@ -2,16 +2,19 @@ package com.danlind.igz.brokerapi;
 
 import com.danlind.igz.Zorro;
 import com.danlind.igz.adapter.RestApiAdapter;
+import com.danlind.igz.adapter.StreamingApiAdapter;
 import com.danlind.igz.config.PluginProperties;
 import com.danlind.igz.domain.OrderDetails;
 import com.danlind.igz.domain.types.DealId;
 import com.danlind.igz.handler.LoginHandler;
 import com.danlind.igz.ig.api.client.RestAPI;
+import com.danlind.igz.misc.DealConfirmationProvider;
+import com.danlind.igz.misc.PendingOrders;
+import com.danlind.igz.misc.OrderStore;
 import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.DealStatus;
 import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.GetDealConfirmationV1Response;
 import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.Reason;
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.updateOTCPositionV2.UpdateOTCPositionV2Response;
-import net.openhft.chronicle.map.ChronicleMap;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -29,6 +32,7 @@ import java.nio.charset.Charset;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.when;
 
 /**
@@ -47,7 +51,7 @@ public class BrokerStopTest {
     LoginHandler loginHandler;
 
     @Mock
-    ChronicleMap<Integer, OrderDetails> orderReferenceMap;
+    OrderStore orderStore;
 
     @Mock
     OrderDetails orderDetails;
@@ -55,6 +59,9 @@ public class BrokerStopTest {
     @Mock
     PluginProperties pluginProperties;
 
+    @Mock
+    StreamingApiAdapter streamingApiAdapter;
+
     @InjectMocks
     RestApiAdapter restApiAdapter;
 
@@ -64,7 +71,7 @@ public class BrokerStopTest {
 
     @Before
     public void setUp() throws Exception {
-        brokerStop = new BrokerStop(restApiAdapter, orderReferenceMap);
+        brokerStop = new BrokerStop(restApiAdapter, orderStore, new DealConfirmationProvider(restApiAdapter, streamingApiAdapter, pluginProperties), new PendingOrders(pluginProperties));
 
         UpdateOTCPositionV2Response response = new UpdateOTCPositionV2Response();
         response.setDealReference("TestDealReference");
@@ -78,7 +85,7 @@ public class BrokerStopTest {
         when(restApi.updateOTCPositionV2(any(), any(), any())).thenReturn(response);
         when(restApi.getDealConfirmationV1(any(), any())).thenReturn(getDealConfirmationV1Response);
         when(orderDetails.getDealId()).thenReturn(new DealId("TestDealId"));
-        when(orderReferenceMap.get(any())).thenReturn(orderDetails);
+        when(orderStore.get(anyInt())).thenReturn(orderDetails);
         when(pluginProperties.getRestApiMaxRetry()).thenReturn(3);
         when(pluginProperties.getRestApiRetryInterval()).thenReturn(100);
     }
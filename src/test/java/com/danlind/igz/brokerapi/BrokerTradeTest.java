@@ -1,37 +1,51 @@
 package com.danlind.igz.brokerapi;
 
 import com.danlind.igz.adapter.RestApiAdapter;
+import com.danlind.igz.adapter.StreamingApiAdapter;
 import com.danlind.igz.config.PluginProperties;
 import com.danlind.igz.domain.ContractDetails;
 import com.danlind.igz.domain.OrderDetails;
+import com.danlind.igz.domain.PendingOrder;
+import com.danlind.igz.domain.PositionUpdate;
 import com.danlind.igz.domain.PriceDetails;
 import com.danlind.igz.domain.types.DealId;
+import com.danlind.igz.domain.types.DealReference;
 import com.danlind.igz.domain.types.Epic;
 import com.danlind.igz.handler.AssetHandler;
 import com.danlind.igz.handler.LoginHandler;
 import com.danlind.igz.misc.MarketDataProvider;
+import com.danlind.igz.misc.PendingOrders;
+import com.danlind.igz.misc.PositionBook;
+import com.danlind.igz.misc.OrderStore;
 import com.danlind.igz.ig.api.client.RestAPI;
 import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.DealStatus;
 import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.GetDealConfirmationV1Response;
 import com.danlind.igz.ig.api.client.rest.dto.markets.getMarketDetailsV3.MarketStatus;
-import com.danlind.igz.ig.api.client.rest.dto.positions.getPositionByDealIdV2.GetPositionByDealIdV2Response;
+import com.danlind.igz.ig.api.client.rest.dto.positions.getPositionsV2.GetPositionsV2Response;
+import com.danlind.igz.ig.api.client.rest.dto.positions.getPositionsV2.Position;
+import com.danlind.igz.ig.api.client.rest.dto.positions.getPositionsV2.PositionsItem;
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.closeOTCPositionV1.CloseOTCPositionV1Response;
 import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.Direction;
-import net.openhft.chronicle.map.ChronicleMap;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
-import org.springframework.http.HttpStatus;
-import org.springframework.web.client.HttpClientErrorException;
 
-import java.nio.charset.StandardCharsets;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -57,8 +71,10 @@ public class BrokerTradeTest {
     @Mock
     AssetHandler assetHandler;
 
-    private final OrderDetails sampleOrderDetails = new OrderDetails(new Epic("IX.D.OMX.IFD.IP"), 10000, Direction.BUY, 20, new DealId("DIAAAAA9QN6L4AU"));
-    ChronicleMap<Integer, OrderDetails> orderReferenceMap;
+    @Mock
+    StreamingApiAdapter streamingApiAdapter;
+
+    OrderStore orderStore;
 
     OrderDetails longOrderDetails;
     OrderDetails shortOrderDetails;
@@ -67,6 +83,9 @@ public class BrokerTradeTest {
     RestApiAdapter restApiAdapter;
 
     BrokerTrade brokerTrade;
+    PositionBook positionBook;
+    PendingOrders pendingOrders;
+    PublishSubject<PositionUpdate> positionUpdates;
     DealId dealId;
     DealId otherDealId;
     ContractDetails contractDetails;
@@ -75,13 +94,14 @@ public class BrokerTradeTest {
 
     @Before
     public void setUp() throws Exception {
-        orderReferenceMap = ChronicleMap
-            .of(Integer.class, OrderDetails.class)
-            .averageValue(sampleOrderDetails)
-            .entries(50)
-            .create();
+        orderStore = OrderStore.createInMemory(50);
 
-        brokerTrade = new BrokerTrade(orderReferenceMap, assetHandler, marketDataProvider, restApiAdapter);
+        RxJavaPlugins.setIoSchedulerHandler(scheduler -> Schedulers.trampoline());
+        positionUpdates = PublishSubject.create();
+        when(streamingApiAdapter.getPositionUpdateObservable(any())).thenReturn(positionUpdates);
+        positionBook = new PositionBook(restApiAdapter, streamingApiAdapter);
+        pendingOrders = new PendingOrders(pluginProperties);
+        brokerTrade = new BrokerTrade(orderStore, assetHandler, marketDataProvider, positionBook, pendingOrders);
 
 //        PowerMockito.mockStatic(Zorro.class);
 //        PowerMockito.doNothing().when(Zorro.class,"indicateError");
@@ -102,8 +122,8 @@ public class BrokerTradeTest {
 
         longOrderDetails = new OrderDetails(testEpic, 1.11281, Direction.BUY, 2, dealId);
         shortOrderDetails = new OrderDetails(testEpic, 1.11287, Direction.SELL, 2, otherDealId);
-        orderReferenceMap.put(1000, longOrderDetails);
-        orderReferenceMap.put(1001, shortOrderDetails);
+        orderStore.put(1000, longOrderDetails);
+        orderStore.put(1001, shortOrderDetails);
 
         PriceDetails priceDetails = new PriceDetails(testEpic, 1.11271, 1.11277);
 
@@ -120,6 +140,11 @@ public class BrokerTradeTest {
 
     }
 
+    @After
+    public void tearDown() {
+        RxJavaPlugins.reset();
+    }
+
     @Test
     public void testGetTradeStatusExistingLong() throws Exception {
         assertEquals(20000, brokerTrade.getTradeStatus(1000, orderParams));
@@ -143,13 +168,105 @@ public class BrokerTradeTest {
         assertEquals(0, brokerTrade.getTradeStatus(1002, orderParams));
     }
 
+    @Test
+    public void testGetTradeStatusPending() {
+        pendingOrders.add(1002, new PendingOrder(testEpic, Direction.BUY, 3));
+
+        assertEquals(3, brokerTrade.getTradeStatus(1002, orderParams));
+        assertEquals(1.11277,orderParams[0], 0);
+        assertEquals(1.11277,orderParams[1], 0);
+        assertEquals(0,orderParams[3], 0);
+    }
+
+    @Test
+    public void testGetTradeStatusPendingFailed() {
+        pendingOrders.add(1002, new PendingOrder(testEpic, Direction.BUY, 3));
+        pendingOrders.fail(1002);
+
+        assertEquals(-1, brokerTrade.getTradeStatus(1002, orderParams));
+        assertEquals(0, brokerTrade.getTradeStatus(1002, orderParams));
+    }
+
     @Test
     public void testCheckValidPosition() throws Exception {
-        when(restApi.getPositionByDealIdV2(any(), eq(dealId.getValue()))).thenReturn(new GetPositionByDealIdV2Response());
-        when(restApi.getPositionByDealIdV2(any(), eq(otherDealId.getValue()))).thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND, "Not Found","{\"errorCode\":\"error.position.notfound\"}".getBytes(), StandardCharsets.UTF_8));
+        when(restApi.getPositionsV2(any())).thenReturn(createPositionsResponse(dealId, 1));
+
+        assertEquals(2, orderStore.size());
+        brokerTrade.startPositionSubscription();
+        assertEquals(1, orderStore.size());
+        assertEquals(1, orderStore.get(1000).getPositionSize());
+        verify(restApi, never()).getPositionByDealIdV2(any(), any());
+    }
+
+    @Test
+    public void testCheckValidPositionRecoversUnstoredOrder() throws Exception {
+        GetPositionsV2Response response = createPositionsResponse(new DealId("RecoveredDealId"), 3);
+        response.getPositions().get(0).getPosition().setDealReference("TestDealReference");
+        response.getPositions().get(0).getPosition().setLevel(BigDecimal.valueOf(1.1129));
+        when(restApi.getPositionsV2(any())).thenReturn(response);
+        orderStore.recordOpenIntent(1002, testEpic, Direction.SELL, 3, new DealReference("TestDealReference"));
+
+        brokerTrade.startPositionSubscription();
+
+        assertEquals(1, orderStore.size());
+        assertEquals("RecoveredDealId", orderStore.get(1002).getDealId().getValue());
+        assertEquals(Direction.SELL, orderStore.get(1002).getDirection());
+        assertEquals(1.1129, orderStore.get(1002).getEntryLevel(), 0);
+        assertEquals(1003, orderStore.nextOrderId());
+    }
+
+    @Test
+    public void testCheckValidPositionKeepsOrdersWhenPositionsUnavailable() throws Exception {
+        when(restApi.getPositionsV2(any())).thenThrow(new RuntimeException("Unavailable"));
+
+        brokerTrade.startPositionSubscription();
+
+        assertEquals(2, orderStore.size());
+    }
+
+    @Test
+    public void testCheckValidPositionSharesPositionBookSnapshot() throws Exception {
+        when(restApi.getPositionsV2(any())).thenReturn(createPositionsResponse(dealId, 2));
+
+        brokerTrade.startPositionSubscription();
+
+        assertEquals(1, orderStore.size());
+        assertEquals(dealId.getValue(), orderStore.get(1000).getDealId().getValue());
+        assertTrue(positionBook.isOpen(dealId));
+        verify(restApi, times(1)).getPositionsV2(any());
+        verify(restApi, never()).getPositionByDealIdV2(any(), any());
+    }
+
+    @Test
+    public void testGetTradeStatusClosedOnBrokerSide() throws Exception {
+        when(restApi.getPositionsV2(any())).thenReturn(createPositionsResponse(dealId, 2));
+        brokerTrade.startPositionSubscription();
+
+        positionUpdates.onNext(new PositionUpdate(dealId, 2, false));
+
+        assertEquals(-1, brokerTrade.getTradeStatus(1000, orderParams));
+        assertEquals(0, brokerTrade.getTradeStatus(1000, orderParams));
+    }
+
+    @Test
+    public void testGetTradeStatusPartiallyClosedOnBrokerSide() throws Exception {
+        when(restApi.getPositionsV2(any())).thenReturn(createPositionsResponse(dealId, 2));
+        brokerTrade.startPositionSubscription();
+
+        positionUpdates.onNext(new PositionUpdate(dealId, 1, true));
+
+        assertEquals(10000, brokerTrade.getTradeStatus(1000, orderParams));
+        assertEquals(1, orderStore.get(1000).getPositionSize());
+    }
 
-        assertEquals(2, orderReferenceMap.size());
-        brokerTrade.checkPositionsValid();
-        assertEquals(1, orderReferenceMap.size());
+    private GetPositionsV2Response createPositionsResponse(DealId dealId, int size) {
+        Position position = new Position();
+        position.setDealId(dealId.getValue());
+        position.setSize(BigDecimal.valueOf(size));
+        PositionsItem positionsItem = new PositionsItem();
+        positionsItem.setPosition(position);
+        GetPositionsV2Response response = new GetPositionsV2Response();
+        response.setPositions(new ArrayList<>(Collections.singletonList(positionsItem)));
+        return response;
     }
 }
@@ -0,0 +1,69 @@
+package com.danlind.igz.config;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PluginContextTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testBindsProperties() throws IOException {
+        File pluginDirectory = temporaryFolder.getRoot();
+        try (PrintWriter writer = new PrintWriter(new File(pluginDirectory, "application.properties"))) {
+            writer.println("plugin.demoApiUrl=https://demo-api.ig.com/gateway/deal");
+            writer.println("plugin.restApiMaxRetry=7");
+            writer.println("plugin.deal-confirmation-timeout=3000");
+            writer.println("plugin.httpclient.maxTotalConnections=5");
+        }
+
+        PluginContext context = new PluginContext(pluginDirectory);
+
+        assertEquals("https://demo-api.ig.com/gateway/deal", context.getPluginProperties().getDemoApiUrl());
+        assertEquals(7, context.getPluginProperties().getRestApiMaxRetry());
+        assertEquals(3000, context.getPluginProperties().getDealConfirmationTimeout());
+        assertEquals(pluginDirectory.getPath(), context.getPluginProperties().getPluginDirectory());
+        assertEquals(5, context.getHttpClientProperties().getMaxTotalConnections());
+    }
+
+    @Test
+    public void testDefaultsWithoutPropertiesFile() {
+        PluginContext context = new PluginContext(temporaryFolder.getRoot());
+
+        assertEquals(2000, context.getPluginProperties().getDealConfirmationTimeout());
+        assertEquals(20, context.getHttpClientProperties().getMaxTotalConnections());
+    }
+
+    @Test
+    public void testComponentsAreCreatedOnce() {
+        PluginContext context = new PluginContext(temporaryFolder.getRoot());
+
+        assertSame(context.getRestApiAdapter(), context.getRestApiAdapter());
+        assertSame(context.getTimeHandler(), context.getTimeHandler());
+        assertSame(context.getLoginHandler(), context.getLoginHandler());
+    }
+
+    @Test
+    public void testCloseOnlyClosesCreatedComponents() {
+        File pluginDirectory = temporaryFolder.getRoot();
+        PluginContext context = new PluginContext(pluginDirectory);
+        context.getCandleCache();
+
+        context.close();
+        context.close();
+
+        assertTrue(new File(pluginDirectory, "cache").exists());
+        assertFalse(new File(pluginDirectory, "orderStore.dat").exists());
+    }
+}
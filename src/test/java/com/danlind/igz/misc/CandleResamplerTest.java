@@ -0,0 +1,40 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.CandleSeries;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class CandleResamplerTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @Test
+    public void testResampleAlignsAndAggregatesBars() {
+        CandleSeries source = new CandleSeries();
+        source.add(3 * MINUTE, 9, 10, 11, 12, 8, 9, 10, 11, 100);
+        source.add(4 * MINUTE, 10, 11, 15, 16, 9, 10, 14, 15, 200);
+        source.add(5 * MINUTE, 14, 15, 14, 15, 5, 6, 6, 7, 300);
+        source.add(7 * MINUTE, 6, 7, 8, 9, 6, 7, 8, 9, 400);
+        source.add(8 * MINUTE, 8, 9, 8, 9, 8, 9, 8, 9, 500);
+
+        CandleSeries resampled = CandleResampler.resample(source, 4 * MINUTE);
+
+        assertEquals(3, resampled.size());
+        assertEquals(0, resampled.getTime(0));
+        assertEquals(100, resampled.getVolume(0), 0);
+
+        assertEquals(4 * MINUTE, resampled.getTime(1));
+        assertEquals(11, resampled.getOpenAsk(1), 0);
+        assertEquals(16, resampled.getHighAsk(1), 0);
+        assertEquals(6, resampled.getLowAsk(1), 0);
+        assertEquals(9, resampled.getCloseAsk(1), 0);
+        assertEquals(1, resampled.getSpread(1), 0);
+        assertEquals(900, resampled.getVolume(1), 0);
+
+        assertEquals(8 * MINUTE, resampled.getTime(2));
+        assertEquals(500, resampled.getVolume(2), 0);
+    }
+}
@@ -0,0 +1,117 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.CandleSeries;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CandleStoreTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final int MAX_BARS = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private CandleStore candleStore;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "store.bars");
+        candleStore = new CandleStore(file, MINUTE, MAX_BARS);
+        CandleSeries candles = new CandleSeries();
+        for (int i = 0; i < MAX_BARS; i++) {
+            addCandle(candles, i);
+        }
+        candleStore.merge(candles, 0, (MAX_BARS - 1) * MINUTE, (MAX_BARS - 1) * MINUTE);
+    }
+
+    @After
+    public void tearDown() {
+        candleStore.close();
+    }
+
+    @Test
+    public void testFullStoreDropsOldestTenthAtOnce() {
+        assertTrue(candleStore.append(candle(MAX_BARS), 0));
+
+        assertEquals(MAX_BARS - 1, candleStore.size());
+        assertEquals(2 * MINUTE, candleStore.getCoveredFrom());
+        assertEquals(MAX_BARS * MINUTE, candleStore.getCoveredTo());
+        CandleSeries stored = new CandleSeries();
+        candleStore.read(0, Long.MAX_VALUE, stored);
+        assertEquals(2 * MINUTE, stored.getTime(0));
+        assertEquals(MAX_BARS * MINUTE, stored.getTime(stored.size() - 1));
+        assertEquals(MAX_BARS, stored.getVolume(stored.size() - 1), 0);
+    }
+
+    @Test
+    public void testAppendAfterCompactionLeavesEarlierRecordsInPlace() throws IOException {
+        candleStore.append(candle(MAX_BARS), 0);
+        byte[] before = readRecords(MAX_BARS - 1);
+
+        assertTrue(candleStore.append(candle(MAX_BARS + 1), 0));
+
+        assertEquals(MAX_BARS, candleStore.size());
+        assertArrayEquals(before, readRecords(MAX_BARS - 1));
+    }
+
+    @Test
+    public void testOpenReadOnly() throws IOException {
+        byte[] before = Files.readAllBytes(file.toPath());
+        CandleStore readOnlyStore = CandleStore.openReadOnly(file, MINUTE);
+        try {
+            CandleSeries stored = new CandleSeries();
+            assertEquals(MAX_BARS, readOnlyStore.read(0, Long.MAX_VALUE, stored));
+            assertEquals(0, readOnlyStore.getCoveredFrom());
+            assertEquals((MAX_BARS - 1) * MINUTE, stored.getTime(MAX_BARS - 1));
+        } finally {
+            readOnlyStore.close();
+        }
+        assertArrayEquals(before, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testOpenReadOnlyLeavesUnknownFormatUntouched() throws IOException {
+        File unknown = folder.newFile("unknown.bars");
+        byte[] content = new byte[2 * CandleStore.HEADER_SIZE];
+        Arrays.fill(content, (byte) 7);
+        Files.write(unknown.toPath(), content);
+
+        try {
+            CandleStore.openReadOnly(unknown, MINUTE);
+            fail("Unknown format not rejected");
+        } catch (IOException e) {
+            assertArrayEquals(content, Files.readAllBytes(unknown.toPath()));
+        }
+    }
+
+    private byte[] readRecords(int records) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        return Arrays.copyOfRange(bytes, CandleStore.HEADER_SIZE, CandleStore.HEADER_SIZE + records * CandleStore.RECORD_SIZE);
+    }
+
+    private static CandleSeries candle(int minute) {
+        CandleSeries candles = new CandleSeries(1);
+        addCandle(candles, minute);
+        return candles;
+    }
+
+    private static void addCandle(CandleSeries candles, int minute) {
+        candles.add(minute * MINUTE, 1, 1.1, 2, 2.1, 0.5, 0.6, 1.5, 1.6, minute);
+    }
+}
@@ -0,0 +1,117 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.adapter.RestApiAdapter;
+import com.danlind.igz.adapter.StreamingApiAdapter;
+import com.danlind.igz.config.PluginProperties;
+import com.danlind.igz.domain.types.DealReference;
+import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.DealStatus;
+import com.danlind.igz.ig.api.client.rest.dto.getDealConfirmationV1.GetDealConfirmationV1Response;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.ReplaySubject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DealConfirmationProviderTest {
+
+    @Mock
+    RestApiAdapter restApiAdapter;
+
+    @Mock
+    StreamingApiAdapter streamingApiAdapter;
+
+    DealConfirmationProvider dealConfirmationProvider;
+    ReplaySubject<GetDealConfirmationV1Response> confirms;
+    GetDealConfirmationV1Response polledConfirmation = createConfirmation("TestDealReference", DealStatus.ACCEPTED);
+
+    @Before
+    public void setUp() throws Exception {
+        PluginProperties pluginProperties = new PluginProperties();
+        pluginProperties.setDealConfirmationTimeout(200);
+        dealConfirmationProvider = new DealConfirmationProvider(restApiAdapter, streamingApiAdapter, pluginProperties);
+
+        confirms = ReplaySubject.create();
+        when(restApiAdapter.getAccountId()).thenReturn("TestAccountId");
+        when(streamingApiAdapter.getConfirmsObservable("TestAccountId")).thenReturn(confirms);
+        when(restApiAdapter.getDealConfirmation(any())).thenReturn(Single.just(Optional.of(polledConfirmation)));
+    }
+
+    @Test
+    public void testPollsWhenNotSubscribed() {
+        Optional<GetDealConfirmationV1Response> confirmation = dealConfirmationProvider.getDealConfirmation(new DealReference("TestDealReference")).blockingGet();
+
+        assertTrue(confirmation.isPresent());
+        assertEquals(polledConfirmation, confirmation.get());
+    }
+
+    @Test
+    public void testConfirmationStreamedBeforeRequest() {
+        GetDealConfirmationV1Response streamedConfirmation = createConfirmation("TestDealReference", DealStatus.ACCEPTED);
+        dealConfirmationProvider.startConfirmSubscription();
+        confirms.onNext(streamedConfirmation);
+
+        TestObserver<Optional<GetDealConfirmationV1Response>> testObserver = dealConfirmationProvider.getDealConfirmation(new DealReference("TestDealReference")).test();
+        testObserver.awaitTerminalEvent(1, TimeUnit.SECONDS);
+
+        testObserver.assertValue(Optional.of(streamedConfirmation));
+        verify(restApiAdapter, never()).getDealConfirmation(any());
+    }
+
+    @Test
+    public void testConfirmationStreamedAfterRequest() {
+        GetDealConfirmationV1Response streamedConfirmation = createConfirmation("TestDealReference", DealStatus.ACCEPTED);
+        dealConfirmationProvider.startConfirmSubscription();
+
+        TestObserver<Optional<GetDealConfirmationV1Response>> testObserver = dealConfirmationProvider.getDealConfirmation(new DealReference("TestDealReference")).test();
+        confirms.onNext(createConfirmation("OtherDealReference", DealStatus.ACCEPTED));
+        confirms.onNext(streamedConfirmation);
+        testObserver.awaitTerminalEvent(1, TimeUnit.SECONDS);
+
+        testObserver.assertValue(Optional.of(streamedConfirmation));
+        verify(restApiAdapter, never()).getDealConfirmation(any());
+    }
+
+    @Test
+    public void testRejectedConfirmation() {
+        dealConfirmationProvider.startConfirmSubscription();
+        confirms.onNext(createConfirmation("TestDealReference", DealStatus.REJECTED));
+
+        Optional<GetDealConfirmationV1Response> confirmation = dealConfirmationProvider.getDealConfirmation(new DealReference("TestDealReference")).blockingGet();
+
+        assertFalse(confirmation.isPresent());
+    }
+
+    @Test
+    public void testPollsWhenNoConfirmationIsStreamed() {
+        dealConfirmationProvider.startConfirmSubscription();
+
+        Optional<GetDealConfirmationV1Response> confirmation = dealConfirmationProvider.getDealConfirmation(new DealReference("TestDealReference")).blockingGet();
+
+        assertTrue(confirmation.isPresent());
+        assertEquals(polledConfirmation, confirmation.get());
+        verify(restApiAdapter).getDealConfirmation("TestDealReference");
+    }
+
+    private static GetDealConfirmationV1Response createConfirmation(String dealReference, DealStatus dealStatus) {
+        GetDealConfirmationV1Response confirmation = new GetDealConfirmationV1Response();
+        confirmation.setDealReference(dealReference);
+        confirmation.setDealId("TestDealId");
+        confirmation.setDealStatus(dealStatus);
+        return confirmation;
+    }
+}
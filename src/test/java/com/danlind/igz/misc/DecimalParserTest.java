@@ -0,0 +1,47 @@
+package com.danlind.igz.misc;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DecimalParserTest {
+
+    @Test
+    public void testParsesPrices() {
+        assertEquals(1.09345, DecimalParser.parse("1.09345"), 0);
+        assertEquals(12650.5, DecimalParser.parse("12650.5"), 0);
+        assertEquals(-0.75, DecimalParser.parse("-0.75"), 0);
+        assertEquals(42, DecimalParser.parse("42"), 0);
+        assertEquals(0.5, DecimalParser.parse(".5"), 0);
+    }
+
+    @Test
+    public void testMissingValueIsNaN() {
+        assertTrue(Double.isNaN(DecimalParser.parse(null)));
+        assertTrue(Double.isNaN(DecimalParser.parse("")));
+    }
+
+    @Test
+    public void testFallsBackForOtherFormats() {
+        assertEquals(1.5e-7, DecimalParser.parse("1.5E-7"), 0);
+        assertEquals(Double.parseDouble("12345678901234567890.123"), DecimalParser.parse("12345678901234567890.123"), 0);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testInvalidValueThrows() {
+        DecimalParser.parse("1.2.3");
+    }
+
+    @Test
+    public void testSameResultAsDoubleParseDouble() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            String price = String.format(Locale.ROOT, "%." + random.nextInt(8) + "f", random.nextDouble() * Math.pow(10, random.nextInt(7)));
+            assertEquals(price, Double.parseDouble(price), DecimalParser.parse(price), 0);
+        }
+    }
+}
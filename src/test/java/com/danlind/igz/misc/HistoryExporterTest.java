@@ -0,0 +1,159 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.CandleSeries;
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.domain.types.Resolution;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HistoryExporterTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long NEW_YEAR_2018 = 17532 * DAY;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Epic epic = new Epic("CS.D.EURUSD.MINI.IP");
+    private File pluginDirectory;
+    private File outputDirectory;
+    private HistoryExporter historyExporter;
+
+    @Before
+    public void setUp() throws IOException {
+        pluginDirectory = folder.newFolder("plugin");
+        outputDirectory = folder.newFolder("history");
+        historyExporter = new HistoryExporter(pluginDirectory, outputDirectory);
+    }
+
+    @After
+    public void tearDown() {
+        historyExporter.close();
+    }
+
+    @Test
+    public void testBarsExportedPerYearNewestFirst() throws Exception {
+        long from = NEW_YEAR_2018 - 2 * MINUTE;
+        long to = NEW_YEAR_2018 + MINUTE;
+        CandleSeries candles = new CandleSeries();
+        for (long time = from; time <= to + MINUTE; time += MINUTE) {
+            double price = 1 + (time - from) / (double) MINUTE / 100;
+            candles.add(time, price, price + 0.0002, price + 0.003, price + 0.0032, price - 0.001, price - 0.0008, price + 0.002, price + 0.0022, 10);
+        }
+        CandleCache candleCache = new CandleCache(new File(pluginDirectory, "cache"), 100);
+        candleCache.getStore(epic, Resolution.MINUTE).merge(candles, from, to + MINUTE, to);
+        candleCache.close();
+
+        assertEquals(4, historyExporter.exportBars(epic, "EUR/USD"));
+
+        ByteBuffer bars2017 = readFile("EURUSD_2017.t6");
+        assertEquals(2 * ZorroHistoryWriter.T6_SIZE, bars2017.capacity());
+        assertEquals(TimeConvert.getOLEDateFromMillisRounded(from + MINUTE), bars2017.getDouble(0), 1e-9);
+        assertEquals(TimeConvert.getOLEDateFromMillisRounded(from), bars2017.getDouble(ZorroHistoryWriter.T6_SIZE), 1e-9);
+        assertEquals(1.0032f, bars2017.getFloat(ZorroHistoryWriter.T6_SIZE + 8), 1e-6); //High ask
+        assertEquals(0.9992f, bars2017.getFloat(ZorroHistoryWriter.T6_SIZE + 12), 1e-6); //Low ask
+        assertEquals(1.0002f, bars2017.getFloat(ZorroHistoryWriter.T6_SIZE + 16), 1e-6); //Open ask
+        assertEquals(1.0022f, bars2017.getFloat(ZorroHistoryWriter.T6_SIZE + 20), 1e-6); //Close ask
+        assertEquals(0.0002f, bars2017.getFloat(ZorroHistoryWriter.T6_SIZE + 24), 1e-6); //Spread
+        assertEquals(10f, bars2017.getFloat(ZorroHistoryWriter.T6_SIZE + 28), 1e-6);
+
+        //The candle after the covered range is not exported
+        ByteBuffer bars2018 = readFile("EURUSD_2018.t6");
+        assertEquals(2 * ZorroHistoryWriter.T6_SIZE, bars2018.capacity());
+        assertEquals(TimeConvert.getOLEDateFromMillisRounded(to), bars2018.getDouble(0), 1e-9);
+        assertEquals(TimeConvert.getOLEDateFromMillisRounded(NEW_YEAR_2018), bars2018.getDouble(ZorroHistoryWriter.T6_SIZE), 1e-9);
+    }
+
+    @Test
+    public void testTicksExportedPerYearNewestFirst() throws Exception {
+        File journalDirectory = new File(pluginDirectory, "ticks/" + epic.getName());
+        assertTrue(journalDirectory.mkdirs());
+        writeJournal(new File(journalDirectory, "20171231_1.ticks"), NEW_YEAR_2018 - 3000, NEW_YEAR_2018 - 2000);
+        writeJournal(new File(journalDirectory, "20180101_1.ticks"), NEW_YEAR_2018, NEW_YEAR_2018 + 1000);
+        writeJournal(new File(journalDirectory, "20180101_2.ticks"), NEW_YEAR_2018 + 2000);
+        Files.write(new File(journalDirectory, "20180101_3.ticks").toPath(), new byte[]{1, 2, 3});
+
+        assertEquals(5, historyExporter.exportTicks(epic, "EURUSD"));
+
+        ByteBuffer ticks2018 = readFile("EURUSD_2018.t1");
+        assertEquals(3 * ZorroHistoryWriter.T1_SIZE, ticks2018.capacity());
+        assertEquals(TimeConvert.getOLEDateFromMillis(NEW_YEAR_2018 + 2000), ticks2018.getDouble(0), 1e-9);
+        assertEquals(askAt(NEW_YEAR_2018 + 2000), ticks2018.getFloat(8), 1e-6);
+        assertEquals(TimeConvert.getOLEDateFromMillis(NEW_YEAR_2018 + 1000), ticks2018.getDouble(ZorroHistoryWriter.T1_SIZE), 1e-9);
+        assertEquals(TimeConvert.getOLEDateFromMillis(NEW_YEAR_2018), ticks2018.getDouble(2 * ZorroHistoryWriter.T1_SIZE), 1e-9);
+
+        ByteBuffer ticks2017 = readFile("EURUSD_2017.t1");
+        assertEquals(2 * ZorroHistoryWriter.T1_SIZE, ticks2017.capacity());
+        assertEquals(TimeConvert.getOLEDateFromMillis(NEW_YEAR_2018 - 2000), ticks2017.getDouble(0), 1e-9);
+        assertEquals(askAt(NEW_YEAR_2018 - 3000), ticks2017.getFloat(ZorroHistoryWriter.T1_SIZE + 8), 1e-6);
+    }
+
+    @Test
+    public void testNothingExportedWithoutHistory() throws Exception {
+        assertEquals(0, historyExporter.exportBars(epic, "EURUSD"));
+        assertEquals(0, historyExporter.exportTicks(epic, "EURUSD"));
+        assertFalse(new File(pluginDirectory, "cache/" + epic.getName() + "_MINUTE.bars").exists());
+        assertEquals(0, outputDirectory.list().length);
+    }
+
+    @Test
+    public void testFindEpics() throws Exception {
+        CandleCache candleCache = new CandleCache(new File(pluginDirectory, "cache"), 100);
+        candleCache.getStore(new Epic("SecondEpic"), Resolution.MINUTE);
+        candleCache.getStore(new Epic("HourOnlyEpic"), Resolution.HOUR);
+        candleCache.close();
+        assertTrue(new File(pluginDirectory, "ticks/FirstEpic").mkdirs());
+        assertTrue(new File(pluginDirectory, "ticks/SecondEpic").mkdirs());
+
+        assertEquals(Arrays.asList(new Epic("FirstEpic"), new Epic("SecondEpic")), historyExporter.findEpics());
+    }
+
+    @Test
+    public void testParseAssets() {
+        Map<Epic, String> assets = HistoryExporter.parseAssets(new String[]{"CS.D.EURUSD.MINI.IP=EUR/USD", "IX.D.DAX.IFD.IP"});
+
+        assertEquals(2, assets.size());
+        assertEquals("EUR/USD", assets.get(new Epic("CS.D.EURUSD.MINI.IP")));
+        assertEquals("IX.D.DAX.IFD.IP", assets.get(new Epic("IX.D.DAX.IFD.IP")));
+    }
+
+    private static double askAt(long time) {
+        return 1.1 + (time % MINUTE) / 1e7;
+    }
+
+    private static void writeJournal(File file, long... times) throws IOException {
+        TickJournal journal = new TickJournal(file, 10);
+        for (long time : times) {
+            journal.append(time, askAt(time) - 0.0001, askAt(time), Double.NaN);
+        }
+        journal.close();
+    }
+
+    private ByteBuffer readFile(String name) throws IOException {
+        File file = new File(outputDirectory, name);
+        assertTrue(name, file.exists());
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            byte[] bytes = new byte[(int) randomAccessFile.length()];
+            randomAccessFile.readFully(bytes);
+            return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
@@ -2,15 +2,22 @@ package com.danlind.igz.misc;
 
 import com.danlind.igz.Zorro;
 import com.danlind.igz.adapter.RestApiAdapter;
+import com.danlind.igz.adapter.StreamingApiAdapter;
 import com.danlind.igz.config.PluginProperties;
 import com.danlind.igz.domain.ContractDetails;
+import com.danlind.igz.domain.MarketUpdate;
 import com.danlind.igz.domain.types.Epic;
 import com.danlind.igz.handler.LoginHandler;
 import com.danlind.igz.ig.api.client.RestAPI;
+import com.danlind.igz.ig.api.client.rest.dto.markets.getMarketDetailsListV2.GetMarketDetailsListV2Response;
+import com.danlind.igz.ig.api.client.rest.dto.markets.getMarketDetailsListV2.MarketDetailsItem;
 import com.danlind.igz.ig.api.client.rest.dto.markets.getMarketDetailsV3.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.reactivex.subjects.ReplaySubject;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.powermock.api.mockito.PowerMockito;
@@ -19,6 +26,8 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static junit.framework.Assert.*;
@@ -42,6 +51,9 @@ public class MarketDataProviderTest {
     @Mock
     PluginProperties pluginProperties;
 
+    @Mock
+    StreamingApiAdapter streamingApiAdapter;
+
     @InjectMocks
     RestApiAdapter restApiAdapter;
 
@@ -49,9 +61,12 @@ public class MarketDataProviderTest {
 
     Epic testEpic = new Epic("TestEpic");
     GetMarketDetailsV3Response response;
+    ReplaySubject<MarketUpdate> marketUpdates;
     @Before
     public void setUp() throws Exception {
-        marketDataProvider = new MarketDataProvider(restApiAdapter);
+        marketDataProvider = new MarketDataProvider(restApiAdapter, streamingApiAdapter, pluginProperties, new PriceSnapshotStore());
+        marketUpdates = ReplaySubject.create();
+        when(streamingApiAdapter.getMarketObservable(any())).thenReturn(marketUpdates);
 
         PowerMockito.mockStatic(Zorro.class);
         PowerMockito.doNothing().when(Zorro.class,"indicateError");
@@ -86,7 +101,20 @@ public class MarketDataProviderTest {
         response.setInstrument(instrument);
 
         when(restApi.getMarketDetailsV3(any(),anyString())).thenReturn(response);
+        when(restApi.getMarketDetailsListV2(any(), anyString(), anyString())).thenAnswer(invocation -> createListResponse(response));
         when(pluginProperties.getRefreshMarketDataInterval()).thenReturn(50);
+        when(pluginProperties.getMarketDetailsBatchSize()).thenReturn(50);
+    }
+
+    private GetMarketDetailsListV2Response createListResponse(GetMarketDetailsV3Response... responses) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<MarketDetailsItem> marketDetailsItems = new ArrayList<>();
+        for (GetMarketDetailsV3Response marketDetails : responses) {
+            marketDetailsItems.add(objectMapper.convertValue(marketDetails, MarketDetailsItem.class));
+        }
+        GetMarketDetailsListV2Response listResponse = new GetMarketDetailsListV2Response();
+        listResponse.setMarketDetails(marketDetailsItems);
+        return listResponse;
     }
 
     @Test
@@ -113,7 +141,7 @@ public class MarketDataProviderTest {
     public void testGetContractDetailsException() throws Exception {
         GetMarketDetailsV3Response newResponse = response;
         newResponse.getInstrument().getCurrencies().get(0).setCode("SEK");
-        when(restApi.getMarketDetailsV3(any(),anyString())).thenReturn(response).thenThrow(new Exception()).thenReturn(newResponse);
+        when(restApi.getMarketDetailsListV2(any(), anyString(), anyString())).thenThrow(new Exception()).thenReturn(createListResponse(newResponse));
         marketDataProvider.updateMarketDetails(testEpic);
         Thread.sleep(100);
         ContractDetails contractDetails = marketDataProvider.getContractDetails(testEpic);
@@ -134,4 +162,72 @@ public class MarketDataProviderTest {
         assertEquals(1,marketDataProvider.isAnySubscribedEpicTradable());
     }
 
+    @Test
+    public void testRefreshIsBatched() throws Exception {
+        when(pluginProperties.getMarketDetailsBatchSize()).thenReturn(2);
+        marketDataProvider.updateMarketDetails(new Epic("TestEpic1"));
+        marketDataProvider.updateMarketDetails(new Epic("TestEpic2"));
+        marketDataProvider.updateMarketDetails(new Epic("TestEpic3"));
+        Thread.sleep(120);
+
+        ArgumentCaptor<String> epics = ArgumentCaptor.forClass(String.class);
+        verify(restApi, atLeast(2)).getMarketDetailsListV2(any(), eq("ALL"), epics.capture());
+        for (String epicList : epics.getAllValues()) {
+            assertTrue(epicList.split(",").length <= 2);
+        }
+        verify(restApi, times(3)).getMarketDetailsV3(any(), anyString());
+    }
+
+    @Test
+    public void testUpdateMarketDetailsForSeveralEpics() throws Exception {
+        when(pluginProperties.getRefreshMarketDataInterval()).thenReturn(60000);
+        Epic unknownEpic = new Epic("UnknownEpic");
+
+        assertEquals(Collections.singleton(testEpic), marketDataProvider.updateMarketDetails(Arrays.asList(testEpic, unknownEpic)));
+
+        verify(restApi, times(1)).getMarketDetailsListV2(any(), eq("ALL"), eq("TestEpic,UnknownEpic"));
+        verify(restApi, never()).getMarketDetailsV3(any(), anyString());
+        assertEquals("EUR", marketDataProvider.getContractDetails(testEpic).getCurrencyCode());
+        assertNull(marketDataProvider.getContractDetails(unknownEpic));
+    }
+
+    @Test
+    public void testUpdateMarketDetailsFallsBackToSingleRequests() throws Exception {
+        when(pluginProperties.getRefreshMarketDataInterval()).thenReturn(60000);
+        when(restApi.getMarketDetailsListV2(any(), anyString(), anyString())).thenThrow(new Exception());
+        Epic unknownEpic = new Epic("UnknownEpic");
+        when(restApi.getMarketDetailsV3(any(), eq("UnknownEpic"))).thenThrow(new Exception());
+
+        assertEquals(Collections.singleton(testEpic), marketDataProvider.updateMarketDetails(Arrays.asList(testEpic, unknownEpic)));
+
+        verify(restApi, times(2)).getMarketDetailsV3(any(), anyString());
+        assertEquals("EUR", marketDataProvider.getContractDetails(testEpic).getCurrencyCode());
+    }
+
+    @Test
+    public void testMarketStatusIsPushed() throws Exception {
+        marketDataProvider.updateMarketDetails(testEpic);
+        assertEquals(2, marketDataProvider.isAnySubscribedEpicTradable());
+
+        marketUpdates.onNext(new MarketUpdate(testEpic, Double.NaN, Double.NaN, MarketStatus.CLOSED));
+        Thread.sleep(50);
+        assertEquals(1, marketDataProvider.isAnySubscribedEpicTradable());
+        assertEquals(100, marketDataProvider.getContractDetails(testEpic).getSnapshotBid(), 0);
+
+        marketUpdates.onNext(new MarketUpdate(testEpic, 101, 121, MarketStatus.TRADEABLE));
+        Thread.sleep(50);
+        assertEquals(2, marketDataProvider.isAnySubscribedEpicTradable());
+        assertEquals(101, marketDataProvider.getContractDetails(testEpic).getSnapshotBid(), 0);
+        assertEquals(121, marketDataProvider.getContractDetails(testEpic).getSnapshotAsk(), 0);
+    }
+
+    @Test
+    public void testStreamedEpicOnlyPolledForConsistencyCheck() throws Exception {
+        when(pluginProperties.getMarketDataConsistencyCheckInterval()).thenReturn(600000);
+        marketDataProvider.updateMarketDetails(testEpic);
+        Thread.sleep(300);
+
+        verify(restApi, times(1)).getMarketDetailsListV2(any(), anyString(), anyString());
+    }
+
 }
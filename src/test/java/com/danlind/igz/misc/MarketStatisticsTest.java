@@ -0,0 +1,124 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.config.PluginProperties;
+import com.danlind.igz.domain.types.Epic;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MarketStatisticsTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private MarketStatistics marketStatistics;
+    private Epic epic;
+
+    @Before
+    public void setUp() {
+        marketStatistics = new MarketStatistics(5, 3, 3);
+        epic = new Epic("TestEpic");
+    }
+
+    @Test
+    public void testRegisterKeepsStatistics() {
+        assertNull(marketStatistics.get(epic));
+        AssetStatistics statistics = marketStatistics.register(epic);
+
+        assertSame(statistics, marketStatistics.register(epic));
+        assertSame(statistics, marketStatistics.get(epic));
+        assertTrue(Double.isNaN(statistics.getVolumeMean()));
+        assertTrue(Double.isNaN(statistics.getSpreadMean()));
+        assertTrue(Double.isNaN(statistics.getTickRateMean()));
+    }
+
+    @Test
+    public void testWindowsFromProperties() {
+        PluginProperties pluginProperties = new PluginProperties();
+        pluginProperties.setStatisticsVolumeWindow(7);
+
+        assertEquals(7, new MarketStatistics(pluginProperties).getVolumeWindow());
+    }
+
+    @Test
+    public void testRolloverVolumeAverage() {
+        AssetStatistics statistics = marketStatistics.register(epic);
+        for (int i = 0; i < 5; i++) {
+            statistics.addVolume(5);
+        }
+        assertEquals(5, statistics.getVolumeMean(), 0);
+        assertEquals(0, statistics.getVolumeStandardDeviation(), 0);
+        statistics.addVolume(10);
+        statistics.addVolume(10);
+        statistics.addVolume(10);
+        assertEquals(8, statistics.getVolumeMean(), 0);
+        assertEquals(Math.sqrt(6), statistics.getVolumeStandardDeviation(), 1e-9);
+    }
+
+    @Test
+    public void testVolumeAverageWithMultipleEpics() {
+        AssetStatistics statistics = marketStatistics.register(epic);
+        AssetStatistics otherStatistics = marketStatistics.register(new Epic("OtherTestEpic"));
+        statistics.addVolume(5);
+        statistics.addVolume(10);
+        statistics.addVolume(15);
+        otherStatistics.addVolume(10);
+        otherStatistics.addVolume(20);
+        otherStatistics.addVolume(30);
+
+        assertEquals(10, statistics.getVolumeMean(), 0);
+        assertEquals(20, otherStatistics.getVolumeMean(), 0);
+    }
+
+    @Test
+    public void testSpreadOfLastTicks() {
+        AssetStatistics statistics = marketStatistics.register(epic);
+        statistics.onTick(0, 100, 110);
+        statistics.onTick(1, 100, 101);
+        statistics.onTick(2, 100, 102);
+        statistics.onTick(3, Double.NaN, 102);
+        statistics.onTick(4, 100, 103);
+
+        assertEquals(2, statistics.getSpreadMean(), 1e-9);
+        assertEquals(Math.sqrt(2.0 / 3), statistics.getSpreadStandardDeviation(), 1e-9);
+    }
+
+    @Test
+    public void testTickRateSkipsPartialMinuteAndCountsQuietMinutes() {
+        AssetStatistics statistics = marketStatistics.register(epic);
+        statistics.onTick(30000, 1, 2);
+        statistics.onTick(MINUTE, 1, 2);
+        statistics.onTick(MINUTE + 1000, 1, 2);
+        statistics.onTick(MINUTE + 2000, 1, 2);
+        assertTrue(Double.isNaN(statistics.getTickRateMean()));
+
+        statistics.onTick(2 * MINUTE, 1, 2);
+        assertEquals(3, statistics.getTickRateMean(), 0);
+
+        //Late ticks of a completed minute are not counted, the minute without ticks counts as zero
+        statistics.onTick(MINUTE + 3000, 1, 2);
+        statistics.onTick(4 * MINUTE, 1, 2);
+        assertEquals(4.0 / 3, statistics.getTickRateMean(), 1e-9);
+    }
+
+    @Test
+    public void testStartTreatsFirstMinuteAsPartial() {
+        AssetStatistics statistics = marketStatistics.register(epic);
+        statistics.onTick(MINUTE, 1, 2);
+        statistics.onTick(2 * MINUTE, 1, 2);
+        statistics.onTick(2 * MINUTE + 1000, 1, 2);
+        statistics.start();
+        statistics.onTick(10 * MINUTE, 1, 2);
+        statistics.onTick(11 * MINUTE, 1, 2);
+
+        //Neither the minute cut off by the restart, nor the minutes between the subscriptions are counted
+        assertTrue(Double.isNaN(statistics.getTickRateMean()));
+        statistics.onTick(12 * MINUTE, 1, 2);
+        assertEquals(1, statistics.getTickRateMean(), 0);
+    }
+}
@@ -0,0 +1,93 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.CandleSeries;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MinuteBarBuilderTest {
+
+    private static final long MINUTE = 60000;
+
+    private final List<CandleSeries> completedBars = new ArrayList<>();
+    private MinuteBarBuilder minuteBarBuilder;
+
+    @Before
+    public void setUp() {
+        minuteBarBuilder = new MinuteBarBuilder();
+        minuteBarBuilder.start(completedBars::add);
+    }
+
+    @Test
+    public void testFirstBarIsPartial() {
+        minuteBarBuilder.onTick(10 * MINUTE + 30000, 1.0, 1.2, Double.NaN);
+        minuteBarBuilder.onTick(11 * MINUTE, 1.1, 1.3, Double.NaN);
+
+        assertTrue(completedBars.isEmpty());
+        CandleSeries liveBar = new CandleSeries();
+        assertTrue(minuteBarBuilder.readLiveBar(liveBar));
+        assertEquals(11 * MINUTE, liveBar.getTime(0));
+    }
+
+    @Test
+    public void testTicksFoldedIntoBar() {
+        minuteBarBuilder.onTick(10 * MINUTE + 59000, 1.0, 1.2, Double.NaN);
+        minuteBarBuilder.onTick(11 * MINUTE + 1000, 1.1, 1.3, Double.NaN);
+        minuteBarBuilder.onTick(11 * MINUTE + 2000, 1.4, 1.6, Double.NaN);
+        minuteBarBuilder.onTick(11 * MINUTE + 3000, 0.9, 1.1, Double.NaN);
+        minuteBarBuilder.onTick(11 * MINUTE + 4000, 1.2, 1.4, Double.NaN);
+        minuteBarBuilder.onTick(12 * MINUTE + 1000, 1.3, 1.5, Double.NaN);
+
+        assertEquals(1, completedBars.size());
+        CandleSeries bar = completedBars.get(0);
+        assertEquals(11 * MINUTE, bar.getTime(0));
+        assertEquals(1.1, bar.get(0, CandleSeries.OPEN_BID), 0);
+        assertEquals(1.3, bar.getOpenAsk(0), 0);
+        assertEquals(1.6, bar.getHighAsk(0), 0);
+        assertEquals(0.9, bar.get(0, CandleSeries.LOW_BID), 0);
+        assertEquals(1.4, bar.getCloseAsk(0), 0);
+        assertEquals(1.2, bar.getCloseBid(0), 0);
+        assertEquals(4, bar.getVolume(0), 0);
+    }
+
+    @Test
+    public void testTradedVolumeIsSummed() {
+        minuteBarBuilder.onTick(10 * MINUTE, 1.0, 1.2, 5);
+        minuteBarBuilder.onTick(11 * MINUTE, 1.0, 1.2, 5);
+        minuteBarBuilder.onTick(11 * MINUTE + 1000, 1.0, 1.2, 7);
+        minuteBarBuilder.onTick(12 * MINUTE, 1.0, 1.2, 1);
+
+        assertEquals(12, completedBars.get(0).getVolume(0), 0);
+    }
+
+    @Test
+    public void testLateTickIsIgnored() {
+        minuteBarBuilder.onTick(10 * MINUTE, 1.0, 1.2, Double.NaN);
+        minuteBarBuilder.onTick(11 * MINUTE, 1.0, 1.2, Double.NaN);
+        minuteBarBuilder.onTick(10 * MINUTE + 59000, 5.0, 5.2, Double.NaN);
+
+        CandleSeries liveBar = new CandleSeries();
+        minuteBarBuilder.readLiveBar(liveBar);
+        assertEquals(1.2, liveBar.getHighAsk(0), 0);
+        assertEquals(1, liveBar.getVolume(0), 0);
+    }
+
+    @Test
+    public void testRestartMakesBarPartial() {
+        minuteBarBuilder.onTick(10 * MINUTE, 1.0, 1.2, Double.NaN);
+        minuteBarBuilder.onTick(11 * MINUTE, 1.0, 1.2, Double.NaN);
+
+        minuteBarBuilder.start(completedBars::add);
+        minuteBarBuilder.onTick(11 * MINUTE + 30000, 1.0, 1.2, Double.NaN);
+        minuteBarBuilder.onTick(12 * MINUTE, 1.0, 1.2, Double.NaN);
+
+        assertTrue(completedBars.isEmpty());
+        assertFalse(new MinuteBarBuilder().readLiveBar(new CandleSeries()));
+    }
+}
@@ -0,0 +1,43 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.OrderDetails;
+import com.danlind.igz.domain.types.DealId;
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.Direction;
+import net.openhft.chronicle.bytes.Bytes;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class OrderDetailsMarshallerTest {
+
+    private final OrderDetailsMarshaller marshaller = OrderDetailsMarshaller.INSTANCE;
+
+    @Test
+    public void testRoundTrip() {
+        OrderDetails orderDetails = new OrderDetails(new Epic("CS.D.EURUSD.MINI.IP"), 1.08345, Direction.SELL, 3, new DealId("DIAAAAA9QN6L4AU"));
+        Bytes bytes = Bytes.elasticByteBuffer();
+
+        long size = marshaller.size(orderDetails);
+        marshaller.write(bytes, size, orderDetails);
+
+        assertEquals(size, bytes.writePosition());
+        assertEquals(orderDetails, marshaller.read(bytes, size, null));
+    }
+
+    @Test
+    public void testEpicIsInterned() {
+        OrderDetails first = new OrderDetails(new Epic("IX.D.DAX.IFD.IP"), 12500, Direction.BUY, 1, new DealId("DIAAAAA9QN6L4AU"));
+        OrderDetails second = new OrderDetails(new Epic("IX.D.DAX.IFD.IP"), 12600, Direction.SELL, 2, new DealId("DIAAAAA9QN6L4AV"));
+        Bytes bytes = Bytes.elasticByteBuffer();
+        marshaller.write(bytes, marshaller.size(first), first);
+        marshaller.write(bytes, marshaller.size(second), second);
+
+        OrderDetails firstRead = marshaller.read(bytes, marshaller.size(first), null);
+        OrderDetails secondRead = marshaller.read(bytes, marshaller.size(second), null);
+
+        assertEquals(second, secondRead);
+        assertSame(firstRead.getEpic(), secondRead.getEpic());
+    }
+}
@@ -0,0 +1,105 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.OrderDetails;
+import com.danlind.igz.domain.PositionDetails;
+import com.danlind.igz.domain.types.DealId;
+import com.danlind.igz.domain.types.DealReference;
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.Direction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class OrderStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final DealId dealId = new DealId("TestDealId");
+    private final OrderDetails orderDetails = new OrderDetails(new Epic("TestEpic"), 105, Direction.BUY, 2, dealId);
+
+    @Test
+    public void testOrderIdsAreNotReused() {
+        OrderStore orderStore = OrderStore.createInMemory(50);
+
+        int orderId = orderStore.nextOrderId();
+        orderStore.put(orderId, orderDetails);
+        orderStore.remove(orderId);
+
+        assertEquals(1001, orderId);
+        assertEquals(1002, orderStore.nextOrderId());
+    }
+
+    @Test
+    public void testPutAdvancesSequence() {
+        OrderStore orderStore = OrderStore.createInMemory(50);
+
+        orderStore.put(1500, orderDetails);
+
+        assertEquals(1501, orderStore.nextOrderId());
+    }
+
+    @Test
+    public void testFindOrderIdByDealId() {
+        OrderStore orderStore = OrderStore.createInMemory(50);
+        OrderDetails otherOrderDetails = new OrderDetails(new Epic("TestEpic"), 105, Direction.BUY, 1, new DealId("OtherDealId"));
+
+        orderStore.put(1001, orderDetails);
+        assertEquals(1001, orderStore.findOrderId(dealId).getAsInt());
+
+        orderStore.put(1001, otherOrderDetails);
+        assertFalse(orderStore.findOrderId(dealId).isPresent());
+        assertEquals(1001, orderStore.findOrderId(new DealId("OtherDealId")).getAsInt());
+
+        orderStore.remove(1001);
+        assertFalse(orderStore.findOrderId(new DealId("OtherDealId")).isPresent());
+        assertNull(orderStore.get(1001));
+    }
+
+    @Test
+    public void testSequenceAndOrdersArePersisted() throws Exception {
+        File ordersFile = new File(folder.getRoot(), "orders.dat");
+        File sequenceFile = new File(folder.getRoot(), "sequence.dat");
+        File journalFile = new File(folder.getRoot(), "journal.dat");
+        OrderStore orderStore = OrderStore.createPersisted(ordersFile, sequenceFile, journalFile, 5000);
+        int orderId = orderStore.nextOrderId();
+        orderStore.put(orderId, orderDetails);
+        orderStore.nextOrderId();
+        orderStore.close();
+
+        OrderStore reopenedOrderStore = OrderStore.createPersisted(ordersFile, sequenceFile, journalFile, 5000);
+
+        assertEquals(orderDetails.getPositionSize(), reopenedOrderStore.get(orderId).getPositionSize());
+        assertEquals(orderId, reopenedOrderStore.findOrderId(dealId).getAsInt());
+        assertEquals(1003, reopenedOrderStore.nextOrderId());
+        reopenedOrderStore.close();
+    }
+
+    @Test
+    public void testRecoverFromJournal() {
+        OrderStore orderStore = OrderStore.createInMemory(50);
+        orderStore.put(1001, orderDetails);
+        orderStore.put(1002, new OrderDetails(new Epic("TestEpic"), 106, Direction.SELL, 1, new DealId("ClosedDealId")));
+        orderStore.recordOpenIntent(1003, new Epic("OtherEpic"), Direction.SELL, 4, new DealReference("TestDealReference"));
+        orderStore.recordOpenIntent(1004, new Epic("OtherEpic"), Direction.BUY, 1, new DealReference("RejectedDealReference"));
+
+        orderStore.recover(Arrays.asList(
+            new PositionDetails(dealId, new DealReference("FirstDealReference"), 105, 1),
+            new PositionDetails(new DealId("OpenedDealId"), new DealReference("TestDealReference"), 107, 4)));
+
+        assertEquals(2, orderStore.size());
+        assertEquals(1, orderStore.get(1001).getPositionSize());
+        assertNull(orderStore.get(1002));
+        assertEquals(1003, orderStore.findOrderId(new DealId("OpenedDealId")).getAsInt());
+        assertEquals(new Epic("OtherEpic"), orderStore.get(1003).getEpic());
+        assertEquals(107, orderStore.get(1003).getEntryLevel(), 0);
+        assertEquals(1005, orderStore.nextOrderId());
+    }
+}
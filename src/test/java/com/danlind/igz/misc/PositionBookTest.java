@@ -0,0 +1,72 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.adapter.RestApiAdapter;
+import com.danlind.igz.adapter.StreamingApiAdapter;
+import com.danlind.igz.domain.PositionDetails;
+import com.danlind.igz.domain.PositionUpdate;
+import com.danlind.igz.domain.types.DealId;
+import io.reactivex.Single;
+import io.reactivex.subjects.PublishSubject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PositionBookTest {
+
+    @Mock
+    RestApiAdapter restApiAdapter;
+
+    @Mock
+    StreamingApiAdapter streamingApiAdapter;
+
+    PublishSubject<PositionUpdate> positionUpdates;
+    PositionBook positionBook;
+    DealId dealId = new DealId("TestDealId");
+
+    @Before
+    public void setUp() {
+        positionUpdates = PublishSubject.create();
+        when(restApiAdapter.getAccountId()).thenReturn("TestAccountId");
+        when(streamingApiAdapter.getPositionUpdateObservable(any())).thenReturn(positionUpdates);
+        positionBook = new PositionBook(restApiAdapter, streamingApiAdapter);
+    }
+
+    @Test
+    public void testUpdateWhileSnapshotIsTakenWins() {
+        //The position is closed after the snapshot was taken on IG's side, but before the response arrives
+        when(restApiAdapter.getOpenPositions()).thenReturn(Single.fromCallable(() -> {
+            assertTrue(positionUpdates.hasObservers());
+            positionUpdates.onNext(new PositionUpdate(dealId, 2, false));
+            return Collections.singletonList(new PositionDetails(dealId, null, 1.1, 2));
+        }));
+
+        assertTrue(positionBook.startPositionSubscription().isPresent());
+
+        assertTrue(positionBook.isAvailable());
+        assertTrue(positionBook.isClosed(dealId));
+        assertFalse(positionBook.isOpen(dealId));
+        assertFalse(positionBook.getPositionSize(dealId).isPresent());
+    }
+
+    @Test
+    public void testSnapshotSeedsOpenPositions() {
+        when(restApiAdapter.getOpenPositions()).thenReturn(Single.just(Collections.singletonList(new PositionDetails(dealId, null, 1.1, 2))));
+
+        positionBook.startPositionSubscription();
+        positionUpdates.onNext(new PositionUpdate(dealId, 1, true));
+
+        assertTrue(positionBook.isOpen(dealId));
+        assertEquals(1, positionBook.getPositionSize(dealId).getAsDouble(), 0);
+    }
+}
@@ -0,0 +1,61 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.config.PluginProperties;
+import com.danlind.igz.ig.api.client.rest.dto.prices.getPricesV3.Allowance;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PriceAllowanceTrackerTest {
+
+    PriceAllowanceTracker priceAllowanceTracker;
+
+    @Before
+    public void setUp() throws Exception {
+        PluginProperties pluginProperties = new PluginProperties();
+        pluginProperties.setHistoryAllowanceReservePercent(10);
+        priceAllowanceTracker = new PriceAllowanceTracker(pluginProperties);
+    }
+
+    @Test
+    public void testUnknownAllowanceIsNotLimited() {
+        assertEquals(PriceAllowanceTracker.UNKNOWN, priceAllowanceTracker.getRemainingAllowance());
+        assertEquals(Integer.MAX_VALUE, priceAllowanceTracker.getAvailableAllowance(false));
+        assertFalse(priceAllowanceTracker.isAllowanceLow());
+    }
+
+    @Test
+    public void testReserveOnlyAvailableForPriorityRequests() {
+        priceAllowanceTracker.updateAllowance(createAllowance(1500, 10000, 3600));
+
+        assertEquals(1500, priceAllowanceTracker.getRemainingAllowance());
+        assertEquals(1500, priceAllowanceTracker.getAvailableAllowance(true));
+        assertEquals(500, priceAllowanceTracker.getAvailableAllowance(false));
+        assertFalse(priceAllowanceTracker.isAllowanceLow());
+
+        priceAllowanceTracker.updateAllowance(createAllowance(800, 10000, 3500));
+
+        assertEquals(800, priceAllowanceTracker.getAvailableAllowance(true));
+        assertEquals(0, priceAllowanceTracker.getAvailableAllowance(false));
+        assertTrue(priceAllowanceTracker.isAllowanceLow());
+    }
+
+    @Test
+    public void testExpiredAllowanceIsReset() {
+        priceAllowanceTracker.updateAllowance(createAllowance(0, 10000, 0));
+
+        assertEquals(10000, priceAllowanceTracker.getRemainingAllowance());
+        assertEquals(Integer.MAX_VALUE, priceAllowanceTracker.getAvailableAllowance(false));
+    }
+
+    private Allowance createAllowance(int remaining, int total, int expiry) {
+        Allowance allowance = new Allowance();
+        allowance.setRemainingAllowance(remaining);
+        allowance.setTotalAllowance(total);
+        allowance.setAllowanceExpiry(expiry);
+        return allowance;
+    }
+}
@@ -0,0 +1,111 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.adapter.RestApiAdapter;
+import com.danlind.igz.config.PluginProperties;
+import com.danlind.igz.domain.CandleSeries;
+import com.danlind.igz.domain.PricePage;
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.domain.types.Resolution;
+import com.danlind.igz.handler.LoginHandler;
+import com.danlind.igz.ig.api.client.RestAPI;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PriceHistoryDownloaderTest {
+
+    private static final long START = LocalDateTime.parse("2017-04-25T10:00:00").toInstant(ZoneOffset.UTC).toEpochMilli();
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @Mock
+    RestAPI restApi;
+
+    @Mock
+    LoginHandler loginHandler;
+
+    @InjectMocks
+    RestApiAdapter restApiAdapter;
+
+    PriceHistoryDownloader priceHistoryDownloader;
+
+    @Before
+    public void setUp() throws Exception {
+        PluginProperties pluginProperties = new PluginProperties();
+        pluginProperties.setHistoryPageSize(2);
+        pluginProperties.setHistoryMaxConcurrentRequests(3);
+        priceHistoryDownloader = new PriceHistoryDownloader(restApiAdapter, pluginProperties, new PriceAllowanceTracker(pluginProperties));
+
+        when(restApi.getPricesV3Candles(any(), eq("1"), anyString(), anyString(), anyString(), anyString(), anyString(), anyString()))
+            .thenAnswer(invocation -> createResponse((String) invocation.getArguments()[5], 2, 1));
+    }
+
+    @Test
+    public void testDownloadSplitsRangeIntoOrderedChunks() throws Exception {
+        CandleSeries candles = priceHistoryDownloader.download(new Epic("TestEpic"), Resolution.MINUTE, START, START + 5 * MINUTE, 0);
+
+        assertEquals(6, candles.size());
+        for (int i = 0; i < candles.size(); i++) {
+            assertEquals(START + i * MINUTE, candles.getTime(i));
+            assertEquals(100 + i, candles.getCloseAsk(i), 0);
+        }
+        verify(restApi, times(3)).getPricesV3Candles(any(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void testDownloadRangeOfWholeChunks() throws Exception {
+        CandleSeries candles = priceHistoryDownloader.download(new Epic("TestEpic"), Resolution.MINUTE, START, START + 3 * MINUTE, 0);
+
+        assertEquals(4, candles.size());
+        assertEquals(START + 3 * MINUTE, candles.getTime(3));
+        verify(restApi, times(2)).getPricesV3Candles(any(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void testDownloadIncludesBarAtEndOfRange() throws Exception {
+        CandleSeries candles = priceHistoryDownloader.download(new Epic("TestEpic"), Resolution.MINUTE, START, START + 4 * MINUTE, 0);
+
+        assertEquals(START + 4 * MINUTE, candles.getTime(4));
+        verify(restApi, times(3)).getPricesV3Candles(any(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString());
+        verify(restApi).getPricesV3Candles(any(), anyString(), anyString(), anyString(), anyString(), eq("2017-04-25T10:04"), eq("2017-04-25T10:04"), anyString());
+    }
+
+    @Test
+    public void testDownloadFollowsPageData() throws Exception {
+        when(restApi.getPricesV3Candles(any(), eq("1"), anyString(), anyString(), anyString(), eq("2017-04-25T10:00"), anyString(), anyString()))
+            .thenReturn(createResponse("2017-04-25T10:00", 2, 2));
+        when(restApi.getPricesV3Candles(any(), eq("2"), anyString(), anyString(), anyString(), eq("2017-04-25T10:00"), anyString(), anyString()))
+            .thenReturn(createResponse("2017-04-25T10:02", 1, 2));
+
+        CandleSeries candles = priceHistoryDownloader.download(new Epic("TestEpic"), Resolution.MINUTE, START, START + MINUTE, 0);
+
+        assertEquals(3, candles.size());
+        verify(restApi, times(2)).getPricesV3Candles(any(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString());
+    }
+
+    private PricePage createResponse(String from, int items, int totalPages) {
+        long fromMillis = LocalDateTime.parse(from).toInstant(ZoneOffset.UTC).toEpochMilli();
+        CandleSeries candles = new CandleSeries();
+        for (int i = 0; i < items; i++) {
+            long time = fromMillis + i * MINUTE;
+            double price = 100 + (time - START) / MINUTE;
+            candles.add(time, price - 1, price, price - 1, price, price - 1, price, price - 1, price, 1000);
+        }
+        return new PricePage(candles, totalPages, null);
+    }
+}
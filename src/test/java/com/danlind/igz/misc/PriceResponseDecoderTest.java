@@ -0,0 +1,76 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.CandleSeries;
+import com.danlind.igz.domain.PricePage;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PriceResponseDecoderTest {
+
+    private static final String RESPONSE = "{\"prices\":["
+        + "{\"snapshotTime\":\"2017/04/25 12:27:00\",\"snapshotTimeUTC\":\"2017-04-25T10:27:00\","
+        + "\"openPrice\":{\"bid\":1.0901,\"ask\":1.0903,\"lastTraded\":null},"
+        + "\"closePrice\":{\"bid\":1.0905,\"ask\":1.0907,\"lastTraded\":null},"
+        + "\"highPrice\":{\"bid\":1.0910,\"ask\":1.0912,\"lastTraded\":null},"
+        + "\"lowPrice\":{\"bid\":1.0899,\"ask\":1.0901,\"lastTraded\":null},"
+        + "\"lastTradedVolume\":152},"
+        + "{\"snapshotTimeUTC\":\"2017-04-25T10:28:00\",\"lastTradedVolume\":null,"
+        + "\"openPrice\":{\"bid\":null,\"ask\":90},\"closePrice\":{\"bid\":95,\"ask\":100},"
+        + "\"highPrice\":{\"ask\":120},\"lowPrice\":{\"ask\":80}}],"
+        + "\"instrumentType\":\"CURRENCIES\","
+        + "\"metadata\":{\"allowance\":{\"remainingAllowance\":9876,\"totalAllowance\":10000,\"allowanceExpiry\":3600},"
+        + "\"size\":2,\"pageData\":{\"pageSize\":2,\"pageNumber\":1,\"totalPages\":3}}}";
+
+    private final PriceResponseDecoder priceResponseDecoder = new PriceResponseDecoder(new JsonFactory());
+
+    @Test
+    public void testDecodePricesAndMetadata() throws Exception {
+        PricePage pricePage = priceResponseDecoder.decode(RESPONSE.getBytes(StandardCharsets.UTF_8));
+        CandleSeries candles = pricePage.getCandles();
+
+        assertEquals(2, candles.size());
+        assertEquals(LocalDateTime.parse("2017-04-25T10:27:00").toInstant(ZoneOffset.UTC).toEpochMilli(), candles.getTime(0));
+        assertEquals(1.0903, candles.getOpenAsk(0), 0);
+        assertEquals(1.0912, candles.getHighAsk(0), 0);
+        assertEquals(1.0901, candles.getLowAsk(0), 0);
+        assertEquals(1.0907, candles.getCloseAsk(0), 0);
+        assertEquals(0.0002, candles.getSpread(0), 1e-9);
+        assertEquals(152, candles.getVolume(0), 0);
+
+        assertEquals(90, candles.get(1, CandleSeries.OPEN_BID), 0);
+        assertEquals(5, candles.getSpread(1), 0);
+        assertEquals(0, candles.getVolume(1), 0);
+
+        assertEquals(3, pricePage.getTotalPages());
+        assertEquals(Integer.valueOf(9876), pricePage.getAllowance().getRemainingAllowance());
+        assertEquals(Integer.valueOf(3600), pricePage.getAllowance().getAllowanceExpiry());
+    }
+
+    @Test
+    public void testDecodeWithoutMetadata() throws Exception {
+        PricePage pricePage = priceResponseDecoder.decode("{\"prices\":[]}".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(0, pricePage.getCandles().size());
+        assertEquals(1, pricePage.getTotalPages());
+        assertNull(pricePage.getAllowance());
+    }
+
+    @Test
+    public void testIsoDateTimeConversion() {
+        char[] buffer = "xx2017-04-25T10:27:13xx".toCharArray();
+        assertEquals(LocalDateTime.parse("2017-04-25T10:27:13").toInstant(ZoneOffset.UTC).toEpochMilli(),
+            TimeConvert.millisFromIsoDateTime(buffer, 2, 19));
+        char[] leapDay = "2016-02-29T23:59".toCharArray();
+        assertEquals(LocalDateTime.parse("2016-02-29T23:59").toInstant(ZoneOffset.UTC).toEpochMilli(),
+            TimeConvert.millisFromIsoDateTime(leapDay, 0, leapDay.length));
+        char[] oleTime = "2017-04-25T10:30:00".toCharArray();
+        assertEquals(42850.4375, TimeConvert.getOLEDateFromIsoDateTime(oleTime, 0, oleTime.length), 1e-9);
+    }
+}
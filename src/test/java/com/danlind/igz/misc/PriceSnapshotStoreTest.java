@@ -0,0 +1,82 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.types.Epic;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PriceSnapshotStoreTest {
+
+    PriceSnapshotStore priceSnapshotStore;
+    Epic epic;
+
+    @Before
+    public void setUp() {
+        priceSnapshotStore = new PriceSnapshotStore();
+        epic = new Epic("TestEpic");
+    }
+
+    @Test
+    public void testHandlesAreAssignedOnce() {
+        AssetSlot slot = priceSnapshotStore.register(epic);
+        AssetSlot otherSlot = priceSnapshotStore.register(new Epic("OtherEpic"));
+
+        assertEquals(0, slot.getHandle());
+        assertEquals(1, otherSlot.getHandle());
+        assertSame(slot, priceSnapshotStore.register(epic));
+        assertSame(slot, priceSnapshotStore.getSlot(0));
+        assertEquals(2, priceSnapshotStore.size());
+    }
+
+    @Test
+    public void testUnknownAsset() {
+        assertEquals(PriceSnapshotStore.UNKNOWN_HANDLE, priceSnapshotStore.getHandle(epic));
+        assertNull(priceSnapshotStore.getSlot(PriceSnapshotStore.UNKNOWN_HANDLE));
+        assertNull(priceSnapshotStore.getSlot(0));
+    }
+
+    @Test
+    public void testNoPriceBeforeFirstUpdate() {
+        AssetSlot slot = priceSnapshotStore.register(epic);
+        double[] prices = new double[2];
+
+        assertFalse(slot.readPrice(prices));
+        slot.updatePrice(1.1, 1.2);
+        assertTrue(slot.readPrice(prices));
+        assertEquals(1.1, prices[0], 0);
+        assertEquals(1.2, prices[1], 0);
+    }
+
+    @Test
+    public void testReaderNeverSeesTornPrice() throws Exception {
+        AssetSlot slot = priceSnapshotStore.register(epic);
+        slot.updatePrice(0, 1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            double price = 0;
+            while (running.get()) {
+                price++;
+                slot.updatePrice(price, price + 1);
+            }
+        });
+        writer.start();
+
+        double[] prices = new double[2];
+        try {
+            for (int i = 0; i < 1_000_000; i++) {
+                slot.readPrice(prices);
+                assertEquals(prices[0] + 1, prices[1], 0);
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+}
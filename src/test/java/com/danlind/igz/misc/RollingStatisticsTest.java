@@ -0,0 +1,70 @@
+package com.danlind.igz.misc;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RollingStatisticsTest {
+
+    @Test
+    public void testEmptyWindow() {
+        RollingStatistics statistics = new RollingStatistics(3);
+
+        assertEquals(0, statistics.size());
+        assertTrue(Double.isNaN(statistics.getMean()));
+        assertTrue(Double.isNaN(statistics.getVariance()));
+        assertTrue(Double.isNaN(statistics.getStandardDeviation()));
+    }
+
+    @Test
+    public void testOldestValuesLeaveWindow() {
+        RollingStatistics statistics = new RollingStatistics(3);
+        statistics.add(1);
+        statistics.add(2);
+        assertEquals(1.5, statistics.getMean(), 0);
+        assertEquals(0.25, statistics.getVariance(), 1e-12);
+
+        statistics.add(3);
+        statistics.add(10);
+        statistics.add(20);
+        assertEquals(3, statistics.size());
+        assertEquals(11, statistics.getMean(), 1e-12);
+        assertEquals(146.0 / 3, statistics.getVariance(), 1e-12);
+    }
+
+    @Test
+    public void testClear() {
+        RollingStatistics statistics = new RollingStatistics(2);
+        statistics.add(5);
+        statistics.add(7);
+        statistics.clear();
+        statistics.add(1);
+
+        assertEquals(1, statistics.size());
+        assertEquals(1, statistics.getMean(), 0);
+        assertEquals(0, statistics.getVariance(), 0);
+    }
+
+    @Test
+    public void testNoDriftOverManyValues() {
+        RollingStatistics statistics = new RollingStatistics(10);
+        Random random = new Random(42);
+        for (int i = 0; i < 1000000; i++) {
+            statistics.add(1e6 + random.nextDouble() * 1e3);
+        }
+        for (int i = 0; i < 10; i++) {
+            statistics.add(1.0001 + i * 0.0001);
+        }
+
+        assertEquals(1.00055, statistics.getMean(), 1e-12);
+        assertEquals(0.0001 * Math.sqrt(8.25), statistics.getStandardDeviation(), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyWindowSizeRejected() {
+        new RollingStatistics(0);
+    }
+}
@@ -0,0 +1,59 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.types.Epic;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SubscriptionBatcherTest {
+
+    private final List<List<Epic>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void testAwaitSubscribesQueuedBatch() {
+        SubscriptionBatcher subscriptionBatcher = new SubscriptionBatcher(batches::add, 60000);
+        Epic first = new Epic("FirstEpic");
+        Epic second = new Epic("SecondEpic");
+        subscriptionBatcher.add(first);
+        subscriptionBatcher.add(second);
+        subscriptionBatcher.add(first);
+        assertTrue(subscriptionBatcher.isPending(first));
+
+        subscriptionBatcher.await(second);
+
+        assertEquals(Collections.singletonList(Arrays.asList(first, second)), batches);
+        assertFalse(subscriptionBatcher.isPending(first));
+        assertFalse(subscriptionBatcher.isPending(second));
+    }
+
+    @Test
+    public void testBatchSubscribedAfterDelay() throws Exception {
+        SubscriptionBatcher subscriptionBatcher = new SubscriptionBatcher(batches::add, 20);
+        Epic epic = new Epic("TestEpic");
+        subscriptionBatcher.add(epic);
+        Thread.sleep(200);
+
+        assertEquals(Collections.singletonList(Collections.singletonList(epic)), batches);
+        assertFalse(subscriptionBatcher.isPending(epic));
+    }
+
+    @Test
+    public void testFailedBatchIsNotPending() {
+        SubscriptionBatcher subscriptionBatcher = new SubscriptionBatcher(epics -> {
+            throw new RuntimeException("TestException");
+        }, 60000);
+        Epic epic = new Epic("TestEpic");
+        subscriptionBatcher.add(epic);
+
+        subscriptionBatcher.await(epic);
+
+        assertFalse(subscriptionBatcher.isPending(epic));
+    }
+}
@@ -0,0 +1,169 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.ig.api.client.streaming.HandyTableListenerAdapter;
+import com.lightstreamer.ls_client.SubscribedTableKey;
+import com.lightstreamer.ls_client.UpdateInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class SubscriptionMultiplexerTest {
+
+    private final Map<SubscribedTableKey, String[]> openTables = new LinkedHashMap<>();
+    private final Map<SubscribedTableKey, HandyTableListenerAdapter> listeners = new LinkedHashMap<>();
+    private SubscriptionMultiplexer subscriptionMultiplexer;
+
+    @Before
+    public void setUp() {
+        subscriptionMultiplexer = new SubscriptionMultiplexer("test", 3, (items, listener) -> {
+            SubscribedTableKey subscribedTableKey = new SubscribedTableKey();
+            listener.setSubscribedTableKey(subscribedTableKey);
+            openTables.put(subscribedTableKey, items);
+            listeners.put(subscribedTableKey, listener);
+            return listener;
+        }, subscribedTableKey -> {
+            openTables.remove(subscribedTableKey);
+            listeners.remove(subscribedTableKey);
+        });
+    }
+
+    @Test
+    public void testItemsAreGroupedIntoTables() throws Exception {
+        subscriptionMultiplexer.add(createSinks("A", "B", "C", "D", "E"));
+
+        assertEquals(2, subscriptionMultiplexer.getTableCount());
+        assertEquals(5, subscriptionMultiplexer.getItemCount());
+        assertEquals(Arrays.asList("A,B,C", "D,E"), getOpenTables());
+    }
+
+    @Test
+    public void testUpdatesAreRoutedByItemPosition() throws Exception {
+        Map<String, SubscriptionMultiplexer.ItemSink> sinks = createSinks("A", "B", "C", "D");
+        subscriptionMultiplexer.add(sinks);
+
+        sendUpdate(1, 2);
+        sendUpdate(0, 1);
+
+        assertEquals(1, getSink(sinks, "A").updates.size());
+        assertEquals(0, getSink(sinks, "B").updates.size());
+        assertEquals(0, getSink(sinks, "C").updates.size());
+        assertEquals(1, getSink(sinks, "D").updates.size());
+    }
+
+    @Test
+    public void testAddFillsSmallestTable() throws Exception {
+        subscriptionMultiplexer.add(createSinks("A", "B", "C", "D"));
+        subscriptionMultiplexer.add(createSinks("E", "F", "G"));
+
+        assertEquals(Arrays.asList("A,B,C", "D,E,F", "G"), getOpenTables());
+    }
+
+    @Test
+    public void testRemoveRebuildsTableWithoutItem() throws Exception {
+        Map<String, SubscriptionMultiplexer.ItemSink> first = createSinks("A", "B");
+        Map<String, SubscriptionMultiplexer.ItemSink> second = createSinks("C");
+        subscriptionMultiplexer.add(first);
+        subscriptionMultiplexer.add(second);
+        assertEquals(Collections.singletonList("A,B,C"), getOpenTables());
+
+        subscriptionMultiplexer.remove(first);
+
+        assertEquals(Collections.singletonList("C"), getOpenTables());
+        assertEquals(1, subscriptionMultiplexer.getItemCount());
+        sendUpdate(0, 1);
+        assertEquals(1, getSink(second, "C").updates.size());
+        assertTrue(getSink(first, "A").updates.isEmpty());
+        assertFalse(getSink(second, "C").completed);
+    }
+
+    @Test
+    public void testRemoveIgnoresReplacedSink() throws Exception {
+        Map<String, SubscriptionMultiplexer.ItemSink> first = createSinks("A");
+        Map<String, SubscriptionMultiplexer.ItemSink> second = createSinks("A");
+        subscriptionMultiplexer.add(first);
+        subscriptionMultiplexer.add(second);
+
+        subscriptionMultiplexer.remove(first);
+
+        assertEquals(Collections.singletonList("A"), getOpenTables());
+        sendUpdate(0, 1);
+        assertTrue(getSink(first, "A").updates.isEmpty());
+        assertEquals(1, getSink(second, "A").updates.size());
+    }
+
+    @Test
+    public void testEndedTableCompletesItsSinks() throws Exception {
+        Map<String, SubscriptionMultiplexer.ItemSink> sinks = createSinks("A", "B", "C", "D");
+        subscriptionMultiplexer.add(sinks);
+
+        new ArrayList<>(listeners.values()).get(0).onUnsubscrAll();
+
+        assertTrue(getSink(sinks, "A").completed);
+        assertTrue(getSink(sinks, "C").completed);
+        assertFalse(getSink(sinks, "D").completed);
+        assertEquals(1, subscriptionMultiplexer.getTableCount());
+        assertEquals(1, subscriptionMultiplexer.getItemCount());
+    }
+
+    @Test
+    public void testClearUnsubscribesAllTables() throws Exception {
+        Map<String, SubscriptionMultiplexer.ItemSink> sinks = createSinks("A", "B", "C", "D");
+        subscriptionMultiplexer.add(sinks);
+
+        subscriptionMultiplexer.clear();
+
+        assertTrue(openTables.isEmpty());
+        assertEquals(0, subscriptionMultiplexer.getTableCount());
+        assertFalse(getSink(sinks, "A").completed);
+    }
+
+    private Map<String, SubscriptionMultiplexer.ItemSink> createSinks(String... items) {
+        Map<String, SubscriptionMultiplexer.ItemSink> sinks = new LinkedHashMap<>();
+        for (String item : items) {
+            sinks.put(item, new RecordingSink());
+        }
+        return sinks;
+    }
+
+    private static RecordingSink getSink(Map<String, SubscriptionMultiplexer.ItemSink> sinks, String item) {
+        return (RecordingSink) sinks.get(item);
+    }
+
+    private List<String> getOpenTables() {
+        List<String> tables = new ArrayList<>();
+        openTables.values().forEach(items -> tables.add(String.join(",", items)));
+        return tables;
+    }
+
+    private void sendUpdate(int table, int itemPos) {
+        HandyTableListenerAdapter listener = new ArrayList<>(listeners.values()).get(table);
+        listener.onUpdate(itemPos, openTables.get(listener.getSubscribedTableKey())[itemPos - 1], mock(UpdateInfo.class));
+    }
+
+    private static class RecordingSink implements SubscriptionMultiplexer.ItemSink {
+
+        private final List<UpdateInfo> updates = new ArrayList<>();
+        private boolean completed;
+
+        @Override
+        public void onUpdate(UpdateInfo updateInfo) {
+            updates.add(updateInfo);
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
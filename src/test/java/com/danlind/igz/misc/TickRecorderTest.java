@@ -0,0 +1,106 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.types.Epic;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TickRecorderTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long START = 17281 * DAY; // 2017-04-25
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PriceSnapshotStore priceSnapshotStore;
+    private AssetSlot firstSlot;
+    private AssetSlot secondSlot;
+
+    @Before
+    public void setUp() {
+        priceSnapshotStore = new PriceSnapshotStore();
+        firstSlot = priceSnapshotStore.register(new Epic("FirstEpic"));
+        secondSlot = priceSnapshotStore.register(new Epic("SecondEpic"));
+    }
+
+    @Test
+    public void testTicksRecordedPerEpic() throws Exception {
+        TickRecorder tickRecorder = new TickRecorder(folder.getRoot(), true, 16, 100);
+        tickRecorder.record(firstSlot, START + 1000, 1.1, 1.2, Double.NaN);
+        tickRecorder.record(secondSlot, START + 2000, 5.1, 5.2, 3);
+        tickRecorder.record(firstSlot, START + 3000, 1.3, 1.4, Double.NaN);
+        tickRecorder.close();
+
+        TickJournal first = openJournal("FirstEpic", "20170425_1");
+        assertEquals(2, first.size());
+        assertEquals(START + 1000, first.getFirstTime());
+        assertEquals(START + 3000, first.getLastTime());
+        List<Double> asks = new ArrayList<>();
+        first.forEach((time, bid, ask, volume) -> asks.add(ask));
+        assertEquals(Arrays.asList(1.2, 1.4), asks);
+
+        TickJournal second = openJournal("SecondEpic", "20170425_1");
+        second.forEach((time, bid, ask, volume) -> {
+            assertEquals(START + 2000, time);
+            assertEquals(5.1, bid, 0);
+            assertEquals(3, volume, 0);
+        });
+        assertEquals(1, second.size());
+    }
+
+    @Test
+    public void testJournalsRollWhenFullAndEveryDay() throws Exception {
+        TickRecorder tickRecorder = new TickRecorder(folder.getRoot(), true, 16, 2);
+        tickRecorder.record(firstSlot, START + 1000, 1.1, 1.2, Double.NaN);
+        tickRecorder.record(firstSlot, START + 2000, 1.1, 1.2, Double.NaN);
+        tickRecorder.record(firstSlot, START + 3000, 1.1, 1.2, Double.NaN);
+        tickRecorder.record(firstSlot, START + DAY, 1.1, 1.2, Double.NaN);
+        tickRecorder.close();
+
+        assertEquals(2, openJournal("FirstEpic", "20170425_1").size());
+        assertEquals(1, openJournal("FirstEpic", "20170425_2").size());
+        assertEquals(1, openJournal("FirstEpic", "20170426_1").size());
+    }
+
+    @Test
+    public void testRecordingContinuesJournalAfterRestart() throws Exception {
+        TickRecorder tickRecorder = new TickRecorder(folder.getRoot(), true, 16, 100);
+        tickRecorder.record(firstSlot, START + 1000, 1.1, 1.2, Double.NaN);
+        tickRecorder.close();
+        tickRecorder = new TickRecorder(folder.getRoot(), true, 16, 100);
+        tickRecorder.record(firstSlot, START + 2000, 1.1, 1.2, Double.NaN);
+        tickRecorder.close();
+
+        TickJournal journal = openJournal("FirstEpic", "20170425_1");
+        assertEquals(2, journal.size());
+        assertEquals(START + 1000, journal.getFirstTime());
+        assertEquals(START + 2000, journal.getLastTime());
+    }
+
+    @Test
+    public void testNothingRecordedWhenDisabled() {
+        TickRecorder tickRecorder = new TickRecorder(folder.getRoot(), false, 16, 100);
+        tickRecorder.record(firstSlot, START + 1000, 1.1, 1.2, Double.NaN);
+        tickRecorder.close();
+
+        assertFalse(new File(folder.getRoot(), "FirstEpic").exists());
+    }
+
+    private TickJournal openJournal(String epic, String name) throws Exception {
+        File file = new File(new File(folder.getRoot(), epic), name + TickRecorder.FILE_SUFFIX);
+        assertTrue(file.exists());
+        return new TickJournal(file, 0);
+    }
+}
@@ -0,0 +1,78 @@
+package com.danlind.igz.misc;
+
+import com.danlind.igz.domain.OrderDetails;
+import com.danlind.igz.domain.types.DealId;
+import com.danlind.igz.domain.types.DealReference;
+import com.danlind.igz.domain.types.Epic;
+import com.danlind.igz.ig.api.client.rest.dto.positions.otc.createOTCPositionV2.Direction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TradeJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Epic epic = new Epic("CS.D.EURUSD.MINI.IP");
+    private final OrderDetails orderDetails = new OrderDetails(epic, 1.0834, Direction.BUY, 2, new DealId("DIAAAAA9QN6L4AU"));
+
+    @Test
+    public void testReplay() {
+        TradeJournal tradeJournal = TradeJournal.createInMemory();
+        tradeJournal.recordOpenIntent(1001, epic, Direction.BUY, 2, new DealReference("FirstDealReference"));
+        tradeJournal.recordOrderStored(1001, orderDetails);
+        tradeJournal.recordOpenIntent(1002, epic, Direction.SELL, 1, new DealReference("SecondDealReference"));
+        tradeJournal.recordOrderStored(1003, orderDetails);
+        tradeJournal.recordCloseIntent(1003, orderDetails.getDealId(), 2);
+        tradeJournal.recordOrderRemoved(1003);
+
+        TradeJournal.Replay replay = tradeJournal.replay();
+
+        assertEquals(Collections.singletonMap(1001, orderDetails), replay.getOrders());
+        assertEquals(1, replay.getOpenIntents().size());
+        assertEquals("SecondDealReference", replay.getOpenIntents().get(1002).getDealReference().getValue());
+        assertEquals(Direction.SELL, replay.getOpenIntents().get(1002).getDirection());
+        assertTrue(replay.getCloseIntents().isEmpty());
+        assertTrue(replay.isKnown(1003));
+        assertFalse(replay.isKnown(1002));
+    }
+
+    @Test
+    public void testJournalGrowsAndIsPersisted() throws Exception {
+        File file = new File(folder.getRoot(), "journal.dat");
+        TradeJournal tradeJournal = TradeJournal.createPersisted(file);
+        for (int orderId = 0; orderId < 3000; orderId++) {
+            tradeJournal.recordOrderStored(orderId, orderDetails);
+        }
+        tradeJournal.recordCloseIntent(5, orderDetails.getDealId(), 1);
+        tradeJournal.close();
+
+        TradeJournal.Replay replay = TradeJournal.createPersisted(file).replay();
+
+        assertEquals(3000, replay.getOrders().size());
+        assertEquals(orderDetails, replay.getOrders().get(2999));
+        assertEquals(Collections.singleton(5), replay.getCloseIntents());
+    }
+
+    @Test
+    public void testCompact() {
+        TradeJournal tradeJournal = TradeJournal.createInMemory();
+        tradeJournal.recordOpenIntent(1001, epic, Direction.BUY, 2, new DealReference("FirstDealReference"));
+        tradeJournal.recordOrderStored(1002, orderDetails);
+        tradeJournal.recordOrderRemoved(1002);
+
+        tradeJournal.compact(Collections.singletonMap(1003, orderDetails));
+
+        assertEquals(1, tradeJournal.size());
+        assertTrue(tradeJournal.replay().getOpenIntents().isEmpty());
+        assertEquals(Collections.singletonMap(1003, orderDetails), tradeJournal.replay().getOrders());
+    }
+}